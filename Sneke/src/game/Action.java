@@ -0,0 +1,48 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Objects;
+
+/**
+ * The Action Enum describes the relative move a controller can make on a
+ * single tick: turn left, keep going straight, or turn right
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public enum Action {
+    /**
+     * The types
+     */
+    LEFT, STRAIGHT, RIGHT;
+
+    /**
+     * Returns the Direction that results from applying this Action to
+     * theOldDirection
+     *
+     * @param theOldDirection the Direction the Sneke is currently moving
+     * @throws NullPointerException if theOldDirection is null
+     * @return the Direction that results from applying this Action
+     */
+    public Direction apply(final Direction theOldDirection) {
+        Objects.requireNonNull(theOldDirection,
+                "theOldDirection can not be null");
+        Direction newDirection = theOldDirection;
+        switch (this) {
+            case LEFT:
+                newDirection = Direction.getLeftDirection(theOldDirection);
+                break;
+            case RIGHT:
+                newDirection = Direction.getRightDirection(theOldDirection);
+                break;
+            case STRAIGHT:
+                break;
+        }
+        return newDirection;
+    }
+}
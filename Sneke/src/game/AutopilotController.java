@@ -0,0 +1,838 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import game.stats.Histogram;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The AutopilotController class is a Controller that steers the Sneke along
+ * the shortest path to the cherry, found with a breadth first search over
+ * the matrix.
+ *
+ * When the matrix has a Hamiltonian cycle the body is kept in cycle order:
+ * from the tail to the head every segment is further along the cycle, so
+ * every cell after the head and before the tail is free and following the
+ * cycle can never run into the body. A path may only move forward through
+ * those cells, so it never jumps past the tail, and it only skips part of
+ * the cycle while half the matrix stays free ahead of it. Without such a
+ * path the Sneke follows the cycle, and after a whole lap of the matrix
+ * without a cherry it stops skipping altogether.
+ *
+ * Without a cycle a path is only safe if the Sneke could still reach its
+ * own tail after eating at its end. When there is no safe path it chases
+ * its tail, and when even that is cut off it moves towards the most room.
+ *
+ * Every search reuses arrays allocated for the matrix size, so making a
+ * decision never allocates. A path is searched once per cherry and then
+ * followed, because the cells ahead of the head can not become body until
+ * the head gets there.
+ *
+ * Usage of the built in benchmark: {@code java game.AutopilotController
+ * [decisions] [rows] [cols] [seed]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class AutopilotController implements Controller {
+
+    /** The default number of decisions the benchmark makes */
+    private static final long DEFAULT_DECISIONS = 1_000_000L;
+
+    /** The default number of rows and columns of the benchmark matrix */
+    private static final int DEFAULT_DIMENSION = 100;
+
+    /** The Actions in the order they are tried */
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * The number of ticks to wait before searching again after there was no
+     * safe path, the body rarely opens a way within fewer
+     */
+    private static final int SEARCH_BACKOFF = 4;
+
+    /**
+     * The Topology the arrays and tables are built for
+     */
+    private Topology myTopology;
+
+    /**
+     * The number of rows the arrays are allocated for
+     */
+    private int myRows;
+
+    /**
+     * The number of columns the arrays are allocated for
+     */
+    private int myCols;
+
+    /**
+     * The search queue of packed cells
+     */
+    private int[] myQueue;
+
+    /**
+     * The cell each cell was reached from in the last path search, or its
+     * distance in the last search for the tail
+     */
+    private int[] myParent;
+
+    /**
+     * The search each cell was last visited in, so the array never has to
+     * be cleared
+     */
+    private int[] myVisited;
+
+    /**
+     * The number of the current search
+     */
+    private int mySearch;
+
+    /**
+     * The search each cell was last marked as body in, for cells the body
+     * will cover at the end of a path
+     */
+    private int[] myBlocked;
+
+    /**
+     * The search each cell of the current body was marked in
+     */
+    private int[] myBody;
+
+    /**
+     * The search the current body was marked in
+     */
+    private int myBodySearch;
+
+    /**
+     * The packed cell next to each cell in each Direction, or -1 if the
+     * move is blocked, indexed by cell * 4 + the Direction ordinal
+     */
+    private int[] myNeighbours;
+
+    /**
+     * The cells of the current path from the first step to the cherry
+     */
+    private int[] myPath;
+
+    /**
+     * The number of cells in the current path
+     */
+    private int myPathLength;
+
+    /**
+     * The position in myPath of the next cell to move to
+     */
+    private int myPathIndex;
+
+    /**
+     * The cherry the current path leads to, -1 when there is no path
+     */
+    private int myPathCherry;
+
+    /**
+     * The number of ticks left before the next path search
+     */
+    private int myBackoff;
+
+    /**
+     * The game of the current decision
+     */
+    private SnekeEngine myEngine;
+
+    /**
+     * The Direction ordinal to move in from each cell along a Hamiltonian
+     * cycle, null when the matrix has none
+     */
+    private byte[] myCycle;
+
+    /**
+     * The position of each cell along the Hamiltonian cycle, null when the
+     * matrix has none
+     */
+    private int[] myCycleIndex;
+
+    /**
+     * The length of the Sneke when the last decision was made
+     */
+    private int myLastLength;
+
+    /**
+     * The number of decisions since the Sneke last grew
+     */
+    private int myIdleTicks;
+
+    /**
+     * Initializes a new AutopilotController, its arrays are allocated for
+     * the first matrix it plays
+     */
+    public AutopilotController() {
+        myPathCherry = -1;
+    }
+
+    @Override
+    public void newGame(final SnekeEngine theEngine) {
+        prepare(theEngine);
+        myPathCherry = -1;
+        myBackoff = 0;
+        myLastLength = theEngine.getLength();
+        myIdleTicks = 0;
+    }
+
+    @Override
+    public Action nextAction(final SnekeEngine theEngine) {
+        prepare(theEngine);
+        final int head = theEngine.getHeadRow() * myCols
+                + theEngine.getHeadCol();
+        final int cherry = theEngine.getCherryRow() < 0 ? -1 :
+                theEngine.getCherryRow() * myCols + theEngine.getCherryCol();
+        if (theEngine.getLength() != myLastLength) {
+            myLastLength = theEngine.getLength();
+            myIdleTicks = 0;
+        } else {
+            myIdleTicks++;
+        }
+
+        // follow the path while it still starts next to the head
+        if (cherry >= 0 && cherry == myPathCherry
+                && myPathIndex < myPathLength) {
+            final Action action = actionTo(theEngine, head,
+                    myPath[myPathIndex]);
+            if (action != null && theEngine.isSafe(action)) {
+                myPathIndex++;
+                return action;
+            }
+        }
+
+        myPathCherry = -1;
+        if (myCycle != null) {
+            return followCycle(theEngine, head, cherry);
+        }
+        markBody();
+        if (myBackoff > 0) {
+            myBackoff--;
+        } else if (cherry >= 0 && findPath(theEngine, head, cherry)
+                && distanceToTail(cherry) >= 0) {
+            myPathCherry = cherry;
+            myPathIndex = 1;
+            return actionTo(theEngine, head, myPath[0]);
+        } else {
+            myBackoff = SEARCH_BACKOFF;
+        }
+        return fallback(theEngine, head, cherry);
+    }
+
+    /**
+     * Returns the move to make on a matrix with a Hamiltonian cycle: the
+     * first step of a path to the cherry through the free cells ahead of
+     * the head in cycle order, or else the move furthest along the cycle
+     * that the same rules allow. The head may land on the cherry only if a
+     * free cell is left ahead of it, unless eating it wins the game
+     *
+     * @param theEngine the game
+     * @param theHead the packed head cell
+     * @param theCherry the packed cherry cell, -1 if there is none
+     * @return the move to make
+     */
+    private Action followCycle(final SnekeEngine theEngine,
+            final int theHead, final int theCherry) {
+        final int cells = myCycleIndex.length;
+        final int length = theEngine.getLength();
+        // a lone head has no tail to run into
+        final int tail = length == 1 ? cells
+                : cycleDistance(theHead, theEngine.getBodyCell(0));
+        // skips must leave half the matrix free, and none after a lap
+        final int skipLimit = myIdleTicks >= cells ? 0 : tail - cells / 2;
+        final int eatLimit = length + 1 == cells ? tail - 1 : tail - 2;
+
+        if (theCherry >= 0) {
+            final int ahead = cycleDistance(theHead, theCherry);
+            if (ahead <= eatLimit && findCyclePath(theEngine, theHead,
+                    theCherry, ahead, skipLimit)) {
+                final Action action = actionTo(theEngine, theHead,
+                        myPath[0]);
+                if (action != null && theEngine.isSafe(action)) {
+                    myPathCherry = theCherry;
+                    myPathIndex = 1;
+                    return action;
+                }
+            }
+        }
+
+        Action best = null;
+        int bestAhead = 0;
+        final Direction current = theEngine.getCurrentDirection();
+        for (Action action : ACTIONS) {
+            final int next = neighbour(theHead, action.apply(current)
+                    .ordinal());
+            if (next < 0 || next == theCherry) {
+                continue;
+            }
+            final int ahead = cycleDistance(theHead, next);
+            if (ahead > bestAhead && ahead < tail
+                    && (ahead == 1 || ahead <= skipLimit)
+                    && theEngine.isSafe(action)) {
+                best = action;
+                bestAhead = ahead;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        // the body is out of cycle order, which a fresh game never is
+        markBody();
+        return fallback(theEngine, theHead, theCherry);
+    }
+
+    /**
+     * Searches the shortest path from theHead to theCherry that only moves
+     * forward along the cycle, no further than theCherry, and skips part of
+     * it only to land within theSkipLimit of theHead. The path is stored in
+     * myPath
+     *
+     * @param theEngine the game
+     * @param theHead the packed head cell
+     * @param theCherry the packed cherry cell
+     * @param theLimit how far along the cycle theCherry is from theHead
+     * @param theSkipLimit how far along the cycle from theHead a move that
+     *         skips cells may land
+     * @return whether or not a path was found
+     */
+    private boolean findCyclePath(final SnekeEngine theEngine,
+            final int theHead, final int theCherry, final int theLimit,
+            final int theSkipLimit) {
+        final int search = nextSearch();
+        final int[] queue = myQueue;
+        final int[] visited = myVisited;
+        final int[] parent = myParent;
+        int read = 0;
+        int write = 0;
+        queue[write++] = theHead;
+        visited[theHead] = search;
+
+        final int reverse = opposite(theEngine.getCurrentDirection())
+                .ordinal();
+        while (read < write) {
+            final int cell = queue[read++];
+            final int cellAhead = cycleDistance(theHead, cell);
+            for (int direction = 0; direction < 4; direction++) {
+                if (cell == theHead && direction == reverse) {
+                    continue;
+                }
+                final int next = neighbour(cell, direction);
+                if (next < 0 || visited[next] == search) {
+                    continue;
+                }
+                final int ahead = cycleDistance(theHead, next);
+                if (ahead <= cellAhead || ahead > theLimit
+                        || ahead > cellAhead + 1 && ahead > theSkipLimit) {
+                    continue;
+                }
+                visited[next] = search;
+                parent[next] = cell;
+                if (next == theCherry) {
+                    storePath(theHead, theCherry);
+                    return true;
+                }
+                queue[write++] = next;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns how many steps along the cycle theTo is from theFrom
+     *
+     * @param theFrom the packed cell to start from
+     * @param theTo the packed cell to reach
+     * @return the number of steps, between 0 and the number of cells - 1
+     */
+    private int cycleDistance(final int theFrom, final int theTo) {
+        final int distance = myCycleIndex[theTo] - myCycleIndex[theFrom];
+        return distance < 0 ? distance + myCycleIndex.length : distance;
+    }
+
+    /**
+     * Returns the move to make when there is no safe path to the cherry:
+     * the move that keeps the tail farthest in reach, otherwise the safe
+     * move with the most room
+     *
+     * @param theEngine the game
+     * @param theHead the packed head cell
+     * @param theCherry the packed cherry cell, -1 if there is none
+     * @return the move to make
+     */
+    private Action fallback(final SnekeEngine theEngine, final int theHead,
+            final int theCherry) {
+        // chasing the tail the long way round fills the gaps in the body
+        Action farthest = null;
+        int farthestDistance = -1;
+        for (Action action : ACTIONS) {
+            if (theEngine.isSafe(action)) {
+                final int distance = distanceToTailFrom(neighbour(theHead,
+                        action.apply(theEngine.getCurrentDirection())
+                                .ordinal()), theCherry);
+                if (distance > farthestDistance) {
+                    farthest = action;
+                    farthestDistance = distance;
+                }
+            }
+        }
+        if (farthest != null) {
+            return farthest;
+        }
+
+        // the tail is out of reach, so make the most of the room left
+        Action best = Action.STRAIGHT;
+        int bestRoom = -1;
+        for (Action action : ACTIONS) {
+            if (theEngine.isSafe(action)) {
+                final int room = countRoom(neighbour(theHead, action.apply(
+                        theEngine.getCurrentDirection()).ordinal()),
+                        Integer.MAX_VALUE);
+                if (room > bestRoom) {
+                    best = action;
+                    bestRoom = room;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns how far the tail would be after moving the head to theNext
+     *
+     * @param theNext the packed cell next to the head
+     * @param theCherry the packed cherry cell, -1 if there is none
+     * @return the length of the shortest way to the tail, or -1 if it can
+     *         not be reached
+     */
+    private int distanceToTailFrom(final int theNext, final int theCherry) {
+        myPath[0] = theNext;
+        myPathLength = 1;
+        return distanceToTail(theCherry);
+    }
+
+    /**
+     * Returns how far the Sneke would be from its own tail after following
+     * the cells in myPath. Chasing the tail always frees the cell ahead, so
+     * a Sneke that can reach its tail can not be trapped
+     *
+     * @param theCherry the packed cherry cell, -1 if there is none
+     * @return the length of the shortest way from the end of myPath to the
+     *         tail, or -1 if it can not be reached
+     */
+    private int distanceToTail(final int theCherry) {
+        final SnekeEngine engine = myEngine;
+        final int length = engine.getLength();
+        final int steps = myPathLength;
+        final boolean grows = myPath[steps - 1] == theCherry;
+        final int virtualLength = length + (grows ? 1 : 0);
+        if (virtualLength <= 2) {
+            return 1;
+        }
+
+        // the body after the path is the last cells of body then path
+        final int first = length + steps - virtualLength;
+        final int block = nextSearch();
+        for (int i = first; i < length + steps; i++) {
+            myBlocked[i < length ? engine.getBodyCell(i) : myPath[i - length]]
+                    = block;
+        }
+        final int tail = first < length ? engine.getBodyCell(first) :
+                myPath[first - length];
+        final int head = myPath[steps - 1];
+
+        final int search = nextSearch();
+        final int[] queue = myQueue;
+        final int[] visited = myVisited;
+        final int[] distance = myParent;
+        int read = 0;
+        int write = 0;
+        queue[write++] = head;
+        visited[head] = search;
+        distance[head] = 0;
+        while (read < write) {
+            final int cell = queue[read++];
+            for (int direction = 0; direction < 4; direction++) {
+                final int next = neighbour(cell, direction);
+                if (next == tail && cell != head) {
+                    return distance[cell] + 1;
+                }
+                // the head can not move straight onto its own tail
+                if (next < 0 || visited[next] == search
+                        || myBlocked[next] == block) {
+                    continue;
+                }
+                visited[next] = search;
+                distance[next] = distance[cell] + 1;
+                queue[write++] = next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches the shortest path from theHead to theCherry that avoids the
+     * body and stores it in myPath
+     *
+     * @param theEngine the game
+     * @param theHead the packed head cell
+     * @param theCherry the packed cherry cell
+     * @return whether or not a path was found
+     */
+    private boolean findPath(final SnekeEngine theEngine, final int theHead,
+            final int theCherry) {
+        final int search = nextSearch();
+        final int[] queue = myQueue;
+        final int[] visited = myVisited;
+        final int[] parent = myParent;
+        int read = 0;
+        int write = 0;
+        queue[write++] = theHead;
+        visited[theHead] = search;
+
+        // the Sneke can not turn around, so the head only has 3 neighbours
+        final int reverse = opposite(theEngine.getCurrentDirection())
+                .ordinal();
+        while (read < write) {
+            final int cell = queue[read++];
+            for (int direction = 0; direction < 4; direction++) {
+                if (cell == theHead && direction == reverse) {
+                    continue;
+                }
+                final int next = neighbour(cell, direction);
+                if (next < 0 || visited[next] == search || isBody(next)) {
+                    continue;
+                }
+                visited[next] = search;
+                parent[next] = cell;
+                if (next == theCherry) {
+                    storePath(theHead, theCherry);
+                    return true;
+                }
+                queue[write++] = next;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the parents back from theCherry and stores the path in myPath
+     *
+     * @param theHead the packed head cell
+     * @param theCherry the packed cherry cell
+     */
+    private void storePath(final int theHead, final int theCherry) {
+        int length = 0;
+        for (int cell = theCherry; cell != theHead; cell = myParent[cell]) {
+            length++;
+        }
+        int position = length;
+        for (int cell = theCherry; cell != theHead; cell = myParent[cell]) {
+            myPath[--position] = cell;
+        }
+        myPathLength = length;
+    }
+
+    /**
+     * Counts the cells that are not body and can be reached from theStart,
+     * stopping early once theLimit is reached. theStart itself counts
+     *
+     * @param theStart the packed cell to count from
+     * @param theLimit the count to stop at
+     * @return the number of cells reached, at most theLimit
+     */
+    private int countRoom(final int theStart, final int theLimit) {
+        final int search = nextSearch();
+        final int[] queue = myQueue;
+        final int[] visited = myVisited;
+        int read = 0;
+        int write = 0;
+        queue[write++] = theStart;
+        visited[theStart] = search;
+        while (read < write && write < theLimit) {
+            final int cell = queue[read++];
+            for (int direction = 0; direction < 4; direction++) {
+                final int next = neighbour(cell, direction);
+                if (next >= 0 && visited[next] != search
+                        && !isBody(next)) {
+                    visited[next] = search;
+                    queue[write++] = next;
+                }
+            }
+        }
+        return Math.min(write, theLimit);
+    }
+
+    /**
+     * Marks the cells of the current body so isBody is an array lookup
+     */
+    private void markBody() {
+        final SnekeEngine engine = myEngine;
+        final int search = nextSearch();
+        for (int i = engine.getLength() - 1; i >= 0; i--) {
+            myBody[engine.getBodyCell(i)] = search;
+        }
+        myBodySearch = search;
+    }
+
+    /**
+     * Returns whether or not theCell held body when markBody was last called
+     *
+     * @param theCell the packed cell
+     * @return whether or not theCell holds body
+     */
+    private boolean isBody(final int theCell) {
+        return myBody[theCell] == myBodySearch;
+    }
+
+    /**
+     * Returns the Action that moves the head from theHead to theNext
+     *
+     * @param theEngine the game
+     * @param theHead the packed head cell
+     * @param theNext the packed cell next to the head
+     * @return the Action, or null if theNext is not ahead or to the side
+     */
+    private Action actionTo(final SnekeEngine theEngine, final int theHead,
+            final int theNext) {
+        final Direction current = theEngine.getCurrentDirection();
+        for (Action action : ACTIONS) {
+            if (neighbour(theHead, action.apply(current).ordinal())
+                    == theNext) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cell next to theCell in the Direction with the given
+     * ordinal
+     *
+     * @param theCell the packed cell
+     * @param theDirection the Direction ordinal
+     * @return the packed neighbour, or -1 if the move is blocked
+     */
+    private int neighbour(final int theCell, final int theDirection) {
+        return myNeighbours[(theCell << 2) | theDirection];
+    }
+
+    /**
+     * Returns the number of the next search, clearing the visited marks
+     * when the numbers run out
+     *
+     * @return the number of the next search
+     */
+    private int nextSearch() {
+        if (++mySearch == Integer.MAX_VALUE) {
+            Arrays.fill(myVisited, 0);
+            Arrays.fill(myBlocked, 0);
+            Arrays.fill(myBody, 0);
+            mySearch = 1;
+        }
+        return mySearch;
+    }
+
+    /**
+     * Allocates the arrays and builds the tables when theEngine has a new
+     * Topology
+     *
+     * @param theEngine the game about to be played
+     * @throws NullPointerException if theEngine is null
+     */
+    private void prepare(final SnekeEngine theEngine) {
+        myEngine = Objects.requireNonNull(theEngine,
+                "theEngine can not be null");
+        if (theEngine.getTopology() == myTopology) {
+            return;
+        }
+        myTopology = theEngine.getTopology();
+        myRows = theEngine.getRows();
+        myCols = theEngine.getCols();
+        final int cells = myRows * myCols;
+        myQueue = new int[cells];
+        myParent = new int[cells];
+        myVisited = new int[cells];
+        myBlocked = new int[cells];
+        myBody = new int[cells];
+        myPath = new int[cells];
+        mySearch = 0;
+        myPathCherry = -1;
+        myNeighbours = buildNeighbours(myTopology);
+        // the cycle runs through every cell, so obstacles break it
+        myCycle = myTopology.getObstacleCount() == 0 ?
+                buildCycle(myRows, myCols) : null;
+        myCycleIndex = myCycle == null ? null : indexCycle(myCycle);
+    }
+
+    /**
+     * Builds the table of the cells next to each cell
+     *
+     * @param theTopology how the cells connect
+     * @return the packed neighbour of each cell in each Direction, -1 if the
+     *         move is blocked, indexed by cell * 4 + the Direction ordinal
+     */
+    private static int[] buildNeighbours(final Topology theTopology) {
+        final int cells = theTopology.getRows() * theTopology.getCols();
+        final int[] neighbours = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int direction = 0; direction < 4; direction++) {
+                neighbours[(cell << 2) | direction] =
+                        theTopology.next(cell, direction);
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Builds a Hamiltonian cycle of the matrix. Row 0 is the way back west
+     * and every other column goes down and up the remaining rows, which
+     * needs an even number of columns; with an odd number of columns and an
+     * even number of rows the same cycle is used turned on its side
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @return the Direction ordinal to move in from each cell, or null if
+     *         both dimensions are odd and there is no cycle
+     */
+    private static byte[] buildCycle(final int theRows, final int theCols) {
+        final boolean turned = theCols % 2 != 0;
+        if (turned && theRows % 2 != 0) {
+            return null;
+        }
+        // the cycle is built on a matrix with an even number of columns
+        final int rows = turned ? theCols : theRows;
+        final int cols = turned ? theRows : theCols;
+        final byte[] cycle = new byte[theRows * theCols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                Direction direction;
+                if (row == 0) {
+                    direction = col == 0 ? Direction.SOUTH : Direction.WEST;
+                } else if (col % 2 == 0) {
+                    direction = row == rows - 1 ?
+                            Direction.EAST : Direction.SOUTH;
+                } else if (row == 1) {
+                    direction = col == cols - 1 ?
+                            Direction.NORTH : Direction.EAST;
+                } else {
+                    direction = Direction.NORTH;
+                }
+                if (turned) {
+                    direction = transpose(direction);
+                    cycle[col * theCols + row] = (byte) direction.ordinal();
+                } else {
+                    cycle[row * theCols + col] = (byte) direction.ordinal();
+                }
+            }
+        }
+        return cycle;
+    }
+
+    /**
+     * Numbers the cells in the order theCycle visits them, starting from
+     * cell 0
+     *
+     * @param theCycle the Direction ordinal to move in from each cell
+     * @return the position of each cell along the cycle
+     */
+    private int[] indexCycle(final byte[] theCycle) {
+        final int[] index = new int[theCycle.length];
+        int cell = 0;
+        for (int i = 0; i < index.length; i++) {
+            index[cell] = i;
+            cell = neighbour(cell, theCycle[cell]);
+        }
+        return index;
+    }
+
+    /**
+     * Returns theDirection mirrored across the main diagonal
+     *
+     * @param theDirection the Direction to mirror
+     * @return the mirrored Direction
+     */
+    private static Direction transpose(final Direction theDirection) {
+        switch (theDirection) {
+            case NORTH:
+                return Direction.WEST;
+            case SOUTH:
+                return Direction.EAST;
+            case EAST:
+                return Direction.SOUTH;
+            default:
+                return Direction.NORTH;
+        }
+    }
+
+    /**
+     * Returns the Direction opposite theDirection
+     *
+     * @param theDirection the Direction
+     * @return the opposite Direction
+     */
+    private static Direction opposite(final Direction theDirection) {
+        return Direction.getLeftDirection(
+                Direction.getLeftDirection(theDirection));
+    }
+
+    /**
+     * The entry point of the autopilot benchmark, which plays games with the
+     * autopilot and reports how long its decisions take
+     *
+     * @param theArgs the command line arguments, optionally the number of
+     *         decisions, rows, columns and the starting seed
+     */
+    public static void main(final String[] theArgs) {
+        final long decisions = theArgs.length > 0 ?
+                Long.parseLong(theArgs[0]) : DEFAULT_DECISIONS;
+        final int rows = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_DIMENSION;
+        final int cols = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_DIMENSION;
+        long seed = theArgs.length > 3 ?
+                Long.parseLong(theArgs[3]) : System.nanoTime();
+
+        final SnekeEngine engine = new SnekeEngine(rows, cols, seed);
+        final AutopilotController autopilot = new AutopilotController();
+        autopilot.newGame(engine);
+        final Histogram latencies = new Histogram();
+        final Histogram lengths = new Histogram();
+        long wins = 0;
+
+        final long start = System.nanoTime();
+        for (long i = 0; i < decisions; i++) {
+            final long before = System.nanoTime();
+            final Action action = autopilot.nextAction(engine);
+            latencies.record(System.nanoTime() - before);
+            if (!engine.step(action)) {
+                lengths.record(engine.getLength());
+                if (engine.hasWon()) {
+                    wins++;
+                }
+                engine.reset(++seed);
+                autopilot.newGame(engine);
+            }
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("decisions: %d%n", decisions);
+        System.out.printf("matrix: %dx%d%n", rows, cols);
+        System.out.printf("games finished: %d (won %d, median length %d)%n",
+                lengths.getCount(), wins, lengths.getPercentile(50));
+        System.out.printf("current length: %d%n", engine.getLength());
+        System.out.printf("decisions/second: %.0f%n", decisions / seconds);
+        System.out.printf("decision latency p50/p99/p99.9/max: "
+                        + "%d/%d/%d/%d ns%n",
+                latencies.getPercentile(50), latencies.getPercentile(99),
+                latencies.getPercentile(99.9), latencies.getMax());
+    }
+}
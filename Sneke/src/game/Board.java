@@ -0,0 +1,98 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The Board interface describes the storage behind the game matrix. Each
+ * cell holds one of {@link SnekeEngine#EMPTY}, {@link SnekeEngine#BODY},
+ * {@link SnekeEngine#CHERRY} or {@link SnekeEngine#WALL} and is addressed
+ * by its packed cell index
+ * (row * getCols() + col)
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public interface Board {
+
+    /**
+     * The number of cells above which {@link #create(int, int)} switches
+     * from one byte per cell to two bits per cell
+     */
+    int PACKED_THRESHOLD = 1 << 24;
+
+    /**
+     * The largest number of cells a board can have, so every packed cell
+     * index and the Sneke body ring buffer fit in an int
+     */
+    int MAX_CELLS = 1 << 30;
+
+    /**
+     * Returns the number of rows on the board
+     * @return the number of rows on the board
+     */
+    int getRows();
+
+    /**
+     * Returns the number of columns on the board
+     * @return the number of columns on the board
+     */
+    int getCols();
+
+    /**
+     * Returns the value of theCell
+     *
+     * @param theCell the packed cell index
+     * @return the value of theCell
+     */
+    int get(int theCell);
+
+    /**
+     * Sets the value of theCell
+     *
+     * @param theCell the packed cell index
+     * @param theValue the new value, between 0 and 3
+     */
+    void set(int theCell, int theValue);
+
+    /**
+     * Returns an empty Board of the given size, using one byte per cell for
+     * small boards and two bits per cell for large ones
+     *
+     * @param theRows the number of rows
+     * @param theCols the number of columns
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the board has more than MAX_CELLS cells
+     * @return an empty Board of the given size
+     */
+    static Board create(final int theRows, final int theCols) {
+        return cellCount(theRows, theCols) <= PACKED_THRESHOLD ?
+                new ByteBoard(theRows, theCols) :
+                new PackedBoard(theRows, theCols);
+    }
+
+    /**
+     * Returns the number of cells on a board of the given size
+     *
+     * @param theRows the number of rows
+     * @param theCols the number of columns
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the board has more than MAX_CELLS cells
+     * @return the number of cells
+     */
+    static int cellCount(final int theRows, final int theCols) {
+        if (theRows <= 0 || theCols <= 0) {
+            throw new IllegalArgumentException(
+                    "theRows and theCols must be positive");
+        }
+        final long cells = (long) theRows * theCols;
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException("a board can not have more "
+                    + "than " + MAX_CELLS + " cells");
+        }
+        return (int) cells;
+    }
+}
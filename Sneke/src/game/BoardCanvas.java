@@ -0,0 +1,99 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.awt.Canvas;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.Objects;
+
+/**
+ * The BoardCanvas class is a Canvas the matrix is actively rendered on.
+ *
+ * Instead of waiting for the EDT to repaint it, the render thread of the
+ * game loop draws each frame into a back buffer of the canvas's
+ * BufferStrategy and shows it, so frames are drawn at the display rate no
+ * matter how busy the EDT is
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class BoardCanvas extends Canvas {
+
+    /** The number of buffers in the BufferStrategy */
+    private static final int BUFFERS = 2;
+
+    /**
+     * Draws the matrix
+     */
+    private final BoardView myRenderer;
+
+    /**
+     * Constructs a new BoardCanvas just large enough for the matrix and a
+     * one pixel border around it
+     *
+     * @param theRenderer draws the matrix
+     * @throws NullPointerException if theRenderer is null
+     */
+    public BoardCanvas(final BoardView theRenderer) {
+        super();
+        myRenderer = Objects.requireNonNull(theRenderer,
+                "theRenderer can not be null");
+        setIgnoreRepaint(true);
+        setFocusable(false);
+        setBackground(GamePanel.BACKGROUND_COLOR);
+        setSize(myRenderer.getWidth() + 2, myRenderer.getHeight() + 2);
+    }
+
+    /**
+     * Creates the BufferStrategy once the canvas can be displayed
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(BUFFERS);
+    }
+
+    /**
+     * Draws a frame of theState and shows it, does nothing while the canvas
+     * can not be displayed
+     *
+     * @param theState the state to draw
+     * @param theAlpha how far the Sneke is through its next move
+     * @throws NullPointerException if theState is null
+     * @return whether or not a frame was shown
+     */
+    public boolean render(final RenderState theState, final double theAlpha) {
+        if (!isDisplayable()) {
+            return false;
+        }
+        final BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) {
+            return false;
+        }
+
+        // the buffers can be lost or restored at any time, so draw again
+        // until a frame made it onto the screen intact
+        do {
+            do {
+                final Graphics2D g2d =
+                        (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g2d.setColor(GamePanel.BACKGROUND_COLOR);
+                    g2d.fillRect(0, 0, getWidth(), getHeight());
+                    myRenderer.draw(g2d, 1, 1, theState, theAlpha);
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        return true;
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Objects;
+
+/**
+ * The BoardRenderer class draws the matrix of a SnekeEngine.
+ *
+ * The grid is rendered into a cached image once per game and after that
+ * only the squares the last tick changed are redrawn, the old and new
+ * head, the freed tail and the cherry, so drawing a frame is a single
+ * image copy. A state that is not the next tick of the one drawn last,
+ * because ticks were skipped or a new game started, is rendered whole. On
+ * top of the image the head is drawn sliding into its square and the freed
+ * tail sliding out of its square, so frames between ticks show the Sneke
+ * part way through its move.
+ *
+ * A BoardRenderer is not thread safe, it must be used on one thread
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class BoardRenderer implements BoardView {
+
+    /** The color of the sneke */
+    static final Color SNEKE_COLOR = new Color(45, 222, 34);
+
+    /** The color of the cherry */
+    static final Color CHERRY_COLOR = new Color(222, 34, 34);
+
+    /** The smallest square size the matrix grid is drawn for */
+    private static final int MIN_GRID_BOX_DIMENSION = 4;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * How the cells of the matrix connect, and which are obstacles
+     */
+    private final Topology myTopology;
+
+    /**
+     * The width/height of each square in the matrix, shrunk so boards larger
+     * than the default still fit in the matrix area
+     */
+    private final int myBoxDimension;
+
+    /**
+     * The number of rows drawn, boards taller than the matrix area even at
+     * one pixel per square are cropped
+     */
+    private final int myVisibleRows;
+
+    /**
+     * The number of columns drawn, boards wider than the matrix area even at
+     * one pixel per square are cropped
+     */
+    private final int myVisibleCols;
+
+    /**
+     * The space between the edge of a square and its fill, 1 when the grid
+     * lines are drawn so filling a square never covers them
+     */
+    private final int myFillInset;
+
+    /**
+     * The matrix as of the last tick
+     */
+    private final BufferedImage myImage;
+
+    /**
+     * The generation of the state in the image, -1 when the image has to be
+     * rendered whole
+     */
+    private long myDrawnGeneration = -1;
+
+    /**
+     * The ticks of the state in the image
+     */
+    private long myDrawnTicks;
+
+    /**
+     * Initializes a new BoardRenderer for the matrix of theEngine
+     *
+     * @param theEngine an engine of the size that is drawn
+     * @param theMaxWidth the widest the matrix can be drawn, in pixels
+     * @param theMaxHeight the tallest the matrix can be drawn, in pixels
+     * @param theMaxBox the largest width/height of each square
+     * @throws NullPointerException if theEngine is null
+     * @throws IllegalArgumentException if theMaxWidth, theMaxHeight or
+     *         theMaxBox is not positive
+     */
+    public BoardRenderer(final SnekeEngine theEngine, final int theMaxWidth,
+            final int theMaxHeight, final int theMaxBox) {
+        if (theMaxWidth <= 0 || theMaxHeight <= 0 || theMaxBox <= 0) {
+            throw new IllegalArgumentException(
+                    "the matrix area and square size must be positive");
+        }
+        myTopology = Objects.requireNonNull(theEngine,
+                "theEngine can not be null").getTopology();
+        myRows = myTopology.getRows();
+        myCols = myTopology.getCols();
+        myBoxDimension = Math.max(1, Math.min(theMaxBox,
+                Math.min(theMaxWidth / myCols, theMaxHeight / myRows)));
+        myVisibleRows = Math.min(myRows, theMaxHeight / myBoxDimension);
+        myVisibleCols = Math.min(myCols, theMaxWidth / myBoxDimension);
+        myFillInset = myBoxDimension >= MIN_GRID_BOX_DIMENSION ? 1 : 0;
+        myImage = new BufferedImage(
+                myVisibleCols * myBoxDimension + 1,
+                myVisibleRows * myBoxDimension + 1,
+                BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Returns the width of the drawn matrix in pixels
+     * @return the width of the drawn matrix in pixels
+     */
+    @Override
+    public int getWidth() {
+        return myImage.getWidth();
+    }
+
+    /**
+     * Returns the height of the drawn matrix in pixels
+     * @return the height of the drawn matrix in pixels
+     */
+    @Override
+    public int getHeight() {
+        return myImage.getHeight();
+    }
+
+    /**
+     * Returns an image with one byte per pixel whose palette holds exactly
+     * the colors a BoardRenderer draws with, so frames drawn into it lose
+     * nothing and encode small as PNG or GIF
+     *
+     * @param theWidth the width of the image in pixels
+     * @param theHeight the height of the image in pixels
+     * @throws IllegalArgumentException if theWidth or theHeight is not
+     *         positive
+     * @return the image, filled with the background color
+     */
+    public static BufferedImage createFrameImage(final int theWidth,
+            final int theHeight) {
+        final Color[] colors = {GamePanel.BACKGROUND_COLOR,
+            GamePanel.MATRIX_OUTLINE, SNEKE_COLOR, CHERRY_COLOR, Color.BLACK};
+        final byte[] reds = new byte[colors.length];
+        final byte[] greens = new byte[colors.length];
+        final byte[] blues = new byte[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            reds[i] = (byte) colors[i].getRed();
+            greens[i] = (byte) colors[i].getGreen();
+            blues[i] = (byte) colors[i].getBlue();
+        }
+        // index 0 is the background, which a new image is filled with
+        return new BufferedImage(theWidth, theHeight,
+                BufferedImage.TYPE_BYTE_INDEXED, new IndexColorModel(
+                        8, colors.length, reds, greens, blues));
+    }
+
+    /**
+     * Renders the whole matrix into the image on the next draw
+     */
+    @Override
+    public void renderBoard() {
+        myDrawnGeneration = -1;
+    }
+
+    /**
+     * Draws theState with the upper left corner of the matrix at theX,
+     * theY, bringing the image up to date with it first. When the grid is
+     * not drawn a border is drawn one pixel outside the matrix
+     *
+     * @param theGraphics the Graphics to draw with
+     * @param theX the x position of the matrix
+     * @param theY the y position of the matrix
+     * @param theState the state to draw, of the size the view was made for
+     * @param theAlpha how far the Sneke is through its next move, between
+     *         0 and 1, 1 draws the matrix as of the last tick
+     * @throws NullPointerException if theGraphics or theState is null
+     * @throws IllegalArgumentException if theState has another matrix size
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics, final int theX,
+            final int theY, final RenderState theState,
+            final double theAlpha) {
+        Objects.requireNonNull(theGraphics, "theGraphics can not be null");
+        Objects.requireNonNull(theState, "theState can not be null");
+        if (theState.getRows() != myRows || theState.getCols() != myCols) {
+            throw new IllegalArgumentException("theState is not "
+                    + myRows + "x" + myCols);
+        }
+        update(theState);
+
+        theGraphics.drawImage(myImage, theX, theY, null);
+        if (myFillInset == 0) {
+            theGraphics.setColor(GamePanel.MATRIX_OUTLINE);
+            theGraphics.drawRect(theX - 1, theY - 1,
+                    myImage.getWidth(), myImage.getHeight());
+        }
+
+        final double alpha = Math.max(0, Math.min(1, theAlpha));
+        if (alpha < 1) {
+            final int head = theState.getHead();
+            if (theState.getLastHead() >= 0) {
+                drawSlide(theGraphics, theX, theY, head,
+                        theState.getLastHead(), alpha, SnekeEngine.BODY);
+            }
+            // the head can move into the square the tail just left
+            final int freedTail = theState.getFreedTail();
+            if (freedTail >= 0 && freedTail != head) {
+                drawSlide(theGraphics, theX, theY, freedTail,
+                        theState.getBodyCell(0), 1 - alpha,
+                        SnekeEngine.EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Brings the image up to date with theState: nothing when it is the
+     * state drawn last, the squares of one tick when it is the next tick of
+     * the same game, or else the whole matrix
+     *
+     * @param theState the state to draw
+     */
+    private void update(final RenderState theState) {
+        final boolean sameGame =
+                theState.getGeneration() == myDrawnGeneration;
+        if (sameGame && theState.getTicks() == myDrawnTicks) {
+            return;
+        }
+        final Graphics2D g2d = myImage.createGraphics();
+        try {
+            if (sameGame && theState.getTicks() == myDrawnTicks + 1
+                    && theState.getLastHead() >= 0) {
+                // the old head loses its eye, unless the tail left it too
+                paintCell(g2d, theState.getLastHead(), SnekeEngine.BODY);
+                if (theState.getFreedTail() >= 0) {
+                    paintCell(g2d, theState.getFreedTail(),
+                            SnekeEngine.EMPTY);
+                }
+            } else {
+                renderAll(g2d, theState);
+            }
+            paintCell(g2d, theState.getCherry(), SnekeEngine.CHERRY);
+            paintCell(g2d, theState.getHead(), SnekeEngine.BODY);
+            paintEye(g2d, theState.getHead());
+        } finally {
+            g2d.dispose();
+        }
+        myDrawnGeneration = theState.getGeneration();
+        myDrawnTicks = theState.getTicks();
+    }
+
+    /**
+     * Renders the grid, the obstacles and the body of theState into the
+     * image
+     *
+     * @param theGraphics the Graphics of the image
+     * @param theState the state to draw
+     */
+    private void renderAll(final Graphics2D theGraphics,
+            final RenderState theState) {
+        theGraphics.setColor(GamePanel.BACKGROUND_COLOR);
+        theGraphics.fillRect(0, 0, myImage.getWidth(), myImage.getHeight());
+
+        // draw the matrix grid, when the squares are too small for the grid
+        // lines to be readable only a border is drawn around the image in
+        // draw
+        theGraphics.setColor(GamePanel.MATRIX_OUTLINE);
+        if (myFillInset > 0) {
+            for (int row = 0; row < myVisibleRows; row++) {
+                for (int col = 0; col < myVisibleCols; col++) {
+                    theGraphics.drawRect(col * myBoxDimension,
+                            row * myBoxDimension,
+                            myBoxDimension, myBoxDimension);
+                }
+            }
+        }
+
+        // draw the obstacles and the Sneke
+        if (myTopology.getObstacleCount() > 0) {
+            for (int row = 0; row < myVisibleRows; row++) {
+                for (int col = 0; col < myVisibleCols; col++) {
+                    if (myTopology.isObstacle(row * myCols + col)) {
+                        paintCell(theGraphics, row * myCols + col,
+                                SnekeEngine.WALL);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < theState.getLength(); i++) {
+            paintCell(theGraphics, theState.getBodyCell(i),
+                    SnekeEngine.BODY);
+        }
+    }
+
+    /**
+     * Draws theCell as theAmount of a body square, filled from the side
+     * that faces theFrom, with the rest of the square empty. Does nothing
+     * if the cells are not next to each other
+     *
+     * @param theGraphics the Graphics to draw with
+     * @param theX the x position of the matrix
+     * @param theY the y position of the matrix
+     * @param theCell the cell to draw
+     * @param theFrom the neighbouring cell the fill grows from
+     * @param theAmount how much of the square is body, between 0 and 1
+     * @param theValue the value theCell has in the image
+     */
+    private void drawSlide(final Graphics2D theGraphics, final int theX,
+            final int theY, final int theCell, final int theFrom,
+            final double theAmount, final int theValue) {
+        final int row = theCell / myCols;
+        final int col = theCell % myCols;
+        final int rowStep = theFrom / myCols - row;
+        final int colStep = theFrom % myCols - col;
+        if (Math.abs(rowStep) + Math.abs(colStep) != 1
+                || row >= myVisibleRows || col >= myVisibleCols) {
+            return;
+        }
+
+        final int span = myBoxDimension - myFillInset;
+        final int fill = (int) Math.round(theAmount * span);
+        final int left = theX + col * myBoxDimension + myFillInset;
+        final int top = theY + row * myBoxDimension + myFillInset;
+
+        // the image already holds theValue, so cover the other part
+        final int covered = theValue == SnekeEngine.BODY ? span - fill : fill;
+        if (covered <= 0) {
+            return;
+        }
+        // the body part touches theFrom, the empty part is on the far side
+        final boolean coverNear = theValue == SnekeEngine.EMPTY;
+        int x = left;
+        int y = top;
+        int width = span;
+        int height = span;
+        if (colStep != 0) {
+            width = covered;
+            if ((colStep > 0) == coverNear) {
+                x = left + span - covered;
+            }
+        } else {
+            height = covered;
+            if ((rowStep > 0) == coverNear) {
+                y = top + span - covered;
+            }
+        }
+        theGraphics.setColor(coverNear ? SNEKE_COLOR :
+                GamePanel.BACKGROUND_COLOR);
+        theGraphics.fillRect(x, y, width, height);
+
+        // the covered part may hide the eye, draw it on the body part only
+        if (theValue == SnekeEngine.BODY) {
+            final Shape clip = theGraphics.getClip();
+            if (colStep != 0) {
+                theGraphics.clipRect(colStep > 0 ? left + covered : left,
+                        top, fill, span);
+            } else {
+                theGraphics.clipRect(left, rowStep > 0 ? top + covered : top,
+                        span, fill);
+            }
+            paintEye(theGraphics, theX + col * myBoxDimension,
+                    theY + row * myBoxDimension);
+            theGraphics.setClip(clip);
+        }
+    }
+
+    /**
+     * Fills one square of the image with the color of theValue, leaving the
+     * grid lines around it alone. Does nothing if theCell is not visible
+     *
+     * @param theGraphics the Graphics of the image
+     * @param theCell the packed cell of the square, -1 for none
+     * @param theValue what is on the square
+     */
+    private void paintCell(final Graphics2D theGraphics, final int theCell,
+            final int theValue) {
+        if (theCell < 0 || theCell / myCols >= myVisibleRows
+                || theCell % myCols >= myVisibleCols) {
+            return;
+        }
+        if (theValue == SnekeEngine.BODY) {
+            theGraphics.setColor(SNEKE_COLOR);
+        } else if (theValue == SnekeEngine.CHERRY) {
+            theGraphics.setColor(CHERRY_COLOR);
+        } else if (theValue == SnekeEngine.WALL) {
+            theGraphics.setColor(GamePanel.MATRIX_OUTLINE);
+        } else {
+            theGraphics.setColor(GamePanel.BACKGROUND_COLOR);
+        }
+        theGraphics.fillRect(theCell % myCols * myBoxDimension + myFillInset,
+                theCell / myCols * myBoxDimension + myFillInset,
+                myBoxDimension - myFillInset, myBoxDimension - myFillInset);
+    }
+
+    /**
+     * Draws the Sneke eye in the square of theCell of the image, if it is
+     * visible
+     *
+     * @param theGraphics the Graphics of the image
+     * @param theCell the packed cell of the head
+     */
+    private void paintEye(final Graphics2D theGraphics, final int theCell) {
+        if (theCell / myCols < myVisibleRows
+                && theCell % myCols < myVisibleCols) {
+            paintEye(theGraphics, theCell % myCols * myBoxDimension,
+                    theCell / myCols * myBoxDimension);
+        }
+    }
+
+    /**
+     * Draws the Sneke eye in the square at theX, theY
+     *
+     * @param theGraphics the Graphics to draw with
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     */
+    private void paintEye(final Graphics2D theGraphics, final int theX,
+            final int theY) {
+        theGraphics.setColor(Color.BLACK);
+        theGraphics.fillRect(theX + 1, theY + 1,
+                myBoxDimension * 2 / 5, myBoxDimension * 2 / 5);
+    }
+}
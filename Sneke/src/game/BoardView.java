@@ -0,0 +1,58 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.awt.Graphics2D;
+
+/**
+ * The BoardView interface describes anything that draws the matrix of a
+ * SnekeEngine onto a BoardCanvas: the whole matrix at once as a
+ * BoardRenderer does, or a window onto part of it as a ViewportRenderer
+ * does. It draws RenderStates rather than the engine itself, so it can
+ * draw on a thread of its own while the engine ticks, and only what
+ * changed between the states of two consecutive ticks is drawn again.
+ *
+ * A BoardView is not thread safe, it must be used on one thread
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public interface BoardView {
+
+    /**
+     * Returns the width of the drawn matrix in pixels
+     * @return the width of the drawn matrix in pixels
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the drawn matrix in pixels
+     * @return the height of the drawn matrix in pixels
+     */
+    int getHeight();
+
+    /**
+     * Draws the whole matrix again on the next draw, even if it is given
+     * the state it drew last
+     */
+    void renderBoard();
+
+    /**
+     * Draws theState with the upper left corner of the matrix at theX, theY
+     *
+     * @param theGraphics the Graphics to draw with
+     * @param theX the x position of the matrix
+     * @param theY the y position of the matrix
+     * @param theState the state to draw, of the size the view was made for
+     * @param theAlpha how far the Sneke is through its next move, between
+     *         0 and 1, 1 draws the matrix as of the last tick
+     * @throws NullPointerException if theGraphics or theState is null
+     * @throws IllegalArgumentException if theState has another matrix size
+     */
+    void draw(Graphics2D theGraphics, int theX, int theY,
+            RenderState theState, double theAlpha);
+}
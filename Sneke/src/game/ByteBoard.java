@@ -0,0 +1,66 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The ByteBoard class is a Board stored as one flat byte array, one byte
+ * per cell. It is the fastest Board for the sizes that fit on screen
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ByteBoard implements Board {
+
+    /**
+     * The number of rows on the board
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns on the board
+     */
+    private final int myCols;
+
+    /**
+     * The cell values in row major order
+     */
+    private final byte[] myCells;
+
+    /**
+     * Initializes a new empty ByteBoard
+     *
+     * @param theRows the number of rows
+     * @param theCols the number of columns
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the board has more than MAX_CELLS cells
+     */
+    public ByteBoard(final int theRows, final int theCols) {
+        myCells = new byte[Board.cellCount(theRows, theCols)];
+        myRows = theRows;
+        myCols = theCols;
+    }
+
+    @Override
+    public int getRows() {
+        return myRows;
+    }
+
+    @Override
+    public int getCols() {
+        return myCols;
+    }
+
+    @Override
+    public int get(final int theCell) {
+        return myCells[theCell];
+    }
+
+    @Override
+    public void set(final int theCell, final int theValue) {
+        myCells[theCell] = (byte) theValue;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The Controller interface describes anything that plays Sneke by choosing
+ * the Action for each tick, such as a script or an AI.
+ *
+ * A Controller may keep state between calls, so each game thread should use
+ * its own instance
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@FunctionalInterface
+public interface Controller {
+
+    /**
+     * Returns the Action to make on the next tick of theEngine
+     *
+     * @param theEngine the game being played, must not be modified
+     * @return the Action to make on the next tick
+     */
+    Action nextAction(SnekeEngine theEngine);
+
+    /**
+     * Called when theEngine starts a new game, so a Controller that keeps
+     * state can clear it. Does nothing by default
+     *
+     * @param theEngine the game that was reset
+     */
+    default void newGame(final SnekeEngine theEngine) {
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The DeathCause Enum describes why a game of Sneke ended without being won
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public enum DeathCause {
+    /**
+     * The Sneke moved off the edge of the matrix
+     */
+    WALL,
+
+    /**
+     * The Sneke moved into its own body
+     */
+    SELF
+}
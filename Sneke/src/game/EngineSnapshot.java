@@ -0,0 +1,530 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The EngineSnapshot class is an immutable copy of the state of a
+ * SnekeEngine, taken with {@link SnekeEngine#snapshot()} and put back with
+ * {@link SnekeEngine#restore(EngineSnapshot)}.
+ *
+ * Only the body, the cherry and a few counters are kept, not the matrix, so
+ * a snapshot takes about 4 bytes per body segment.
+ *
+ * The binary form is the magic number "SNKS", a version byte, the rows and
+ * columns as varints, the seed and the random state as 8 big endian bytes
+ * each, the score and ticks as varints, a flags byte (direction, alive, won
+ * and death cause), the cherry plus 1 and the length as varints, then the
+ * tail cell as a varint and the direction from each segment to the next in
+ * 2 bits, 4 to a byte. Each segment is next to the one before, across the
+ * edge on a torus Topology, so a body takes a quarter of a byte per
+ * segment
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class EngineSnapshot {
+
+    /** The first 4 bytes of the binary form, "SNKS" */
+    private static final int MAGIC = 0x534E4B53;
+
+    /** The version of the binary form */
+    private static final int VERSION = 1;
+
+    /** The Directions by ordinal */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The DeathCauses by ordinal */
+    private static final DeathCause[] DEATH_CAUSES = DeathCause.values();
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The packed body cells from the tail to the head
+     */
+    private final int[] myBody;
+
+    /**
+     * The direction the Sneke is moving
+     */
+    private final Direction myDirection;
+
+    /**
+     * The packed cherry cell, -1 when there is no cherry
+     */
+    private final int myCherry;
+
+    /**
+     * The score of the game
+     */
+    private final long myScore;
+
+    /**
+     * The number of ticks the game has survived
+     */
+    private final long myTicks;
+
+    /**
+     * Whether or not the game is still running
+     */
+    private final boolean myAlive;
+
+    /**
+     * Whether or not the game was won
+     */
+    private final boolean myWon;
+
+    /**
+     * Why the game ended, null while it is running or if it was won
+     */
+    private final DeathCause myDeathCause;
+
+    /**
+     * The seed the game was started with
+     */
+    private final long mySeed;
+
+    /**
+     * The state of the random number generator
+     */
+    private final long myRandomState;
+
+    /**
+     * Initializes a new EngineSnapshot, theBody is not copied
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theBody the packed body cells from the tail to the head
+     * @param theDirection the direction the Sneke is moving
+     * @param theCherry the packed cherry cell, -1 when there is no cherry
+     * @param theScore the score of the game
+     * @param theTicks the number of ticks the game has survived
+     * @param theAlive whether or not the game is still running
+     * @param theWon whether or not the game was won
+     * @param theDeathCause why the game ended
+     * @param theSeed the seed the game was started with
+     * @param theRandomState the state of the random number generator
+     */
+    EngineSnapshot(final int theRows, final int theCols, final int[] theBody,
+            final Direction theDirection, final int theCherry,
+            final long theScore, final long theTicks, final boolean theAlive,
+            final boolean theWon, final DeathCause theDeathCause,
+            final long theSeed, final long theRandomState) {
+        myRows = theRows;
+        myCols = theCols;
+        myBody = theBody;
+        myDirection = theDirection;
+        myCherry = theCherry;
+        myScore = theScore;
+        myTicks = theTicks;
+        myAlive = theAlive;
+        myWon = theWon;
+        myDeathCause = theDeathCause;
+        mySeed = theSeed;
+        myRandomState = theRandomState;
+    }
+
+    /**
+     * Returns the number of rows in the matrix
+     * @return the number of rows in the matrix
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns in the matrix
+     * @return the number of columns in the matrix
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the number of cells the Sneke occupies
+     * @return the number of cells the Sneke occupies
+     */
+    public int getLength() {
+        return myBody.length;
+    }
+
+    /**
+     * Returns the packed body cells from the tail to the head
+     * @return a copy of the packed body cells
+     */
+    public int[] getBody() {
+        return Arrays.copyOf(myBody, myBody.length);
+    }
+
+    /**
+     * Returns the direction the Sneke is moving
+     * @return the direction the Sneke is moving
+     */
+    public Direction getDirection() {
+        return myDirection;
+    }
+
+    /**
+     * Returns the packed cherry cell
+     * @return the packed cherry cell, -1 when there is no cherry
+     */
+    public int getCherry() {
+        return myCherry;
+    }
+
+    /**
+     * Returns the score of the game
+     * @return the score of the game
+     */
+    public long getScore() {
+        return myScore;
+    }
+
+    /**
+     * Returns the number of ticks the game has survived
+     * @return the number of ticks the game has survived
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns whether or not the game is still running
+     * @return whether or not the game is still running
+     */
+    public boolean isAlive() {
+        return myAlive;
+    }
+
+    /**
+     * Returns whether or not the game was won
+     * @return whether or not the game was won
+     */
+    public boolean hasWon() {
+        return myWon;
+    }
+
+    /**
+     * Returns why the game ended
+     * @return why the game ended, or null while it is running or if it was
+     *         won
+     */
+    public DeathCause getDeathCause() {
+        return myDeathCause;
+    }
+
+    /**
+     * Returns the seed the game was started with
+     * @return the seed the game was started with
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Writes the snapshot in its binary form to theOut, which is not closed
+     *
+     * @param theOut the stream to write to
+     * @throws NullPointerException if theOut is null
+     * @throws IOException if theOut can not be written
+     */
+    public void write(final OutputStream theOut) throws IOException {
+        Objects.requireNonNull(theOut, "theOut can not be null");
+        writeLong(theOut, (long) MAGIC << 32, 4);
+        theOut.write(VERSION);
+        writeVarint(theOut, myRows);
+        writeVarint(theOut, myCols);
+        writeLong(theOut, mySeed, 8);
+        writeLong(theOut, myRandomState, 8);
+        writeVarint(theOut, myScore);
+        writeVarint(theOut, myTicks);
+        theOut.write(myDirection.ordinal() | (myAlive ? 1 << 2 : 0)
+                | (myWon ? 1 << 3 : 0)
+                | (myDeathCause == null ? 0 : myDeathCause.ordinal() + 1) << 4);
+        writeVarint(theOut, myCherry + 1);
+        writeVarint(theOut, myBody.length);
+        if (myBody.length == 0) {
+            return;
+        }
+
+        writeVarint(theOut, myBody[0]);
+        int packed = 0;
+        for (int i = 1; i < myBody.length; i++) {
+            packed |= step(myBody[i - 1], myBody[i]) << (2 * ((i - 1) & 3));
+            if ((i & 3) == 0 || i == myBody.length - 1) {
+                theOut.write(packed);
+                packed = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot in its binary form
+     * @return the binary form of the snapshot
+     */
+    public byte[] toByteArray() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                32 + myBody.length / 4);
+        try {
+            write(out);
+        } catch (final IOException theException) {
+            // a ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(theException);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a snapshot in its binary form from theIn, which is not closed
+     *
+     * @param theIn the stream to read
+     * @throws NullPointerException if theIn is null
+     * @throws IOException if theIn can not be read or does not hold a valid
+     *         snapshot
+     * @return the snapshot
+     */
+    public static EngineSnapshot read(final InputStream theIn)
+            throws IOException {
+        Objects.requireNonNull(theIn, "theIn can not be null");
+        if (readLong(theIn, 4) != MAGIC) {
+            throw new IOException("not a Sneke snapshot");
+        }
+        final int version = readByte(theIn);
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        final long rows = readVarint(theIn);
+        final long cols = readVarint(theIn);
+        // each side is bounded first so the product can not overflow
+        if (rows < SnekeEngine.MIN_DIMENSION || cols < SnekeEngine.MIN_DIMENSION
+                || rows > Board.MAX_CELLS || cols > Board.MAX_CELLS
+                || rows * cols > Board.MAX_CELLS) {
+            throw new IOException("bad snapshot matrix " + rows + "x" + cols);
+        }
+        final int cells = (int) (rows * cols);
+        final long seed = readLong(theIn, 8);
+        final long randomState = readLong(theIn, 8);
+        final long score = readVarint(theIn);
+        final long ticks = readVarint(theIn);
+        final int flags = readByte(theIn);
+        final int deathCause = flags >> 4;
+        if (deathCause > DEATH_CAUSES.length) {
+            throw new IOException("bad snapshot flags " + flags);
+        }
+        final long cherry = readVarint(theIn) - 1;
+        final long length = readVarint(theIn);
+        if (cherry < -1 || cherry >= cells || length < 0 || length > cells) {
+            throw new IOException("snapshot does not fit its matrix");
+        }
+
+        final int[] body = new int[(int) length];
+        if (length > 0) {
+            final long tail = readVarint(theIn);
+            if (tail < 0 || tail >= cells) {
+                throw new IOException("snapshot does not fit its matrix");
+            }
+            body[0] = (int) tail;
+            int packed = 0;
+            for (int i = 1; i < body.length; i++) {
+                if (((i - 1) & 3) == 0) {
+                    packed = readByte(theIn);
+                }
+                body[i] = neighbour(body[i - 1],
+                        DIRECTIONS[(packed >> (2 * ((i - 1) & 3))) & 3],
+                        (int) rows, (int) cols);
+            }
+        }
+        return new EngineSnapshot((int) rows, (int) cols, body,
+                DIRECTIONS[flags & 3], (int) cherry, score, ticks,
+                (flags & 1 << 2) != 0, (flags & 1 << 3) != 0,
+                deathCause == 0 ? null : DEATH_CAUSES[deathCause - 1], seed,
+                randomState);
+    }
+
+    /**
+     * Reads a snapshot from its binary form
+     *
+     * @param theBytes the binary form
+     * @throws NullPointerException if theBytes is null
+     * @throws IOException if theBytes does not hold a valid snapshot
+     * @return the snapshot
+     */
+    public static EngineSnapshot fromByteArray(final byte[] theBytes)
+            throws IOException {
+        return read(new ByteArrayInputStream(Objects.requireNonNull(theBytes,
+                "theBytes can not be null")));
+    }
+
+    /**
+     * Returns the state of the random number generator
+     * @return the state of the random number generator
+     */
+    long getRandomState() {
+        return myRandomState;
+    }
+
+    /**
+     * Returns the body without copying it, for SnekeEngine
+     * @return the packed body cells from the tail to the head
+     */
+    int[] body() {
+        return myBody;
+    }
+
+    /**
+     * Returns the ordinal of the Direction from theFrom to the cell next to
+     * it theTo, which may be across the edge on a torus
+     *
+     * @param theFrom the packed cell
+     * @param theTo the packed cell next to theFrom
+     * @return the Direction ordinal
+     */
+    private int step(final int theFrom, final int theTo) {
+        final int fromRow = theFrom / myCols;
+        final int toRow = theTo / myCols;
+        final Direction direction;
+        if (fromRow == toRow) {
+            direction = theTo % myCols == (theFrom % myCols + 1) % myCols ?
+                    Direction.EAST : Direction.WEST;
+        } else {
+            direction = toRow == (fromRow + myRows - 1) % myRows ?
+                    Direction.NORTH : Direction.SOUTH;
+        }
+        return direction.ordinal();
+    }
+
+    /**
+     * Returns the cell next to theCell in theDirection, wrapping around the
+     * edges. A body on walls never crosses an edge, so it reads back the
+     * same
+     *
+     * @param theCell the packed cell
+     * @param theDirection the Direction to move in
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @return the packed cell
+     */
+    private static int neighbour(final int theCell,
+            final Direction theDirection, final int theRows,
+            final int theCols) {
+        final int row = theCell / theCols;
+        final int col = theCell % theCols;
+        switch (theDirection) {
+            case NORTH:
+                return (row + theRows - 1) % theRows * theCols + col;
+            case SOUTH:
+                return (row + 1) % theRows * theCols + col;
+            case EAST:
+                return row * theCols + (col + 1) % theCols;
+            default:
+                return row * theCols + (col + theCols - 1) % theCols;
+        }
+    }
+
+    /**
+     * Writes the top theBytes bytes of theValue, big endian
+     *
+     * @param theOut the stream to write to
+     * @param theValue the value
+     * @param theBytes the number of bytes to write
+     * @throws IOException if theOut can not be written
+     */
+    private static void writeLong(final OutputStream theOut,
+            final long theValue, final int theBytes) throws IOException {
+        for (int shift = 56; shift > 56 - 8 * theBytes; shift -= 8) {
+            theOut.write((int) (theValue >>> shift));
+        }
+    }
+
+    /**
+     * Writes theValue as an unsigned LEB128 varint, 7 bits per byte
+     *
+     * @param theOut the stream to write to
+     * @param theValue the value, treated as unsigned
+     * @throws IOException if theOut can not be written
+     */
+    private static void writeVarint(final OutputStream theOut,
+            final long theValue) throws IOException {
+        long value = theValue;
+        while ((value & ~0x7FL) != 0) {
+            theOut.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        theOut.write((int) value);
+    }
+
+    /**
+     * Reads theBytes bytes as a big endian number
+     *
+     * @param theIn the stream to read
+     * @param theBytes the number of bytes
+     * @throws IOException if the stream can not be read or ends early
+     * @return the number read
+     */
+    private static long readLong(final InputStream theIn, final int theBytes)
+            throws IOException {
+        long value = 0;
+        for (int i = 0; i < theBytes; i++) {
+            value = value << 8 | readByte(theIn);
+        }
+        return value;
+    }
+
+    /**
+     * Reads one unsigned LEB128 varint
+     *
+     * @param theIn the stream to read
+     * @throws IOException if the stream can not be read, ends early or the
+     *         varint is too long
+     * @return the value read
+     */
+    private static long readVarint(final InputStream theIn)
+            throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int next = readByte(theIn);
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in snapshot");
+    }
+
+    /**
+     * Reads one byte
+     *
+     * @param theIn the stream to read
+     * @throws EOFException if the stream has ended
+     * @throws IOException if the stream can not be read
+     * @return the byte, between 0 and 255
+     */
+    private static int readByte(final InputStream theIn) throws IOException {
+        final int next = theIn.read();
+        if (next < 0) {
+            throw new EOFException("the snapshot ended early");
+        }
+        return next;
+    }
+}
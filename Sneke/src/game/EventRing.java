@@ -0,0 +1,248 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The EventRing class carries the GameEvents of a SnekeEngine to its
+ * subscribers, batched per tick.
+ *
+ * The engine publishes the events of a tick into a ring of primitive arrays
+ * (the event ordinal, a cell and a value per slot) and ends the tick, which
+ * hands the batch to every GameEventListener in turn. Subscribers read the
+ * batch through getBatchSize, getEvent, getCell and getValue, so publishing
+ * and reading an event never allocates. A batch that would fill the ring is
+ * handed over early rather than overwrite events nobody has seen.
+ *
+ * An EventRing is not thread safe, it is published to and read on the
+ * thread that ticks the engine. Subscribers that update another thread
+ * copy what they need out of the batch
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class EventRing {
+
+    /** The default number of events the ring holds */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** The GameEvents by ordinal */
+    private static final GameEvent[] EVENTS = GameEvent.values();
+
+    /**
+     * The event ordinal of each slot
+     */
+    private final byte[] myEvents;
+
+    /**
+     * The cell of each slot
+     */
+    private final int[] myCells;
+
+    /**
+     * The value of each slot
+     */
+    private final long[] myValues;
+
+    /**
+     * The capacity minus 1, for wrapping positions into the ring
+     */
+    private final int myMask;
+
+    /**
+     * The subscribers, replaced rather than changed so handing over a batch
+     * never allocates
+     */
+    private GameEventListener[] myListeners = new GameEventListener[0];
+
+    /**
+     * The position of the first event of the batch
+     */
+    private int myStart;
+
+    /**
+     * The number of events in the batch
+     */
+    private int mySize;
+
+    /**
+     * The tick the batch was published on
+     */
+    private long myTick;
+
+    /**
+     * Initializes a new EventRing of DEFAULT_CAPACITY
+     */
+    public EventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a new EventRing
+     *
+     * @param theCapacity the number of events the ring holds, a power of 2
+     *         no smaller than the number of GameEvents
+     * @throws IllegalArgumentException if theCapacity is not a power of 2
+     *         or is too small
+     */
+    public EventRing(final int theCapacity) {
+        if (Integer.bitCount(theCapacity) != 1
+                || theCapacity < EVENTS.length) {
+            throw new IllegalArgumentException("theCapacity must be a power"
+                    + " of 2 of at least " + EVENTS.length);
+        }
+        myEvents = new byte[theCapacity];
+        myCells = new int[theCapacity];
+        myValues = new long[theCapacity];
+        myMask = theCapacity - 1;
+    }
+
+    /**
+     * Adds theListener, which is handed every batch from now on
+     *
+     * @param theListener the subscriber
+     * @throws NullPointerException if theListener is null
+     */
+    public void subscribe(final GameEventListener theListener) {
+        Objects.requireNonNull(theListener, "theListener can not be null");
+        final GameEventListener[] listeners =
+                Arrays.copyOf(myListeners, myListeners.length + 1);
+        listeners[myListeners.length] = theListener;
+        myListeners = listeners;
+    }
+
+    /**
+     * Removes theListener if it is subscribed
+     *
+     * @param theListener the subscriber
+     */
+    public void unsubscribe(final GameEventListener theListener) {
+        for (int i = 0; i < myListeners.length; i++) {
+            if (myListeners[i] == theListener) {
+                final GameEventListener[] listeners =
+                        new GameEventListener[myListeners.length - 1];
+                System.arraycopy(myListeners, 0, listeners, 0, i);
+                System.arraycopy(myListeners, i + 1, listeners, i,
+                        listeners.length - i);
+                myListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events the ring holds
+     * @return the number of events the ring holds
+     */
+    public int getCapacity() {
+        return myMask + 1;
+    }
+
+    /**
+     * Returns the number of events in the batch being handed over
+     * @return the number of events in the batch
+     */
+    public int getBatchSize() {
+        return mySize;
+    }
+
+    /**
+     * Returns the tick the batch was published on, the engine's tick count
+     * after it
+     * @return the tick of the batch
+     */
+    public long getTick() {
+        return myTick;
+    }
+
+    /**
+     * Returns the event at theIndex of the batch
+     *
+     * @param theIndex the index in the batch
+     * @throws IndexOutOfBoundsException if theIndex is not in the batch
+     * @return the event
+     */
+    public GameEvent getEvent(final int theIndex) {
+        return EVENTS[myEvents[slot(theIndex)]];
+    }
+
+    /**
+     * Returns the cell of the event at theIndex of the batch
+     *
+     * @param theIndex the index in the batch
+     * @throws IndexOutOfBoundsException if theIndex is not in the batch
+     * @return the packed cell, -1 if the event has none
+     */
+    public int getCell(final int theIndex) {
+        return myCells[slot(theIndex)];
+    }
+
+    /**
+     * Returns the value of the event at theIndex of the batch
+     *
+     * @param theIndex the index in the batch
+     * @throws IndexOutOfBoundsException if theIndex is not in the batch
+     * @return the value, 0 if the event has none
+     */
+    public long getValue(final int theIndex) {
+        return myValues[slot(theIndex)];
+    }
+
+    /**
+     * Adds an event to the batch of the current tick, handing the batch
+     * over first if the ring is full
+     *
+     * @param theEvent the event
+     * @param theCell the packed cell, -1 for none
+     * @param theValue the value, 0 for none
+     */
+    void publish(final GameEvent theEvent, final int theCell,
+            final long theValue) {
+        if (mySize == myMask + 1) {
+            endTick(myTick);
+        }
+        final int slot = (myStart + mySize) & myMask;
+        myEvents[slot] = (byte) theEvent.ordinal();
+        myCells[slot] = theCell;
+        myValues[slot] = theValue;
+        mySize++;
+    }
+
+    /**
+     * Hands the batch to every subscriber and starts the next one. Does
+     * nothing when the batch is empty
+     *
+     * @param theTick the tick the batch was published on
+     */
+    void endTick(final long theTick) {
+        if (mySize == 0) {
+            return;
+        }
+        myTick = theTick;
+        try {
+            for (GameEventListener listener : myListeners) {
+                listener.onEvents(this);
+            }
+        } finally {
+            myStart = (myStart + mySize) & myMask;
+            mySize = 0;
+        }
+    }
+
+    /**
+     * Returns the slot of the event at theIndex of the batch
+     *
+     * @param theIndex the index in the batch
+     * @throws IndexOutOfBoundsException if theIndex is not in the batch
+     * @return the slot in the arrays
+     */
+    private int slot(final int theIndex) {
+        return (myStart + Objects.checkIndex(theIndex, mySize)) & myMask;
+    }
+}
@@ -23,12 +23,23 @@ public class Frame extends JFrame {
      * Creates a game.Frame with the game.Sneke game on it
      */
     public Frame() {
+        this(GamePanel.NUM_ROWS, GamePanel.NUM_COLS);
+    }
+
+    /**
+     * Creates a game.Frame with a game.Sneke game of the given size on it
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if theRows or theCols is less than 10
+     */
+    public Frame(final int theRows, final int theCols) {
         super(TITLE);
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setBackground(GamePanel.BACKGROUND_COLOR);
 
-        Sneke sneke = new Sneke(GamePanel.NUM_ROWS, GamePanel.NUM_COLS);
+        Sneke sneke = new Sneke(theRows, theCols);
         add(new GamePanel(sneke));
 
         pack();
@@ -0,0 +1,187 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The FreeCells class is an index of the cells on the matrix that are not
+ * taken by the Sneke or the cherry, so a random free cell can be picked
+ * with a single random draw no matter how full the matrix is.
+ *
+ * Cells are packed indices (row * cols + col). The free cells are stored as
+ * a bitset with a Fenwick tree over the number of free cells in each 64 bit
+ * word, so marking a cell and finding the n-th free cell both take
+ * O(log(cells / 64)) steps while using about 1.5 bits per cell.
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class FreeCells {
+
+    /** The number of cells held by each word of the bitset */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * The total number of cells in the index
+     */
+    private final int myCells;
+
+    /**
+     * The bitset of free cells, a set bit means the cell is free
+     */
+    private final long[] myBits;
+
+    /**
+     * The 1 based Fenwick tree of free cell counts per word of myBits
+     */
+    private final int[] myTree;
+
+    /**
+     * The largest power of 2 that is not above the number of words, used to
+     * start the descent in select
+     */
+    private final int myTopBit;
+
+    /**
+     * The number of cells that are currently free
+     */
+    private int myFreeCount;
+
+    /**
+     * Initializes a new FreeCells where every cell is free
+     *
+     * @param theCells the number of cells to index
+     * @throws IllegalArgumentException if theCells is not positive
+     */
+    public FreeCells(final int theCells) {
+        if (theCells <= 0) {
+            throw new IllegalArgumentException("theCells must be positive");
+        }
+        myCells = theCells;
+        final int words = (theCells + WORD_BITS - 1) / WORD_BITS;
+        myBits = new long[words];
+        myTree = new int[words + 1];
+        myTopBit = Integer.highestOneBit(words);
+        clear();
+    }
+
+    /**
+     * Marks every cell as free
+     */
+    public void clear() {
+        final int words = myBits.length;
+        Arrays.fill(myBits, -1L);
+        final int spare = words * WORD_BITS - myCells;
+        if (spare > 0) {
+            myBits[words - 1] = -1L >>> spare;
+        }
+
+        // linear time Fenwick construction
+        for (int i = 1; i <= words; i++) {
+            myTree[i] = Long.bitCount(myBits[i - 1]);
+        }
+        for (int i = 1; i <= words; i++) {
+            final int parent = i + (i & -i);
+            if (parent <= words) {
+                myTree[parent] += myTree[i];
+            }
+        }
+        myFreeCount = myCells;
+    }
+
+    /**
+     * Returns the number of cells that are currently free
+     * @return the number of cells that are currently free
+     */
+    public int size() {
+        return myFreeCount;
+    }
+
+    /**
+     * Returns whether or not theCell is free
+     *
+     * @param theCell the packed cell index
+     * @throws IndexOutOfBoundsException if theCell is not in the index
+     * @return whether or not theCell is free
+     */
+    public boolean isFree(final int theCell) {
+        Objects.checkIndex(theCell, myCells);
+        return (myBits[theCell >>> 6] & (1L << theCell)) != 0;
+    }
+
+    /**
+     * Marks theCell as taken, does nothing if it already is
+     *
+     * @param theCell the packed cell index
+     */
+    public void markUsed(final int theCell) {
+        final int word = theCell >>> 6;
+        final long mask = 1L << theCell;
+        if ((myBits[word] & mask) != 0) {
+            myBits[word] &= ~mask;
+            adjust(word, -1);
+            myFreeCount--;
+        }
+    }
+
+    /**
+     * Marks theCell as free, does nothing if it already is
+     *
+     * @param theCell the packed cell index
+     */
+    public void markFree(final int theCell) {
+        final int word = theCell >>> 6;
+        final long mask = 1L << theCell;
+        if ((myBits[word] & mask) == 0) {
+            myBits[word] |= mask;
+            adjust(word, 1);
+            myFreeCount++;
+        }
+    }
+
+    /**
+     * Returns the free cell with the given rank, in increasing cell order
+     *
+     * @param theRank the rank of the free cell, 0 is the lowest free cell
+     * @throws IndexOutOfBoundsException if theRank is not below size()
+     * @return the packed cell index of the free cell with the given rank
+     */
+    public int select(final int theRank) {
+        int remaining = Objects.checkIndex(theRank, myFreeCount);
+
+        // descend the Fenwick tree to the word that holds the cell
+        int position = 0;
+        for (int step = myTopBit; step > 0; step >>>= 1) {
+            final int next = position + step;
+            if (next < myTree.length && myTree[next] <= remaining) {
+                position = next;
+                remaining -= myTree[next];
+            }
+        }
+
+        // find the remaining-th set bit inside the word
+        long bits = myBits[position];
+        for (int i = 0; i < remaining; i++) {
+            bits &= bits - 1;
+        }
+        return position * WORD_BITS + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Adds theDelta to the free count of theWord in the Fenwick tree
+     *
+     * @param theWord the 0 based word index
+     * @param theDelta the change in free cells
+     */
+    private void adjust(final int theWord, final int theDelta) {
+        for (int i = theWord + 1; i < myTree.length; i += i & -i) {
+            myTree[i] += theDelta;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The GameEvent Enum names the changes a SnekeEngine publishes to its
+ * EventRing. Each event carries a packed cell (row * cols + col) and a long
+ * value, their meaning depends on the event
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public enum GameEvent {
+    /**
+     * The head moved, the cell is the new head and the value the old head
+     */
+    HEAD_MOVED,
+
+    /**
+     * The tail left a cell, which is now empty, the cell is the freed cell
+     */
+    TAIL_FREED,
+
+    /**
+     * The head ate the cherry, the cell is where the cherry was
+     */
+    CHERRY_EATEN,
+
+    /**
+     * A new cherry was placed, the cell is where
+     */
+    CHERRY_SPAWNED,
+
+    /**
+     * The score changed, the value is the new score
+     */
+    SCORE_CHANGED,
+
+    /**
+     * The game ended, the cell is the head and the value the ordinal of the
+     * DeathCause, or -1 if the game was won
+     */
+    DIED,
+
+    /**
+     * The whole state changed at once, by a reset, a restore or keeping
+     * changes made under a savepoint, so everything has to be read again.
+     * The value is the seed of the game
+     */
+    RESET
+}
@@ -0,0 +1,27 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The GameEventListener interface is a subscriber of an EventRing. It is
+ * handed the events of one tick at a time, on the thread that ticks the
+ * engine, once the tick is over
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@FunctionalInterface
+public interface GameEventListener {
+
+    /**
+     * Called with the events of a tick, which can be read from theEvents
+     * until this returns. The engine must not be changed from here
+     *
+     * @param theEvents the ring, holding the batch of the tick
+     */
+    void onEvents(EventRing theEvents);
+}
@@ -0,0 +1,398 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import game.stats.Histogram;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The GameLoop class runs a game with a fixed simulation timestep on one
+ * thread and renders it at an independent rate on another.
+ *
+ * The loop thread runs every tick at its scheduled time, catching up when
+ * it falls behind (up to a limit, after which the lost time is dropped),
+ * and the render thread draws at its own frame rate. A frame that takes
+ * long, or a display that blocks while showing it, never delays a tick.
+ * The two threads share nothing through the loop: the simulation publishes
+ * what a frame needs, through a RenderBuffer for example, along with the
+ * time of its tick so movement can be interpolated. Other threads hand
+ * work to the loop thread with {@link #post(Runnable)}.
+ *
+ * The loop measures how late each tick runs compared to its fixed schedule
+ * (the tick jitter) and the time between frames
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class GameLoop {
+
+    /**
+     * The Simulation interface is the game state the loop ticks
+     */
+    @FunctionalInterface
+    public interface Simulation {
+
+        /**
+         * Advances the game by one tick
+         */
+        void tick();
+    }
+
+    /**
+     * The Renderer interface draws the game once per frame, on the render
+     * thread
+     */
+    @FunctionalInterface
+    public interface Renderer {
+
+        /**
+         * Draws the game
+         *
+         * @param theNanos the System.nanoTime() of the frame
+         */
+        void render(long theNanos);
+    }
+
+    /** The most ticks run back to back before the lost time is dropped */
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    /** The shortest tick length that can be set */
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The game state that is ticked
+     */
+    private final Simulation mySimulation;
+
+    /**
+     * Draws each frame
+     */
+    private final Renderer myRenderer;
+
+    /**
+     * The work other threads handed to the loop thread
+     */
+    private final Queue<Runnable> myPosted;
+
+    /**
+     * The tick lateness in nanoseconds, guarded by itself
+     */
+    private final Histogram myTickJitter;
+
+    /**
+     * The time between frames in nanoseconds, guarded by myTickJitter
+     */
+    private final Histogram myFrameTimes;
+
+    /**
+     * The length of one tick in nanoseconds
+     */
+    private volatile long myTickNanos;
+
+    /**
+     * The target time between frames in nanoseconds
+     */
+    private volatile long myFrameNanos;
+
+    /**
+     * Whether or not ticks are paused, frames keep being rendered
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * Whether or not the loop thread should keep running
+     */
+    private volatile boolean myRunning;
+
+    /**
+     * The System.nanoTime() the tick being run was scheduled for
+     */
+    private volatile long myTickTime;
+
+    /**
+     * The loop thread, null when it is not running
+     */
+    private volatile Thread myThread;
+
+    /**
+     * The render thread, null when it is not running
+     */
+    private Thread myRenderThread;
+
+    /**
+     * Initializes a new paused GameLoop
+     *
+     * @param theSimulation the game state that is ticked
+     * @param theRenderer draws each frame
+     * @param theTickNanos the length of one tick in nanoseconds
+     * @param theFrameNanos the target time between frames in nanoseconds
+     * @throws NullPointerException if theSimulation or theRenderer is null
+     * @throws IllegalArgumentException if theTickNanos is less than a
+     *         millisecond or theFrameNanos is not positive
+     */
+    public GameLoop(final Simulation theSimulation, final Renderer theRenderer,
+            final long theTickNanos, final long theFrameNanos) {
+        mySimulation = Objects.requireNonNull(theSimulation,
+                "theSimulation can not be null");
+        myRenderer = Objects.requireNonNull(theRenderer,
+                "theRenderer can not be null");
+        setTickNanos(theTickNanos);
+        setFrameNanos(theFrameNanos);
+        myPosted = new ConcurrentLinkedQueue<>();
+        myTickJitter = new Histogram();
+        myFrameTimes = new Histogram();
+        myPaused = true;
+    }
+
+    /**
+     * Starts the loop and render threads, does nothing if they are already
+     * running
+     */
+    public synchronized void start() {
+        if (myThread == null) {
+            myRunning = true;
+            myThread = new Thread(this::run, "game-loop");
+            myThread.setDaemon(true);
+            myRenderThread = new Thread(this::runFrames, "game-render");
+            myRenderThread.setDaemon(true);
+            myThread.start();
+            myRenderThread.start();
+        }
+    }
+
+    /**
+     * Stops the loop and render threads and waits for them to finish their
+     * tick and frame
+     */
+    public synchronized void stop() {
+        if (myThread != null) {
+            myRunning = false;
+            for (Thread thread : new Thread[] {myThread, myRenderThread}) {
+                LockSupport.unpark(thread);
+                if (Thread.currentThread() != thread) {
+                    try {
+                        thread.join();
+                    } catch (final InterruptedException theException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            myThread = null;
+            myRenderThread = null;
+        }
+    }
+
+    /**
+     * Pauses or resumes ticking. Frames are still rendered while paused
+     *
+     * @param thePaused whether or not ticks should be paused
+     */
+    public void setPaused(final boolean thePaused) {
+        myPaused = thePaused;
+        final Thread thread = myThread;
+        if (!thePaused && thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns whether or not ticks are paused
+     * @return whether or not ticks are paused
+     */
+    public boolean isPaused() {
+        return myPaused;
+    }
+
+    /**
+     * Sets the length of one tick, takes effect on the next tick
+     *
+     * @param theTickNanos the length of one tick in nanoseconds
+     * @throws IllegalArgumentException if theTickNanos is less than a
+     *         millisecond
+     */
+    public void setTickNanos(final long theTickNanos) {
+        if (theTickNanos < MIN_TICK_NANOS) {
+            throw new IllegalArgumentException(
+                    "theTickNanos can not be less than " + MIN_TICK_NANOS);
+        }
+        myTickNanos = theTickNanos;
+    }
+
+    /**
+     * Returns the length of one tick in nanoseconds
+     * @return the length of one tick in nanoseconds
+     */
+    public long getTickNanos() {
+        return myTickNanos;
+    }
+
+    /**
+     * Returns the System.nanoTime() the tick being run, or the last one,
+     * was scheduled for. A tick that runs late still reports its scheduled
+     * time, so frames interpolated from it keep a steady pace
+     *
+     * @return the time of the tick in nanoseconds
+     */
+    public long getTickTime() {
+        return myTickTime;
+    }
+
+    /**
+     * Sets the target time between frames
+     *
+     * @param theFrameNanos the target time between frames in nanoseconds
+     * @throws IllegalArgumentException if theFrameNanos is not positive
+     */
+    public void setFrameNanos(final long theFrameNanos) {
+        if (theFrameNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "theFrameNanos must be positive");
+        }
+        myFrameNanos = theFrameNanos;
+    }
+
+    /**
+     * Runs theTask on the loop thread before the next tick. Tasks posted
+     * while the loop is stopped run once it is started
+     *
+     * @param theTask the task to run
+     * @throws NullPointerException if theTask is null
+     */
+    public void post(final Runnable theTask) {
+        myPosted.add(Objects.requireNonNull(theTask,
+                "theTask can not be null"));
+        final Thread thread = myThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Returns how late a tick ran compared to its fixed schedule at
+     * thePercentile
+     *
+     * @param thePercentile the percentile, between 0 and 100
+     * @return the tick lateness in nanoseconds
+     */
+    public long getTickJitterNanos(final double thePercentile) {
+        synchronized (myTickJitter) {
+            return myTickJitter.getPercentile(thePercentile);
+        }
+    }
+
+    /**
+     * Returns the time between frames at thePercentile
+     *
+     * @param thePercentile the percentile, between 0 and 100
+     * @return the time between frames in nanoseconds
+     */
+    public long getFrameNanos(final double thePercentile) {
+        synchronized (myTickJitter) {
+            return myFrameTimes.getPercentile(thePercentile);
+        }
+    }
+
+    /**
+     * Clears the tick jitter and frame time measurements
+     */
+    public void resetStatistics() {
+        synchronized (myTickJitter) {
+            myTickJitter.reset();
+            myFrameTimes.reset();
+        }
+    }
+
+    /**
+     * The body of the loop thread
+     */
+    private void run() {
+        long simulatedTime = System.nanoTime();
+
+        while (myRunning) {
+            final long now = System.nanoTime();
+            runPosted();
+
+            final long tickNanos = myTickNanos;
+            if (myPaused) {
+                simulatedTime = now;
+            } else {
+                int ticks = 0;
+                while (simulatedTime + tickNanos <= now && !myPaused) {
+                    if (ticks == MAX_CATCH_UP_TICKS) {
+                        // too far behind to catch up, drop the lost time
+                        simulatedTime = now - tickNanos + 1;
+                        break;
+                    }
+                    simulatedTime += tickNanos;
+                    final long lateness = System.nanoTime() - simulatedTime;
+                    myTickTime = simulatedTime;
+                    mySimulation.tick();
+                    ticks++;
+                    synchronized (myTickJitter) {
+                        myTickJitter.record(lateness);
+                    }
+                }
+                if (myPaused) {
+                    simulatedTime = now;
+                }
+            }
+
+            // sleep until the next tick, while paused for a frame at most,
+            // posting work and resuming wake the thread early
+            final long wakeUp = myPaused ? now + myFrameNanos
+                    : simulatedTime + myTickNanos;
+            final long sleep = wakeUp - System.nanoTime();
+            if (sleep > 0 && myPosted.isEmpty()) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+    }
+
+    /**
+     * The body of the render thread
+     */
+    private void runFrames() {
+        long previousFrame = System.nanoTime();
+        long nextFrame = previousFrame;
+
+        while (myRunning) {
+            final long now = System.nanoTime();
+            if (now >= nextFrame) {
+                myRenderer.render(now);
+                synchronized (myTickJitter) {
+                    myFrameTimes.record(now - previousFrame);
+                }
+                previousFrame = now;
+                nextFrame += myFrameNanos;
+                if (nextFrame <= now) {
+                    nextFrame = now + myFrameNanos;
+                }
+            }
+
+            final long sleep = nextFrame - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+    }
+
+    /**
+     * Runs the work other threads posted
+     */
+    private void runPosted() {
+        Runnable task = myPosted.poll();
+        while (task != null) {
+            task.run();
+            task = myPosted.poll();
+        }
+    }
+}
@@ -0,0 +1,544 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import com.sun.management.ThreadMXBean;
+import game.stats.Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The GameMetrics class measures a running game: how long ticks and frames
+ * take, how long a key press waits for the tick that moves with it, how
+ * much each tick allocates, how many cherries are spawned and how often
+ * the high score is written.
+ *
+ * Measurements go into Histograms, so recording one is a few arithmetic
+ * steps and never allocates. What the game loop thread records and what
+ * the render thread records are guarded by separate locks, so the two
+ * threads never wait for each other; either waits only while JMX or the
+ * log copies its Histograms with Histogram.add to read them. Once publish
+ * is called the metrics are published as the JMX MBean
+ * {@code game:type=GameMetrics,id=n}, and they can also be printed as one
+ * line every few seconds. Starting the platform MBean server is slow, so
+ * the game publishes them from the background after its first frame
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class GameMetrics implements GameMetricsMXBean, Closeable {
+
+    /** The number of GameMetrics created, used to name their MBeans */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The number of measurement pairs the allocation baseline is taken of */
+    private static final int CALIBRATION_ROUNDS = 16;
+
+    /**
+     * Guards the tick times, input latencies, allocations and cherry
+     * spawns, which the game loop thread records
+     */
+    private final Object myTickLock = new Object();
+
+    /**
+     * Guards the render times, which the render thread records
+     */
+    private final Object myRenderLock = new Object();
+
+    /**
+     * The time each tick took
+     */
+    private final Histogram myTickTimes;
+
+    /**
+     * The time each frame took to render
+     */
+    private final Histogram myRenderTimes;
+
+    /**
+     * The time from each key press to the tick that moved with it
+     */
+    private final Histogram myInputLatencies;
+
+    /**
+     * The game loop, for its tick jitter
+     */
+    private final GameLoop myGameLoop;
+
+    /**
+     * Returns the number of high score writes
+     */
+    private final LongSupplier myHighScoreWrites;
+
+    /**
+     * Measures the bytes a thread allocated, null if the JVM can not
+     */
+    private final ThreadMXBean myThreads;
+
+    /**
+     * Calls ThreadMXBean.getCurrentThreadAllocatedBytes, which does not
+     * allocate, null on JVMs before 14 that do not have it
+     */
+    private final MethodHandle myCurrentThreadBytes;
+
+    /**
+     * The bytes one call of allocatedBytes allocates itself, taken off the
+     * bytes of each tick
+     */
+    private final long myBaselineBytes;
+
+    /**
+     * The name the MBean is registered under
+     */
+    private final String myName;
+
+    /**
+     * Whether or not publish was called
+     */
+    private final AtomicBoolean myPublished = new AtomicBoolean();
+
+    /**
+     * Whether or not the metrics were closed, the MBean is unregistered if
+     * it is published after that
+     */
+    private boolean myClosed;
+
+    /**
+     * Prints the metrics periodically, null until logging is started
+     */
+    private ScheduledExecutorService myLogger;
+
+    /**
+     * The total bytes allocated by the ticks measured
+     */
+    private long myAllocatedBytes;
+
+    /**
+     * The most bytes allocated by one tick
+     */
+    private long myMaxAllocatedBytes;
+
+    /**
+     * The number of cherries spawned
+     */
+    private long myCherrySpawns;
+
+    /**
+     * Initializes a new GameMetrics, which is not published until publish
+     * is called
+     *
+     * @param theGameLoop the game loop being measured
+     * @param theHighScoreWrites returns the number of high score writes
+     * @throws NullPointerException if theGameLoop or theHighScoreWrites is
+     *         null
+     */
+    public GameMetrics(final GameLoop theGameLoop,
+            final LongSupplier theHighScoreWrites) {
+        myGameLoop = Objects.requireNonNull(theGameLoop,
+                "theGameLoop can not be null");
+        myHighScoreWrites = Objects.requireNonNull(theHighScoreWrites,
+                "theHighScoreWrites can not be null");
+        myTickTimes = new Histogram();
+        myRenderTimes = new Histogram();
+        myInputLatencies = new Histogram();
+        myThreads = allocationCounter();
+        myCurrentThreadBytes = myThreads == null ? null
+                : currentThreadBytes();
+        myBaselineBytes = myThreads == null ? 0 : calibrate();
+        myName = "game:type=GameMetrics,id=" + INSTANCES.getAndIncrement();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, starting it if
+     * this is the first MBean. Does nothing after the first call, and does
+     * not hold the lock the recording methods take while it starts the
+     * server
+     */
+    public void publish() {
+        if (myPublished.getAndSet(true)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName(myName));
+        } catch (final JMException theException) {
+            // the metrics still work, they are just not published
+            theException.printStackTrace();
+        }
+        synchronized (this) {
+            if (myClosed) {
+                unregister();
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes the calling thread has allocated so far, to be
+     * passed to recordTick after the tick. Before JDK 14 the JVM can only
+     * be asked by thread id, which allocates a little, so recordTick takes
+     * a baseline measured when the metrics are created off each tick
+     *
+     * @return the bytes the calling thread has allocated, or -1 if the JVM
+     *         can not measure it
+     */
+    public long allocatedBytes() {
+        if (myThreads == null) {
+            return -1;
+        }
+        if (myCurrentThreadBytes != null) {
+            try {
+                return (long) myCurrentThreadBytes.invokeExact(myThreads);
+            } catch (final Throwable theException) {
+                throw new IllegalStateException(theException);
+            }
+        }
+        return myThreads.getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+
+    /**
+     * Records one tick
+     *
+     * @param theNanos the time the tick took
+     * @param theAllocatedBefore what allocatedBytes returned before the tick
+     */
+    public void recordTick(final long theNanos,
+            final long theAllocatedBefore) {
+        final long allocated = theAllocatedBefore < 0 ? -1 : Math.max(0,
+                allocatedBytes() - theAllocatedBefore - myBaselineBytes);
+        synchronized (myTickLock) {
+            myTickTimes.record(Math.max(0, theNanos));
+            if (allocated >= 0) {
+                myAllocatedBytes += allocated;
+                myMaxAllocatedBytes = Math.max(myMaxAllocatedBytes,
+                        allocated);
+            }
+        }
+    }
+
+    /**
+     * Records one frame
+     *
+     * @param theNanos the time the frame took to render
+     */
+    public void recordRender(final long theNanos) {
+        synchronized (myRenderLock) {
+            myRenderTimes.record(Math.max(0, theNanos));
+        }
+    }
+
+    /**
+     * Records the time from a key press to the tick that moved with it
+     *
+     * @param theNanos the input latency
+     */
+    public void recordInputLatency(final long theNanos) {
+        synchronized (myTickLock) {
+            myInputLatencies.record(Math.max(0, theNanos));
+        }
+    }
+
+    /**
+     * Counts a cherry spawn
+     */
+    public void countCherrySpawn() {
+        synchronized (myTickLock) {
+            myCherrySpawns++;
+        }
+    }
+
+    /**
+     * Prints the summary to theOut every thePeriodSeconds seconds on a
+     * background thread until the metrics are closed
+     *
+     * @param theOut where the summary is printed
+     * @param thePeriodSeconds the time between summaries
+     * @throws NullPointerException if theOut is null
+     * @throws IllegalArgumentException if thePeriodSeconds is not positive
+     * @throws IllegalStateException if logging was already started
+     */
+    public synchronized void startLogging(final PrintStream theOut,
+            final long thePeriodSeconds) {
+        Objects.requireNonNull(theOut, "theOut can not be null");
+        if (thePeriodSeconds <= 0) {
+            throw new IllegalArgumentException(
+                    "thePeriodSeconds must be positive");
+        }
+        if (myLogger != null) {
+            throw new IllegalStateException("logging was already started");
+        }
+        myLogger = Executors.newSingleThreadScheduledExecutor(theTask -> {
+            final Thread thread = new Thread(theTask, "game-metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        myLogger.scheduleAtFixedRate(() -> theOut.println(getSummary()),
+                thePeriodSeconds, thePeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops logging and unregisters the MBean
+     */
+    @Override
+    public synchronized void close() {
+        if (myLogger != null) {
+            myLogger.shutdownNow();
+            myLogger = null;
+        }
+        myClosed = true;
+        if (myPublished.get()) {
+            unregister();
+        }
+    }
+
+    /**
+     * Unregisters the MBean if it is registered
+     */
+    private void unregister() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(myName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final JMException theException) {
+            theException.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getTicks() {
+        synchronized (myTickLock) {
+            return myTickTimes.getCount();
+        }
+    }
+
+    @Override
+    public long getTickNanosP50() {
+        return copy(myTickTimes, myTickLock).getPercentile(50);
+    }
+
+    @Override
+    public long getTickNanosP99() {
+        return copy(myTickTimes, myTickLock).getPercentile(99);
+    }
+
+    @Override
+    public long getTickNanosMax() {
+        synchronized (myTickLock) {
+            return myTickTimes.getMax();
+        }
+    }
+
+    @Override
+    public long getFrames() {
+        synchronized (myRenderLock) {
+            return myRenderTimes.getCount();
+        }
+    }
+
+    @Override
+    public long getRenderNanosP50() {
+        return copy(myRenderTimes, myRenderLock).getPercentile(50);
+    }
+
+    @Override
+    public long getRenderNanosP99() {
+        return copy(myRenderTimes, myRenderLock).getPercentile(99);
+    }
+
+    @Override
+    public long getRenderNanosMax() {
+        synchronized (myRenderLock) {
+            return myRenderTimes.getMax();
+        }
+    }
+
+    @Override
+    public long getInputLatencyNanosP50() {
+        return copy(myInputLatencies, myTickLock).getPercentile(50);
+    }
+
+    @Override
+    public long getInputLatencyNanosP99() {
+        return copy(myInputLatencies, myTickLock).getPercentile(99);
+    }
+
+    @Override
+    public long getInputLatencyNanosMax() {
+        synchronized (myTickLock) {
+            return myInputLatencies.getMax();
+        }
+    }
+
+    @Override
+    public long getTickJitterNanosP99() {
+        return myGameLoop.getTickJitterNanos(99);
+    }
+
+    @Override
+    public double getAllocatedBytesPerTick() {
+        if (myThreads == null) {
+            return -1;
+        }
+        synchronized (myTickLock) {
+            final long ticks = myTickTimes.getCount();
+            return ticks == 0 ? 0 : (double) myAllocatedBytes / ticks;
+        }
+    }
+
+    @Override
+    public long getAllocatedBytesPerTickMax() {
+        if (myThreads == null) {
+            return -1;
+        }
+        synchronized (myTickLock) {
+            return myMaxAllocatedBytes;
+        }
+    }
+
+    @Override
+    public long getCherrySpawns() {
+        synchronized (myTickLock) {
+            return myCherrySpawns;
+        }
+    }
+
+    @Override
+    public long getHighScoreWrites() {
+        return myHighScoreWrites.getAsLong();
+    }
+
+    @Override
+    public String getSummary() {
+        final Histogram ticks;
+        final Histogram inputs;
+        final double allocated;
+        final long maxAllocated;
+        final long spawns;
+        synchronized (myTickLock) {
+            ticks = copy(myTickTimes, myTickLock);
+            inputs = copy(myInputLatencies, myTickLock);
+            allocated = getAllocatedBytesPerTick();
+            maxAllocated = getAllocatedBytesPerTickMax();
+            spawns = myCherrySpawns;
+        }
+        final Histogram renders = copy(myRenderTimes, myRenderLock);
+        return String.format("ticks=%d tick p50/p99/max=%.1f/%.1f/%.1f us"
+                        + " render p50/p99/max=%.1f/%.1f/%.1f us"
+                        + " input p50/p99=%.1f/%.1f us jitter p99=%.1f us"
+                        + " alloc/tick=%.0f B max=%d B spawns=%d"
+                        + " highscore writes=%d",
+                ticks.getCount(), ticks.getPercentile(50) / 1e3,
+                ticks.getPercentile(99) / 1e3, ticks.getMax() / 1e3,
+                renders.getPercentile(50) / 1e3,
+                renders.getPercentile(99) / 1e3, renders.getMax() / 1e3,
+                inputs.getPercentile(50) / 1e3,
+                inputs.getPercentile(99) / 1e3,
+                getTickJitterNanosP99() / 1e3, allocated, maxAllocated,
+                spawns, getHighScoreWrites());
+    }
+
+    @Override
+    public void reset() {
+        synchronized (myTickLock) {
+            myTickTimes.reset();
+            myInputLatencies.reset();
+            myAllocatedBytes = 0;
+            myMaxAllocatedBytes = 0;
+            myCherrySpawns = 0;
+        }
+        synchronized (myRenderLock) {
+            myRenderTimes.reset();
+        }
+        myGameLoop.resetStatistics();
+    }
+
+    /**
+     * Returns a copy of theHistogram taken under theLock, so a percentile
+     * can be looked up without holding the lock the recording thread takes
+     *
+     * @param theHistogram the Histogram to copy
+     * @param theLock the lock that guards theHistogram
+     * @return the copy
+     */
+    private static Histogram copy(final Histogram theHistogram,
+            final Object theLock) {
+        final Histogram copy = new Histogram();
+        synchronized (theLock) {
+            copy.add(theHistogram);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the smallest number of bytes a call of allocatedBytes was
+     * seen to allocate itself, over a few back to back pairs of calls
+     *
+     * @return the bytes one call allocates, 0 if it does not
+     */
+    private long calibrate() {
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            final long first = allocatedBytes();
+            least = Math.min(least, allocatedBytes() - first);
+        }
+        return Math.max(0, least);
+    }
+
+    /**
+     * Returns a handle to ThreadMXBean.getCurrentThreadAllocatedBytes,
+     * looked up at run time since the game is compiled for JDK 11
+     *
+     * @return the handle, or null if the JVM does not have the method
+     */
+    private static MethodHandle currentThreadBytes() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(
+                    ThreadMXBean.class, "getCurrentThreadAllocatedBytes",
+                    MethodType.methodType(long.class));
+        } catch (final ReflectiveOperationException theException) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the ThreadMXBean that measures allocated bytes, enabling the
+     * measurement if needed
+     *
+     * @return the ThreadMXBean, or null if the JVM can not measure
+     *         allocated bytes
+     */
+    private static ThreadMXBean allocationCounter() {
+        final Object threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof ThreadMXBean) {
+            final ThreadMXBean counter = (ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                if (!counter.isThreadAllocatedMemoryEnabled()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                }
+                return counter;
+            }
+        }
+        return null;
+    }
+}
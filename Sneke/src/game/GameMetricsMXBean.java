@@ -0,0 +1,130 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The GameMetricsMXBean interface is the JMX view of a GameMetrics. All
+ * times are in nanoseconds
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * Returns the number of ticks measured
+     * @return the number of ticks measured
+     */
+    long getTicks();
+
+    /**
+     * Returns the median time a tick took
+     * @return the median tick time
+     */
+    long getTickNanosP50();
+
+    /**
+     * Returns the 99th percentile of the time a tick took
+     * @return the 99th percentile tick time
+     */
+    long getTickNanosP99();
+
+    /**
+     * Returns the longest time a tick took
+     * @return the longest tick time
+     */
+    long getTickNanosMax();
+
+    /**
+     * Returns the number of frames measured
+     * @return the number of frames measured
+     */
+    long getFrames();
+
+    /**
+     * Returns the median time a frame took to render
+     * @return the median render time
+     */
+    long getRenderNanosP50();
+
+    /**
+     * Returns the 99th percentile of the time a frame took to render
+     * @return the 99th percentile render time
+     */
+    long getRenderNanosP99();
+
+    /**
+     * Returns the longest time a frame took to render
+     * @return the longest render time
+     */
+    long getRenderNanosMax();
+
+    /**
+     * Returns the median time from a key press to the tick that moved with
+     * it
+     * @return the median input latency
+     */
+    long getInputLatencyNanosP50();
+
+    /**
+     * Returns the 99th percentile of the time from a key press to the tick
+     * that moved with it
+     * @return the 99th percentile input latency
+     */
+    long getInputLatencyNanosP99();
+
+    /**
+     * Returns the longest time from a key press to the tick that moved with
+     * it
+     * @return the longest input latency
+     */
+    long getInputLatencyNanosMax();
+
+    /**
+     * Returns the 99th percentile of how late a tick ran compared to its
+     * fixed schedule
+     * @return the 99th percentile tick jitter
+     */
+    long getTickJitterNanosP99();
+
+    /**
+     * Returns the mean number of bytes allocated by a tick, or -1 if the JVM
+     * can not measure it
+     * @return the mean bytes allocated per tick
+     */
+    double getAllocatedBytesPerTick();
+
+    /**
+     * Returns the most bytes allocated by one tick, or -1 if the JVM can
+     * not measure it
+     * @return the most bytes allocated by one tick
+     */
+    long getAllocatedBytesPerTickMax();
+
+    /**
+     * Returns the number of cherries spawned
+     * @return the number of cherries spawned
+     */
+    long getCherrySpawns();
+
+    /**
+     * Returns the number of times the high score was written to disk
+     * @return the number of high score writes
+     */
+    long getHighScoreWrites();
+
+    /**
+     * Returns a one line summary of the metrics
+     * @return a one line summary of the metrics
+     */
+    String getSummary();
+
+    /**
+     * Clears every measurement except the high score writes
+     */
+    void reset();
+}
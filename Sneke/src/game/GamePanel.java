@@ -6,19 +6,36 @@
 
 package game;
 
+import game.leaderboard.ScoreRecord;
+import game.replay.ReplayWriter;
+
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.KeyAdapter;
+import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.awt.font.FontRenderContext;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Objects;
-import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * The GamePanel class is a JPanel that displays the Sneke game graphics
+ * The GamePanel class is a JPanel that displays the Sneke game graphics.
+ *
+ * The game runs on a GameLoop thread that ticks the Sneke at a fixed rate,
+ * while the loop's render thread actively renders the matrix onto a
+ * BoardCanvas at the display rate. The Sneke is only touched on the loop
+ * thread: buttons post their changes to the loop, turns go through an
+ * InputQueue that the loop takes one turn from per tick, and the panel
+ * follows the GameEvents the Sneke publishes each tick, handing score
+ * changes back to the EDT. The render thread draws the RenderStates a
+ * RenderBuffer captures after each tick, so it never reads the Sneke and
+ * never holds up a tick
  *
  * @author Austn Attaway
  * @version January 2021
@@ -30,13 +47,7 @@ public class GamePanel extends JPanel {
     public static final Color BACKGROUND_COLOR = new Color(8, 49, 109);
 
     /** The color of the matrix outline */
-    private static final Color MATRIX_OUTLINE = new Color(227, 151, 20);
-
-    /** The color of the sneke */
-    private static final Color SNEKE_COLOR = new Color(45, 222, 34);
-
-    /** The color of the cherry */
-    private static final Color CHERRY_COLOR = new Color(222, 34, 34);
+    static final Color MATRIX_OUTLINE = new Color(227, 151, 20);
 
     // panel settings
     /** The default frame width */
@@ -61,6 +72,13 @@ public class GamePanel extends JPanel {
     /** The font size of the title */
     private static final int TITLE_SIZE = 55;
 
+    /** The font of the title */
+    private static final Font TITLE_FONT =
+            new Font("Muna", Font.PLAIN, TITLE_SIZE);
+
+    /** The font of the other labels, shared by all of them */
+    private static final Font LABEL_FONT = new Font("Muna", Font.PLAIN, 20);
+
     // matrix settings
     /** The upper left x position of the matrix */
     private static final int MATRIX_X = 100;
@@ -74,24 +92,108 @@ public class GamePanel extends JPanel {
     /** The height of the matrix */
     private static final int MATRIX_HEIGHT = 300;
 
-    /** The width/height of each square in the matrix */
+    /** The largest width/height of each square in the matrix */
     private static final int MATRIX_BOX_DIMENSION = 25;
 
-    /** The number of cols the matrix board has */
+    /**
+     * The smallest width/height of each square before the matrix is drawn
+     * through a zoomable ViewportRenderer instead of all at once
+     */
+    private static final int MIN_BOX_DIMENSION = 4;
+
+    /** The default number of cols the matrix board has */
     public static final int NUM_COLS = MATRIX_WIDTH / MATRIX_BOX_DIMENSION;
 
-    /** The number of rows the matrix board has */
+    /** The default number of rows the matrix board has */
     public static final int NUM_ROWS = MATRIX_HEIGHT / MATRIX_BOX_DIMENSION;
 
+    /** The file the current or last game is recorded in */
+    public static final Path REPLAY_FILE = Paths.get("./replay.snkr");
+
+    // game loop settings
+    /** The starting length of a tick */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+
+    /** The shortest tick '+' can set */
+    private static final long MIN_TICK_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(30);
+
+    /** The longest tick '-' can set */
+    private static final long MAX_TICK_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /** The frame rate used when the display does not report one */
+    private static final int DEFAULT_FRAME_RATE = 60;
+
+    /** The most turns that can be buffered ahead of the ticks */
+    private static final int INPUT_CAPACITY = 4;
+
+    /**
+     * The system property that sets how many seconds apart the metrics are
+     * printed, they are not printed when it is not set
+     */
+    public static final String METRICS_LOG_PROPERTY = "sneke.metrics.log";
+
     /**
      * The current Sneke on the matrix
      */
     private final Sneke mySneke;
 
     /**
-     * The Timer that runs when the game is active
+     * Draws the matrix on the render thread
+     */
+    private final BoardView myRenderer;
+
+    /**
+     * Hands the state of the Sneke after each tick to the render thread
+     */
+    private final RenderBuffer myRenderStates;
+
+    /**
+     * The Canvas the matrix is rendered on
+     */
+    private final BoardCanvas myCanvas;
+
+    /**
+     * Ticks the Sneke and renders the matrix, each on a thread of its own
+     */
+    private final GameLoop myGameLoop;
+
+    /**
+     * Measures the ticks, frames and input latency of the game
      */
-    private final Timer myGameTimer;
+    private final GameMetrics myMetrics;
+
+    /**
+     * The latest score of the game loop, waiting for the EDT to show it
+     */
+    private volatile long myHudScore;
+
+    /**
+     * Whether or not a HUD update is waiting on the EDT, so a burst of
+     * score changes is shown with one update
+     */
+    private final AtomicBoolean myHudPending = new AtomicBoolean();
+
+    /**
+     * Shows myHudScore, posted to the EDT when the score changes
+     */
+    private final Runnable myHudUpdate = this::updateHud;
+
+    /**
+     * Records the current game, null when it is not being recorded. Only
+     * used on the game loop thread
+     */
+    private ReplayWriter myReplay;
+
+    /**
+     * The turns pressed on the EDT and not yet made by a tick
+     */
+    private final InputQueue myInput;
+
+    /**
+     * The score the score label currently shows, only used on the EDT
+     */
+    private long myShownScore;
 
     /**
      * The JLabel that shows the current score
@@ -99,24 +201,28 @@ public class GamePanel extends JPanel {
     private final JLabel scoreLabel;
 
     /**
-     * The JLabel that shows the highscore
+     * The JLabel that shows the highscore, null until the end of game
+     * components are added
      */
-    private final JLabel highscoreLabel;
+    private JLabel highscoreLabel;
 
     /**
-     * The JLabel that shows the current score when the game is over
+     * The JLabel that shows the current score when the game is over, null
+     * until the end of game components are added
      */
-    private final JLabel yourScoreLabel;
+    private JLabel yourScoreLabel;
 
     /**
-     * The JLabel that displays 'GAME OVER' when the game is over
+     * The JLabel that displays 'GAME OVER' when the game is over, null
+     * until the end of game components are added
      */
-    private final JLabel gameOverLabel;
+    private JLabel gameOverLabel;
 
     /**
-     * The JButton that resets the game
+     * The JButton that resets the game, null until the end of game
+     * components are added
      */
-    private final JButton myResetButton;
+    private JButton myResetButton;
 
     /**
      * The JButton that starts the game
@@ -124,17 +230,37 @@ public class GamePanel extends JPanel {
     private final JButton myStartButton;
 
     /**
-     * The highest score that has been reached
+     * Whether or not the first frame was shown, only used on the render
+     * thread
      */
-    private long myHighscore;
+    private boolean myFrameShown;
 
     /**
-     * Constructs a new GamePanel with a default state
+     * Keeps the highest score that has been reached and stores it on disk
+     * in the background
+     */
+    private final HighScoreStore myHighScores;
+
+    /**
+     * Constructs a new GamePanel with a default state that keeps the
+     * leaderboard in ./leaderboard.log
      *
      * @param theSneke the Sneke that is used on the panel
      * @throws NullPointerException if theSneke is null
      */
     public GamePanel(final Sneke theSneke) {
+        this(theSneke, new HighScoreStore());
+    }
+
+    /**
+     * Constructs a new GamePanel with a default state
+     *
+     * @param theSneke the Sneke that is used on the panel
+     * @param theHighScores the store of the high score
+     * @throws NullPointerException if theSneke or theHighScores is null
+     */
+    public GamePanel(final Sneke theSneke,
+            final HighScoreStore theHighScores) {
         super();
 
         // JPanel settings
@@ -145,25 +271,81 @@ public class GamePanel extends JPanel {
 
         // set the sneke and current highscore
         mySneke = Objects.requireNonNull(theSneke, "theSneke can not be null");
-        try {
-            Scanner sc = new Scanner(new File("./highscore.txt"));
-            myHighscore = sc.nextInt();
-        } catch (FileNotFoundException theException) {
-            theException.printStackTrace();
+        myHighScores = Objects.requireNonNull(theHighScores,
+                "theHighScores can not be null");
+
+        // the matrix is drawn by the game loop rather than paintComponent
+        myInput = new InputQueue(INPUT_CAPACITY);
+        myRenderer = createRenderer(mySneke.getEngine());
+        myCanvas = new BoardCanvas(myRenderer);
+        myCanvas.setLocation(MATRIX_X - 1, MATRIX_Y - 1);
+        add(myCanvas);
+        myGameLoop = new GameLoop(this::tick, this::render, TICK_NANOS,
+                TimeUnit.SECONDS.toNanos(1) / getFrameRate());
+        myMetrics = new GameMetrics(myGameLoop, myHighScores::getWriteCount);
+        myRenderStates = new RenderBuffer(mySneke.getEngine(),
+                myGameLoop::getTickTime);
+        mySneke.getEvents().subscribe(myRenderStates);
+        mySneke.getEvents().subscribe(this::onEvents);
+        final long logPeriod = Long.getLong(METRICS_LOG_PROPERTY, 0);
+        if (logPeriod > 0) {
+            myMetrics.startLogging(System.err, logPeriod);
         }
 
-        myGameTimer = new Timer(300, actionEvent -> update());
+        // only what the first frame shows is built now, the rest of the
+        // game waits until that frame is on the screen
         scoreLabel = new JLabel("");
-        gameOverLabel = new JLabel("GAME OVER");
-        yourScoreLabel = new JLabel("Your score: " + mySneke.getScore());
-        highscoreLabel = new JLabel("High score: " + updateHighScore());
         myStartButton = new JButton("Start");
-        myResetButton = new JButton("Reset");
 
         addLabels();
         addButtons();
-        addKeyListener();
+        addKeyBindings();
+
+        // the stored high score arrives from the disk in the background
+        myHighScores.addListener(theHighScore ->
+                SwingUtilities.invokeLater(() -> showScore(myShownScore)));
 
+        showScore(mySneke.getScore());
+    }
+
+    /**
+     * Returns the game loop, which also measures the tick jitter and frame
+     * time
+     *
+     * @return the game loop
+     */
+    public GameLoop getGameLoop() {
+        return myGameLoop;
+    }
+
+    /**
+     * Returns the metrics of the game, which are also published over JMX
+     *
+     * @return the metrics of the game
+     */
+    public GameMetrics getMetrics() {
+        return myMetrics;
+    }
+
+    /**
+     * Starts the game loop once the panel is displayed
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        myGameLoop.start();
+    }
+
+    /**
+     * Stops the game loop and closes the metrics before the panel stops
+     * being displayed
+     */
+    @Override
+    public void removeNotify() {
+        myGameLoop.stop();
+        closeReplay();
+        myMetrics.close();
+        super.removeNotify();
     }
 
     /**
@@ -172,15 +354,15 @@ public class GamePanel extends JPanel {
     private void addLabels() {
         // set the 'Sneke' title
         JLabel snekeTitle = new JLabel("Sneke");
-        snekeTitle.setFont(new Font("Muna", Font.PLAIN, TITLE_SIZE));
+        snekeTitle.setFont(TITLE_FONT);
         snekeTitle.setForeground(MATRIX_OUTLINE);
         snekeTitle.setBounds(TITLE_X, TITLE_Y, TITLE_WIDTH, TITLE_HEIGHT);
         add(snekeTitle);
 
         // set the instructions label
         JLabel instructionsLabel = new JLabel("Press 'a' to turn left and 'd'" +
-                " to turn right");
-        instructionsLabel.setFont(new Font("Muna", Font.PLAIN, 20));
+                " to turn right, '+' and '-' change the speed");
+        instructionsLabel.setFont(LABEL_FONT);
         instructionsLabel.setForeground(MATRIX_OUTLINE);
         instructionsLabel.setBounds(100, 375, TITLE_WIDTH * 5, TITLE_HEIGHT);
         add(instructionsLabel);
@@ -188,6 +370,25 @@ public class GamePanel extends JPanel {
         // set label bounds
         scoreLabel.setBounds(TITLE_X, TITLE_Y + 40, TITLE_WIDTH * 10,
                 TITLE_HEIGHT);
+        scoreLabel.setFont(LABEL_FONT);
+        scoreLabel.setForeground(MATRIX_OUTLINE);
+        add(scoreLabel);
+    }
+
+    /**
+     * Add the labels and the reset button that are only shown when a game
+     * is over, if they were not added yet. Runs on the EDT
+     */
+    private void addEndComponents() {
+        if (myResetButton != null) {
+            return;
+        }
+        gameOverLabel = new JLabel("GAME OVER");
+        yourScoreLabel = new JLabel("Your score: " + mySneke.getScore());
+        highscoreLabel = new JLabel("High score: " + getHighScore());
+        myResetButton = new JButton("Reset");
+
+        // set label bounds
         gameOverLabel.setBounds(TITLE_X, TITLE_Y + 100, TITLE_WIDTH,
                 TITLE_HEIGHT);
         yourScoreLabel.setBounds(TITLE_X, TITLE_Y + 130, TITLE_WIDTH*3,
@@ -197,19 +398,34 @@ public class GamePanel extends JPanel {
 
         // set the font and color of the smaller labels
         ArrayList<JLabel> labelList = new ArrayList<>();
-        labelList.add(scoreLabel);
         labelList.add(gameOverLabel);
         labelList.add(yourScoreLabel);
         labelList.add(highscoreLabel);
         for (JLabel label : labelList) {
-            label.setFont(new Font("Muna", Font.PLAIN, 20));
+            label.setFont(LABEL_FONT);
             label.setForeground(MATRIX_OUTLINE);
+            label.setVisible(false);
             add(label);
         }
 
-        gameOverLabel.setVisible(false);
-        yourScoreLabel.setVisible(false);
-        highscoreLabel.setVisible(false);
+        // reset button
+        myResetButton.setBounds(TITLE_X + 105, TITLE_Y + 100, 100, 30);
+        myResetButton.addActionListener(actionEvent -> {
+            myGameLoop.post(() -> {
+                mySneke.setupNewGame();
+                myInput.clear();
+                startReplay();
+            });
+            showScore(0);
+            highscoreLabel.setVisible(false);
+            yourScoreLabel.setVisible(false);
+            gameOverLabel.setVisible(false);
+            myResetButton.setVisible(false);
+            myStartButton.setVisible(true);
+            myStartButton.setText("Start");
+        });
+        myResetButton.setVisible(false);
+        add(myResetButton);
     }
 
     /**
@@ -220,56 +436,87 @@ public class GamePanel extends JPanel {
         myStartButton.setBounds(TITLE_X, TITLE_Y + 100, 100, 30);
         myStartButton.addActionListener(actionEvent -> {
 
-            if (myGameTimer.isRunning()) {
-                myGameTimer.stop();
-                myStartButton.setText("Start");
-            } else {
-                myGameTimer.start();
+            if (myGameLoop.isPaused()) {
+                myGameLoop.setPaused(false);
                 myStartButton.setText("Pause");
+            } else {
+                myGameLoop.setPaused(true);
+                myGameLoop.post(this::flushReplay);
+                myStartButton.setText("Start");
             }
         });
 
-        // reset button
-        myResetButton.setBounds(TITLE_X + 105, TITLE_Y + 100, 100, 30);
-        myResetButton.addActionListener(actionEvent -> {
-            mySneke.setupNewGame();
-            highscoreLabel.setVisible(false);
-            yourScoreLabel.setVisible(false);
-            gameOverLabel.setVisible(false);
-            myResetButton.setVisible(false);
-            myStartButton.setVisible(true);
-            myStartButton.setText("Start");
-
+        add(myStartButton);
+    }
 
-            repaint();
-        });
+    /**
+     * Add the key bindings, which work whichever component in the window
+     * has the focus
+     */
+    private void addKeyBindings() {
+        bindKey("turnLeft", () -> offerTurn(Action.LEFT), KeyEvent.VK_A);
+        bindKey("turnRight", () -> offerTurn(Action.RIGHT), KeyEvent.VK_D);
+        bindKey("faster", () -> myGameLoop.setTickNanos(Math.max(
+                MIN_TICK_NANOS, myGameLoop.getTickNanos() * 4 / 5)),
+                KeyEvent.VK_PLUS, KeyEvent.VK_EQUALS, KeyEvent.VK_ADD);
+        bindKey("slower", () -> myGameLoop.setTickNanos(Math.min(
+                MAX_TICK_NANOS, myGameLoop.getTickNanos() * 5 / 4)),
+                KeyEvent.VK_MINUS, KeyEvent.VK_SUBTRACT);
+        if (myRenderer instanceof ViewportRenderer) {
+            final ViewportRenderer viewport = (ViewportRenderer) myRenderer;
+            bindKey("zoomIn", viewport::zoomIn, KeyEvent.VK_CLOSE_BRACKET);
+            bindKey("zoomOut", viewport::zoomOut, KeyEvent.VK_OPEN_BRACKET);
+        }
+    }
 
-        myResetButton.setVisible(false);
-        add(myStartButton);
-        add(myResetButton);
+    /**
+     * Returns the BoardView for theEngine: a BoardRenderer when the whole
+     * matrix fits with squares of at least MIN_BOX_DIMENSION, or else a
+     * ViewportRenderer that follows the head
+     *
+     * @param theEngine the engine that is drawn
+     * @return the BoardView
+     */
+    private static BoardView createRenderer(final SnekeEngine theEngine) {
+        if (MATRIX_WIDTH / theEngine.getCols() >= MIN_BOX_DIMENSION
+                && MATRIX_HEIGHT / theEngine.getRows() >= MIN_BOX_DIMENSION) {
+            return new BoardRenderer(theEngine, MATRIX_WIDTH, MATRIX_HEIGHT,
+                    MATRIX_BOX_DIMENSION);
+        }
+        return new ViewportRenderer(theEngine, MATRIX_WIDTH, MATRIX_HEIGHT);
     }
 
     /**
-     * Add the key listener
+     * Binds theKeyCodes, pressed without modifiers, to theCommand
+     *
+     * @param theName the name of the command
+     * @param theCommand runs on the EDT when one of the keys is pressed
+     * @param theKeyCodes the virtual key codes
      */
-    private void addKeyListener() {
-        addKeyListener(new KeyAdapter() {
+    private void bindKey(final String theName, final Runnable theCommand,
+            final int... theKeyCodes) {
+        final InputMap inputMap = getInputMap(WHEN_IN_FOCUSED_WINDOW);
+        for (int keyCode : theKeyCodes) {
+            inputMap.put(KeyStroke.getKeyStroke(keyCode, 0), theName);
+        }
+        getActionMap().put(theName, new AbstractAction() {
             @Override
-            public void keyPressed(KeyEvent theEvent) {
-                switch (theEvent.getKeyChar()) {
-                    case 'a':
-                        mySneke.setMyCurrentDirection(
-                                Direction.getLeftDirection(mySneke.getCurrentDirection()));
-                        break;
-                    case 'd':
-                        mySneke.setMyCurrentDirection(
-                                Direction.getRightDirection(mySneke.getCurrentDirection()));
-                        break;
-                }
+            public void actionPerformed(final ActionEvent theEvent) {
+                theCommand.run();
             }
         });
     }
 
+    /**
+     * Buffers a turn for the coming ticks, dropping it if too many are
+     * already waiting. Runs on the EDT
+     *
+     * @param theAction the turn
+     */
+    private void offerTurn(final Action theAction) {
+        myInput.offer(theAction, System.nanoTime());
+    }
+
     /**
      * Paints the GamePanel
      *
@@ -280,116 +527,288 @@ public class GamePanel extends JPanel {
     public void paintComponent(final Graphics theGraphics) {
         final Graphics2D g2d = (Graphics2D)
                 Objects.requireNonNull(theGraphics, "theGraphics is null");
-        requestFocus();
-
-        g2d.setBackground(BACKGROUND_COLOR);
-
-        // draw the Sneke
-        g2d.setColor(SNEKE_COLOR);
-        ArrayList<Point> pointList = mySneke.getPointList();
-        for (Point p : pointList) {
-            final int xPos = MATRIX_X + ((int) p.getX() * MATRIX_BOX_DIMENSION);
-            final int yPos = MATRIX_Y + ((int) p.getY() * MATRIX_BOX_DIMENSION);
-            g2d.fillRect(xPos, yPos,
-                    MATRIX_BOX_DIMENSION, MATRIX_BOX_DIMENSION);
-        }
 
-        // draw the Sneke eye
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(MATRIX_X + 1 + ((int) pointList.get(pointList.size() - 1).getX() * MATRIX_BOX_DIMENSION),
-                MATRIX_Y + 1 + ((int) pointList.get(pointList.size() - 1).getY() * MATRIX_BOX_DIMENSION),
-                 10, 10);
-
-        // draw the cherry
-        final Point cherryPoint = mySneke.getCherryPoint();
-        g2d.setColor(CHERRY_COLOR);
-        final int xPos = MATRIX_X + ((int) cherryPoint.getX() * MATRIX_BOX_DIMENSION);
-        final int yPos = MATRIX_Y + ((int) cherryPoint.getY() * MATRIX_BOX_DIMENSION);
-        g2d.fillRect(xPos, yPos,
-                MATRIX_BOX_DIMENSION, MATRIX_BOX_DIMENSION);
-
-        // draw the matrix grid
-        g2d.setColor(MATRIX_OUTLINE);
-        for (int row = 0; row < NUM_ROWS; row++) {
-            for (int col = 0; col < NUM_COLS; col++) {
-                final int x = MATRIX_X + (col * MATRIX_BOX_DIMENSION);
-                final int y = MATRIX_Y + (row * MATRIX_BOX_DIMENSION);
-                g2d.drawRect(x, y, MATRIX_BOX_DIMENSION, MATRIX_BOX_DIMENSION);
-            }
-        }
+        // fill the background inside the clip, the matrix is rendered on
+        // its own canvas
+        super.paintComponent(g2d);
 
+        g2d.setColor(MATRIX_OUTLINE);
         // draw the line under the title label
         g2d.drawLine(TITLE_X, TITLE_Y + 69, TITLE_X + TITLE_WIDTH,
          TITLE_Y + 69);
+    }
+
+    /**
+     * Ticks the Sneke, which publishes what changed to the RenderBuffer and
+     * onEvents, runs on the game loop thread
+     */
+    private void tick() {
+        final long start = System.nanoTime();
+        final long allocated = myMetrics.allocatedBytes();
+
+        // make at most one buffered turn, so quick presses are spread over
+        // consecutive ticks instead of reversing the Sneke into itself
+        final Action action = myInput.poll();
+        if (action != null) {
+            turn(action);
+        }
 
-        // update the score text
-        scoreLabel.setText("Score: " + mySneke.getScore() + "\t\tHigh " +
-                "Score: " + updateHighScore());
+        mySneke.update();
+        if (action != null) {
+            myMetrics.recordInputLatency(
+                    System.nanoTime() - myInput.getPolledNanos());
+        }
+        myMetrics.recordTick(System.nanoTime() - start, allocated);
     }
 
     /**
-     * Updates the matrix or ends the game
+     * Follows the events of a tick: hands score changes to the HUD, counts
+     * cherry spawns and ends the game when the Sneke dies or wins. Runs on
+     * the game loop thread
+     *
+     * @param theEvents the events of the tick
      */
-    private void update() {
-        boolean gameShouldContinue = mySneke.update();
+    private void onEvents(final EventRing theEvents) {
+        for (int i = 0; i < theEvents.getBatchSize(); i++) {
+            switch (theEvents.getEvent(i)) {
+                case SCORE_CHANGED:
+                    myHudScore = theEvents.getValue(i);
+                    if (!myHudPending.getAndSet(true)) {
+                        SwingUtilities.invokeLater(myHudUpdate);
+                    }
+                    break;
+                case CHERRY_SPAWNED:
+                    myMetrics.countCherrySpawn();
+                    break;
+                case DIED:
+                    myGameLoop.setPaused(true);
+                    finishReplay();
+                    final long score = mySneke.getScore();
+                    final int length = mySneke.getEngine().getLength();
+                    final boolean won = theEvents.getValue(i) < 0;
+                    SwingUtilities.invokeLater(() ->
+                            endGame(score, length, won));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
 
-        if (!gameShouldContinue) {
-            endGame();
+    /**
+     * Shows the latest score of the game loop, runs on the EDT
+     */
+    private void updateHud() {
+        myHudPending.set(false);
+        showScore(myHudScore);
+    }
+
+    /**
+     * Renders a frame of the latest state and measures it, runs on the
+     * render thread
+     *
+     * @param theNanos the System.nanoTime() of the frame
+     */
+    private void render(final long theNanos) {
+        final long start = System.nanoTime();
+        final RenderState state = myRenderStates.acquire();
+        final double alpha = myGameLoop.isPaused() ? 1 : Math.max(0,
+                Math.min(1, (double) (theNanos - state.getTime())
+                        / myGameLoop.getTickNanos()));
+        final boolean shown = myCanvas.render(state, alpha);
+        myMetrics.recordRender(System.nanoTime() - start);
+        if (shown && !myFrameShown) {
+            myFrameShown = true;
+            StartupProbe.markFirstFrame();
+            SwingUtilities.invokeLater(this::finishStartup);
         }
+    }
 
-        repaint();
+    /**
+     * Does the startup work the first frame did not need: the end of game
+     * components, the replay file and publishing the metrics, which starts
+     * the slow JMX server on a thread of its own. Runs on the EDT once the
+     * first frame is on the screen
+     */
+    private void finishStartup() {
+        addEndComponents();
+        myGameLoop.post(this::startReplay);
+        final Thread publisher = new Thread(myMetrics::publish,
+                "game-metrics-publish");
+        publisher.setDaemon(true);
+        publisher.start();
+        StartupProbe.markInputReady();
     }
 
     /**
-     * Ends the current game being played
+     * Resolves the fonts of the labels, which the first layout would
+     * otherwise do on the EDT. Safe to call on any thread, Main calls it on
+     * a thread of its own while the window is being built
      */
-    private void endGame() {
-        myGameTimer.stop();
+    static void preloadFonts() {
+        final FontRenderContext context =
+                new FontRenderContext(null, true, true);
+        TITLE_FONT.getLineMetrics("Sneke", context);
+        LABEL_FONT.getLineMetrics("Score", context);
+    }
 
-        highscoreLabel.setText("High Score: " + updateHighScore());
-        yourScoreLabel.setText("Your Score: " + mySneke.getScore() +
-                "   Sneke size: " + mySneke.getPointList().size());
+    /**
+     * Turns the Sneke and records the turn, runs on the game loop thread
+     *
+     * @param theAction the turn to make
+     */
+    private void turn(final Action theAction) {
+        if (!mySneke.getEngine().isAlive()) {
+            return;
+        }
+        mySneke.setMyCurrentDirection(
+                theAction.apply(mySneke.getCurrentDirection()));
+        if (myReplay != null) {
+            try {
+                myReplay.turn(mySneke.getEngine().getTicks(), theAction);
+            } catch (final IOException theException) {
+                theException.printStackTrace();
+                closeReplay();
+            }
+        }
+    }
+
+    /**
+     * Starts recording the current game to REPLAY_FILE, runs on the game
+     * loop thread
+     */
+    private void startReplay() {
+        closeReplay();
+        try {
+            myReplay = new ReplayWriter(new BufferedOutputStream(
+                    Files.newOutputStream(REPLAY_FILE)), mySneke.getRows(),
+                    mySneke.getCols(), mySneke.getEngine().getSeed());
+        } catch (final IOException theException) {
+            theException.printStackTrace();
+        }
+    }
+
+    /**
+     * Records the end of the current game and closes the replay, runs on
+     * the game loop thread
+     */
+    private void finishReplay() {
+        if (myReplay != null) {
+            try {
+                myReplay.finish(mySneke.getEngine().getTicks());
+            } catch (final IOException theException) {
+                theException.printStackTrace();
+            }
+            closeReplay();
+        }
+    }
+
+    /**
+     * Writes the buffered part of the replay to the file, runs on the game
+     * loop thread
+     */
+    private void flushReplay() {
+        if (myReplay != null) {
+            try {
+                myReplay.flush();
+            } catch (final IOException theException) {
+                theException.printStackTrace();
+                closeReplay();
+            }
+        }
+    }
+
+    /**
+     * Closes the replay if one is open, a game that is not finished keeps
+     * the turns recorded so far
+     */
+    private void closeReplay() {
+        if (myReplay != null) {
+            try {
+                myReplay.close();
+            } catch (final IOException theException) {
+                theException.printStackTrace();
+            }
+            myReplay = null;
+        }
+    }
+
+    /**
+     * Updates the score text
+     *
+     * @param theScore the current game's score
+     */
+    private void showScore(final long theScore) {
+        myShownScore = theScore;
+        scoreLabel.setText("Score: " + theScore + "\t\tHigh " +
+                "Score: " + getHighScore());
+    }
+
+    /**
+     * Returns the frame rate of the display, or a default when it is not
+     * known
+     *
+     * @return the frame rate in frames per second
+     */
+    private static int getFrameRate() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return DEFAULT_FRAME_RATE;
+        }
+        final int rate = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        return rate > 0 ? rate : DEFAULT_FRAME_RATE;
+    }
+
+    /**
+     * Ends the current game being played
+     *
+     * @param theScore the score of the game
+     * @param theLength the length the Sneke reached
+     * @param theWon whether or not the game was won
+     */
+    private void endGame(final long theScore, final int theLength,
+            final boolean theWon) {
+        addEndComponents();
+        gameOverLabel.setText(theWon ? "YOU WIN" : "GAME OVER");
+        myHighScores.submit(theScore, theLength);
+        showScore(theScore);
+        highscoreLabel.setText("High Score: " + getHighScore());
+        highscoreLabel.setToolTipText(getLeaderboardText());
+        yourScoreLabel.setText("Your Score: " + theScore +
+                "   Sneke size: " + theLength);
 
         myStartButton.setVisible(false);
         highscoreLabel.setVisible(true);
         yourScoreLabel.setVisible(true);
         gameOverLabel.setVisible(true);
         myResetButton.setVisible(true);
-
-        repaint();
     }
 
     /**
-     * Updates the highscore and returns it, if it is the end of a game,
-     * store the new highscore if there is one
+     * Returns the highscore, including the current game's score. Never
+     * touches the disk
      *
      * @return the highscore
      */
-    private long updateHighScore() {
-        // get the high score
-        final long highestScore = Math.max(myHighscore, mySneke.getScore());
+    private long getHighScore() {
+        return Math.max(myHighScores.get(), myShownScore);
+    }
 
-        // update the high score if the current score
-        // is higher and the game is over
-        if (!myGameTimer.isRunning()) {
-            try {
-                Scanner sc = new Scanner(new File("./highscore.txt"));
-                final int storedScore = sc.nextInt();
-                // enter the new high score into the file if it is larger
-                // than the previous score
-                if (storedScore < highestScore) {
-                    myHighscore = highestScore;
-                    PrintWriter writer = new PrintWriter("./highscore.txt");
-                    writer.print("");
-                    writer.print(highestScore);
-                    writer.close();
-                }
-            } catch (FileNotFoundException theException) {
-                theException.printStackTrace();
-            }
+    /**
+     * Returns the leaderboard as HTML, one game per line. Never touches the
+     * disk
+     *
+     * @return the leaderboard as HTML
+     */
+    private String getLeaderboardText() {
+        final StringBuilder text = new StringBuilder("<html>");
+        int rank = 1;
+        for (ScoreRecord record : myHighScores.getTop()) {
+            text.append(rank++).append(". ").append(record.getScore())
+                    .append(" (size ").append(record.getLength())
+                    .append(")<br>");
         }
-
-        return highestScore;
+        return text.append("</html>").toString();
     }
 
 }
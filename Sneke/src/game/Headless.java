@@ -0,0 +1,71 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.io.IOException;
+
+/**
+ * The Headless class includes an entry point that runs the Sneke game
+ * without a display as fast as possible and reports the tick rate
+ *
+ * Usage: {@code java game.Headless [ticks] [rows] [cols] [seed]
+ * [topology]}, where the topology is walls, torus, or a map file as read by
+ * {@link Topology#named(String, int, int)}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Headless {
+
+    /** The default number of ticks to run */
+    private static final long DEFAULT_TICKS = 10_000_000L;
+
+    /** The default number of rows and columns of the matrix */
+    private static final int DEFAULT_DIMENSION = 20;
+
+    /**
+     * The entry point for the headless Sneke program
+     * @param theArgs the command line arguments, optionally the number of
+     *         ticks, rows, columns, the starting seed and the topology
+     * @throws IOException if the map file can not be read
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        final long ticks = theArgs.length > 0 ?
+                Long.parseLong(theArgs[0]) : DEFAULT_TICKS;
+        final int rows = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_DIMENSION;
+        final int cols = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_DIMENSION;
+        long seed = theArgs.length > 3 ?
+                Long.parseLong(theArgs[3]) : System.nanoTime();
+
+        final Topology topology = Topology.named(theArgs.length > 4 ?
+                theArgs[4] : "walls", rows, cols);
+
+        final SnekeEngine engine = new SnekeEngine(topology, seed);
+        final Controller controller = new SafeController();
+        long games = 1;
+
+        final long start = System.nanoTime();
+        for (long tick = 0; tick < ticks; tick++) {
+            if (!engine.step(controller.nextAction(engine))) {
+                engine.reset(++seed);
+                controller.newGame(engine);
+                games++;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final double seconds = elapsed / 1e9;
+        System.out.printf("ticks: %d%n", ticks);
+        System.out.printf("games: %d%n", games);
+        System.out.printf("matrix: %dx%d%n", topology.getRows(),
+                topology.getCols());
+        System.out.printf("elapsed: %.3f s%n", seconds);
+        System.out.printf("ticks/second: %.0f%n", ticks / seconds);
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import game.leaderboard.Leaderboard;
+import game.leaderboard.ScoreRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * The HighScoreStore class keeps the leaderboard and the high score in
+ * memory and persists them on a background thread, so callers such as the
+ * EDT never wait on the disk.
+ *
+ * The scores are kept in a Leaderboard log that other running instances
+ * share safely. The log is opened and read once in the background when the
+ * store is created, and a high score left in the old highscore.txt next to
+ * it is carried over into a new log. Finished games that make the
+ * leaderboard are written behind after a short delay, so a burst of
+ * submissions becomes one locked append. Pending writes are flushed when
+ * the store is closed or the JVM shuts down
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class HighScoreStore implements Closeable {
+
+    /** The file the leaderboard is kept in by default */
+    public static final Path DEFAULT_FILE = Paths.get("./leaderboard.log");
+
+    /** The name of the file the high score used to be kept in */
+    public static final String LEGACY_FILE_NAME = "highscore.txt";
+
+    /** The delay before finished games are written, to batch writes */
+    private static final long WRITE_DELAY_MILLIS = 500;
+
+    /** The longest close() waits for the last write */
+    private static final long FLUSH_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * The file the leaderboard is kept in
+     */
+    private final Path myFile;
+
+    /**
+     * The single background thread that reads and writes the file
+     */
+    private final ScheduledExecutorService myExecutor;
+
+    /**
+     * The highest score known, from the file or submitted
+     */
+    private final AtomicLong myHighScore;
+
+    /**
+     * Whether or not a write is scheduled and has not started yet
+     */
+    private final AtomicBoolean myWritePending;
+
+    /**
+     * The finished games waiting to be written
+     */
+    private final Queue<ScoreRecord> myPending;
+
+    /**
+     * Called with the new high score whenever it changes
+     */
+    private final List<LongConsumer> myListeners;
+
+    /**
+     * Flushes the store when the JVM shuts down
+     */
+    private final Thread myShutdownHook;
+
+    /**
+     * The leaderboard, null until it is opened on myExecutor
+     */
+    private volatile Leaderboard myLeaderboard;
+
+    /**
+     * The number of times the file was written
+     */
+    private final AtomicLong myWriteCount;
+
+    /**
+     * Initializes a new HighScoreStore on the default file
+     */
+    public HighScoreStore() {
+        this(DEFAULT_FILE);
+    }
+
+    /**
+     * Initializes a new HighScoreStore and starts reading theFile in the
+     * background. Until the file is read the high score is 0 and the
+     * leaderboard is empty
+     *
+     * @param theFile the file the leaderboard is kept in
+     * @throws NullPointerException if theFile is null
+     */
+    public HighScoreStore(final Path theFile) {
+        myFile = Objects.requireNonNull(theFile, "theFile can not be null");
+        myHighScore = new AtomicLong();
+        myWritePending = new AtomicBoolean();
+        myPending = new ConcurrentLinkedQueue<>();
+        myListeners = new CopyOnWriteArrayList<>();
+        myWriteCount = new AtomicLong();
+        myExecutor = Executors.newSingleThreadScheduledExecutor(theTask -> {
+            final Thread thread = new Thread(theTask, "high-score-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        myShutdownHook = new Thread(this::flushQuietly,
+                "high-score-store-flush");
+        Runtime.getRuntime().addShutdownHook(myShutdownHook);
+
+        myExecutor.execute(this::load);
+    }
+
+    /**
+     * Returns the highest score known, never blocks
+     * @return the highest score known
+     */
+    public long get() {
+        return myHighScore.get();
+    }
+
+    /**
+     * Returns the best games as of the last read or write of the file,
+     * best first. Never blocks
+     *
+     * @return an immutable list of the best games, empty until the file is
+     *         read
+     */
+    public List<ScoreRecord> getTop() {
+        final Leaderboard leaderboard = myLeaderboard;
+        return leaderboard == null ? Collections.emptyList() :
+                leaderboard.getTop();
+    }
+
+    /**
+     * Returns the number of times the file was written
+     * @return the number of times the file was written
+     */
+    public long getWriteCount() {
+        return myWriteCount.get();
+    }
+
+    /**
+     * Offers a finished game to the leaderboard. A new high score is known
+     * at once, and a game that makes the leaderboard is written in the
+     * background. Never blocks
+     *
+     * @param theScore the score of the game
+     * @param theLength the length the Sneke reached
+     * @throws IllegalArgumentException if theScore or theLength is negative
+     */
+    public void submit(final long theScore, final int theLength) {
+        final ScoreRecord record = new ScoreRecord(theScore, theLength,
+                System.currentTimeMillis());
+        raise(theScore);
+        if (qualifies(record)) {
+            myPending.add(record);
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Adds a listener that is called with the new high score whenever it
+     * changes, on the thread that changed it. That is the background thread
+     * when the score comes from the file
+     *
+     * @param theListener the listener to add
+     * @throws NullPointerException if theListener is null
+     */
+    public void addListener(final LongConsumer theListener) {
+        myListeners.add(Objects.requireNonNull(theListener,
+                "theListener can not be null"));
+    }
+
+    /**
+     * Writes any pending games and waits for them to be on disk
+     *
+     * @throws IOException if the file can not be written in time
+     */
+    public void flush() throws IOException {
+        try {
+            myExecutor.submit(() -> {
+                write();
+                return null;
+            }).get(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException theException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while flushing", theException);
+        } catch (final ExecutionException | TimeoutException theException) {
+            throw new IOException("could not flush " + myFile, theException);
+        }
+    }
+
+    /**
+     * Flushes the store, closes the file and stops its background thread
+     *
+     * @throws IOException if the last write fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            myExecutor.execute(this::closeLeaderboard);
+            myExecutor.shutdown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(myShutdownHook);
+            } catch (final IllegalStateException theException) {
+                // the JVM is already shutting down
+            }
+        }
+    }
+
+    /**
+     * Raises the known high score to theScore if it is higher and tells the
+     * listeners
+     *
+     * @param theScore the new score
+     * @return whether or not the high score was raised
+     */
+    private boolean raise(final long theScore) {
+        long current = myHighScore.get();
+        while (theScore > current) {
+            if (myHighScore.compareAndSet(current, theScore)) {
+                for (LongConsumer listener : myListeners) {
+                    listener.accept(theScore);
+                }
+                return true;
+            }
+            current = myHighScore.get();
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether or not theRecord would make the leaderboard as it is
+     * known, which is always the case before the file is read
+     *
+     * @param theRecord the finished game
+     * @return whether or not theRecord is worth writing
+     */
+    private boolean qualifies(final ScoreRecord theRecord) {
+        final Leaderboard leaderboard = myLeaderboard;
+        if (leaderboard == null) {
+            return true;
+        }
+        final List<ScoreRecord> top = leaderboard.getTop();
+        return top.size() < leaderboard.getCapacity()
+                || ScoreRecord.RANKING.compare(theRecord,
+                        top.get(top.size() - 1)) < 0;
+    }
+
+    /**
+     * Schedules a write unless one is already waiting, which will then
+     * write the newest games as well
+     */
+    private void scheduleWrite() {
+        if (myWritePending.compareAndSet(false, true)) {
+            try {
+                myExecutor.schedule(this::writeQuietly, WRITE_DELAY_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException theException) {
+                // the store is closed, the game stays in memory only
+                myWritePending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Opens and reads the leaderboard, runs on the background thread
+     */
+    private void load() {
+        try {
+            leaderboard();
+        } catch (final IOException theException) {
+            theException.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the leaderboard, opening it and carrying over the legacy high
+     * score the first time. Runs on the background thread
+     *
+     * @throws IOException if the file can not be read
+     * @return the leaderboard
+     */
+    private Leaderboard leaderboard() throws IOException {
+        Leaderboard leaderboard = myLeaderboard;
+        if (leaderboard == null) {
+            leaderboard = new Leaderboard(myFile);
+            if (leaderboard.getTop().isEmpty()) {
+                final long legacy = readLegacyScore();
+                if (legacy > 0) {
+                    leaderboard.append(new ScoreRecord(legacy, 0,
+                            Files.getLastModifiedTime(myFile.resolveSibling(
+                                    LEGACY_FILE_NAME)).toMillis()));
+                }
+            }
+            myLeaderboard = leaderboard;
+            raise(leaderboard.getHighScore());
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Appends the pending games, runs on the background thread
+     *
+     * @throws IOException if the file can not be written
+     */
+    private void write() throws IOException {
+        myWritePending.set(false);
+        if (myPending.isEmpty()) {
+            return;
+        }
+        final Leaderboard leaderboard = leaderboard();
+        final List<ScoreRecord> records = new ArrayList<>();
+        for (ScoreRecord record = myPending.poll(); record != null;
+                record = myPending.poll()) {
+            records.add(record);
+        }
+        try {
+            leaderboard.append(records);
+        } catch (final IOException theException) {
+            // kept for the next write
+            myPending.addAll(records);
+            throw theException;
+        }
+        myWriteCount.incrementAndGet();
+        // other processes may have stored a higher score
+        raise(leaderboard.getHighScore());
+    }
+
+    /**
+     * Closes the leaderboard, printing any failure
+     */
+    private void closeLeaderboard() {
+        final Leaderboard leaderboard = myLeaderboard;
+        if (leaderboard != null) {
+            try {
+                leaderboard.close();
+            } catch (final IOException theException) {
+                theException.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending games, printing any failure
+     */
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (final IOException theException) {
+            theException.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes the store, printing any failure
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (final IOException theException) {
+            theException.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the score held by the legacy high score file next to the
+     * leaderboard, 0 if there is no such file or it does not hold a number
+     *
+     * @throws IOException if the file can not be read
+     * @return the score held by the legacy file
+     */
+    private long readLegacyScore() throws IOException {
+        try {
+            final String text = new String(Files.readAllBytes(
+                    myFile.resolveSibling(LEGACY_FILE_NAME)),
+                    StandardCharsets.UTF_8).trim();
+            return text.isEmpty() ? 0 : Math.max(0, Long.parseLong(text));
+        } catch (final NoSuchFileException theException) {
+            return 0;
+        } catch (final NumberFormatException theException) {
+            return 0;
+        }
+    }
+}
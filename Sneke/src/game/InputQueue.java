@@ -0,0 +1,141 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The InputQueue class is a bounded, lock-free queue of turns from the
+ * thread that reads the keyboard to the thread that ticks the game, so
+ * presses made faster than the game ticks are made on consecutive ticks
+ * instead of all at once.
+ *
+ * Each turn is stamped with the System.nanoTime() it was offered at, so the
+ * latency from the key press to the tick can be measured. The queue has a
+ * single producer and a single consumer: offer may only be called from one
+ * thread and poll and clear from one other thread. Neither allocates
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class InputQueue {
+
+    /**
+     * The turns, indexed by position modulo the capacity
+     */
+    private final Action[] myActions;
+
+    /**
+     * The time each turn was offered at
+     */
+    private final long[] myTimes;
+
+    /**
+     * The position of the next turn to poll, only written by the consumer
+     */
+    private final AtomicLong myHead;
+
+    /**
+     * The position the next turn is offered at, only written by the
+     * producer
+     */
+    private final AtomicLong myTail;
+
+    /**
+     * The time the last polled turn was offered at, only used by the
+     * consumer
+     */
+    private long myPolledNanos;
+
+    /**
+     * Initializes a new empty InputQueue
+     *
+     * @param theCapacity the most turns the queue holds, a power of 2
+     * @throws IllegalArgumentException if theCapacity is not a positive
+     *         power of 2
+     */
+    public InputQueue(final int theCapacity) {
+        if (theCapacity <= 0 || Integer.bitCount(theCapacity) != 1) {
+            throw new IllegalArgumentException(
+                    "theCapacity must be a positive power of 2");
+        }
+        myActions = new Action[theCapacity];
+        myTimes = new long[theCapacity];
+        myHead = new AtomicLong();
+        myTail = new AtomicLong();
+    }
+
+    /**
+     * Adds a turn to the queue unless it is full, called by the producer
+     *
+     * @param theAction the turn
+     * @param theNanos the System.nanoTime() the turn was made at
+     * @throws NullPointerException if theAction is null
+     * @return whether or not the turn was added
+     */
+    public boolean offer(final Action theAction, final long theNanos) {
+        Objects.requireNonNull(theAction, "theAction can not be null");
+        final long tail = myTail.get();
+        if (tail - myHead.get() == myActions.length) {
+            return false;
+        }
+        final int slot = (int) tail & (myActions.length - 1);
+        myActions[slot] = theAction;
+        myTimes[slot] = theNanos;
+        // publishes the slot to the consumer
+        myTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest turn, called by the consumer. The time it was made
+     * at is then returned by getPolledNanos
+     *
+     * @return the oldest turn, or null if the queue is empty
+     */
+    public Action poll() {
+        final long head = myHead.get();
+        if (head == myTail.get()) {
+            return null;
+        }
+        final int slot = (int) head & (myActions.length - 1);
+        final Action action = myActions[slot];
+        myPolledNanos = myTimes[slot];
+        // hands the slot back to the producer
+        myHead.lazySet(head + 1);
+        return action;
+    }
+
+    /**
+     * Returns the time the turn last returned by poll was made at, called
+     * by the consumer
+     *
+     * @return the System.nanoTime() the last polled turn was made at
+     */
+    public long getPolledNanos() {
+        return myPolledNanos;
+    }
+
+    /**
+     * Removes every turn, called by the consumer
+     */
+    public void clear() {
+        myHead.lazySet(myTail.get());
+    }
+
+    /**
+     * Returns the number of turns in the queue, which may already be out of
+     * date when it returns
+     *
+     * @return the number of turns in the queue
+     */
+    public int size() {
+        final long head = myHead.get();
+        return (int) (myTail.get() - head);
+    }
+}
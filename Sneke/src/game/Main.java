@@ -16,14 +16,28 @@ public class Main {
 
     /**
      * The entry point for the game.Sneke program
-     * @param theArgs the command line arguments (unused)
+     * @param theArgs the command line arguments, optionally the number of
+     *         rows and columns of the matrix
      */
     public static void main(final String[] theArgs) {
+        StartupProbe.markMain();
+
+        // resolving the fonts is slow, so it runs alongside building the
+        // window instead of in the middle of its first layout
+        final Thread fonts = new Thread(GamePanel::preloadFonts,
+                "font-preload");
+        fonts.setDaemon(true);
+        fonts.start();
+
+        final int rows = theArgs.length > 0 ?
+                Integer.parseInt(theArgs[0]) : GamePanel.NUM_ROWS;
+        final int cols = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : GamePanel.NUM_COLS;
 
         // create the GUI
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                new Frame();
+                new Frame(rows, cols);
             }
         });
     }
@@ -0,0 +1,78 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The PackedBoard class is a Board that packs 32 cells into each long at
+ * two bits per cell, so a 10,000 x 10,000 board takes 25 MB and the
+ * largest possible board (MAX_CELLS cells) 256 MB
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class PackedBoard implements Board {
+
+    /** The number of bits used for each cell */
+    private static final int BITS_PER_CELL = 2;
+
+    /** The mask of a single cell value */
+    private static final long CELL_MASK = (1L << BITS_PER_CELL) - 1;
+
+    /**
+     * The number of rows on the board
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns on the board
+     */
+    private final int myCols;
+
+    /**
+     * The cell values in row major order, 32 to a word
+     */
+    private final long[] myWords;
+
+    /**
+     * Initializes a new empty PackedBoard
+     *
+     * @param theRows the number of rows
+     * @param theCols the number of columns
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the board has more than MAX_CELLS cells
+     */
+    public PackedBoard(final int theRows, final int theCols) {
+        final int cells = Board.cellCount(theRows, theCols);
+        myWords = new long[(cells + 31) >>> 5];
+        myRows = theRows;
+        myCols = theCols;
+    }
+
+    @Override
+    public int getRows() {
+        return myRows;
+    }
+
+    @Override
+    public int getCols() {
+        return myCols;
+    }
+
+    @Override
+    public int get(final int theCell) {
+        final int shift = (theCell & 31) << 1;
+        return (int) ((myWords[theCell >>> 5] >>> shift) & CELL_MASK);
+    }
+
+    @Override
+    public void set(final int theCell, final int theValue) {
+        final int word = theCell >>> 5;
+        final int shift = (theCell & 31) << 1;
+        myWords[word] = (myWords[word] & ~(CELL_MASK << shift))
+                | ((theValue & CELL_MASK) << shift);
+    }
+}
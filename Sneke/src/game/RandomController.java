@@ -0,0 +1,53 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.SplittableRandom;
+
+/**
+ * The RandomController class is a Controller that picks a random safe
+ * Action on every tick, falling back to going straight when none is safe
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class RandomController implements Controller {
+
+    /** The Actions to pick from, shared so a pick never allocates */
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * The random numbers used to pick the Action
+     */
+    private SplittableRandom myRandom;
+
+    /**
+     * Initializes a new RandomController
+     *
+     * @param theSeed the seed of the random numbers
+     */
+    public RandomController(final long theSeed) {
+        myRandom = new SplittableRandom(theSeed);
+    }
+
+    @Override
+    public Action nextAction(final SnekeEngine theEngine) {
+        final int start = myRandom.nextInt(ACTIONS.length);
+        for (int i = 0; i < ACTIONS.length; i++) {
+            final Action action = ACTIONS[(start + i) % ACTIONS.length];
+            if (theEngine.isSafe(action)) {
+                return action;
+            }
+        }
+        return Action.STRAIGHT;
+    }
+
+    @Override
+    public void newGame(final SnekeEngine theEngine) {
+        myRandom = new SplittableRandom(theEngine.getSeed());
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The RenderBuffer class hands the state of a SnekeEngine from the thread
+ * that ticks it to the thread that draws it, without either one waiting on
+ * the other.
+ *
+ * The buffer holds three RenderStates. The tick thread owns the back one
+ * and captures the engine into it after every tick, the render thread owns
+ * the front one, and the third is the latest finished state. Publishing a
+ * state swaps the back state with the latest one and acquiring a frame
+ * swaps the front state with it, each with a single atomic swap, so a
+ * frame is always one whole tick and a slow frame never delays a tick. A
+ * frame that is drawn before the next tick is published draws the same
+ * state again; ticks published between two frames are skipped.
+ *
+ * A RenderBuffer captures the engine when it is handed the GameEvents of a
+ * tick, so it is subscribed to the engine's EventRing and published to on
+ * the thread that ticks the engine. Only one thread may acquire frames
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class RenderBuffer implements GameEventListener {
+
+    /** The number of states, the back, front and latest one */
+    private static final int STATES = 3;
+
+    /** The bit of myLatest set while the latest state is not acquired */
+    private static final int FRESH = 4;
+
+    /** The bits of myLatest that hold the index of the latest state */
+    private static final int INDEX = 3;
+
+    /**
+     * The engine that is captured
+     */
+    private final SnekeEngine myEngine;
+
+    /**
+     * Gives the time of the tick being run
+     */
+    private final LongSupplier myClock;
+
+    /**
+     * The back, front and latest states
+     */
+    private final RenderState[] myStates;
+
+    /**
+     * The index of the latest state, with FRESH set when it is new
+     */
+    private final AtomicInteger myLatest;
+
+    /**
+     * The index of the state the next tick is captured into, only used on
+     * the tick thread
+     */
+    private int myBack;
+
+    /**
+     * The index of the state being drawn, only used on the render thread
+     */
+    private int myFront;
+
+    /**
+     * The game being played, only used on the tick thread
+     */
+    private long myGeneration;
+
+    /**
+     * Initializes a new RenderBuffer holding the current state of theEngine
+     *
+     * @param theEngine the engine that is captured
+     * @param theClock gives the System.nanoTime() of the tick being run,
+     *         which frames between ticks are interpolated from
+     * @throws NullPointerException if theEngine or theClock is null
+     */
+    public RenderBuffer(final SnekeEngine theEngine,
+            final LongSupplier theClock) {
+        myEngine = Objects.requireNonNull(theEngine,
+                "theEngine can not be null");
+        myClock = Objects.requireNonNull(theClock,
+                "theClock can not be null");
+        myGeneration = RenderState.nextGeneration();
+        myStates = new RenderState[STATES];
+        for (int i = 0; i < myStates.length; i++) {
+            myStates[i] = new RenderState(myEngine.getTopology());
+            myStates[i].capture(myEngine, myGeneration, -1, -1,
+                    myClock.getAsLong());
+        }
+        myFront = 0;
+        myLatest = new AtomicInteger(1);
+        myBack = 2;
+    }
+
+    /**
+     * Captures the engine after a tick and publishes it as the latest
+     * state, runs on the tick thread
+     *
+     * @param theEvents the events of the tick
+     */
+    @Override
+    public void onEvents(final EventRing theEvents) {
+        int lastHead = -1;
+        int freedTail = -1;
+        for (int i = 0; i < theEvents.getBatchSize(); i++) {
+            switch (theEvents.getEvent(i)) {
+                case HEAD_MOVED:
+                    lastHead = (int) theEvents.getValue(i);
+                    break;
+                case TAIL_FREED:
+                    freedTail = theEvents.getCell(i);
+                    break;
+                case RESET:
+                    myGeneration = RenderState.nextGeneration();
+                    lastHead = -1;
+                    freedTail = -1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        myStates[myBack].capture(myEngine, myGeneration, lastHead,
+                freedTail, myClock.getAsLong());
+        myBack = myLatest.getAndSet(myBack | FRESH) & INDEX;
+    }
+
+    /**
+     * Returns the latest state, which stays the same until the next call.
+     * Runs on the render thread
+     *
+     * @return the state to draw
+     */
+    public RenderState acquire() {
+        if ((myLatest.get() & FRESH) != 0) {
+            myFront = myLatest.getAndSet(myFront) & INDEX;
+        }
+        return myStates[myFront];
+    }
+}
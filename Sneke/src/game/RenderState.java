@@ -0,0 +1,254 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The RenderState class is what a BoardView needs to draw one frame of a
+ * SnekeEngine: the body, the cherry, and the head and tail cells the last
+ * tick moved the Sneke from.
+ *
+ * Unlike the engine, a RenderState can be drawn on another thread than the
+ * one that ticks the game. A RenderBuffer captures one after each tick and
+ * hands it to the render thread, and a state built with
+ * {@link #RenderState(SnekeEngine)} is a one off copy. States of the same
+ * game share a generation and count its ticks, so a BoardView can tell the
+ * next tick of the game it drew last from a new game and draw only what
+ * changed.
+ *
+ * A RenderState is not thread safe, it is only changed by whoever captured
+ * it before it is handed over
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class RenderState {
+
+    /** The length of the body array of a new state */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The generation the next game that is captured gets */
+    private static final AtomicLong NEXT_GENERATION = new AtomicLong();
+
+    /**
+     * How the cells of the matrix connect, and which are obstacles
+     */
+    private final Topology myTopology;
+
+    /**
+     * The packed body cells from the tail to the head
+     */
+    private int[] myBody = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of body cells
+     */
+    private int myLength;
+
+    /**
+     * The packed cherry cell, -1 when there is no cherry
+     */
+    private int myCherry = -1;
+
+    /**
+     * The head cell before the last tick, -1 when the head did not move
+     */
+    private int myLastHead = -1;
+
+    /**
+     * The cell the tail left on the last tick, -1 when it did not leave one
+     */
+    private int myFreedTail = -1;
+
+    /**
+     * The number of ticks the game has survived
+     */
+    private long myTicks;
+
+    /**
+     * The System.nanoTime() of the tick the state was captured after
+     */
+    private long myTime;
+
+    /**
+     * The game the state belongs to, new after every reset
+     */
+    private long myGeneration = -1;
+
+    /**
+     * Initializes a new RenderState holding the current state of theEngine
+     * as a game of its own, with no move to draw between ticks
+     *
+     * @param theEngine the engine to copy
+     * @throws NullPointerException if theEngine is null
+     */
+    public RenderState(final SnekeEngine theEngine) {
+        this(Objects.requireNonNull(theEngine, "theEngine can not be null")
+                .getTopology());
+        capture(theEngine, nextGeneration(), -1, -1, System.nanoTime());
+    }
+
+    /**
+     * Initializes a new empty RenderState for a matrix of theTopology
+     *
+     * @param theTopology how the cells of the matrix connect
+     */
+    RenderState(final Topology theTopology) {
+        myTopology = theTopology;
+    }
+
+    /**
+     * Returns a generation no game has had yet
+     * @return a new generation
+     */
+    static long nextGeneration() {
+        return NEXT_GENERATION.getAndIncrement();
+    }
+
+    /**
+     * Copies the state of theEngine after a tick
+     *
+     * @param theEngine the engine to copy
+     * @param theGeneration the game theEngine is playing
+     * @param theLastHead the head cell before the tick, -1 for none
+     * @param theFreedTail the cell the tail left on the tick, -1 for none
+     * @param theTime the System.nanoTime() of the tick
+     */
+    void capture(final SnekeEngine theEngine, final long theGeneration,
+            final int theLastHead, final int theFreedTail,
+            final long theTime) {
+        myLength = theEngine.getLength();
+        if (myBody.length < myLength) {
+            myBody = new int[Math.max(myBody.length * 2, myLength)];
+        }
+        theEngine.copyBody(myBody);
+        myCherry = theEngine.getCherryRow() < 0 ? -1
+                : theEngine.getCherryRow() * getCols()
+                        + theEngine.getCherryCol();
+        myLastHead = theLastHead;
+        myFreedTail = theFreedTail;
+        myTicks = theEngine.getTicks();
+        myTime = theTime;
+        myGeneration = theGeneration;
+    }
+
+    /**
+     * Returns the number of rows in the matrix
+     * @return the number of rows in the matrix
+     */
+    public int getRows() {
+        return myTopology.getRows();
+    }
+
+    /**
+     * Returns the number of columns in the matrix
+     * @return the number of columns in the matrix
+     */
+    public int getCols() {
+        return myTopology.getCols();
+    }
+
+    /**
+     * Returns how the cells of the matrix connect, and which are obstacles
+     * @return the Topology of the matrix
+     */
+    public Topology getTopology() {
+        return myTopology;
+    }
+
+    /**
+     * Returns the number of body cells
+     * @return the length of the Sneke
+     */
+    public int getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns the packed cell of the given body segment
+     *
+     * @param theIndex the segment, 0 is the tail and getLength() - 1 the head
+     * @throws IndexOutOfBoundsException if theIndex is not a segment
+     * @return the packed cell of the segment
+     */
+    public int getBodyCell(final int theIndex) {
+        return myBody[Objects.checkIndex(theIndex, myLength)];
+    }
+
+    /**
+     * Copies the packed body cells, from the tail to the head, into the
+     * start of theCells
+     *
+     * @param theCells where the cells are copied, at least getLength() long
+     * @throws IndexOutOfBoundsException if theCells is too short
+     */
+    void copyBody(final int[] theCells) {
+        System.arraycopy(myBody, 0, theCells, 0, myLength);
+    }
+
+    /**
+     * Returns the packed cell of the head
+     * @return the packed cell of the head
+     */
+    public int getHead() {
+        return myBody[myLength - 1];
+    }
+
+    /**
+     * Returns the packed cherry cell
+     * @return the packed cherry cell, -1 when there is no cherry
+     */
+    public int getCherry() {
+        return myCherry;
+    }
+
+    /**
+     * Returns the head cell before the last tick
+     * @return the head cell before the last tick, -1 when it did not move
+     */
+    public int getLastHead() {
+        return myLastHead;
+    }
+
+    /**
+     * Returns the cell the tail left on the last tick
+     * @return the freed cell, -1 when the tail did not leave one
+     */
+    public int getFreedTail() {
+        return myFreedTail;
+    }
+
+    /**
+     * Returns the number of ticks the game has survived
+     * @return the number of ticks the game has survived
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the System.nanoTime() of the tick the state was captured
+     * after, which frames between ticks are interpolated from
+     *
+     * @return the time of the tick in nanoseconds
+     */
+    public long getTime() {
+        return myTime;
+    }
+
+    /**
+     * Returns the game the state belongs to, states of the same game have
+     * the same generation
+     *
+     * @return the generation of the game
+     */
+    public long getGeneration() {
+        return myGeneration;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+/**
+ * The SafeController class is a Controller that keeps going straight until
+ * that would end the game, then tries turning left and finally right
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class SafeController implements Controller {
+
+    @Override
+    public Action nextAction(final SnekeEngine theEngine) {
+        Action action = Action.STRAIGHT;
+        if (!theEngine.isSafe(Action.STRAIGHT)) {
+            action = theEngine.isSafe(Action.LEFT) ? Action.LEFT : Action.RIGHT;
+        }
+        return action;
+    }
+}
@@ -0,0 +1,1227 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The SnekeEngine class holds the rules and state of a single Sneke game
+ * without depending on AWT or Swing, so it can be stepped as fast as the
+ * caller wants from any thread.
+ *
+ * Rows and columns are zero based, row 0 is the top of the matrix. The
+ * engine is driven by {@link #step(Action)} and is fully deterministic for a
+ * given seed passed to {@link #reset(long)}.
+ *
+ * The cells connect as a Topology describes, walls around the edges by
+ * default, and a move looks its next cell up in the Topology's table.
+ *
+ * For lookahead search the engine can fork in place: {@link #savepoint()}
+ * starts logging what every tick changes, and {@link #rollback(int)} undoes
+ * the ticks since a savepoint, so trying a line of play costs time in the
+ * ticks tried rather than in the matrix size. Savepoints nest, and
+ * {@link #releaseSavepoints()} keeps the current state and stops logging.
+ *
+ * Given an EventRing, the engine publishes what each tick changed as typed
+ * GameEvents, so a renderer or a score display can follow the game by its
+ * deltas instead of reading the whole state every frame.
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class SnekeEngine {
+
+    /** The smallest number of rows or columns a matrix can have */
+    public static final int MIN_DIMENSION = 10;
+
+    /** The matrix value of an empty cell */
+    public static final int EMPTY = 0;
+
+    /** The matrix value of a cell that holds part of the Sneke */
+    public static final int BODY = 1;
+
+    /** The matrix value of a cell that holds the cherry */
+    public static final int CHERRY = 2;
+
+    /** The matrix value of an obstacle of the Topology */
+    public static final int WALL = 3;
+
+    /** The initial capacity of the body ring buffer, must be a power of 2 */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The number of ints in an undo record: flags, freed tail, cherry */
+    private static final int UNDO_INTS = 3;
+
+    /** The number of longs in an undo record: score, ticks, random state */
+    private static final int UNDO_LONGS = 3;
+
+    /** The undo record flag set when the tick moved the Sneke */
+    private static final int UNDO_MOVED = 1 << 8;
+
+    /** The Directions by ordinal */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The DeathCauses by ordinal */
+    private static final DeathCause[] DEATH_CAUSES = DeathCause.values();
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The matrix that represents the game board
+     */
+    private final Board myMatrix;
+
+    /**
+     * How the cells connect
+     */
+    private final Topology myTopology;
+
+    /**
+     * The next-cell table of myTopology, null if the matrix is too large
+     * for one
+     */
+    private final int[] myNext;
+
+    /**
+     * The number of cells that are not obstacles, all of them are taken by
+     * the Sneke when the game is won
+     */
+    private final int myOpenCells;
+
+    /**
+     * The index of the cells that hold neither the Sneke nor the cherry
+     */
+    private final FreeCells myFreeCells;
+
+    /**
+     * The ring buffer of the Sneke body, each entry is a packed cell index
+     * (row * myCols + col). Its length is always a power of 2
+     */
+    private int[] myBody;
+
+    /**
+     * The position of the tail in myBody
+     */
+    private int myTail;
+
+    /**
+     * The number of cells the Sneke occupies
+     */
+    private int myLength;
+
+    /**
+     * The packed cell index of the head, cached so a move never reads the
+     * ring buffer
+     */
+    private int myHead;
+
+    /**
+     * The current direction the head of the Sneke is moving
+     */
+    private Direction myCurrentDirection;
+
+    /**
+     * The row of the cherry, -1 when there is no room left for one
+     */
+    private int myCherryRow;
+
+    /**
+     * The column of the cherry, -1 when there is no room left for one
+     */
+    private int myCherryCol;
+
+    /**
+     * The current game's score
+     */
+    private long myScore;
+
+    /**
+     * The number of ticks the current game has survived
+     */
+    private long myTicks;
+
+    /**
+     * Whether or not the current game is still running
+     */
+    private boolean myAlive;
+
+    /**
+     * Whether or not the current game ended with the Sneke filling the
+     * whole matrix
+     */
+    private boolean myWon;
+
+    /**
+     * Why the current game ended, null while it is running or if it was won
+     */
+    private DeathCause myDeathCause;
+
+    /**
+     * The seed the current game was started with
+     */
+    private long mySeed;
+
+    /**
+     * The state of the random number generator
+     */
+    private long myRandomState;
+
+    /**
+     * Whether or not changes are logged for rollback
+     */
+    private boolean myRecording;
+
+    /**
+     * The int fields of the undo records, UNDO_INTS per record
+     */
+    private int[] myUndoInts;
+
+    /**
+     * The long fields of the undo records, UNDO_LONGS per record
+     */
+    private long[] myUndoLongs;
+
+    /**
+     * The number of undo records
+     */
+    private int myUndoSize;
+
+    /**
+     * Where the changes of each tick are published, null when nothing
+     * listens
+     */
+    private EventRing myEvents;
+
+    /**
+     * Initializes a new SnekeEngine seeded from the system clock
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if theRows is less than 10
+     * @throws IllegalArgumentException if theCols is less than 10
+     */
+    public SnekeEngine(final int theRows, final int theCols) {
+        this(theRows, theCols, System.nanoTime());
+    }
+
+    /**
+     * Initializes a new SnekeEngine based on the matrix sizes and seed given,
+     * choosing the Board storage that suits the size
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theSeed the seed for the first game
+     * @throws IllegalArgumentException if theRows is less than 10
+     * @throws IllegalArgumentException if theCols is less than 10
+     * @throws IllegalArgumentException if the matrix has more than
+     *         Board.MAX_CELLS cells
+     */
+    public SnekeEngine(final int theRows, final int theCols,
+            final long theSeed) {
+        this(createBoard(theRows, theCols), theSeed);
+    }
+
+    /**
+     * Initializes a new SnekeEngine on a matrix shaped by theTopology,
+     * choosing the Board storage that suits the size
+     *
+     * @param theTopology how the cells connect
+     * @param theSeed the seed for the first game
+     * @throws NullPointerException if theTopology is null
+     * @throws IllegalArgumentException if theTopology has less than 10 rows
+     *         or columns
+     */
+    public SnekeEngine(final Topology theTopology, final long theSeed) {
+        this(createBoard(Objects.requireNonNull(theTopology,
+                "theTopology can not be null").getRows(),
+                theTopology.getCols()), theTopology, theSeed);
+    }
+
+    /**
+     * Initializes a new SnekeEngine on the given empty Board with walls
+     * around the edges
+     *
+     * @param theBoard the storage of the matrix, every cell must be EMPTY
+     * @param theSeed the seed for the first game
+     * @throws NullPointerException if theBoard is null
+     * @throws IllegalArgumentException if theBoard has less than 10 rows or
+     *         columns
+     */
+    public SnekeEngine(final Board theBoard, final long theSeed) {
+        this(theBoard, Topology.walls(Objects.requireNonNull(theBoard,
+                "theBoard can not be null").getRows(), theBoard.getCols()),
+                theSeed);
+    }
+
+    /**
+     * Initializes a new SnekeEngine on the given empty Board, its cells
+     * connected as theTopology describes
+     *
+     * @param theBoard the storage of the matrix, every cell must be EMPTY
+     * @param theTopology how the cells connect, of the same size as theBoard
+     * @param theSeed the seed for the first game
+     * @throws NullPointerException if theBoard or theTopology is null
+     * @throws IllegalArgumentException if theBoard has less than 10 rows or
+     *         columns or theTopology is of another size
+     */
+    public SnekeEngine(final Board theBoard, final Topology theTopology,
+            final long theSeed) {
+        myMatrix = Objects.requireNonNull(theBoard,
+                "theBoard can not be null");
+        myTopology = Objects.requireNonNull(theTopology,
+                "theTopology can not be null");
+        myRows = theBoard.getRows();
+        myCols = theBoard.getCols();
+        checkDimensions(myRows, myCols);
+        if (theTopology.getRows() != myRows
+                || theTopology.getCols() != myCols) {
+            throw new IllegalArgumentException(
+                    "theTopology is not the size of theBoard");
+        }
+        myNext = theTopology.table();
+        myFreeCells = new FreeCells(myRows * myCols);
+        // obstacles stay on the matrix and out of the free cells for good
+        if (theTopology.getObstacleCount() > 0) {
+            for (int cell = 0; cell < myRows * myCols; cell++) {
+                if (theTopology.isObstacle(cell)) {
+                    myMatrix.set(cell, WALL);
+                    myFreeCells.markUsed(cell);
+                }
+            }
+        }
+        myOpenCells = myRows * myCols - theTopology.getObstacleCount();
+        myBody = new int[INITIAL_CAPACITY];
+        myCherryRow = -1;
+        myCherryCol = -1;
+
+        reset(theSeed);
+    }
+
+    /**
+     * Resets the engine to the start of a new game and releases the
+     * savepoints
+     *
+     * @param theSeed the seed that determines every random choice of the game
+     */
+    public void reset(final long theSeed) {
+        releaseSavepoints();
+        clearCells();
+        myScore = 0;
+        myTicks = 0;
+        myAlive = true;
+        myWon = false;
+        myDeathCause = null;
+        mySeed = theSeed;
+        myRandomState = theSeed;
+
+        // set the head of the sneke, drawing again if it lands on an
+        // obstacle
+        int startRow;
+        int startCol;
+        do {
+            startRow = nextInt(myRows - 2) + 1;
+            startCol = nextInt(myCols - 2) + 1;
+        } while (myTopology.isObstacle(startRow * myCols + startCol));
+        addHead(startRow * myCols + startCol);
+
+        // set the starting direction depending on where
+        // the sneke head is located
+        // if the sneke is on the lower half of the matrix, go North
+        // if the sneke is on the upper half of the matrix, go South
+        myCurrentDirection = startRow > (myRows / 2) ?
+                Direction.NORTH : Direction.SOUTH;
+
+        // place the first cherry
+        spawnCherry();
+        publishReset();
+    }
+
+    /**
+     * Returns a copy of the current state of the game
+     *
+     * @return a copy of the current state of the game
+     */
+    public EngineSnapshot snapshot() {
+        final int[] body = new int[myLength];
+        for (int i = 0; i < myLength; i++) {
+            body[i] = getBodyCell(i);
+        }
+        return new EngineSnapshot(myRows, myCols, body, myCurrentDirection,
+                myCherryRow < 0 ? -1 : myCherryRow * myCols + myCherryCol,
+                myScore, myTicks, myAlive, myWon, myDeathCause, mySeed,
+                myRandomState);
+    }
+
+    /**
+     * Puts the game back in the state theSnapshot was taken in. Takes time
+     * in the length of the Sneke before and after, not the matrix size, and
+     * releases the savepoints. theSnapshot must have been taken on the same
+     * Topology
+     *
+     * @param theSnapshot the state to restore
+     * @throws NullPointerException if theSnapshot is null
+     * @throws IllegalArgumentException if theSnapshot was taken of a matrix
+     *         of another size, or does not fit the Topology, in which case
+     *         the game is left as it was
+     */
+    public void restore(final EngineSnapshot theSnapshot) {
+        Objects.requireNonNull(theSnapshot, "theSnapshot can not be null");
+        if (theSnapshot.getRows() != myRows
+                || theSnapshot.getCols() != myCols) {
+            throw new IllegalArgumentException("theSnapshot is of a "
+                    + theSnapshot.getRows() + "x" + theSnapshot.getCols()
+                    + " matrix, not " + myRows + "x" + myCols);
+        }
+        checkFits(theSnapshot);
+        releaseSavepoints();
+        clearCells();
+
+        final int[] body = theSnapshot.body();
+        if (myBody.length < body.length) {
+            myBody = new int[Math.max(INITIAL_CAPACITY,
+                    Integer.highestOneBit(body.length - 1) << 1)];
+        }
+        for (int cell : body) {
+            addHead(cell);
+        }
+        final int cherry = theSnapshot.getCherry();
+        if (cherry >= 0) {
+            myCherryRow = cherry / myCols;
+            myCherryCol = cherry % myCols;
+            myMatrix.set(cherry, CHERRY);
+            myFreeCells.markUsed(cherry);
+        }
+
+        myCurrentDirection = theSnapshot.getDirection();
+        myScore = theSnapshot.getScore();
+        myTicks = theSnapshot.getTicks();
+        myAlive = theSnapshot.isAlive();
+        myWon = theSnapshot.hasWon();
+        myDeathCause = theSnapshot.getDeathCause();
+        mySeed = theSnapshot.getSeed();
+        myRandomState = theSnapshot.getRandomState();
+        publishReset();
+    }
+
+    /**
+     * Checks that the body of theSnapshot is on open cells of the Topology,
+     * each next to the one before and none twice, and that the cherry is on
+     * an open cell off the body
+     *
+     * @param theSnapshot the state to check, of a matrix of this size
+     * @throws IllegalArgumentException if theSnapshot does not fit
+     */
+    private void checkFits(final EngineSnapshot theSnapshot) {
+        final int[] body = theSnapshot.body();
+        if (body.length == 0) {
+            throw new IllegalArgumentException("theSnapshot has no body");
+        }
+        final int cells = myRows * myCols;
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] < 0 || body[i] >= cells
+                    || myTopology.isObstacle(body[i])) {
+                throw new IllegalArgumentException("body cell " + body[i]
+                        + " is not open");
+            }
+            if (i > 0 && !isNeighbour(body[i - 1], body[i])) {
+                throw new IllegalArgumentException("body cells " + body[i - 1]
+                        + " and " + body[i] + " are not connected");
+            }
+        }
+
+        final int[] sorted = body.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("body cell " + sorted[i]
+                        + " is used twice");
+            }
+        }
+        final int cherry = theSnapshot.getCherry();
+        if (cherry >= 0 && (cherry >= cells || myTopology.isObstacle(cherry)
+                || Arrays.binarySearch(sorted, cherry) >= 0)) {
+            throw new IllegalArgumentException("cherry cell " + cherry
+                    + " is not open");
+        }
+    }
+
+    /**
+     * Applies theAction to the current direction and moves the Sneke one
+     * cell
+     *
+     * @param theAction the turn to make before moving
+     * @throws NullPointerException if theAction is null
+     * @return whether or not the game should continue
+     */
+    public boolean step(final Action theAction) {
+        Objects.requireNonNull(theAction, "theAction can not be null");
+        if (myRecording) {
+            record();
+        }
+        myCurrentDirection = theAction.apply(myCurrentDirection);
+        return move();
+    }
+
+    /**
+     * Moves the Sneke one cell in the current direction
+     *
+     * @return whether or not the game should continue
+     */
+    public boolean update() {
+        if (myRecording) {
+            record();
+        }
+        return move();
+    }
+
+    /**
+     * Starts a fork of the game: from now on every change is logged until
+     * it is rolled back or the savepoints are released
+     *
+     * @return the savepoint to pass to rollback
+     */
+    public int savepoint() {
+        if (myUndoInts == null) {
+            myUndoInts = new int[UNDO_INTS * INITIAL_CAPACITY];
+            myUndoLongs = new long[UNDO_LONGS * INITIAL_CAPACITY];
+        }
+        myRecording = true;
+        return myUndoSize;
+    }
+
+    /**
+     * Undoes every change since theSavepoint was taken, in time proportional
+     * to the number of changes. Later savepoints can no longer be used, but
+     * theSavepoint and earlier ones can
+     *
+     * @param theSavepoint a savepoint returned since the savepoints were last
+     *         released
+     * @throws IllegalArgumentException if theSavepoint is not a savepoint
+     *         that is still valid
+     */
+    public void rollback(final int theSavepoint) {
+        if (!myRecording || theSavepoint < 0 || theSavepoint > myUndoSize) {
+            throw new IllegalArgumentException(
+                    "theSavepoint is not a valid savepoint");
+        }
+        while (myUndoSize > theSavepoint) {
+            undo(--myUndoSize);
+        }
+    }
+
+    /**
+     * Keeps the current state of the game, forgets every savepoint and stops
+     * logging changes
+     */
+    public void releaseSavepoints() {
+        final boolean kept = myUndoSize > 0;
+        myRecording = false;
+        myUndoSize = 0;
+        if (kept) {
+            publishReset();
+        }
+    }
+
+    /**
+     * Sets where the changes of each tick are published. Changes made while
+     * savepoints are held are not published, a RESET is published instead
+     * if they are kept
+     *
+     * @param theEvents the EventRing, or null to stop publishing
+     */
+    public void setEvents(final EventRing theEvents) {
+        myEvents = theEvents;
+    }
+
+    /**
+     * Returns where the changes of each tick are published
+     * @return the EventRing, or null if changes are not published
+     */
+    public EventRing getEvents() {
+        return myEvents;
+    }
+
+    /**
+     * Returns whether or not theAction would keep the Sneke alive on the
+     * next tick
+     *
+     * @param theAction the Action to test
+     * @throws NullPointerException if theAction is null
+     * @return whether or not theAction is a safe move
+     */
+    public boolean isSafe(final Action theAction) {
+        final Direction direction = Objects.requireNonNull(theAction,
+                "theAction can not be null").apply(myCurrentDirection);
+        return isValidMove(next(myHead, direction));
+    }
+
+    /**
+     * Returns how the cells of the matrix connect
+     * @return the Topology of the matrix
+     */
+    public Topology getTopology() {
+        return myTopology;
+    }
+
+    /**
+     * Returns the number of rows in the matrix
+     * @return the number of rows in the matrix
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns in the matrix
+     * @return the number of columns in the matrix
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the current game's score
+     * @return the current game's score
+     */
+    public long getScore() {
+        return myScore;
+    }
+
+    /**
+     * Returns the number of ticks the current game has survived
+     * @return the number of ticks the current game has survived
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the seed the current game was started with
+     * @return the seed the current game was started with
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Returns whether or not the current game is still running
+     * @return whether or not the current game is still running
+     */
+    public boolean isAlive() {
+        return myAlive;
+    }
+
+    /**
+     * Returns whether or not the current game ended with the Sneke filling
+     * the whole matrix
+     * @return whether or not the current game was won
+     */
+    public boolean hasWon() {
+        return myWon;
+    }
+
+    /**
+     * Returns why the current game ended
+     * @return why the current game ended, or null while it is running or if
+     *         it was won
+     */
+    public DeathCause getDeathCause() {
+        return myDeathCause;
+    }
+
+    /**
+     * Returns the number of cells that hold neither the Sneke nor the cherry
+     * @return the number of free cells
+     */
+    public int getFreeCellCount() {
+        return myFreeCells.size();
+    }
+
+    /**
+     * Returns the number of cells the Sneke occupies
+     * @return the number of cells the Sneke occupies
+     */
+    public int getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns the row of the given body segment
+     *
+     * @param theIndex the segment, 0 is the tail and getLength() - 1 the head
+     * @throws IndexOutOfBoundsException if theIndex is not a segment
+     * @return the row of the given body segment
+     */
+    public int getBodyRow(final int theIndex) {
+        return getBodyCell(theIndex) / myCols;
+    }
+
+    /**
+     * Returns the column of the given body segment
+     *
+     * @param theIndex the segment, 0 is the tail and getLength() - 1 the head
+     * @throws IndexOutOfBoundsException if theIndex is not a segment
+     * @return the column of the given body segment
+     */
+    public int getBodyCol(final int theIndex) {
+        return getBodyCell(theIndex) % myCols;
+    }
+
+    /**
+     * Returns the packed cell index (row * getCols() + col) of the given body
+     * segment
+     *
+     * @param theIndex the segment, 0 is the tail and getLength() - 1 the head
+     * @throws IndexOutOfBoundsException if theIndex is not a segment
+     * @return the packed cell index of the given body segment
+     */
+    public int getBodyCell(final int theIndex) {
+        return myBody[(myTail + Objects.checkIndex(theIndex, myLength))
+                & (myBody.length - 1)];
+    }
+
+    /**
+     * Copies the packed cells of the body, from the tail to the head, into
+     * the start of theCells with at most two array copies
+     *
+     * @param theCells where the cells are copied, at least getLength() long
+     * @throws IndexOutOfBoundsException if theCells is too short
+     */
+    void copyBody(final int[] theCells) {
+        final int first = Math.min(myLength, myBody.length - myTail);
+        System.arraycopy(myBody, myTail, theCells, 0, first);
+        System.arraycopy(myBody, 0, theCells, first, myLength - first);
+    }
+
+    /**
+     * Returns the row of the Sneke head
+     * @return the row of the Sneke head
+     */
+    public int getHeadRow() {
+        return myHead / myCols;
+    }
+
+    /**
+     * Returns the column of the Sneke head
+     * @return the column of the Sneke head
+     */
+    public int getHeadCol() {
+        return myHead % myCols;
+    }
+
+    /**
+     * Returns the row of the cherry, or -1 if there is no cherry
+     * @return the row of the cherry
+     */
+    public int getCherryRow() {
+        return myCherryRow;
+    }
+
+    /**
+     * Returns the column of the cherry, or -1 if there is no cherry
+     * @return the column of the cherry
+     */
+    public int getCherryCol() {
+        return myCherryCol;
+    }
+
+    /**
+     * Returns the value of the given cell, one of EMPTY, BODY, CHERRY or
+     * WALL
+     *
+     * @param theRow the row of the cell
+     * @param theCol the column of the cell
+     * @throws IndexOutOfBoundsException if the cell is not on the matrix
+     * @return the value of the given cell
+     */
+    public int getCell(final int theRow, final int theCol) {
+        return myMatrix.get(Objects.checkIndex(theRow, myRows) * myCols
+                + Objects.checkIndex(theCol, myCols));
+    }
+
+    /**
+     * Returns the current Direction that the Sneke is moving
+     * @return the current Direction that the Sneke is moving
+     */
+    public Direction getCurrentDirection() {
+        return myCurrentDirection;
+    }
+
+    /**
+     * Sets the current direction the Sneke is moving
+     *
+     * @param theNewDirection the new direction to move towards
+     * @throws NullPointerException if theNewDirection is null
+     */
+    public void setCurrentDirection(final Direction theNewDirection) {
+        Objects.requireNonNull(theNewDirection,
+                "theNewDirection can not be null");
+        if (myRecording) {
+            record();
+        }
+        myCurrentDirection = theNewDirection;
+    }
+
+    /**
+     * Checks that the matrix, the body, the cherry and the free cells all
+     * agree: every body cell is BODY on the matrix and next to the one
+     * before it, no other cell is BODY, the cherry is the only CHERRY,
+     * obstacles are WALL, the free cells are exactly the EMPTY cells, and
+     * a won game fills every open cell. Takes time in the size of the
+     * matrix, so soak runs call it at a sampled rate
+     *
+     * @throws IllegalStateException describing the first broken invariant
+     */
+    public void checkInvariants() {
+        if (myLength < 1 || myLength > myOpenCells) {
+            throw new IllegalStateException("length " + myLength
+                    + " is not between 1 and " + myOpenCells);
+        }
+        if (myHead != getBodyCell(myLength - 1)) {
+            throw new IllegalStateException("cached head " + myHead
+                    + " is not the last body cell "
+                    + getBodyCell(myLength - 1));
+        }
+        for (int i = 0; i < myLength; i++) {
+            final int cell = getBodyCell(i);
+            if (cell < 0 || cell >= myRows * myCols
+                    || myMatrix.get(cell) != BODY) {
+                throw new IllegalStateException("body cell " + i + " ("
+                        + cell + ") is not BODY on the matrix");
+            }
+            if (i > 0 && !isNeighbour(getBodyCell(i - 1), cell)) {
+                throw new IllegalStateException("body cell " + i + " ("
+                        + cell + ") is not next to body cell " + (i - 1)
+                        + " (" + getBodyCell(i - 1) + ")");
+            }
+        }
+
+        int bodies = 0;
+        int cherries = 0;
+        int empties = 0;
+        for (int cell = 0; cell < myRows * myCols; cell++) {
+            final int value = myMatrix.get(cell);
+            if ((value == WALL) != myTopology.isObstacle(cell)) {
+                throw new IllegalStateException("cell " + cell
+                        + " is " + value + " on the matrix but "
+                        + (value == WALL ? "not " : "") + "an obstacle");
+            }
+            if ((value == EMPTY) != myFreeCells.isFree(cell)) {
+                throw new IllegalStateException("cell " + cell
+                        + " is " + value + " on the matrix but "
+                        + (value == EMPTY ? "not " : "") + "free");
+            }
+            if (value == BODY) {
+                bodies++;
+            } else if (value == CHERRY) {
+                cherries++;
+            } else if (value == EMPTY) {
+                empties++;
+            }
+        }
+        if (bodies != myLength) {
+            throw new IllegalStateException(bodies + " BODY cells on the "
+                    + "matrix for a Sneke of length " + myLength);
+        }
+        if (empties != myFreeCells.size()) {
+            throw new IllegalStateException(empties + " EMPTY cells but "
+                    + myFreeCells.size() + " free cells");
+        }
+        if (myCherryRow < 0) {
+            if (cherries != 0 || empties != 0) {
+                throw new IllegalStateException("no cherry with "
+                        + cherries + " CHERRY and " + empties
+                        + " EMPTY cells");
+            }
+        } else if (cherries != 1
+                || myMatrix.get(myCherryRow * myCols + myCherryCol)
+                != CHERRY) {
+            throw new IllegalStateException(cherries + " CHERRY cells with"
+                    + " the cherry at " + myCherryRow + "," + myCherryCol);
+        }
+        if (myWon != (myLength == myOpenCells)) {
+            throw new IllegalStateException("won is " + myWon
+                    + " with " + myLength + " of " + myOpenCells
+                    + " open cells taken");
+        }
+        if (myAlive == (myWon || myDeathCause != null)) {
+            throw new IllegalStateException("alive is " + myAlive
+                    + " with won " + myWon + " and death " + myDeathCause);
+        }
+    }
+
+    /**
+     * Moves the Sneke one cell in the current direction
+     *
+     * @return whether or not the game should continue
+     */
+    private boolean move() {
+        if (!myAlive) {
+            return false;
+        }
+
+        final int next = next(myHead, myCurrentDirection);
+        if (!isValidMove(next)) {
+            myAlive = false;
+            myDeathCause = next < 0 ? DeathCause.WALL : DeathCause.SELF;
+            if (myEvents != null && !myRecording) {
+                publishDeath(myHead, myDeathCause.ordinal());
+            }
+            return false;
+        }
+
+        // check to see if our move makes us eat a cherry
+        final boolean ateCherry = myMatrix.get(next) == CHERRY;
+        final int oldHead = myHead;
+        final int freed = ateCherry ? -1 : myBody[myTail];
+
+        addHead(next);
+        if (myRecording) {
+            recordMove(freed);
+        }
+        if (ateCherry) {
+            // the sneke grows, so keep the tail and place a new cherry
+            spawnCherry();
+        } else {
+            removeTail();
+        }
+        increaseScore(ateCherry);
+        myTicks++;
+
+        // the sneke fills the whole matrix, the game is won
+        if (myLength == myOpenCells) {
+            myWon = true;
+            myAlive = false;
+        }
+        if (myEvents != null && !myRecording) {
+            publishMove(oldHead, next, freed);
+        }
+        return myAlive;
+    }
+
+    /**
+     * Logs the state a tick or a turn is about to change, the cells it
+     * changes are added by recordMove
+     */
+    private void record() {
+        if (myUndoSize * UNDO_INTS == myUndoInts.length) {
+            myUndoInts = Arrays.copyOf(myUndoInts, myUndoInts.length * 2);
+            myUndoLongs = Arrays.copyOf(myUndoLongs, myUndoLongs.length * 2);
+        }
+        final int ints = myUndoSize * UNDO_INTS;
+        myUndoInts[ints] = myCurrentDirection.ordinal()
+                | (myAlive ? 1 << 2 : 0) | (myWon ? 1 << 3 : 0)
+                | (myDeathCause == null ? 0 : myDeathCause.ordinal() + 1) << 4;
+        myUndoInts[ints + 1] = -1;
+        myUndoInts[ints + 2] = myCherryRow < 0 ? -1 :
+                myCherryRow * myCols + myCherryCol;
+        final int longs = myUndoSize * UNDO_LONGS;
+        myUndoLongs[longs] = myScore;
+        myUndoLongs[longs + 1] = myTicks;
+        myUndoLongs[longs + 2] = myRandomState;
+        myUndoSize++;
+    }
+
+    /**
+     * Adds the move of the tick being logged to its undo record
+     *
+     * @param theFreedTail the packed cell the tail leaves, -1 if the Sneke
+     *         ate and keeps its tail
+     */
+    private void recordMove(final int theFreedTail) {
+        final int ints = (myUndoSize - 1) * UNDO_INTS;
+        myUndoInts[ints] |= UNDO_MOVED;
+        myUndoInts[ints + 1] = theFreedTail;
+    }
+
+    /**
+     * Undoes one logged tick or turn
+     *
+     * @param theRecord the index of the undo record
+     */
+    private void undo(final int theRecord) {
+        final int ints = theRecord * UNDO_INTS;
+        final int flags = myUndoInts[ints];
+        final int freedTail = myUndoInts[ints + 1];
+        final int cherry = myUndoInts[ints + 2];
+
+        if ((flags & UNDO_MOVED) != 0) {
+            // take the head back off
+            myLength--;
+            if (freedTail < 0) {
+                // the head is back on the cherry it ate, and the cherry that
+                // spawned afterwards is gone
+                if (myCherryRow >= 0) {
+                    final int spawned = myCherryRow * myCols + myCherryCol;
+                    myMatrix.set(spawned, EMPTY);
+                    myFreeCells.markFree(spawned);
+                }
+                myMatrix.set(myHead, CHERRY);
+            } else {
+                myMatrix.set(myHead, EMPTY);
+                myFreeCells.markFree(myHead);
+                myTail = (myTail - 1) & (myBody.length - 1);
+                myBody[myTail] = freedTail;
+                myLength++;
+                myMatrix.set(freedTail, BODY);
+                myFreeCells.markUsed(freedTail);
+            }
+            myHead = myBody[(myTail + myLength - 1) & (myBody.length - 1)];
+        }
+
+        myCurrentDirection = DIRECTIONS[flags & 3];
+        myAlive = (flags & 1 << 2) != 0;
+        myWon = (flags & 1 << 3) != 0;
+        final int deathCause = (flags >> 4) & 3;
+        myDeathCause = deathCause == 0 ? null : DEATH_CAUSES[deathCause - 1];
+        myCherryRow = cherry < 0 ? -1 : cherry / myCols;
+        myCherryCol = cherry < 0 ? -1 : cherry % myCols;
+        final int longs = theRecord * UNDO_LONGS;
+        myScore = myUndoLongs[longs];
+        myTicks = myUndoLongs[longs + 1];
+        myRandomState = myUndoLongs[longs + 2];
+    }
+
+    /**
+     * Empties the cells the Sneke and the cherry hold, leaving the rest of
+     * the matrix alone
+     */
+    private void clearCells() {
+        for (int i = 0; i < myLength; i++) {
+            final int cell = getBodyCell(i);
+            myMatrix.set(cell, EMPTY);
+            myFreeCells.markFree(cell);
+        }
+        if (myCherryRow >= 0) {
+            final int cherry = myCherryRow * myCols + myCherryCol;
+            myMatrix.set(cherry, EMPTY);
+            myFreeCells.markFree(cherry);
+        }
+        myTail = 0;
+        myLength = 0;
+        myCherryRow = -1;
+        myCherryCol = -1;
+    }
+
+    /**
+     * Spawns a cherry on a random free cell with a single random draw, or
+     * removes the cherry if no cell is free
+     */
+    private void spawnCherry() {
+        if (myFreeCells.size() == 0) {
+            myCherryRow = -1;
+            myCherryCol = -1;
+            return;
+        }
+
+        final int cell = myFreeCells.select(nextInt(myFreeCells.size()));
+        myFreeCells.markUsed(cell);
+        myCherryRow = cell / myCols;
+        myCherryCol = cell % myCols;
+        myMatrix.set(cell, CHERRY);
+    }
+
+    /**
+     * Adds the given cell as the new head of the Sneke
+     *
+     * @param theCell the packed cell of the new head
+     */
+    private void addHead(final int theCell) {
+        if (myLength == myBody.length) {
+            growBody();
+        }
+        myHead = theCell;
+        myBody[(myTail + myLength) & (myBody.length - 1)] = myHead;
+        myLength++;
+        myMatrix.set(myHead, BODY);
+        myFreeCells.markUsed(myHead);
+    }
+
+    /**
+     * Removes the last segment of the Sneke to keep it the same size
+     */
+    private void removeTail() {
+        final int tail = myBody[myTail];
+        myMatrix.set(tail, EMPTY);
+        myFreeCells.markFree(tail);
+        myTail = (myTail + 1) & (myBody.length - 1);
+        myLength--;
+    }
+
+    /**
+     * Doubles the capacity of the body ring buffer, unwrapping it so the
+     * tail is at position 0. Only happens when the Sneke grows past a power
+     * of 2, so the cost is amortized over the ticks that led there
+     */
+    private void growBody() {
+        final int[] body = new int[myBody.length * 2];
+        final int firstPart = myBody.length - myTail;
+        System.arraycopy(myBody, myTail, body, 0, firstPart);
+        System.arraycopy(myBody, 0, body, firstPart, myTail);
+        myBody = body;
+        myTail = 0;
+    }
+
+    /**
+     * Increments the current score depending on the state of the game and
+     * whether or not the current move resulted in eating a cherry
+     * @param theSnekeAteCherry whether or not the current move
+     *         resulted in eating a cherry
+     */
+    private void increaseScore(final boolean theSnekeAteCherry) {
+        myScore += theSnekeAteCherry ? myLength * 10L : myLength;
+    }
+
+    /**
+     * Returns whether or not the Sneke can move onto the given cell
+     *
+     * @param theCell the packed cell the head would move to, -1 if the move
+     *         hits an edge or an obstacle
+     * @return whether or not the given cell is a valid move
+     */
+    private boolean isValidMove(final int theCell) {
+        return theCell >= 0 && myMatrix.get(theCell) != BODY;
+    }
+
+    /**
+     * Returns the cell a move from theCell in theDirection leads to, a
+     * single load from the next-cell table when there is one
+     *
+     * @param theCell the packed cell
+     * @param theDirection the Direction of the move
+     * @return the packed next cell, or -1 if the move is blocked
+     */
+    private int next(final int theCell, final Direction theDirection) {
+        return myNext != null ?
+                myNext[(theCell << 2) | theDirection.ordinal()] :
+                myTopology.next(theCell, theDirection.ordinal());
+    }
+
+    /**
+     * Publishes the changes of a move. Kept out of move so the tick stays
+     * small enough to inline when nothing listens
+     *
+     * @param theOldHead the cell the head moved from
+     * @param theNewHead the cell the head moved to
+     * @param theFreed the cell the tail left, -1 if a cherry was eaten
+     */
+    private void publishMove(final int theOldHead, final int theNewHead,
+            final int theFreed) {
+        myEvents.publish(GameEvent.HEAD_MOVED, theNewHead, theOldHead);
+        if (theFreed < 0) {
+            myEvents.publish(GameEvent.CHERRY_EATEN, theNewHead, 0);
+            if (myCherryRow >= 0) {
+                myEvents.publish(GameEvent.CHERRY_SPAWNED,
+                        myCherryRow * myCols + myCherryCol, 0);
+            }
+        } else {
+            myEvents.publish(GameEvent.TAIL_FREED, theFreed, 0);
+        }
+        myEvents.publish(GameEvent.SCORE_CHANGED, -1, myScore);
+        if (myWon) {
+            myEvents.publish(GameEvent.DIED, theNewHead, -1);
+        }
+        myEvents.endTick(myTicks);
+    }
+
+    /**
+     * Publishes a death
+     *
+     * @param theCell the cell of the head
+     * @param theCause the ordinal of the DeathCause
+     */
+    private void publishDeath(final int theCell, final int theCause) {
+        myEvents.publish(GameEvent.DIED, theCell, theCause);
+        myEvents.endTick(myTicks);
+    }
+
+    /**
+     * Publishes that the whole state changed, if changes are published
+     */
+    private void publishReset() {
+        if (myEvents != null && !myRecording) {
+            myEvents.publish(GameEvent.RESET, -1, mySeed);
+            myEvents.endTick(myTicks);
+        }
+    }
+
+    /**
+     * Returns whether or not a move from theFrom in some Direction leads to
+     * theCell
+     *
+     * @param theFrom the packed cell the move starts on
+     * @param theCell the packed cell to reach
+     * @return whether or not the cells are next to each other
+     */
+    private boolean isNeighbour(final int theFrom, final int theCell) {
+        for (Direction direction : DIRECTIONS) {
+            if (next(theFrom, direction) == theCell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the matrix size and returns an empty Board for it
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if the size is not allowed
+     * @return an empty Board of the given size
+     */
+    private static Board createBoard(final int theRows, final int theCols) {
+        checkDimensions(theRows, theCols);
+        return Board.create(theRows, theCols);
+    }
+
+    /**
+     * Checks that the matrix is at least 10 by 10
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if theRows is less than 10
+     * @throws IllegalArgumentException if theCols is less than 10
+     */
+    private static void checkDimensions(final int theRows,
+            final int theCols) {
+        if (theRows < MIN_DIMENSION) {
+            throw new IllegalArgumentException(
+                    "theRows can not be less than " + MIN_DIMENSION);
+        }
+        if (theCols < MIN_DIMENSION) {
+            throw new IllegalArgumentException(
+                    "theCols can not be less than " + MIN_DIMENSION);
+        }
+    }
+
+    /**
+     * Returns a pseudo random int between 0 (inclusive) and theBound
+     * (exclusive) using a SplitMix64 generator so games are reproducible
+     *
+     * @param theBound the upper bound, must be positive
+     * @return a pseudo random int between 0 and theBound
+     */
+    private int nextInt(final int theBound) {
+        myRandomState += 0x9E3779B97F4A7C15L;
+        long z = myRandomState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 32) * theBound) >>> 32);
+    }
+
+} // end of SnekeEngine class
@@ -0,0 +1,154 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The StartupProbe class times how long the window takes to come up: from
+ * the start of the JVM to main, from main to the first frame of the matrix
+ * on the screen, and from there to the EDT being free to handle the first
+ * key press.
+ *
+ * It only measures when the sneke.startup.probe system property is set,
+ * and prints one line to stderr once the input is ready. Setting the
+ * property to exit also ends the JVM after printing, so a script can time
+ * many cold starts in a row. Each moment is only marked the first time
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class StartupProbe {
+
+    /** The system property that turns the probe on */
+    public static final String PROPERTY = "sneke.startup.probe";
+
+    /** The value of PROPERTY that ends the JVM after the report */
+    public static final String EXIT = "exit";
+
+    /** The value of PROPERTY, null when the probe is off */
+    private static final String MODE = System.getProperty(PROPERTY);
+
+    /** Where the report is printed */
+    private static final PrintStream OUT = System.err;
+
+    /** The probe of this JVM, null when it is off */
+    private static final StartupProbe PROBE =
+            MODE != null ? new StartupProbe() : null;
+
+    /**
+     * The System.nanoTime main started at, 0 until it is marked
+     */
+    private volatile long myMainNanos;
+
+    /**
+     * The System.currentTimeMillis main started at
+     */
+    private volatile long myMainMillis;
+
+    /**
+     * The System.nanoTime the first frame was shown at, 0 until it is
+     */
+    private volatile long myFrameNanos;
+
+    /**
+     * Whether or not the input ready moment was marked and reported
+     */
+    private boolean myReported;
+
+    /**
+     * Initializes the probe of this JVM
+     */
+    private StartupProbe() {
+        super();
+    }
+
+    /**
+     * Returns whether or not the probe is measuring
+     * @return whether or not the probe is measuring
+     */
+    public static boolean isEnabled() {
+        return PROBE != null;
+    }
+
+    /**
+     * Marks the start of main, call it first thing in main
+     */
+    public static void markMain() {
+        if (PROBE != null && PROBE.myMainNanos == 0) {
+            PROBE.myMainMillis = System.currentTimeMillis();
+            PROBE.myMainNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marks the first frame of the matrix being shown, runs on the game
+     * loop thread
+     */
+    public static void markFirstFrame() {
+        if (PROBE != null && PROBE.myFrameNanos == 0) {
+            PROBE.myFrameNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marks the EDT being ready for the first key press and prints the
+     * report, ending the JVM afterwards if the probe is set to exit. Runs
+     * on the EDT
+     */
+    public static void markInputReady() {
+        if (PROBE != null) {
+            PROBE.report();
+        }
+    }
+
+    /**
+     * Prints the report the first time it is called, ending the JVM
+     * afterwards if the probe is set to exit
+     */
+    private synchronized void report() {
+        if (myReported) {
+            return;
+        }
+        myReported = true;
+        final long ready = System.nanoTime();
+        final long main = myMainNanos != 0 ? myMainNanos : ready;
+        final long frame = myFrameNanos != 0 ? myFrameNanos : ready;
+        final long jvm = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli).orElse(-1L);
+
+        final StringBuilder report = new StringBuilder("startup:");
+        if (jvm > 0 && myMainNanos != 0) {
+            report.append(" jvm to main ").append(myMainMillis - jvm)
+                    .append(" ms,");
+        }
+        report.append(" main to first frame ").append(millis(frame - main))
+                .append(" ms, first frame to input ready ")
+                .append(millis(ready - frame)).append(" ms");
+        if (jvm > 0 && myMainNanos != 0) {
+            report.append(", jvm to input ready ").append(
+                    myMainMillis - jvm + millis(ready - main)).append(" ms");
+        }
+        OUT.println(report);
+
+        if (EXIT.equals(MODE)) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Returns theNanos in whole milliseconds
+     *
+     * @param theNanos a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static long millis(final long theNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(theNanos);
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The Topology class describes how the cells of a matrix connect: which
+ * cell a move in each Direction leads to, and which cells are obstacles.
+ * Walls are the classic rules, a torus wraps around the edges, and either
+ * can have obstacles loaded from a map.
+ *
+ * The next cell of every cell and Direction is worked out once, so a move is
+ * one array load from a table indexed by cell * 4 + the Direction ordinal,
+ * holding -1 where a move hits the edge or an obstacle. Matrices with more
+ * than TABLE_MAX_CELLS cells would need too large a table and work the
+ * next cell out on every move instead. A Topology is immutable and can be
+ * shared by any number of engines
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class Topology {
+
+    /** The most cells a matrix can have and still get a next-cell table */
+    public static final int TABLE_MAX_CELLS = 1 << 22;
+
+    /** The character of an obstacle in a map */
+    public static final char OBSTACLE = '#';
+
+    /** The character of an open cell in a map */
+    public static final char OPEN = '.';
+
+    /** The Directions by ordinal */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * Whether or not moves off an edge come back on the opposite edge
+     */
+    private final boolean myWrapping;
+
+    /**
+     * The obstacle cells as a bitset, null if there are none
+     */
+    private final long[] myObstacles;
+
+    /**
+     * The number of obstacle cells
+     */
+    private final int myObstacleCount;
+
+    /**
+     * The next cell of each cell in each Direction, -1 if the move is
+     * blocked, or null if the matrix is too large for a table
+     */
+    private final int[] myNext;
+
+    /**
+     * Initializes a new Topology and builds its next-cell table
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theWrapping whether or not the edges wrap around
+     * @param theObstacles the obstacle cells as a bitset, or null
+     */
+    private Topology(final int theRows, final int theCols,
+            final boolean theWrapping, final long[] theObstacles) {
+        final int cells = Board.cellCount(theRows, theCols);
+        myRows = theRows;
+        myCols = theCols;
+        myWrapping = theWrapping;
+        myObstacles = theObstacles;
+        int obstacles = 0;
+        if (theObstacles != null) {
+            for (long word : theObstacles) {
+                obstacles += Long.bitCount(word);
+            }
+        }
+        myObstacleCount = obstacles;
+
+        if (cells > TABLE_MAX_CELLS) {
+            myNext = null;
+        } else {
+            myNext = new int[cells * 4];
+            for (int cell = 0; cell < cells; cell++) {
+                for (Direction direction : DIRECTIONS) {
+                    myNext[(cell << 2) | direction.ordinal()] =
+                            computeNext(cell, direction);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a Topology with walls around the edges and no obstacles
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the matrix has more than Board.MAX_CELLS cells
+     * @return a Topology with walls
+     */
+    public static Topology walls(final int theRows, final int theCols) {
+        return new Topology(theRows, theCols, false, null);
+    }
+
+    /**
+     * Returns a Topology whose edges wrap around to the opposite edge, with
+     * no obstacles
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @throws IllegalArgumentException if theRows or theCols is not positive
+     *         or the matrix has more than Board.MAX_CELLS cells
+     * @return a torus Topology
+     */
+    public static Topology torus(final int theRows, final int theCols) {
+        return new Topology(theRows, theCols, true, null);
+    }
+
+    /**
+     * Returns a Topology with the obstacles of a map, one line per row
+     * where OBSTACLE is an obstacle and OPEN, or anything else, is open.
+     * Short lines are open past their end and blank lines at the end are
+     * ignored
+     *
+     * @param theLines the rows of the map
+     * @param theWrapping whether or not the edges wrap around
+     * @throws NullPointerException if theLines or one of them is null
+     * @throws IllegalArgumentException if the map has no rows or columns,
+     *         more than Board.MAX_CELLS cells, or no open cell away from
+     *         the edges for the Sneke to start on
+     * @return a Topology with the obstacles of the map
+     */
+    public static Topology parse(final List<String> theLines,
+            final boolean theWrapping) {
+        Objects.requireNonNull(theLines, "theLines can not be null");
+        int rows = theLines.size();
+        while (rows > 0 && theLines.get(rows - 1).trim().isEmpty()) {
+            rows--;
+        }
+        int cols = 0;
+        for (int row = 0; row < rows; row++) {
+            cols = Math.max(cols, theLines.get(row).length());
+        }
+        final long[] obstacles =
+                new long[(Board.cellCount(rows, cols) + 63) >>> 6];
+        for (int row = 0; row < rows; row++) {
+            final String line = theLines.get(row);
+            for (int col = 0; col < line.length(); col++) {
+                if (line.charAt(col) == OBSTACLE) {
+                    final int cell = row * cols + col;
+                    obstacles[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+        final Topology topology = new Topology(rows, cols, theWrapping,
+                obstacles);
+        if (!topology.hasStartCell()) {
+            throw new IllegalArgumentException(
+                    "the map has no open cell away from the edges");
+        }
+        return topology;
+    }
+
+    /**
+     * Returns a Topology with the obstacles of a map file, see parse
+     *
+     * @param theFile the map, in UTF-8
+     * @param theWrapping whether or not the edges wrap around
+     * @throws NullPointerException if theFile is null
+     * @throws IllegalArgumentException if the map is not valid
+     * @throws IOException if the file can not be read
+     * @return a Topology with the obstacles of the map
+     */
+    public static Topology read(final Path theFile, final boolean theWrapping)
+            throws IOException {
+        return parse(Files.readAllLines(Objects.requireNonNull(theFile,
+                "theFile can not be null"), StandardCharsets.UTF_8),
+                theWrapping);
+    }
+
+    /**
+     * Returns the Topology a command line names: walls, torus, or the path
+     * of a map file with walls, or with torus: in front of it to wrap
+     *
+     * @param theName the name of the Topology
+     * @param theRows the number of rows for walls and torus
+     * @param theCols the number of columns for walls and torus
+     * @throws NullPointerException if theName is null
+     * @throws IllegalArgumentException if the map is not valid
+     * @throws IOException if the map file can not be read
+     * @return the Topology
+     */
+    public static Topology named(final String theName, final int theRows,
+            final int theCols) throws IOException {
+        Objects.requireNonNull(theName, "theName can not be null");
+        switch (theName) {
+            case "walls":
+                return walls(theRows, theCols);
+            case "torus":
+                return torus(theRows, theCols);
+            default:
+                if (theName.startsWith("torus:")) {
+                    return read(Paths.get(theName.substring(6)), true);
+                }
+                return read(Paths.get(theName), false);
+        }
+    }
+
+    /**
+     * Returns the number of rows in the matrix
+     * @return the number of rows in the matrix
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns in the matrix
+     * @return the number of columns in the matrix
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns whether or not the edges wrap around
+     * @return whether or not the edges wrap around
+     */
+    public boolean isWrapping() {
+        return myWrapping;
+    }
+
+    /**
+     * Returns the number of obstacle cells
+     * @return the number of obstacle cells
+     */
+    public int getObstacleCount() {
+        return myObstacleCount;
+    }
+
+    /**
+     * Returns whether or not theCell is an obstacle
+     *
+     * @param theCell the packed cell index
+     * @return whether or not theCell is an obstacle
+     */
+    public boolean isObstacle(final int theCell) {
+        return myObstacles != null
+                && (myObstacles[theCell >>> 6] & 1L << theCell) != 0;
+    }
+
+    /**
+     * Returns the cell a move from theCell in the Direction with the given
+     * ordinal leads to
+     *
+     * @param theCell the packed cell index
+     * @param theDirection the Direction ordinal
+     * @return the packed next cell, or -1 if the move hits an edge or an
+     *         obstacle
+     */
+    public int next(final int theCell, final int theDirection) {
+        return myNext != null ? myNext[(theCell << 2) | theDirection] :
+                computeNext(theCell, DIRECTIONS[theDirection]);
+    }
+
+    /**
+     * Returns the next-cell table for engines to index directly
+     *
+     * @return the table, or null if the matrix is too large for one
+     */
+    int[] table() {
+        return myNext;
+    }
+
+    /**
+     * Works out the cell a move from theCell in theDirection leads to
+     *
+     * @param theCell the packed cell index
+     * @param theDirection the Direction of the move
+     * @return the packed next cell, or -1 if the move is blocked
+     */
+    private int computeNext(final int theCell, final Direction theDirection) {
+        int row = theCell / myCols;
+        int col = theCell % myCols;
+        switch (theDirection) {
+            case NORTH:
+                row--;
+                break;
+            case SOUTH:
+                row++;
+                break;
+            case EAST:
+                col++;
+                break;
+            default:
+                col--;
+                break;
+        }
+        if (myWrapping) {
+            row = (row + myRows) % myRows;
+            col = (col + myCols) % myCols;
+        } else if (row < 0 || row >= myRows || col < 0 || col >= myCols) {
+            return -1;
+        }
+        final int next = row * myCols + col;
+        return isObstacle(next) ? -1 : next;
+    }
+
+    /**
+     * Returns whether or not a cell away from the edges is open, where the
+     * Sneke can start
+     *
+     * @return whether or not there is a start cell
+     */
+    private boolean hasStartCell() {
+        for (int row = 1; row < myRows - 1; row++) {
+            for (int col = 1; col < myCols - 1; col++) {
+                if (!isObstacle(row * myCols + col)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
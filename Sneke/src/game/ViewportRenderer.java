@@ -0,0 +1,705 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The ViewportRenderer class draws a fixed size window onto the matrix of a
+ * SnekeEngine that is too large to fit on the screen. The window follows
+ * the head and can be zoomed in and out in steps of two, and only the
+ * squares inside it are ever looked at, so a frame costs the same on a
+ * board of a thousand squares or a hundred million.
+ *
+ * From DETAIL_ZOOM_SHIFT up each square is filled and the grid is drawn
+ * like a BoardRenderer does. Below it the squares are too small for that,
+ * so each pixel of the window is written straight into the int raster of
+ * the image: one or more pixels per square, or below one pixel per square
+ * the square at the corner of each pixel with the Sneke and the cherry
+ * drawn over it so they are never lost between samples.
+ *
+ * The squares are looked up on a Board of its own that the renderer keeps
+ * in step with the RenderStates it draws, so it never reads the engine
+ * while it ticks. After the next tick of the same game only the freed
+ * tail, the new head and the cherry are set; the whole body is only set
+ * again for a new game or after skipped ticks, so a long Sneke costs no
+ * more per tick than a short one. Zoomed out, the number of body squares
+ * in each 16 by 16 block tells a pixel whether any of its squares can be
+ * body without looking at them. The window is only drawn again after a
+ * tick or a change of zoom, and the Sneke is drawn where it is as of the
+ * last tick rather than part way through its move.
+ *
+ * A ViewportRenderer is not thread safe, it must be used on one thread,
+ * except that the zoom can be changed from any thread and takes effect on
+ * the next draw
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ViewportRenderer implements BoardView {
+
+    /** The smallest zoom, as a power of two of pixels per square */
+    public static final int MIN_ZOOM_SHIFT = -4;
+
+    /** The largest zoom, as a power of two of pixels per square */
+    public static final int MAX_ZOOM_SHIFT = 6;
+
+    /** The zoom a new ViewportRenderer starts at, 8 pixels per square */
+    public static final int DEFAULT_ZOOM_SHIFT = 3;
+
+    /** The smallest zoom squares are filled and the grid drawn at */
+    public static final int DETAIL_ZOOM_SHIFT = 2;
+
+    /**
+     * The side of the blocks body squares are counted in as a power of
+     * two, the most squares a pixel covers at MIN_ZOOM_SHIFT
+     */
+    private static final int BLOCK_SHIFT = -MIN_ZOOM_SHIFT;
+
+    /** The length of the body ring of a new renderer, a power of two */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The matrix as of the state drawn last
+     */
+    private final Board myBoard;
+
+    /**
+     * The window, drawn again when it is dirty
+     */
+    private final BufferedImage myImage;
+
+    /**
+     * The raster of the image, written directly below DETAIL_ZOOM_SHIFT
+     */
+    private final int[] myPixels;
+
+    /**
+     * The width of the window in pixels
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the window in pixels
+     */
+    private final int myHeight;
+
+    /**
+     * The zoom the window is drawn at, pixels per square as a power of two,
+     * negative when several squares share a pixel
+     */
+    private int myZoomShift;
+
+    /**
+     * The zoom set from any thread, the window is drawn at it next
+     */
+    private volatile int myZoomRequest;
+
+    /**
+     * The number of body squares in each block of the matrix, by block row
+     * then block column
+     */
+    private final int[] myBlockBody;
+
+    /**
+     * The number of blocks in a row of the matrix
+     */
+    private final int myBlockCols;
+
+    /**
+     * The body cells on myBoard from the tail to the head, a ring whose
+     * length is a power of two
+     */
+    private int[] myBody = new int[INITIAL_CAPACITY];
+
+    /**
+     * The index in myBody of the tail
+     */
+    private int myTail;
+
+    /**
+     * The number of body cells on myBoard
+     */
+    private int myLength;
+
+    /**
+     * The packed cherry cell on myBoard, -1 when there is none
+     */
+    private int myCherry = -1;
+
+    /**
+     * The generation of the state on myBoard, -1 before the first one
+     */
+    private long myDrawnGeneration = -1;
+
+    /**
+     * The ticks of the state on myBoard
+     */
+    private long myDrawnTicks;
+
+    /**
+     * The x of the left edge of the window in board pixels
+     */
+    private int myLeft;
+
+    /**
+     * The y of the top edge of the window in board pixels
+     */
+    private int myTop;
+
+    /**
+     * Whether or not the window has to be drawn again
+     */
+    private boolean myDirty = true;
+
+    /**
+     * Initializes a new ViewportRenderer at DEFAULT_ZOOM_SHIFT
+     *
+     * @param theEngine an engine of the size that is drawn
+     * @param theWidth the width of the window, in pixels
+     * @param theHeight the height of the window, in pixels
+     * @throws NullPointerException if theEngine is null
+     * @throws IllegalArgumentException if theWidth or theHeight is not
+     *         positive
+     */
+    public ViewportRenderer(final SnekeEngine theEngine, final int theWidth,
+            final int theHeight) {
+        if (theWidth <= 0 || theHeight <= 0) {
+            throw new IllegalArgumentException(
+                    "the window size must be positive");
+        }
+        final Topology topology = Objects.requireNonNull(theEngine,
+                "theEngine can not be null").getTopology();
+        myRows = topology.getRows();
+        myCols = topology.getCols();
+        myBoard = Board.create(myRows, myCols);
+        if (topology.getObstacleCount() > 0) {
+            for (int cell = 0; cell < myRows * myCols; cell++) {
+                if (topology.isObstacle(cell)) {
+                    myBoard.set(cell, SnekeEngine.WALL);
+                }
+            }
+        }
+        myBlockCols = (myCols + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        myBlockBody = new int[myBlockCols
+                * ((myRows + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT)];
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myImage = new BufferedImage(theWidth, theHeight,
+                BufferedImage.TYPE_INT_RGB);
+        myPixels = ((DataBufferInt) myImage.getRaster().getDataBuffer())
+                .getData();
+        myZoomShift = DEFAULT_ZOOM_SHIFT;
+        myZoomRequest = DEFAULT_ZOOM_SHIFT;
+    }
+
+    /**
+     * Returns the width of the window in pixels
+     * @return the width of the window in pixels
+     */
+    @Override
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Returns the height of the window in pixels
+     * @return the height of the window in pixels
+     */
+    @Override
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the zoom as a power of two of pixels per square
+     * @return the zoom shift
+     */
+    public int getZoomShift() {
+        return myZoomRequest;
+    }
+
+    /**
+     * Sets the zoom as a power of two of pixels per square, clamped between
+     * MIN_ZOOM_SHIFT and MAX_ZOOM_SHIFT. The window is drawn at it from
+     * the next draw on
+     *
+     * @param theZoomShift the zoom shift
+     */
+    public void setZoomShift(final int theZoomShift) {
+        myZoomRequest = Math.max(MIN_ZOOM_SHIFT,
+                Math.min(MAX_ZOOM_SHIFT, theZoomShift));
+    }
+
+    /**
+     * Doubles the size of the squares, up to MAX_ZOOM_SHIFT
+     */
+    public void zoomIn() {
+        setZoomShift(myZoomRequest + 1);
+    }
+
+    /**
+     * Halves the size of the squares, down to MIN_ZOOM_SHIFT
+     */
+    public void zoomOut() {
+        setZoomShift(myZoomRequest - 1);
+    }
+
+    /**
+     * Marks the window to be drawn again
+     */
+    @Override
+    public void renderBoard() {
+        myDirty = true;
+    }
+
+    /**
+     * Draws the window onto theState with its upper left corner at theX,
+     * theY, drawing it again first if the state or zoom changed. The Sneke
+     * is always drawn as of the last tick
+     *
+     * @param theGraphics the Graphics to draw with
+     * @param theX the x position of the window
+     * @param theY the y position of the window
+     * @param theState the state to draw, of the size the view was made for
+     * @param theAlpha ignored, the Sneke is not drawn between squares
+     * @throws NullPointerException if theGraphics or theState is null
+     * @throws IllegalArgumentException if theState has another matrix size
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics, final int theX,
+            final int theY, final RenderState theState,
+            final double theAlpha) {
+        Objects.requireNonNull(theGraphics, "theGraphics can not be null");
+        Objects.requireNonNull(theState, "theState can not be null");
+        if (theState.getRows() != myRows || theState.getCols() != myCols) {
+            throw new IllegalArgumentException("theState is not "
+                    + myRows + "x" + myCols);
+        }
+        update(theState);
+        final int zoomShift = myZoomRequest;
+        if (zoomShift != myZoomShift) {
+            myZoomShift = zoomShift;
+            myDirty = true;
+        }
+        if (myDirty) {
+            render();
+            myDirty = false;
+        }
+        theGraphics.drawImage(myImage, theX, theY, null);
+    }
+
+    /**
+     * Brings myBoard up to date with theState and marks the window to be
+     * drawn again: nothing when it is the state drawn last, the squares of
+     * one tick when it is the next tick of the same game, or else the
+     * whole body
+     *
+     * @param theState the state to draw
+     */
+    private void update(final RenderState theState) {
+        final boolean sameGame =
+                theState.getGeneration() == myDrawnGeneration;
+        if (sameGame && theState.getTicks() == myDrawnTicks) {
+            return;
+        }
+        if (sameGame && theState.getTicks() == myDrawnTicks + 1
+                && theState.getLastHead() >= 0) {
+            if (theState.getFreedTail() >= 0) {
+                removeTail();
+            }
+            addHead(theState.getHead());
+        } else {
+            while (myLength > 0) {
+                removeTail();
+            }
+            for (int i = 0; i < theState.getLength(); i++) {
+                addHead(theState.getBodyCell(i));
+            }
+        }
+
+        // an eaten cherry is already body
+        final int cherry = theState.getCherry();
+        if (cherry != myCherry) {
+            if (myCherry >= 0
+                    && myBoard.get(myCherry) == SnekeEngine.CHERRY) {
+                myBoard.set(myCherry, SnekeEngine.EMPTY);
+            }
+            if (cherry >= 0) {
+                myBoard.set(cherry, SnekeEngine.CHERRY);
+            }
+            myCherry = cherry;
+        }
+        myDrawnGeneration = theState.getGeneration();
+        myDrawnTicks = theState.getTicks();
+        myDirty = true;
+    }
+
+    /**
+     * Adds theCell to myBoard and the ring as the new head
+     *
+     * @param theCell the packed cell of the head
+     */
+    private void addHead(final int theCell) {
+        if (myLength == myBody.length) {
+            final int[] body = new int[myBody.length * 2];
+            for (int i = 0; i < myLength; i++) {
+                body[i] = myBody[(myTail + i) & (myBody.length - 1)];
+            }
+            myBody = body;
+            myTail = 0;
+        }
+        myBody[(myTail + myLength) & (myBody.length - 1)] = theCell;
+        myLength++;
+        myBoard.set(theCell, SnekeEngine.BODY);
+        myBlockBody[block(theCell)]++;
+    }
+
+    /**
+     * Takes the tail off myBoard and the ring
+     */
+    private void removeTail() {
+        final int cell = myBody[myTail];
+        myTail = (myTail + 1) & (myBody.length - 1);
+        myLength--;
+        myBoard.set(cell, SnekeEngine.EMPTY);
+        myBlockBody[block(cell)]--;
+    }
+
+    /**
+     * Returns the packed cell of the head on myBoard
+     * @return the packed cell of the head
+     */
+    private int head() {
+        return myBody[(myTail + myLength - 1) & (myBody.length - 1)];
+    }
+
+    /**
+     * Returns the index in myBlockBody of the block theCell is in
+     *
+     * @param theCell the packed cell
+     * @return the index of its block
+     */
+    private int block(final int theCell) {
+        return (theCell / myCols >> BLOCK_SHIFT) * myBlockCols
+                + (theCell % myCols >> BLOCK_SHIFT);
+    }
+
+    /**
+     * Moves the window over the head and draws it into the image
+     */
+    private void render() {
+        final int boardWidth = toPixel(myCols);
+        final int boardHeight = toPixel(myRows);
+        final int cellSize = myZoomShift > 0 ? 1 << myZoomShift : 1;
+        final int head = head();
+        myLeft = center(toPixel(head % myCols) + cellSize / 2,
+                myWidth, boardWidth);
+        myTop = center(toPixel(head / myCols) + cellSize / 2,
+                myHeight, boardHeight);
+
+        if (myZoomShift >= DETAIL_ZOOM_SHIFT) {
+            renderDetail();
+        } else {
+            renderRaster();
+        }
+    }
+
+    /**
+     * Fills each visible square and draws the grid over them
+     */
+    private void renderDetail() {
+        final int box = 1 << myZoomShift;
+        final int firstRow = Math.max(0, myTop >> myZoomShift);
+        final int firstCol = Math.max(0, myLeft >> myZoomShift);
+        final int endRow = Math.min(myRows,
+                (myTop + myHeight + box - 1) >> myZoomShift);
+        final int endCol = Math.min(myCols,
+                (myLeft + myWidth + box - 1) >> myZoomShift);
+
+        final Graphics2D g2d = myImage.createGraphics();
+        try {
+            g2d.setColor(GamePanel.BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, myWidth, myHeight);
+
+            // fill the squares that are not empty
+            for (int row = firstRow; row < endRow; row++) {
+                final int y = (row << myZoomShift) - myTop;
+                for (int col = firstCol; col < endCol; col++) {
+                    final int value = myBoard.get(row * myCols + col);
+                    if (value != SnekeEngine.EMPTY) {
+                        g2d.setColor(colorOf(value));
+                        g2d.fillRect((col << myZoomShift) - myLeft + 1,
+                                y + 1, box - 1, box - 1);
+                    }
+                }
+            }
+
+            // one line per visible edge of the squares, not one per square
+            g2d.setColor(GamePanel.MATRIX_OUTLINE);
+            final int left = (firstCol << myZoomShift) - myLeft;
+            final int right = (endCol << myZoomShift) - myLeft;
+            final int top = (firstRow << myZoomShift) - myTop;
+            final int bottom = (endRow << myZoomShift) - myTop;
+            for (int row = firstRow; row <= endRow; row++) {
+                final int y = (row << myZoomShift) - myTop;
+                g2d.drawLine(left, y, right, y);
+            }
+            for (int col = firstCol; col <= endCol; col++) {
+                final int x = (col << myZoomShift) - myLeft;
+                g2d.drawLine(x, top, x, bottom);
+            }
+
+            // draw the Sneke eye
+            final int head = head();
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect((head % myCols << myZoomShift) - myLeft + 1,
+                    (head / myCols << myZoomShift) - myTop + 1,
+                    box * 2 / 5, box * 2 / 5);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Writes the color of the square under each pixel of the window into
+     * the raster. When several squares share a pixel it is the body color
+     * if any of them is body, and the cherry is drawn over it
+     */
+    private void renderRaster() {
+        final int background = GamePanel.BACKGROUND_COLOR.getRGB();
+        final int outline = GamePanel.MATRIX_OUTLINE.getRGB();
+        final int body = BoardRenderer.SNEKE_COLOR.getRGB();
+        final int cherry = BoardRenderer.CHERRY_COLOR.getRGB();
+
+        for (int y = 0; y < myHeight; y++) {
+            final int row = toCell(myTop + y);
+            final int offset = y * myWidth;
+            if (row < 0 || row >= myRows) {
+                Arrays.fill(myPixels, offset, offset + myWidth, background);
+                continue;
+            }
+            for (int x = 0; x < myWidth; x++) {
+                final int col = toCell(myLeft + x);
+                int color = background;
+                if (col >= 0 && col < myCols) {
+                    final int value = myBoard.get(row * myCols + col);
+                    if (value == SnekeEngine.BODY) {
+                        color = body;
+                    } else if (value == SnekeEngine.CHERRY) {
+                        color = cherry;
+                    } else if (value == SnekeEngine.WALL) {
+                        color = outline;
+                    }
+                }
+                myPixels[offset + x] = color;
+            }
+        }
+
+        if (myZoomShift < 0) {
+            // samples can fall between the squares of a thin Sneke
+            paintBody(body);
+            plot(myCherry, cherry);
+        }
+        plot(head(), Color.BLACK.getRGB());
+        outlineBoard(outline);
+    }
+
+    /**
+     * Writes theColor to every pixel of the window with a body square when
+     * several squares share a pixel. A Sneke shorter than the number of
+     * blocks in the window is plotted square by square, otherwise only the
+     * pixels of blocks with body are looked at
+     *
+     * @param theColor the RGB color
+     */
+    private void paintBody(final int theColor) {
+        final int step = 1 << -myZoomShift;
+        final int blockSize = 1 << BLOCK_SHIFT;
+        final int firstRow = Math.max(0, toCell(myTop));
+        final int endRow = Math.min(myRows, toCell(myTop + myHeight));
+        final int firstCol = Math.max(0, toCell(myLeft));
+        final int endCol = Math.min(myCols, toCell(myLeft + myWidth));
+        final long blockCount =
+                (long) ((endRow - firstRow >> BLOCK_SHIFT) + 1)
+                * ((endCol - firstCol >> BLOCK_SHIFT) + 1);
+        if (myLength < blockCount) {
+            for (int i = 0; i < myLength; i++) {
+                plot(myBody[(myTail + i) & (myBody.length - 1)], theColor);
+            }
+            return;
+        }
+        for (int blockRow = firstRow & -blockSize; blockRow < endRow;
+                blockRow += blockSize) {
+            final int blocks = (blockRow >> BLOCK_SHIFT) * myBlockCols;
+            for (int blockCol = firstCol & -blockSize; blockCol < endCol;
+                    blockCol += blockSize) {
+                if (myBlockBody[blocks + (blockCol >> BLOCK_SHIFT)] == 0) {
+                    continue;
+                }
+                final int lastRow = Math.min(endRow, blockRow + blockSize);
+                final int lastCol = Math.min(endCol, blockCol + blockSize);
+                for (int row = Math.max(firstRow, blockRow); row < lastRow;
+                        row += step) {
+                    final int offset = (toPixel(row) - myTop) * myWidth;
+                    for (int col = Math.max(firstCol, blockCol);
+                            col < lastCol; col += step) {
+                        if (hasBody(row, col)) {
+                            myPixels[offset + toPixel(col) - myLeft] =
+                                    theColor;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not any square of the pixel at theRow, theCol is
+     * body when several squares share a pixel, once the block the pixel is
+     * in is known to have body
+     *
+     * @param theRow the first row of the pixel
+     * @param theCol the first column of the pixel
+     * @return whether or not the pixel shows body
+     */
+    private boolean hasBody(final int theRow, final int theCol) {
+        if (-myZoomShift == BLOCK_SHIFT) {
+            return true;
+        }
+        final int endRow = Math.min(myRows, theRow + (1 << -myZoomShift));
+        final int endCol = Math.min(myCols, theCol + (1 << -myZoomShift));
+        for (int row = theRow; row < endRow; row++) {
+            for (int col = theCol; col < endCol; col++) {
+                if (myBoard.get(row * myCols + col) == SnekeEngine.BODY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes theColor to the pixel theCell is in, if it is visible
+     *
+     * @param theCell the packed cell of the square, -1 for none
+     * @param theColor the RGB color
+     */
+    private void plot(final int theCell, final int theColor) {
+        if (theCell < 0) {
+            return;
+        }
+        final int x = toPixel(theCell % myCols) - myLeft;
+        final int y = toPixel(theCell / myCols) - myTop;
+        if (x >= 0 && x < myWidth && y >= 0 && y < myHeight) {
+            myPixels[y * myWidth + x] = theColor;
+        }
+    }
+
+    /**
+     * Draws the visible part of a border one pixel outside the board, where
+     * the board is smaller than the window
+     *
+     * @param theColor the RGB color
+     */
+    private void outlineBoard(final int theColor) {
+        final int left = -myLeft - 1;
+        final int top = -myTop - 1;
+        final int right = toPixel(myCols) - myLeft;
+        final int bottom = toPixel(myRows) - myTop;
+        for (int x = Math.max(0, left); x <= Math.min(myWidth - 1, right);
+                x++) {
+            if (top >= 0) {
+                myPixels[top * myWidth + x] = theColor;
+            }
+            if (bottom < myHeight) {
+                myPixels[bottom * myWidth + x] = theColor;
+            }
+        }
+        for (int y = Math.max(0, top); y <= Math.min(myHeight - 1, bottom);
+                y++) {
+            if (left >= 0) {
+                myPixels[y * myWidth + left] = theColor;
+            }
+            if (right < myWidth) {
+                myPixels[y * myWidth + right] = theColor;
+            }
+        }
+    }
+
+    /**
+     * Returns the board pixel a row or column starts at
+     *
+     * @param theCell the row or column
+     * @return the board pixel it starts at
+     */
+    private int toPixel(final int theCell) {
+        return myZoomShift >= 0 ? theCell << myZoomShift
+                : theCell >> -myZoomShift;
+    }
+
+    /**
+     * Returns the row or column under a board pixel, rounding down so
+     * pixels left of or above the board give negative values
+     *
+     * @param thePixel the board pixel
+     * @return the row or column
+     */
+    private int toCell(final int thePixel) {
+        return myZoomShift >= 0 ? thePixel >> myZoomShift
+                : thePixel << -myZoomShift;
+    }
+
+    /**
+     * Returns where a window of theSize starts so theCenter is in its
+     * middle, kept on the board, or centering the board when it is smaller
+     * than the window
+     *
+     * @param theCenter the board pixel to center on
+     * @param theSize the size of the window
+     * @param theBoardSize the size of the board in board pixels
+     * @return the first board pixel of the window
+     */
+    private static int center(final int theCenter, final int theSize,
+            final int theBoardSize) {
+        if (theBoardSize <= theSize) {
+            return (theBoardSize - theSize) / 2;
+        }
+        return Math.max(0, Math.min(theBoardSize - theSize,
+                theCenter - theSize / 2));
+    }
+
+    /**
+     * Returns the color a square with theValue is filled with
+     *
+     * @param theValue the value of the square
+     * @return its color
+     */
+    private static Color colorOf(final int theValue) {
+        if (theValue == SnekeEngine.BODY) {
+            return BoardRenderer.SNEKE_COLOR;
+        } else if (theValue == SnekeEngine.CHERRY) {
+            return BoardRenderer.CHERRY_COLOR;
+        }
+        return GamePanel.MATRIX_OUTLINE;
+    }
+}
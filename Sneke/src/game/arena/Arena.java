@@ -0,0 +1,712 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.arena;
+
+import game.Board;
+import game.ByteBoard;
+import game.SnekeEngine;
+import game.stats.Histogram;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Arena class holds thousands of Snekes and cherries on one large shared
+ * board, split into bands of rows called regions so the Snekes of different
+ * regions are ticked on different threads.
+ *
+ * A tick runs in four phases, each finished before the next one starts:
+ * <ol>
+ * <li>decide: every region has its Snekes choose a target cell while the
+ * board is only read, and sorts them by the region of the target;</li>
+ * <li>resolve: every region judges the moves into its own cells. A Sneke
+ * that moves off the board or onto body dies, and Snekes that move onto
+ * the same cell all die head to head, wherever they came from;</li>
+ * <li>apply: every region moves the Snekes that survived into it and
+ * clears the Snekes that died there. These only write cells that belong
+ * to one Sneke, and the board has one byte per cell, so regions can write
+ * at the same time;</li>
+ * <li>respawn: one thread places the dead Snekes again and replaces the
+ * eaten cherries.</li>
+ * </ol>
+ * Every phase only depends on the state at the start of the tick and the
+ * region order, so an Arena plays the same with any number of threads, and
+ * the work of a tick is spread over the regions instead of growing on one
+ * thread with the number of Snekes.
+ *
+ * Usage: {@code java game.arena.Arena [snakes] [size] [ticks] [threads]
+ * [seed]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Arena {
+
+    /** The number of regions of the benchmark arena */
+    private static final int DEFAULT_REGIONS = 64;
+
+    /** The default number of Snekes of the benchmark */
+    private static final int DEFAULT_SNAKES = 10_000;
+
+    /** The default number of rows and columns of the benchmark arena */
+    private static final int DEFAULT_DIMENSION = 2_000;
+
+    /** The default number of ticks the benchmark runs */
+    private static final int DEFAULT_TICKS = 1_000;
+
+    /** The number of random cells tried before scanning for an empty one */
+    private static final int SPAWN_TRIES = 64;
+
+    /** The phase that has the Snekes of each region choose their moves */
+    private static final int DECIDE = 0;
+
+    /** The phase that judges the moves into each region */
+    private static final int RESOLVE = 1;
+
+    /** The phase that moves and clears the Snekes of each region */
+    private static final int APPLY = 2;
+
+    /**
+     * The board every Sneke and cherry is on
+     */
+    private final Board myBoard;
+
+    /**
+     * The number of rows on the board
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns on the board
+     */
+    private final int myCols;
+
+    /**
+     * The number of rows in every region but maybe the last
+     */
+    private final int myRegionRows;
+
+    /**
+     * The regions, top to bottom
+     */
+    private final Region[] myRegions;
+
+    /**
+     * Every Sneke, indexed by id
+     */
+    private final ArenaSnake[] mySnakes;
+
+    /**
+     * The number of cherries the arena keeps on the board
+     */
+    private final int myCherries;
+
+    /**
+     * The tick each cell was last claimed on shifted left by 2, plus the
+     * number of claims capped at 2, only written by the region of the cell
+     */
+    private final int[] myClaims;
+
+    /**
+     * The tick number kept in myClaims, wraps around before it overflows
+     */
+    private int myClaimTick;
+
+    /**
+     * The number of cherries eaten but not yet replaced
+     */
+    private int myMissingCherries;
+
+    /**
+     * The state of the SplitMix64 generator used for spawning
+     */
+    private long myRandomState;
+
+    /**
+     * The number of ticks played
+     */
+    private long myTicks;
+
+    /**
+     * The number of Snekes that died
+     */
+    private long myDeaths;
+
+    /**
+     * The number of Snekes that died moving onto the same cell as another
+     */
+    private long myHeadOnDeaths;
+
+    /**
+     * The number of moves from one region into another
+     */
+    private long myCrossRegionMoves;
+
+    /**
+     * The number of cherries eaten
+     */
+    private long myCherriesEaten;
+
+    /**
+     * Initializes a new Arena with every Sneke and cherry on a random cell
+     *
+     * @param theRows the number of rows on the board
+     * @param theCols the number of columns on the board
+     * @param theSnakes the number of Snekes
+     * @param theCherries the number of cherries kept on the board
+     * @param theRegions the number of regions, at most theRows
+     * @param theSeed the seed of the arena
+     * @throws IllegalArgumentException if theRows or theCols is less than
+     *         10, theSnakes is not positive, theCherries is negative, the
+     *         Snekes and cherries take more than half of the board or
+     *         theRegions is not between 1 and theRows
+     */
+    public Arena(final int theRows, final int theCols, final int theSnakes,
+            final int theCherries, final int theRegions, final long theSeed) {
+        if (theRows < SnekeEngine.MIN_DIMENSION
+                || theCols < SnekeEngine.MIN_DIMENSION) {
+            throw new IllegalArgumentException("theRows and theCols can not "
+                    + "be less than " + SnekeEngine.MIN_DIMENSION);
+        }
+        if (theSnakes <= 0 || theCherries < 0) {
+            throw new IllegalArgumentException("theSnakes must be positive "
+                    + "and theCherries can not be negative");
+        }
+        if ((long) theSnakes + theCherries > (long) theRows * theCols / 2) {
+            throw new IllegalArgumentException("the Snekes and cherries can "
+                    + "not take more than half of the board");
+        }
+        if (theRegions < 1 || theRegions > theRows) {
+            throw new IllegalArgumentException(
+                    "theRegions must be between 1 and theRows");
+        }
+        // one byte per cell, so regions can write neighbouring cells at once
+        myBoard = new ByteBoard(theRows, theCols);
+        myRows = theRows;
+        myCols = theCols;
+        myRegionRows = (theRows + theRegions - 1) / theRegions;
+        myRegions = new Region[(theRows + myRegionRows - 1) / myRegionRows];
+        for (int i = 0; i < myRegions.length; i++) {
+            myRegions[i] = new Region();
+        }
+        myClaims = new int[theRows * theCols];
+        myCherries = theCherries;
+        myRandomState = theSeed;
+
+        mySnakes = new ArenaSnake[theSnakes];
+        for (int id = 0; id < theSnakes; id++) {
+            mySnakes[id] = new ArenaSnake(nextLong());
+            spawnSnake(id);
+        }
+        myMissingCherries = theCherries;
+        spawnCherries();
+    }
+
+    /**
+     * Plays one tick with the regions spread over thePool
+     *
+     * @param thePool the pool the regions are ticked on
+     * @throws NullPointerException if thePool is null
+     */
+    public void tick(final ForkJoinPool thePool) {
+        Objects.requireNonNull(thePool, "thePool can not be null");
+        if (++myClaimTick == 1 << 29) {
+            Arrays.fill(myClaims, 0);
+            myClaimTick = 1;
+        }
+        thePool.invoke(new PhaseTask(DECIDE, 0, myRegions.length));
+        thePool.invoke(new PhaseTask(RESOLVE, 0, myRegions.length));
+        thePool.invoke(new PhaseTask(APPLY, 0, myRegions.length));
+        respawn();
+        myTicks++;
+    }
+
+    /**
+     * Returns the number of rows on the board
+     * @return the number of rows on the board
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns on the board
+     * @return the number of columns on the board
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the number of regions
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return myRegions.length;
+    }
+
+    /**
+     * Returns the number of Snekes
+     * @return the number of Snekes
+     */
+    public int getSnakeCount() {
+        return mySnakes.length;
+    }
+
+    /**
+     * Returns the length of the given Sneke
+     *
+     * @param theId the id of the Sneke
+     * @throws IndexOutOfBoundsException if theId is not a Sneke
+     * @return the number of cells of the Sneke
+     */
+    public int getSnakeLength(final int theId) {
+        return mySnakes[Objects.checkIndex(theId, mySnakes.length)]
+                .getLength();
+    }
+
+    /**
+     * Returns the value of the cell at theRow and theCol
+     *
+     * @param theRow the row of the cell
+     * @param theCol the column of the cell
+     * @return SnekeEngine.EMPTY, SnekeEngine.BODY or SnekeEngine.CHERRY
+     */
+    public int getCell(final int theRow, final int theCol) {
+        return myBoard.get(Objects.checkIndex(theRow, myRows) * myCols
+                + Objects.checkIndex(theCol, myCols));
+    }
+
+    /**
+     * Returns the number of ticks played
+     * @return the number of ticks played
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the number of Snekes that died, each is placed again
+     * @return the number of Snekes that died
+     */
+    public long getDeaths() {
+        return myDeaths;
+    }
+
+    /**
+     * Returns the number of Snekes that died moving onto the same cell as
+     * another Sneke
+     * @return the number of head to head deaths
+     */
+    public long getHeadOnDeaths() {
+        return myHeadOnDeaths;
+    }
+
+    /**
+     * Returns the number of moves from one region into another
+     * @return the number of cross region moves
+     */
+    public long getCrossRegionMoves() {
+        return myCrossRegionMoves;
+    }
+
+    /**
+     * Returns the number of cherries eaten
+     * @return the number of cherries eaten
+     */
+    public long getCherriesEaten() {
+        return myCherriesEaten;
+    }
+
+    /**
+     * Has the Snekes of region theIndex choose their moves and sorts them by
+     * the region of their target
+     *
+     * @param theIndex the region
+     */
+    private void decide(final int theIndex) {
+        final Region region = myRegions[theIndex];
+        for (IntList outbox : region.myOutboxes) {
+            outbox.clear();
+        }
+        final IntList members = region.myMembers;
+        for (int i = 0; i < members.size(); i++) {
+            final int id = members.get(i);
+            final ArenaSnake snake = mySnakes[id];
+            snake.decide(myBoard);
+            final int target = snake.getTarget();
+            // a target off the board is judged by the region it left
+            final int destination = target < 0 ? theIndex :
+                    target / myCols / myRegionRows;
+            region.myOutboxes[destination - theIndex + 1].add(id);
+        }
+    }
+
+    /**
+     * Judges every move into region theIndex: counts the claims on each
+     * target cell, then lets a Sneke live only if its target is on the
+     * board, not body and claimed by no one else
+     *
+     * @param theIndex the region
+     */
+    private void resolve(final int theIndex) {
+        final Region region = myRegions[theIndex];
+        final IntList fromAbove = theIndex > 0 ?
+                myRegions[theIndex - 1].myOutboxes[2] : null;
+        final IntList fromBelow = theIndex < myRegions.length - 1 ?
+                myRegions[theIndex + 1].myOutboxes[0] : null;
+        final IntList own = region.myOutboxes[1];
+
+        claim(fromAbove);
+        claim(own);
+        claim(fromBelow);
+
+        region.myMembers.clear();
+        region.myDead.clear();
+        region.myHeadOnDeaths = 0;
+        region.myCherriesEaten = 0;
+        judge(region, fromAbove);
+        judge(region, own);
+        judge(region, fromBelow);
+        region.myCrossRegionMoves = (fromAbove == null ? 0 : fromAbove.size())
+                + (fromBelow == null ? 0 : fromBelow.size());
+    }
+
+    /**
+     * Counts the claim of every Sneke in theMoves on its target cell
+     *
+     * @param theMoves the ids of Snekes moving into the region, may be null
+     */
+    private void claim(final IntList theMoves) {
+        if (theMoves == null) {
+            return;
+        }
+        final int stamp = myClaimTick << 2;
+        for (int i = 0; i < theMoves.size(); i++) {
+            final int target = mySnakes[theMoves.get(i)].getTarget();
+            if (target >= 0) {
+                final int claims = myClaims[target];
+                myClaims[target] = (claims & ~3) == stamp ? stamp | 2 :
+                        stamp | 1;
+            }
+        }
+    }
+
+    /**
+     * Decides whether each Sneke in theMoves lives, adding the survivors to
+     * the members and the rest to the dead of theRegion
+     *
+     * @param theRegion the region the Snekes move into
+     * @param theMoves the ids of Snekes moving into the region, may be null
+     */
+    private void judge(final Region theRegion, final IntList theMoves) {
+        if (theMoves == null) {
+            return;
+        }
+        for (int i = 0; i < theMoves.size(); i++) {
+            final int id = theMoves.get(i);
+            final ArenaSnake snake = mySnakes[id];
+            final int target = snake.getTarget();
+            if (target < 0 || myBoard.get(target) == SnekeEngine.BODY) {
+                theRegion.myDead.add(id);
+            } else if ((myClaims[target] & 3) > 1) {
+                theRegion.myDead.add(id);
+                theRegion.myHeadOnDeaths++;
+            } else {
+                final boolean grows =
+                        myBoard.get(target) == SnekeEngine.CHERRY;
+                snake.setGrows(grows);
+                if (grows) {
+                    theRegion.myCherriesEaten++;
+                }
+                theRegion.myMembers.add(id);
+            }
+        }
+    }
+
+    /**
+     * Moves the surviving Snekes of region theIndex and clears its dead
+     *
+     * @param theIndex the region
+     */
+    private void apply(final int theIndex) {
+        final Region region = myRegions[theIndex];
+        for (int i = 0; i < region.myMembers.size(); i++) {
+            mySnakes[region.myMembers.get(i)].move(myBoard);
+        }
+        for (int i = 0; i < region.myDead.size(); i++) {
+            mySnakes[region.myDead.get(i)].clear(myBoard);
+        }
+    }
+
+    /**
+     * Adds up the counts of the regions, places the dead Snekes again and
+     * replaces the eaten cherries, region by region so the result does not
+     * depend on the threads
+     */
+    private void respawn() {
+        for (Region region : myRegions) {
+            myDeaths += region.myDead.size();
+            myHeadOnDeaths += region.myHeadOnDeaths;
+            myCrossRegionMoves += region.myCrossRegionMoves;
+            myCherriesEaten += region.myCherriesEaten;
+            myMissingCherries += region.myCherriesEaten;
+        }
+        for (Region region : myRegions) {
+            for (int i = 0; i < region.myDead.size(); i++) {
+                spawnSnake(region.myDead.get(i));
+            }
+            region.myDead.clear();
+        }
+        spawnCherries();
+    }
+
+    /**
+     * Places the Sneke theId as a single cell on a random empty cell and
+     * makes it a member of that cell's region
+     *
+     * @param theId the id of the Sneke
+     */
+    private void spawnSnake(final int theId) {
+        final int cell = randomEmptyCell();
+        mySnakes[theId].spawn(cell);
+        myBoard.set(cell, SnekeEngine.BODY);
+        myRegions[cell / myCols / myRegionRows].myMembers.add(theId);
+    }
+
+    /**
+     * Places the missing cherries on random empty cells
+     */
+    private void spawnCherries() {
+        for (; myMissingCherries > 0; myMissingCherries--) {
+            myBoard.set(randomEmptyCell(), SnekeEngine.CHERRY);
+        }
+    }
+
+    /**
+     * Returns a random empty cell. The board is at least half empty when
+     * the arena starts, so a few random tries almost always find one; if
+     * they do not, the board is scanned from a random cell
+     *
+     * @return the packed cell index of an empty cell
+     * @throws IllegalStateException if the board is full
+     */
+    private int randomEmptyCell() {
+        final int cells = myRows * myCols;
+        for (int i = 0; i < SPAWN_TRIES; i++) {
+            final int cell = nextInt(cells);
+            if (myBoard.get(cell) == SnekeEngine.EMPTY) {
+                return cell;
+            }
+        }
+        final int start = nextInt(cells);
+        for (int i = 0; i < cells; i++) {
+            final int cell = (start + i) % cells;
+            if (myBoard.get(cell) == SnekeEngine.EMPTY) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("the board is full");
+    }
+
+    /**
+     * Returns the next pseudo random long of the SplitMix64 generator
+     *
+     * @return a pseudo random long
+     */
+    private long nextLong() {
+        myRandomState += 0x9E3779B97F4A7C15L;
+        long z = myRandomState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a pseudo random int between 0 (inclusive) and theBound
+     * (exclusive)
+     *
+     * @param theBound the upper bound, must be positive
+     * @return a pseudo random int between 0 and theBound
+     */
+    private int nextInt(final int theBound) {
+        return (int) (((nextLong() >>> 32) * theBound) >>> 32);
+    }
+
+    /**
+     * The entry point of the arena benchmark, which plays the same arena on
+     * thread counts doubling up to the given one and reports the tick time
+     *
+     * @param theArgs the command line arguments, optionally the number of
+     *         Snekes, the rows and columns of the board, the ticks, the
+     *         most threads and the seed
+     */
+    public static void main(final String[] theArgs) {
+        final int snakes = theArgs.length > 0 ?
+                Integer.parseInt(theArgs[0]) : DEFAULT_SNAKES;
+        final int size = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_DIMENSION;
+        final int ticks = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_TICKS;
+        final int threads = theArgs.length > 3 ?
+                Integer.parseInt(theArgs[3]) :
+                Runtime.getRuntime().availableProcessors();
+        final long seed = theArgs.length > 4 ?
+                Long.parseLong(theArgs[4]) : System.nanoTime();
+
+        final int regions = Math.min(DEFAULT_REGIONS, size);
+        System.out.printf("arena: %dx%d, %d snekes, %d regions%n", size,
+                size, snakes, regions);
+        for (int t = 1; t < threads; t *= 2) {
+            benchmark(t, snakes, size, ticks, regions, seed);
+        }
+        benchmark(threads, snakes, size, ticks, regions, seed);
+    }
+
+    /**
+     * Plays a new arena on theThreads threads and prints its tick time
+     *
+     * @param theThreads the number of threads
+     * @param theSnakes the number of Snekes
+     * @param theSize the number of rows and columns of the board
+     * @param theTicks the number of ticks to play
+     * @param theRegions the number of regions
+     * @param theSeed the seed of the arena
+     */
+    private static void benchmark(final int theThreads, final int theSnakes,
+            final int theSize, final int theTicks, final int theRegions,
+            final long theSeed) {
+        final ForkJoinPool pool = new ForkJoinPool(theThreads);
+        try {
+            final Arena arena = new Arena(theSize, theSize, theSnakes,
+                    theSnakes, theRegions, theSeed);
+            final Histogram tickTimes = new Histogram();
+            final long start = System.nanoTime();
+            for (int i = 0; i < theTicks; i++) {
+                final long before = System.nanoTime();
+                arena.tick(pool);
+                tickTimes.record(System.nanoTime() - before);
+            }
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("threads=%d ticks/s=%.0f tick p50/p99=%.1f/%.1f"
+                            + " us moves/s=%.0f deaths=%d head-on=%d"
+                            + " cross-region=%d eaten=%d%n",
+                    theThreads, theTicks / seconds,
+                    tickTimes.getPercentile(50) / 1e3,
+                    tickTimes.getPercentile(99) / 1e3,
+                    (double) theTicks * theSnakes / seconds,
+                    arena.getDeaths(), arena.getHeadOnDeaths(),
+                    arena.getCrossRegionMoves(), arena.getCherriesEaten());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The Region class holds the Snekes whose heads are in one band of rows
+     * and what happened to them on the current tick
+     */
+    private static final class Region {
+
+        /**
+         * The ids of the Snekes whose heads are in the region
+         */
+        private final IntList myMembers;
+
+        /**
+         * The ids of the Snekes that moved into the region and died
+         */
+        private final IntList myDead;
+
+        /**
+         * The ids of the region's Snekes moving into the region above, the
+         * region itself and the region below
+         */
+        private final IntList[] myOutboxes;
+
+        /**
+         * The number of head to head deaths in the region on this tick
+         */
+        private int myHeadOnDeaths;
+
+        /**
+         * The number of moves into the region from another on this tick
+         */
+        private int myCrossRegionMoves;
+
+        /**
+         * The number of cherries eaten in the region on this tick
+         */
+        private int myCherriesEaten;
+
+        /**
+         * Initializes a new empty Region
+         */
+        private Region() {
+            myMembers = new IntList();
+            myDead = new IntList();
+            myOutboxes = new IntList[] {
+                new IntList(), new IntList(), new IntList()
+            };
+        }
+    }
+
+    /**
+     * The PhaseTask class splits a range of regions until it is one region
+     * and then runs one phase of the tick on it
+     */
+    private final class PhaseTask extends RecursiveAction {
+
+        /**
+         * The phase to run
+         */
+        private final int myPhase;
+
+        /**
+         * The first region of the range
+         */
+        private final int myFrom;
+
+        /**
+         * The region after the last one of the range
+         */
+        private final int myTo;
+
+        /**
+         * Initializes a new PhaseTask
+         *
+         * @param thePhase the phase to run
+         * @param theFrom the first region of the range
+         * @param theTo the region after the last one of the range
+         */
+        private PhaseTask(final int thePhase, final int theFrom,
+                final int theTo) {
+            myPhase = thePhase;
+            myFrom = theFrom;
+            myTo = theTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (myTo - myFrom == 1) {
+                if (myPhase == DECIDE) {
+                    decide(myFrom);
+                } else if (myPhase == RESOLVE) {
+                    resolve(myFrom);
+                } else {
+                    apply(myFrom);
+                }
+            } else {
+                final int middle = (myFrom + myTo) >>> 1;
+                invokeAll(new PhaseTask(myPhase, myFrom, middle),
+                        new PhaseTask(myPhase, middle, myTo));
+            }
+        }
+    }
+}
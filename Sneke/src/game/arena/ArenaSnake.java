@@ -0,0 +1,273 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.arena;
+
+import game.Board;
+import game.Direction;
+import game.SnekeEngine;
+
+/**
+ * The ArenaSnake class is one of the many Snekes of an Arena: its body, the
+ * way it steers and the move it chose for the current tick.
+ *
+ * A Sneke steers itself with its own SplitMix64 generator: it takes a cherry
+ * next to its head, otherwise it mostly keeps going straight and turns at
+ * random, always avoiding walls and body it can see. It only reads the
+ * board while deciding, so every Sneke can decide at the same time
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+final class ArenaSnake {
+
+    /** The chance out of 16 that a Sneke turns when it could go straight */
+    private static final int TURN_CHANCE = 2;
+
+    /** The Directions a Sneke can spawn facing */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The cells of the body in a ring buffer, the tail at myTail
+     */
+    private int[] myBody;
+
+    /**
+     * The position of the tail in myBody
+     */
+    private int myTail;
+
+    /**
+     * The number of cells in the body
+     */
+    private int myLength;
+
+    /**
+     * The Direction the Sneke moves in
+     */
+    private Direction myDirection;
+
+    /**
+     * The state of the SplitMix64 generator the Sneke steers with
+     */
+    private long myRandomState;
+
+    /**
+     * The cell the Sneke moves to on this tick, -1 if it moves off the board
+     */
+    private int myTarget;
+
+    /**
+     * Whether or not the Sneke eats a cherry on this tick
+     */
+    private boolean myGrows;
+
+    /**
+     * Initializes a new ArenaSnake, which is placed by spawn
+     *
+     * @param theSeed the seed the Sneke steers with
+     */
+    ArenaSnake(final long theSeed) {
+        myBody = new int[4];
+        myRandomState = theSeed;
+        myDirection = Direction.NORTH;
+    }
+
+    /**
+     * Places the Sneke as a single cell, the caller marks it on the board
+     *
+     * @param theCell the packed cell of the head
+     */
+    void spawn(final int theCell) {
+        myTail = 0;
+        myLength = 1;
+        myBody[0] = theCell;
+        myDirection = DIRECTIONS[nextInt(DIRECTIONS.length)];
+    }
+
+    /**
+     * Returns the packed cell of the head
+     * @return the packed cell of the head
+     */
+    int getHead() {
+        return myBody[(myTail + myLength - 1) & (myBody.length - 1)];
+    }
+
+    /**
+     * Returns the number of cells in the body
+     * @return the number of cells in the body
+     */
+    int getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns the cell the Sneke moves to on this tick
+     * @return the packed cell, or -1 if the Sneke moves off the board
+     */
+    int getTarget() {
+        return myTarget;
+    }
+
+    /**
+     * Chooses the move of this tick from the board as it was when the tick
+     * started and stores it as the target
+     *
+     * @param theBoard the arena board, only read
+     */
+    void decide(final Board theBoard) {
+        final int head = getHead();
+        final int straight = target(theBoard, head, myDirection);
+        final Direction left = Direction.getLeftDirection(myDirection);
+        final int leftCell = target(theBoard, head, left);
+        final Direction right = Direction.getRightDirection(myDirection);
+        final int rightCell = target(theBoard, head, right);
+
+        Direction choice = myDirection;
+        int choiceCell = straight;
+        if (isCherry(theBoard, straight)) {
+            // already heading for it
+        } else if (isCherry(theBoard, leftCell)) {
+            choice = left;
+            choiceCell = leftCell;
+        } else if (isCherry(theBoard, rightCell)) {
+            choice = right;
+            choiceCell = rightCell;
+        } else if (!isOpen(theBoard, straight)
+                || nextInt(16) < TURN_CHANCE) {
+            final boolean leftOpen = isOpen(theBoard, leftCell);
+            final boolean rightOpen = isOpen(theBoard, rightCell);
+            if (leftOpen && (!rightOpen || nextInt(2) == 0)) {
+                choice = left;
+                choiceCell = leftCell;
+            } else if (rightOpen) {
+                choice = right;
+                choiceCell = rightCell;
+            }
+        }
+        myDirection = choice;
+        myTarget = choiceCell;
+    }
+
+    /**
+     * Stores whether or not the Sneke eats a cherry on this tick
+     *
+     * @param theGrows whether or not the Sneke eats a cherry
+     */
+    void setGrows(final boolean theGrows) {
+        myGrows = theGrows;
+    }
+
+    /**
+     * Moves the head onto the target and, unless the Sneke grows, frees
+     * the tail. Only writes cells that belong to this Sneke
+     *
+     * @param theBoard the arena board
+     */
+    void move(final Board theBoard) {
+        if (myLength == myBody.length) {
+            grow();
+        }
+        myBody[(myTail + myLength) & (myBody.length - 1)] = myTarget;
+        myLength++;
+        theBoard.set(myTarget, SnekeEngine.BODY);
+        if (!myGrows) {
+            theBoard.set(myBody[myTail], SnekeEngine.EMPTY);
+            myTail = (myTail + 1) & (myBody.length - 1);
+            myLength--;
+        }
+    }
+
+    /**
+     * Empties every cell of the body on the board
+     *
+     * @param theBoard the arena board
+     */
+    void clear(final Board theBoard) {
+        for (int i = 0; i < myLength; i++) {
+            theBoard.set(myBody[(myTail + i) & (myBody.length - 1)],
+                    SnekeEngine.EMPTY);
+        }
+        myLength = 0;
+    }
+
+    /**
+     * Returns the cell next to theHead in theDirection
+     *
+     * @param theBoard the arena board
+     * @param theHead the packed cell of the head
+     * @param theDirection the Direction of the move
+     * @return the packed cell, or -1 if it is off the board
+     */
+    private static int target(final Board theBoard, final int theHead,
+            final Direction theDirection) {
+        final int cols = theBoard.getCols();
+        final int row = theHead / cols;
+        final int col = theHead - row * cols;
+        switch (theDirection) {
+            case NORTH:
+                return row > 0 ? theHead - cols : -1;
+            case SOUTH:
+                return row < theBoard.getRows() - 1 ? theHead + cols : -1;
+            case EAST:
+                return col < cols - 1 ? theHead + 1 : -1;
+            default:
+                return col > 0 ? theHead - 1 : -1;
+        }
+    }
+
+    /**
+     * Returns whether or not theCell is on the board and not body
+     *
+     * @param theBoard the arena board
+     * @param theCell the packed cell, -1 if off the board
+     * @return whether or not the Sneke can move onto theCell
+     */
+    private static boolean isOpen(final Board theBoard, final int theCell) {
+        return theCell >= 0 && theBoard.get(theCell) != SnekeEngine.BODY;
+    }
+
+    /**
+     * Returns whether or not theCell holds a cherry
+     *
+     * @param theBoard the arena board
+     * @param theCell the packed cell, -1 if off the board
+     * @return whether or not theCell holds a cherry
+     */
+    private static boolean isCherry(final Board theBoard,
+            final int theCell) {
+        return theCell >= 0 && theBoard.get(theCell) == SnekeEngine.CHERRY;
+    }
+
+    /**
+     * Doubles the capacity of the body ring buffer, unwrapping it so the
+     * tail is at position 0
+     */
+    private void grow() {
+        final int[] body = new int[myBody.length * 2];
+        final int firstPart = myBody.length - myTail;
+        System.arraycopy(myBody, myTail, body, 0, firstPart);
+        System.arraycopy(myBody, 0, body, firstPart, myTail);
+        myBody = body;
+        myTail = 0;
+    }
+
+    /**
+     * Returns a pseudo random int between 0 (inclusive) and theBound
+     * (exclusive) using a SplitMix64 generator
+     *
+     * @param theBound the upper bound, must be positive
+     * @return a pseudo random int between 0 and theBound
+     */
+    private int nextInt(final int theBound) {
+        myRandomState += 0x9E3779B97F4A7C15L;
+        long z = myRandomState;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) (((z >>> 32) * theBound) >>> 32);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.arena;
+
+import java.util.Arrays;
+
+/**
+ * The IntList class is a growable list of ints that keeps its array when
+ * cleared, so a list refilled every tick stops allocating once it has grown
+ * to its working size
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+final class IntList {
+
+    /**
+     * The values, of which the first mySize are in the list
+     */
+    private int[] myValues;
+
+    /**
+     * The number of values in the list
+     */
+    private int mySize;
+
+    /**
+     * Initializes a new empty IntList
+     */
+    IntList() {
+        myValues = new int[16];
+    }
+
+    /**
+     * Adds theValue to the end of the list
+     *
+     * @param theValue the value to add
+     */
+    void add(final int theValue) {
+        if (mySize == myValues.length) {
+            myValues = Arrays.copyOf(myValues, mySize * 2);
+        }
+        myValues[mySize++] = theValue;
+    }
+
+    /**
+     * Returns the value at theIndex, which must be less than size()
+     *
+     * @param theIndex the index of the value
+     * @return the value at theIndex
+     */
+    int get(final int theIndex) {
+        return myValues[theIndex];
+    }
+
+    /**
+     * Returns the number of values in the list
+     * @return the number of values in the list
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * Removes every value
+     */
+    void clear() {
+        mySize = 0;
+    }
+}
@@ -0,0 +1,510 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.env;
+
+import game.Action;
+import game.Direction;
+import game.SnekeEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * The VectorEnv class is a vectorized environment for training agents: it
+ * steps a batch of independent Sneke games with one call, in the style of a
+ * gym vector environment.
+ *
+ * Actions, observations, rewards and done flags all live in direct buffers
+ * in native byte order that are allocated once, so a trainer on the other
+ * side of JNI or a shared memory mapping reads and writes them without
+ * copying. Every buffer is indexed by game:
+ * <ul>
+ * <li>actions: one byte per game, the Action ordinal (0 LEFT, 1 STRAIGHT,
+ * 2 RIGHT), written by the trainer before each step;</li>
+ * <li>observations: PLANES planes of rows * cols bytes per game, at
+ * ((game * PLANES + plane) * rows + row) * cols + col, holding 1 where the
+ * body, the head or the cherry is and 0 elsewhere;</li>
+ * <li>features: FEATURES floats per game, the head row and column and the
+ * direction one hot in Direction order;</li>
+ * <li>rewards: one float per game for the last step;</li>
+ * <li>dones: one byte per game, 1 if the last step ended its episode.</li>
+ * </ul>
+ * A game whose episode ends is reset at once with its next seed, so after a
+ * step with done set the observation is the first of the new episode. The
+ * planes are updated only where a step changed them.
+ *
+ * Usage of the built in benchmark: {@code java game.env.VectorEnv [games]
+ * [steps] [rows] [cols] [seed]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class VectorEnv {
+
+    /** The number of observation planes per game */
+    public static final int PLANES = 3;
+
+    /** The plane marking the cells of the body, head included */
+    public static final int BODY_PLANE = 0;
+
+    /** The plane marking the head */
+    public static final int HEAD_PLANE = 1;
+
+    /** The plane marking the cherry */
+    public static final int CHERRY_PLANE = 2;
+
+    /** The number of feature floats per game */
+    public static final int FEATURES = 6;
+
+    /** The reward for eating a cherry */
+    public static final float CHERRY_REWARD = 1f;
+
+    /** The reward for dying */
+    public static final float DEATH_REWARD = -1f;
+
+    /** The reward for filling the matrix */
+    public static final float WIN_REWARD = 10f;
+
+    /** The default number of games of the benchmark */
+    private static final int DEFAULT_GAMES = 256;
+
+    /** The default number of steps of the benchmark */
+    private static final int DEFAULT_STEPS = 10_000;
+
+    /** The default number of rows and columns of the benchmark games */
+    private static final int DEFAULT_DIMENSION = 20;
+
+    /** The Actions by ordinal */
+    private static final Action[] ACTIONS = Action.values();
+
+    /** The Directions by ordinal */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The games
+     */
+    private final SnekeEngine[] myEngines;
+
+    /**
+     * The number of rows in every matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in every matrix
+     */
+    private final int myCols;
+
+    /**
+     * The seed of the first episode of game 0
+     */
+    private final long myBaseSeed;
+
+    /**
+     * The number of ticks after which an episode is cut off
+     */
+    private final long myMaxTicks;
+
+    /**
+     * The number of episodes each game has started
+     */
+    private final long[] myEpisodes;
+
+    /**
+     * The Action ordinal of each game
+     */
+    private final ByteBuffer myActions;
+
+    /**
+     * The observation planes of each game
+     */
+    private final ByteBuffer myObservations;
+
+    /**
+     * The features of each game
+     */
+    private final FloatBuffer myFeatures;
+
+    /**
+     * The reward of each game for the last step
+     */
+    private final FloatBuffer myRewards;
+
+    /**
+     * Whether or not each game ended an episode on the last step
+     */
+    private final ByteBuffer myDones;
+
+    /**
+     * Initializes a new VectorEnv with every game at the start of its first
+     * episode
+     *
+     * @param theGames the number of games
+     * @param theRows the number of rows in every matrix
+     * @param theCols the number of columns in every matrix
+     * @param theMaxTicks the number of ticks after which an episode is cut
+     *         off and counted as done
+     * @param theSeed the seed of the first episode of game 0, episode e of
+     *         game g is seeded with theSeed + e * theGames + g
+     * @throws IllegalArgumentException if theGames or theMaxTicks is not
+     *         positive, theRows or theCols is less than
+     *         SnekeEngine.MIN_DIMENSION, or the observations would be larger
+     *         than 2GB
+     */
+    public VectorEnv(final int theGames, final int theRows, final int theCols,
+            final long theMaxTicks, final long theSeed) {
+        if (theGames <= 0 || theMaxTicks <= 0) {
+            throw new IllegalArgumentException(
+                    "theGames and theMaxTicks must be positive");
+        }
+        if ((long) theGames * PLANES * theRows * theCols
+                > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "the observations can not be larger than 2GB");
+        }
+        myEngines = new SnekeEngine[theGames];
+        for (int game = 0; game < theGames; game++) {
+            myEngines[game] = new SnekeEngine(theRows, theCols,
+                    theSeed + game);
+        }
+        myRows = theRows;
+        myCols = theCols;
+        myBaseSeed = theSeed;
+        myMaxTicks = theMaxTicks;
+        myEpisodes = new long[theGames];
+
+        myActions = direct(theGames);
+        myObservations = direct(theGames * PLANES * theRows * theCols);
+        myFeatures = direct(theGames * FEATURES * Float.BYTES)
+                .asFloatBuffer();
+        myRewards = direct(theGames * Float.BYTES).asFloatBuffer();
+        myDones = direct(theGames);
+        for (int game = 0; game < theGames; game++) {
+            myActions.put(game, (byte) Action.STRAIGHT.ordinal());
+            writeObservation(game);
+        }
+    }
+
+    /**
+     * Returns the number of games
+     * @return the number of games
+     */
+    public int getGames() {
+        return myEngines.length;
+    }
+
+    /**
+     * Returns the number of rows in every matrix
+     * @return the number of rows in every matrix
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns in every matrix
+     * @return the number of columns in every matrix
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the buffer the trainer writes the Action ordinal of each game
+     * into before a step
+     * @return the action buffer, one byte per game
+     */
+    public ByteBuffer getActions() {
+        return myActions;
+    }
+
+    /**
+     * Returns the observation planes of every game
+     * @return the observation buffer
+     */
+    public ByteBuffer getObservations() {
+        return myObservations;
+    }
+
+    /**
+     * Returns the features of every game
+     * @return the feature buffer, FEATURES floats per game
+     */
+    public FloatBuffer getFeatures() {
+        return myFeatures;
+    }
+
+    /**
+     * Returns the reward of every game for the last step
+     * @return the reward buffer, one float per game
+     */
+    public FloatBuffer getRewards() {
+        return myRewards;
+    }
+
+    /**
+     * Returns whether or not every game ended an episode on the last step
+     * @return the done buffer, one byte per game
+     */
+    public ByteBuffer getDones() {
+        return myDones;
+    }
+
+    /**
+     * Returns the engine of a game, to inspect it between steps. It must
+     * not be changed
+     *
+     * @param theGame the game
+     * @throws IndexOutOfBoundsException if theGame is not a game
+     * @return the engine of theGame
+     */
+    public SnekeEngine getEngine(final int theGame) {
+        return myEngines[theGame];
+    }
+
+    /**
+     * Returns the number of episodes a game has finished
+     *
+     * @param theGame the game
+     * @throws IndexOutOfBoundsException if theGame is not a game
+     * @return the number of finished episodes
+     */
+    public long getEpisodes(final int theGame) {
+        return myEpisodes[theGame];
+    }
+
+    /**
+     * Starts a new episode in every game and clears the rewards and dones
+     */
+    public void reset() {
+        for (int game = 0; game < myEngines.length; game++) {
+            startEpisode(game);
+            myRewards.put(game, 0f);
+            myDones.put(game, (byte) 0);
+        }
+    }
+
+    /**
+     * Copies theActions into the action buffer and steps every game
+     *
+     * @param theActions the Action ordinal of each game
+     * @throws IllegalArgumentException if theActions does not hold one
+     *         valid Action ordinal per game
+     */
+    public void step(final int[] theActions) {
+        if (theActions.length != myEngines.length) {
+            throw new IllegalArgumentException(
+                    "theActions must have one action per game");
+        }
+        for (int game = 0; game < theActions.length; game++) {
+            myActions.put(game, (byte) theActions[game]);
+        }
+        step();
+    }
+
+    /**
+     * Steps every game with the Action in the action buffer, writing the
+     * new observations, the rewards and the dones, and resetting the games
+     * whose episodes ended
+     *
+     * @throws IllegalArgumentException if the action buffer holds an
+     *         invalid Action ordinal, the games before it have stepped
+     */
+    public void step() {
+        final int planeSize = myRows * myCols;
+        for (int game = 0; game < myEngines.length; game++) {
+            final int action = myActions.get(game);
+            if (action < 0 || action >= ACTIONS.length) {
+                throw new IllegalArgumentException("game " + game
+                        + " has the invalid action " + action);
+            }
+            final SnekeEngine engine = myEngines[game];
+            final int base = game * PLANES * planeSize;
+            final int oldHead = head(engine);
+            final int oldTail = engine.getBodyCell(0);
+            final int oldCherry = cherry(engine);
+            final int oldLength = engine.getLength();
+
+            final boolean alive = engine.step(ACTIONS[action]);
+            float reward = 0f;
+            boolean done = !alive;
+            if (engine.hasWon()) {
+                reward = WIN_REWARD;
+            } else if (!alive) {
+                reward = DEATH_REWARD;
+            } else if (engine.getLength() > oldLength) {
+                reward = CHERRY_REWARD;
+            }
+            if (alive && engine.getTicks() >= myMaxTicks) {
+                done = true;
+            }
+
+            if (done) {
+                myEpisodes[game]++;
+                startEpisode(game);
+            } else {
+                // only the cells the move touched change
+                final int head = head(engine);
+                myObservations.put(base + HEAD_PLANE * planeSize + oldHead,
+                        (byte) 0);
+                myObservations.put(base + HEAD_PLANE * planeSize + head,
+                        (byte) 1);
+                myObservations.put(base + BODY_PLANE * planeSize + head,
+                        (byte) 1);
+                if (engine.getLength() == oldLength) {
+                    myObservations.put(base + BODY_PLANE * planeSize
+                            + oldTail, (byte) 0);
+                }
+                final int cherry = cherry(engine);
+                if (cherry != oldCherry) {
+                    myObservations.put(base + CHERRY_PLANE * planeSize
+                            + oldCherry, (byte) 0);
+                    if (cherry >= 0) {
+                        myObservations.put(base + CHERRY_PLANE * planeSize
+                                + cherry, (byte) 1);
+                    }
+                }
+                writeFeatures(game);
+            }
+            myRewards.put(game, reward);
+            myDones.put(game, (byte) (done ? 1 : 0));
+        }
+    }
+
+    /**
+     * Resets a game with the seed of its next episode and writes its whole
+     * observation
+     *
+     * @param theGame the game
+     */
+    private void startEpisode(final int theGame) {
+        myEngines[theGame].reset(myBaseSeed
+                + myEpisodes[theGame] * myEngines.length + theGame);
+        writeObservation(theGame);
+    }
+
+    /**
+     * Writes every plane and the features of a game
+     *
+     * @param theGame the game
+     */
+    private void writeObservation(final int theGame) {
+        final SnekeEngine engine = myEngines[theGame];
+        final int planeSize = myRows * myCols;
+        final int base = theGame * PLANES * planeSize;
+        for (int i = 0; i < PLANES * planeSize; i++) {
+            myObservations.put(base + i, (byte) 0);
+        }
+        for (int i = 0; i < engine.getLength(); i++) {
+            myObservations.put(base + BODY_PLANE * planeSize
+                    + engine.getBodyCell(i), (byte) 1);
+        }
+        myObservations.put(base + HEAD_PLANE * planeSize + head(engine),
+                (byte) 1);
+        final int cherry = cherry(engine);
+        if (cherry >= 0) {
+            myObservations.put(base + CHERRY_PLANE * planeSize + cherry,
+                    (byte) 1);
+        }
+        writeFeatures(theGame);
+    }
+
+    /**
+     * Writes the features of a game
+     *
+     * @param theGame the game
+     */
+    private void writeFeatures(final int theGame) {
+        final SnekeEngine engine = myEngines[theGame];
+        final int base = theGame * FEATURES;
+        myFeatures.put(base, engine.getHeadRow());
+        myFeatures.put(base + 1, engine.getHeadCol());
+        final Direction direction = engine.getCurrentDirection();
+        for (Direction each : DIRECTIONS) {
+            myFeatures.put(base + 2 + each.ordinal(),
+                    each == direction ? 1f : 0f);
+        }
+    }
+
+    /**
+     * Returns the packed head cell of theEngine
+     *
+     * @param theEngine the game
+     * @return the packed head cell
+     */
+    private int head(final SnekeEngine theEngine) {
+        return theEngine.getHeadRow() * myCols + theEngine.getHeadCol();
+    }
+
+    /**
+     * Returns the packed cherry cell of theEngine
+     *
+     * @param theEngine the game
+     * @return the packed cherry cell, -1 if there is none
+     */
+    private int cherry(final SnekeEngine theEngine) {
+        return theEngine.getCherryRow() < 0 ? -1 :
+                theEngine.getCherryRow() * myCols + theEngine.getCherryCol();
+    }
+
+    /**
+     * Returns a zeroed direct buffer in native byte order
+     *
+     * @param theBytes the size of the buffer
+     * @return the buffer
+     */
+    private static ByteBuffer direct(final int theBytes) {
+        return ByteBuffer.allocateDirect(theBytes)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The entry point of the environment benchmark, which steps a batch of
+     * games with random actions and reports the steps per second
+     *
+     * @param theArgs the command line arguments, optionally the number of
+     *         games, steps, rows, columns and the seed
+     */
+    public static void main(final String[] theArgs) {
+        final int games = theArgs.length > 0 ?
+                Integer.parseInt(theArgs[0]) : DEFAULT_GAMES;
+        final int steps = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_STEPS;
+        final int rows = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_DIMENSION;
+        final int cols = theArgs.length > 3 ?
+                Integer.parseInt(theArgs[3]) : DEFAULT_DIMENSION;
+        final long seed = theArgs.length > 4 ?
+                Long.parseLong(theArgs[4]) : System.nanoTime();
+
+        final VectorEnv env = new VectorEnv(games, rows, cols, 10_000L,
+                seed);
+        final ByteBuffer actions = env.getActions();
+        long random = seed;
+        long episodes = 0;
+        final long start = System.nanoTime();
+        for (int step = 0; step < steps; step++) {
+            for (int game = 0; game < games; game++) {
+                // mostly straight, like a fresh policy that avoids spinning
+                random = random * 6364136223846793005L + 1442695040888963407L;
+                final int roll = (int) (random >>> 60);
+                actions.put(game, (byte) (roll < 2 ? 0 : roll < 4 ? 2 : 1));
+            }
+            env.step();
+            for (int game = 0; game < games; game++) {
+                episodes += env.getDones().get(game);
+            }
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("games: %d, matrix: %dx%d%n", games, rows, cols);
+        System.out.printf("batch steps/second: %.0f%n", steps / seconds);
+        System.out.printf("game steps/second: %.0f%n",
+                (double) steps * games / seconds);
+        System.out.printf("episodes finished: %d%n", episodes);
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.host;
+
+import game.Controller;
+import game.SnekeEngine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The Session class is one headless game run by a SessionHost: a
+ * SnekeEngine played by a Controller at its own tick rate. A game that ends
+ * is reset with the next seed, so a Session plays until it is closed.
+ *
+ * The engine and Controller are only used on the host's worker threads, one
+ * tick at a time, and must not be touched by anything else while the
+ * Session is open
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class Session {
+
+    /**
+     * The host that runs the Session
+     */
+    private final SessionHost myHost;
+
+    /**
+     * The game being played
+     */
+    private final SnekeEngine myEngine;
+
+    /**
+     * Chooses the Action of every tick
+     */
+    private final Controller myController;
+
+    /**
+     * Plays one tick, handed to the worker pool so ticking never allocates
+     * a task
+     */
+    private final Runnable myTask;
+
+    /**
+     * The time between ticks
+     */
+    private volatile long myTickNanos;
+
+    /**
+     * Whether or not the Session is paused
+     */
+    private volatile boolean myPaused;
+
+    /**
+     * Whether or not the Session is closed
+     */
+    private final AtomicBoolean myClosed = new AtomicBoolean();
+
+    /**
+     * Whether or not the Session came due while paused and was left off
+     * the wheel, guarded by this
+     */
+    private boolean myParked;
+
+    /**
+     * The number of ticks played
+     */
+    private volatile long myTicks;
+
+    /**
+     * The number of games finished
+     */
+    private volatile long myGames;
+
+    /**
+     * The System.nanoTime() the next tick is due at
+     */
+    long myDeadline;
+
+    /**
+     * The wheel tick the Session is due at while it is on the wheel
+     */
+    long myWheelTick;
+
+    /**
+     * The next Session in the same wheel slot, or on the stack of Sessions
+     * waiting for the timer to put them on the wheel
+     */
+    Session myNextInSlot;
+
+    /**
+     * Initializes a new Session, which starts when the host schedules it
+     *
+     * @param theHost the host that runs the Session
+     * @param theEngine the game to play
+     * @param theController chooses the Action of every tick
+     * @param theTickNanos the time between ticks
+     */
+    Session(final SessionHost theHost, final SnekeEngine theEngine,
+            final Controller theController, final long theTickNanos) {
+        myHost = theHost;
+        myEngine = theEngine;
+        myController = theController;
+        myTickNanos = theTickNanos;
+        myTask = this::tick;
+    }
+
+    /**
+     * Stops ticking until resume is called
+     */
+    public void pause() {
+        myPaused = true;
+    }
+
+    /**
+     * Ticks again after a pause, the next tick one tick time from now
+     */
+    public void resume() {
+        final boolean parked;
+        synchronized (this) {
+            myPaused = false;
+            parked = myParked;
+            myParked = false;
+        }
+        if (parked && !myClosed.get()) {
+            myDeadline = System.nanoTime() + myTickNanos;
+            myHost.schedule(this);
+        }
+    }
+
+    /**
+     * Returns whether or not the Session is paused
+     * @return whether or not the Session is paused
+     */
+    public boolean isPaused() {
+        return myPaused;
+    }
+
+    /**
+     * Sets the time between ticks, used from the next tick on
+     *
+     * @param theTickNanos the time between ticks
+     * @throws IllegalArgumentException if theTickNanos is less than the
+     *         resolution of the host
+     */
+    public void setTickNanos(final long theTickNanos) {
+        myHost.checkTickNanos(theTickNanos);
+        myTickNanos = theTickNanos;
+    }
+
+    /**
+     * Returns the time between ticks
+     * @return the time between ticks
+     */
+    public long getTickNanos() {
+        return myTickNanos;
+    }
+
+    /**
+     * Returns the number of ticks played
+     * @return the number of ticks played
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the number of games finished
+     * @return the number of games finished
+     */
+    public long getGames() {
+        return myGames;
+    }
+
+    /**
+     * Stops the Session for good and removes it from the host
+     */
+    public void close() {
+        // only the close that flips the flag counts the Session as closed
+        if (myClosed.compareAndSet(false, true)) {
+            myHost.closed(this);
+        }
+    }
+
+    /**
+     * Returns whether or not the Session is closed
+     * @return whether or not the Session is closed
+     */
+    public boolean isClosed() {
+        return myClosed.get();
+    }
+
+    /**
+     * Returns the task that plays one tick
+     * @return the task that plays one tick
+     */
+    Runnable getTask() {
+        return myTask;
+    }
+
+    /**
+     * Plays one tick on a worker thread and puts the Session back on the
+     * wheel for the next one. A paused Session is left off the wheel until
+     * it is resumed, and a closed one is dropped
+     */
+    private void tick() {
+        if (myClosed.get()) {
+            return;
+        }
+        synchronized (this) {
+            if (myPaused) {
+                myParked = true;
+                return;
+            }
+        }
+
+        final long start = System.nanoTime();
+        myHost.recordLateness(start - myDeadline);
+        if (!myEngine.step(myController.nextAction(myEngine))) {
+            myEngine.reset(myEngine.getSeed() + 1);
+            myController.newGame(myEngine);
+            myGames++;
+        }
+        myTicks++;
+
+        final long tickNanos = myTickNanos;
+        long deadline = myDeadline + tickNanos;
+        if (deadline < start - tickNanos) {
+            // more than a tick behind, the lost ticks are dropped
+            deadline = start;
+        }
+        myDeadline = deadline;
+        myHost.schedule(this);
+    }
+}
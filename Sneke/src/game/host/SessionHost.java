@@ -0,0 +1,459 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.host;
+
+import game.Controller;
+import game.SafeController;
+import game.SnekeEngine;
+import game.stats.Histogram;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The SessionHost class runs many independent headless games in one JVM,
+ * each a Session with its own tick rate that can be paused and resumed.
+ *
+ * One timer thread advances a hierarchical TimingWheel every resolution
+ * and hands the Sessions that are due to a small pool of worker threads,
+ * which play one tick each and put them back. Threads are only needed for
+ * the ticks being played, not for every Session, and scheduling a tick
+ * costs the same however many Sessions there are. Workers hand Sessions
+ * back on a lock free stack the timer empties onto the wheel, so only the
+ * timer thread touches the wheel and no tick takes a shared lock. How late
+ * each tick starts is measured into a Histogram per worker, merged when it
+ * is read, so the host can tell when it has more Sessions than it can keep
+ * up with
+ *
+ * Usage: {@code java game.host.SessionHost [tick ms] [seconds] [workers]
+ * [max sessions]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class SessionHost implements Closeable {
+
+    /** The default time between wheel ticks, 1 millisecond */
+    public static final long DEFAULT_RESOLUTION_NANOS = 1_000_000L;
+
+    /** The default tick time of the benchmark sessions in milliseconds */
+    private static final int DEFAULT_TICK_MILLIS = 100;
+
+    /** The default number of seconds each benchmark step runs */
+    private static final int DEFAULT_SECONDS = 5;
+
+    /** The default most sessions the benchmark tries */
+    private static final int DEFAULT_MAX_SESSIONS = 1 << 20;
+
+    /** The number of sessions of the first benchmark step */
+    private static final int FIRST_STEP_SESSIONS = 1_000;
+
+    /** The rows and columns of the benchmark games */
+    private static final int BENCHMARK_DIMENSION = 20;
+
+    /** The share of the expected ticks a sustained step must play */
+    private static final double SUSTAINED_SHARE = 0.95;
+
+    /**
+     * The time between wheel ticks
+     */
+    private final long myResolutionNanos;
+
+    /**
+     * The System.nanoTime() wheel tick 0 started at
+     */
+    private final long myStart;
+
+    /**
+     * The Sessions waiting for their next tick, only used by the timer
+     * thread
+     */
+    private final TimingWheel myWheel;
+
+    /**
+     * The last Session scheduled since the timer last emptied the stack,
+     * the others linked through myNextInSlot
+     */
+    private final AtomicReference<Session> myScheduled;
+
+    /**
+     * Plays the ticks
+     */
+    private final ExecutorService myWorkers;
+
+    /**
+     * Advances the wheel
+     */
+    private final Thread myTimer;
+
+    /**
+     * How late each tick a worker thread played started
+     */
+    private final ThreadLocal<Histogram> myLateness;
+
+    /**
+     * The lateness Histogram of every worker thread, each guarded by itself
+     */
+    private final List<Histogram> myLatenesses;
+
+    /**
+     * The number of open Sessions
+     */
+    private final AtomicInteger mySessions;
+
+    /**
+     * Whether or not the host is closed
+     */
+    private volatile boolean myClosed;
+
+    /**
+     * Initializes a new SessionHost with the default resolution
+     *
+     * @param theWorkers the number of worker threads
+     * @throws IllegalArgumentException if theWorkers is not positive
+     */
+    public SessionHost(final int theWorkers) {
+        this(theWorkers, DEFAULT_RESOLUTION_NANOS);
+    }
+
+    /**
+     * Initializes a new SessionHost and starts its threads
+     *
+     * @param theWorkers the number of worker threads
+     * @param theResolutionNanos the time between wheel ticks
+     * @throws IllegalArgumentException if theWorkers or theResolutionNanos
+     *         is not positive
+     */
+    public SessionHost(final int theWorkers, final long theResolutionNanos) {
+        if (theWorkers <= 0 || theResolutionNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "theWorkers and theResolutionNanos must be positive");
+        }
+        myResolutionNanos = theResolutionNanos;
+        myWheel = new TimingWheel();
+        myScheduled = new AtomicReference<>();
+        myLatenesses = new CopyOnWriteArrayList<>();
+        myLateness = ThreadLocal.withInitial(() -> {
+            final Histogram lateness = new Histogram();
+            myLatenesses.add(lateness);
+            return lateness;
+        });
+        mySessions = new AtomicInteger();
+        final AtomicInteger workers = new AtomicInteger();
+        myWorkers = Executors.newFixedThreadPool(theWorkers, theTask -> {
+            final Thread thread = new Thread(theTask,
+                    "session-worker-" + workers.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        myTimer = new Thread(this::runTimer, "session-timer");
+        myTimer.setDaemon(true);
+        myStart = System.nanoTime();
+        myTimer.start();
+    }
+
+    /**
+     * Opens a Session that plays theEngine with theController, its first
+     * tick one tick time from now
+     *
+     * @param theEngine the game to play
+     * @param theController chooses the Action of every tick
+     * @param theTickNanos the time between ticks
+     * @throws NullPointerException if theEngine or theController is null
+     * @throws IllegalArgumentException if theTickNanos is less than the
+     *         resolution
+     * @throws IllegalStateException if the host is closed
+     * @return the new Session
+     */
+    public Session open(final SnekeEngine theEngine,
+            final Controller theController, final long theTickNanos) {
+        return open(theEngine, theController, theTickNanos, theTickNanos);
+    }
+
+    /**
+     * Opens a Session that plays theEngine with theController
+     *
+     * @param theEngine the game to play
+     * @param theController chooses the Action of every tick
+     * @param theTickNanos the time between ticks
+     * @param theFirstTickNanos the time from now to the first tick
+     * @throws NullPointerException if theEngine or theController is null
+     * @throws IllegalArgumentException if theTickNanos is less than the
+     *         resolution or theFirstTickNanos is negative
+     * @throws IllegalStateException if the host is closed
+     * @return the new Session
+     */
+    public Session open(final SnekeEngine theEngine,
+            final Controller theController, final long theTickNanos,
+            final long theFirstTickNanos) {
+        Objects.requireNonNull(theEngine, "theEngine can not be null");
+        Objects.requireNonNull(theController,
+                "theController can not be null");
+        checkTickNanos(theTickNanos);
+        if (theFirstTickNanos < 0) {
+            throw new IllegalArgumentException(
+                    "theFirstTickNanos can not be negative");
+        }
+        if (myClosed) {
+            throw new IllegalStateException("the host is closed");
+        }
+        final Session session = new Session(this, theEngine, theController,
+                theTickNanos);
+        theController.newGame(theEngine);
+        session.myDeadline = System.nanoTime() + theFirstTickNanos;
+        mySessions.incrementAndGet();
+        schedule(session);
+        return session;
+    }
+
+    /**
+     * Returns the number of open Sessions
+     * @return the number of open Sessions
+     */
+    public int getSessionCount() {
+        return mySessions.get();
+    }
+
+    /**
+     * Returns the number of ticks played since the statistics were reset
+     * @return the number of ticks played
+     */
+    public long getTicks() {
+        return lateness().getCount();
+    }
+
+    /**
+     * Returns a percentile of how late ticks started compared to when they
+     * were due
+     *
+     * @param thePercentile the percentile, between 0 and 100
+     * @return the lateness at thePercentile in nanoseconds
+     */
+    public long getLatenessNanos(final double thePercentile) {
+        return lateness().getPercentile(thePercentile);
+    }
+
+    /**
+     * Returns the latest a tick started compared to when it was due
+     * @return the most lateness in nanoseconds
+     */
+    public long getMaxLatenessNanos() {
+        return lateness().getMax();
+    }
+
+    /**
+     * Clears the tick count and lateness
+     */
+    public void resetStatistics() {
+        for (Histogram lateness : myLatenesses) {
+            synchronized (lateness) {
+                lateness.reset();
+            }
+        }
+    }
+
+    /**
+     * Stops the timer and the workers, every Session stops ticking
+     */
+    @Override
+    public void close() {
+        if (myClosed) {
+            return;
+        }
+        myClosed = true;
+        myTimer.interrupt();
+        try {
+            myTimer.join();
+        } catch (final InterruptedException theException) {
+            Thread.currentThread().interrupt();
+        }
+        myWorkers.shutdownNow();
+    }
+
+    /**
+     * Pushes theSession on the stack the timer puts on the wheel, for the
+     * tick at its deadline
+     *
+     * @param theSession the Session to schedule, not on the wheel or stack
+     */
+    void schedule(final Session theSession) {
+        Session next;
+        do {
+            next = myScheduled.get();
+            theSession.myNextInSlot = next;
+        } while (!myScheduled.compareAndSet(next, theSession));
+    }
+
+    /**
+     * Records how late a tick started in the Histogram of the calling
+     * worker thread
+     *
+     * @param theNanos the time from the deadline to the start of the tick
+     */
+    void recordLateness(final long theNanos) {
+        final Histogram lateness = myLateness.get();
+        synchronized (lateness) {
+            lateness.record(Math.max(0, theNanos));
+        }
+    }
+
+    /**
+     * Counts theSession as closed, it is dropped the next time it is due
+     *
+     * @param theSession the closed Session
+     */
+    void closed(final Session theSession) {
+        mySessions.decrementAndGet();
+    }
+
+    /**
+     * Checks a Session tick time
+     *
+     * @param theTickNanos the time between ticks
+     * @throws IllegalArgumentException if theTickNanos is less than the
+     *         resolution
+     */
+    void checkTickNanos(final long theTickNanos) {
+        if (theTickNanos < myResolutionNanos) {
+            throw new IllegalArgumentException(
+                    "theTickNanos can not be less than the resolution");
+        }
+    }
+
+    /**
+     * Returns the lateness Histograms of every worker thread merged into one
+     * @return the lateness of every tick played
+     */
+    private Histogram lateness() {
+        final Histogram merged = new Histogram();
+        for (Histogram lateness : myLatenesses) {
+            synchronized (lateness) {
+                merged.add(lateness);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The body of the timer thread: puts the scheduled Sessions on the
+     * wheel, takes the due ones off every resolution and hands them to the
+     * workers
+     */
+    private void runTimer() {
+        while (!myClosed) {
+            final long tick = (System.nanoTime() - myStart)
+                    / myResolutionNanos;
+            Session scheduled = myScheduled.getAndSet(null);
+            while (scheduled != null) {
+                final Session next = scheduled.myNextInSlot;
+                scheduled.myNextInSlot = null;
+                // rounded up so a Session is never early
+                final long sinceStart = scheduled.myDeadline - myStart;
+                myWheel.add(scheduled, sinceStart <= 0 ? 0 : (sinceStart
+                        + myResolutionNanos - 1) / myResolutionNanos);
+                scheduled = next;
+            }
+            Session due = myWheel.advance(tick);
+            while (due != null) {
+                final Session next = due.myNextInSlot;
+                due.myNextInSlot = null;
+                myWorkers.execute(due.getTask());
+                due = next;
+            }
+            LockSupport.parkNanos(myStart + (tick + 1) * myResolutionNanos
+                    - System.nanoTime());
+        }
+    }
+
+    /**
+     * The entry point of the session host benchmark, which opens more and
+     * more sessions, doubling each step, until the host can no longer keep
+     * their tick rate, and reports the most it sustained
+     *
+     * @param theArgs the command line arguments, optionally the tick time
+     *         in milliseconds, the seconds each step runs, the number of
+     *         workers and the most sessions to try
+     * @throws InterruptedException if interrupted while a step runs
+     */
+    public static void main(final String[] theArgs)
+            throws InterruptedException {
+        final long tickNanos = TimeUnit.MILLISECONDS.toNanos(
+                theArgs.length > 0 ? Integer.parseInt(theArgs[0]) :
+                        DEFAULT_TICK_MILLIS);
+        final int seconds = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_SECONDS;
+        final int workers = theArgs.length > 2 ? Integer.parseInt(theArgs[2])
+                : Runtime.getRuntime().availableProcessors();
+        final int maxSessions = theArgs.length > 3 ?
+                Integer.parseInt(theArgs[3]) : DEFAULT_MAX_SESSIONS;
+
+        System.out.printf("tick: %.1f ms, workers: %d%n", tickNanos / 1e6,
+                workers);
+        int sustained = 0;
+        for (int sessions = Math.min(FIRST_STEP_SESSIONS, maxSessions);
+                sessions <= maxSessions; sessions *= 2) {
+            if (!benchmark(sessions, tickNanos, seconds, workers)) {
+                break;
+            }
+            sustained = sessions;
+        }
+        System.out.printf("sustained: %d sessions at %.1f ms per tick%n",
+                sustained, tickNanos / 1e6);
+    }
+
+    /**
+     * Runs theSessions sessions for theSeconds seconds and prints how many
+     * ticks they played and how late
+     *
+     * @param theSessions the number of sessions
+     * @param theTickNanos the time between ticks
+     * @param theSeconds the number of seconds to measure
+     * @param theWorkers the number of worker threads
+     * @throws InterruptedException if interrupted while the step runs
+     * @return whether or not the host kept up with the sessions
+     */
+    private static boolean benchmark(final int theSessions,
+            final long theTickNanos, final int theSeconds,
+            final int theWorkers) throws InterruptedException {
+        try (SessionHost host = new SessionHost(theWorkers)) {
+            for (int i = 0; i < theSessions; i++) {
+                // spread the first ticks so the sessions do not tick at once
+                host.open(new SnekeEngine(BENCHMARK_DIMENSION,
+                                BENCHMARK_DIMENSION, i),
+                        new SafeController(), theTickNanos,
+                        theTickNanos * i / theSessions);
+            }
+            // the first tick time warms up the workers
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(theTickNanos) + 1);
+            host.resetStatistics();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(theSeconds));
+
+            final double expected = (double) theSessions
+                    * TimeUnit.SECONDS.toNanos(theSeconds) / theTickNanos;
+            final long ticks = host.getTicks();
+            final long p99 = host.getLatenessNanos(99);
+            final boolean kept = ticks >= expected * SUSTAINED_SHARE
+                    && p99 < theTickNanos;
+            System.out.printf("sessions=%d ticks/s=%.0f (%.1f%% of due)"
+                            + " lateness p50/p99/max=%.2f/%.2f/%.2f ms%s%n",
+                    theSessions, ticks / (double) theSeconds,
+                    100.0 * ticks / expected,
+                    host.getLatenessNanos(50) / 1e6, p99 / 1e6,
+                    host.getMaxLatenessNanos() / 1e6,
+                    kept ? "" : " NOT SUSTAINED");
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.host;
+
+/**
+ * The TimingWheel class is a hierarchical timing wheel of Sessions: four
+ * levels of 64 slots, where a slot of level n spans 64^n wheel ticks.
+ *
+ * A Session is put on the lowest level whose range reaches its tick, and
+ * when the level below wraps around the slot it is in is cascaded down, so
+ * adding a Session and taking the due ones are constant time no matter how
+ * many Sessions there are. The slots are singly linked lists threaded
+ * through the Sessions, so the wheel never allocates. It is not thread
+ * safe, only the timer thread of the SessionHost uses it
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+final class TimingWheel {
+
+    /** The number of bits of a slot index */
+    private static final int SLOT_BITS = 6;
+
+    /** The number of slots on each level */
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    /** The number of levels */
+    private static final int LEVELS = 4;
+
+    /** The most wheel ticks ahead a Session can be put in its own slot */
+    private static final long RANGE = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * The first Session of each slot of each level
+     */
+    private final Session[][] mySlots;
+
+    /**
+     * The next wheel tick to take the due Sessions of
+     */
+    private long myTick;
+
+    /**
+     * The number of Sessions on the wheel
+     */
+    private int mySize;
+
+    /**
+     * Initializes a new empty TimingWheel
+     */
+    TimingWheel() {
+        mySlots = new Session[LEVELS][SLOTS];
+    }
+
+    /**
+     * Returns the number of Sessions on the wheel
+     * @return the number of Sessions on the wheel
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * Puts theSession on the wheel to be due at theTick, or on the next
+     * tick if theTick has already passed
+     *
+     * @param theSession the Session, not on the wheel
+     * @param theTick the wheel tick the Session is due at
+     */
+    void add(final Session theSession, final long theTick) {
+        theSession.myWheelTick = Math.max(theTick, myTick);
+        insert(theSession);
+        mySize++;
+    }
+
+    /**
+     * Takes every Session due up to and including theTick off the wheel
+     *
+     * @param theTick the current wheel tick
+     * @return the due Sessions linked through myNextInSlot, or null if none
+     */
+    Session advance(final long theTick) {
+        Session due = null;
+        while (myTick <= theTick) {
+            // the levels above wrap when the ones below them do
+            for (int level = 1; level < LEVELS
+                    && index(myTick, level - 1) == 0; level++) {
+                cascade(level, index(myTick, level));
+            }
+            final int slot = index(myTick, 0);
+            Session session = mySlots[0][slot];
+            mySlots[0][slot] = null;
+            while (session != null) {
+                final Session next = session.myNextInSlot;
+                session.myNextInSlot = due;
+                due = session;
+                mySize--;
+                session = next;
+            }
+            myTick++;
+        }
+        return due;
+    }
+
+    /**
+     * Puts theSession in the slot of the lowest level whose range reaches
+     * its tick, or the farthest slot if none does
+     *
+     * @param theSession the Session, not on the wheel
+     */
+    private void insert(final Session theSession) {
+        long tick = theSession.myWheelTick;
+        final long delta = tick - myTick;
+        int level = 0;
+        if (delta >= RANGE) {
+            // cascaded again when it comes round, until it is in range
+            tick = myTick + RANGE - 1;
+            level = LEVELS - 1;
+        } else {
+            while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+                level++;
+            }
+        }
+        final int slot = index(tick, level);
+        theSession.myNextInSlot = mySlots[level][slot];
+        mySlots[level][slot] = theSession;
+    }
+
+    /**
+     * Moves every Session in a slot down to the level its tick now fits
+     *
+     * @param theLevel the level of the slot
+     * @param theSlot the slot
+     */
+    private void cascade(final int theLevel, final int theSlot) {
+        Session session = mySlots[theLevel][theSlot];
+        mySlots[theLevel][theSlot] = null;
+        while (session != null) {
+            final Session next = session.myNextInSlot;
+            insert(session);
+            session = next;
+        }
+    }
+
+    /**
+     * Returns the slot theTick falls in on theLevel
+     *
+     * @param theTick the wheel tick
+     * @param theLevel the level
+     * @return the slot index
+     */
+    private static int index(final long theTick, final int theLevel) {
+        return (int) (theTick >>> (SLOT_BITS * theLevel)) & (SLOTS - 1);
+    }
+}
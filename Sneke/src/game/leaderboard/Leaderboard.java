@@ -0,0 +1,642 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.leaderboard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * The Leaderboard class keeps the best games in an append-only log file
+ * that any number of processes can share, and the best few of them in
+ * memory.
+ *
+ * The log is a 24 byte header, the magic number "SNKL", a version, a
+ * generation and the capacity, followed by fixed size records: the score,
+ * the length, the timestamp and a CRC32 of the three. New games are
+ * appended to the end, and once the log holds many more records than the
+ * leaderboard shows it is compacted: the best capacity records are written
+ * to a new file with the next generation, which is renamed over the log.
+ * Compaction drops every other record, so the log is not a history of
+ * every game played. A log only opens with the capacity it was created
+ * with, so no process compacts away records another one still shows. Logs
+ * of version 1, which did not record the capacity, are upgraded with every
+ * record on the first append.
+ *
+ * Every process takes a FileLock on a lock file next to the log, which is
+ * never replaced, shared to read and exclusive to append or compact. A
+ * refresh only reads the records appended since the last one, unless the
+ * generation changed. A record cut short by a crash fails its CRC and is
+ * cut off by the next append. The top records are kept sorted in memory
+ * and published as an immutable list, so reading them never blocks or
+ * touches the disk.
+ *
+ * Only one Leaderboard per log can be open in a JVM, since FileLocks are
+ * held by the process
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Leaderboard implements Closeable {
+
+    /** The default number of records shown */
+    public static final int DEFAULT_CAPACITY = 10;
+
+    /** The first 4 bytes of every log, "SNKL" */
+    private static final int MAGIC = 0x534E4B4C;
+
+    /** The version of the log format */
+    private static final int VERSION = 2;
+
+    /** The version of the log format before the capacity was recorded */
+    private static final int LEGACY_VERSION = 1;
+
+    /** The size of the header in bytes */
+    private static final int HEADER_BYTES = 24;
+
+    /** The size of the header of a version 1 log in bytes */
+    private static final int LEGACY_HEADER_BYTES = 16;
+
+    /** The size of a record in bytes */
+    private static final int RECORD_BYTES = 24;
+
+    /** The number of records read or written per buffer */
+    private static final int BATCH_RECORDS = 256;
+
+    /** The fewest records in the log before it is compacted */
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    /** The log is compacted at this many times the capacity of records */
+    private static final int COMPACT_FACTOR = 8;
+
+    /**
+     * The log file
+     */
+    private final Path myFile;
+
+    /**
+     * The lock file, open for as long as the Leaderboard
+     */
+    private final FileChannel myLockChannel;
+
+    /**
+     * The number of records kept in memory and through compaction
+     */
+    private final int myCapacity;
+
+    /**
+     * The number of records in the log at which it is compacted
+     */
+    private final long myCompactRecords;
+
+    /**
+     * The buffer records are read and written through, guarded by this
+     */
+    private final ByteBuffer myBuffer;
+
+    /**
+     * Checks the records, guarded by this
+     */
+    private final CRC32 myCrc;
+
+    /**
+     * The best records known, best first, guarded by this
+     */
+    private final ScoreRecord[] myTop;
+
+    /**
+     * The number of records in myTop, guarded by this
+     */
+    private int mySize;
+
+    /**
+     * The best records known as published to readers
+     */
+    private volatile List<ScoreRecord> myTopView;
+
+    /**
+     * The generation of the log that was read, -1 if none was
+     */
+    private long myGeneration;
+
+    /**
+     * The version of the log that was read
+     */
+    private int myVersion;
+
+    /**
+     * The offset in the log up to which it was read
+     */
+    private long myOffset;
+
+    /**
+     * The number of times the log was compacted by this Leaderboard
+     */
+    private volatile long myCompactions;
+
+    /**
+     * Opens the Leaderboard on theFile with the default capacity and reads
+     * it
+     *
+     * @param theFile the log file, created on the first append
+     * @throws NullPointerException if theFile is null
+     * @throws IOException if the lock file can not be opened or the log
+     *         can not be read
+     */
+    public Leaderboard(final Path theFile) throws IOException {
+        this(theFile, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens the Leaderboard on theFile and reads it
+     *
+     * @param theFile the log file, created on the first append
+     * @param theCapacity the number of records kept
+     * @throws NullPointerException if theFile is null
+     * @throws IllegalArgumentException if theCapacity is not positive
+     * @throws IOException if the lock file can not be opened, the log can
+     *         not be read or it was created with another capacity
+     */
+    public Leaderboard(final Path theFile, final int theCapacity)
+            throws IOException {
+        myFile = Objects.requireNonNull(theFile, "theFile can not be null");
+        if (theCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "theCapacity must be positive");
+        }
+        myCapacity = theCapacity;
+        myCompactRecords = Math.max(MIN_COMPACT_RECORDS,
+                (long) theCapacity * COMPACT_FACTOR);
+        myBuffer = ByteBuffer.allocate(Math.max(HEADER_BYTES,
+                RECORD_BYTES * BATCH_RECORDS));
+        myCrc = new CRC32();
+        myTop = new ScoreRecord[theCapacity];
+        myTopView = Collections.emptyList();
+        myGeneration = -1;
+        myLockChannel = FileChannel.open(
+                myFile.resolveSibling(myFile.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            refresh();
+        } catch (final IOException theException) {
+            myLockChannel.close();
+            throw theException;
+        }
+    }
+
+    /**
+     * Returns the best records known, best first. Never blocks or touches
+     * the disk
+     *
+     * @return an immutable list of at most the capacity records
+     */
+    public List<ScoreRecord> getTop() {
+        return myTopView;
+    }
+
+    /**
+     * Returns the best score known, 0 if there is none. Never blocks or
+     * touches the disk
+     *
+     * @return the best score known
+     */
+    public long getHighScore() {
+        final List<ScoreRecord> top = myTopView;
+        return top.isEmpty() ? 0 : top.get(0).getScore();
+    }
+
+    /**
+     * Returns the number of records kept
+     * @return the number of records kept
+     */
+    public int getCapacity() {
+        return myCapacity;
+    }
+
+    /**
+     * Returns the number of times the log was compacted by this Leaderboard
+     * @return the number of compactions
+     */
+    public long getCompactions() {
+        return myCompactions;
+    }
+
+    /**
+     * Reads the records other processes appended since the last read
+     *
+     * @throws IOException if the log can not be read or was created with
+     *         another capacity
+     */
+    public synchronized void refresh() throws IOException {
+        final FileLock lock = myLockChannel.lock(0, Long.MAX_VALUE, true);
+        try {
+            read();
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Appends theRecord to the log, after reading what other processes
+     * appended
+     *
+     * @param theRecord the finished game
+     * @throws NullPointerException if theRecord is null
+     * @throws IOException if the log can not be read or written
+     */
+    public void append(final ScoreRecord theRecord) throws IOException {
+        append(Collections.singletonList(Objects.requireNonNull(theRecord,
+                "theRecord can not be null")));
+    }
+
+    /**
+     * Appends theRecords to the log in one locked write, after reading what
+     * other processes appended, and compacts the log if it has grown large
+     *
+     * @param theRecords the finished games
+     * @throws NullPointerException if theRecords or one of them is null
+     * @throws IOException if the log can not be read or written, or was
+     *         created with another capacity
+     */
+    public synchronized void append(final List<ScoreRecord> theRecords)
+            throws IOException {
+        for (ScoreRecord record : Objects.requireNonNull(theRecords,
+                "theRecords can not be null")) {
+            Objects.requireNonNull(record, "a record can not be null");
+        }
+        if (theRecords.isEmpty()) {
+            return;
+        }
+        final FileLock lock = myLockChannel.lock();
+        try {
+            read();
+            if (myGeneration >= 0 && myVersion != VERSION) {
+                upgradeLocked();
+            }
+            try (FileChannel channel = FileChannel.open(myFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                if (myGeneration < 0) {
+                    writeHeader(channel, 0);
+                    myGeneration = 0;
+                    myVersion = VERSION;
+                    myOffset = HEADER_BYTES;
+                }
+                // a record cut short by a crash is dropped
+                channel.truncate(myOffset);
+                channel.position(myOffset);
+                writeRecords(channel, theRecords);
+                channel.force(false);
+                myOffset = channel.position();
+            }
+            for (ScoreRecord record : theRecords) {
+                offer(record);
+            }
+            publish();
+            if ((myOffset - HEADER_BYTES) / RECORD_BYTES
+                    >= myCompactRecords) {
+                compactLocked();
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the records kept, dropping the rest of
+     * its history
+     *
+     * @throws IOException if the log can not be read or written, or was
+     *         created with another capacity
+     */
+    public synchronized void compact() throws IOException {
+        final FileLock lock = myLockChannel.lock();
+        try {
+            read();
+            if (myGeneration >= 0) {
+                compactLocked();
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Closes the lock file
+     *
+     * @throws IOException if the lock file can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        myLockChannel.close();
+    }
+
+    /**
+     * Reads the log from where the last read stopped, or from the start if
+     * another process compacted it. Must be called holding a lock
+     *
+     * @throws IOException if the log can not be read, is not a log or was
+     *         created with another capacity
+     */
+    private void read() throws IOException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(myFile, StandardOpenOption.READ);
+        } catch (final NoSuchFileException theException) {
+            return;
+        }
+        try (channel) {
+            if (channel.size() < LEGACY_HEADER_BYTES) {
+                return;
+            }
+            myBuffer.clear().limit(LEGACY_HEADER_BYTES);
+            readFully(channel, 0);
+            final int version = myBuffer.getInt(Integer.BYTES);
+            if (myBuffer.getInt(0) != MAGIC
+                    || version != VERSION && version != LEGACY_VERSION) {
+                throw new IOException(myFile + " is not a leaderboard log");
+            }
+            final long generation = myBuffer.getLong(2 * Integer.BYTES);
+            if (version == VERSION) {
+                if (channel.size() < HEADER_BYTES) {
+                    return;
+                }
+                myBuffer.clear().limit(HEADER_BYTES);
+                readFully(channel, 0);
+                final int capacity = myBuffer.getInt(LEGACY_HEADER_BYTES);
+                if (capacity != myCapacity) {
+                    throw new IOException(myFile + " keeps " + capacity
+                            + " records, not " + myCapacity);
+                }
+            }
+            boolean changed = generation != myGeneration;
+            if (changed) {
+                myGeneration = generation;
+                myVersion = version;
+                myOffset = version == VERSION ? HEADER_BYTES
+                        : LEGACY_HEADER_BYTES;
+                mySize = 0;
+                Arrays.fill(myTop, null);
+            }
+
+            final long end = myOffset + (channel.size() - myOffset)
+                    / RECORD_BYTES * RECORD_BYTES;
+            while (myOffset < end) {
+                final int records = (int) Math.min(BATCH_RECORDS,
+                        (end - myOffset) / RECORD_BYTES);
+                myBuffer.clear().limit(records * RECORD_BYTES);
+                readFully(channel, myOffset);
+                for (int i = 0; i < records; i++) {
+                    final ScoreRecord record = readRecord(i * RECORD_BYTES);
+                    if (record == null) {
+                        // a torn record, the rest is cut off on append
+                        publishIf(changed);
+                        return;
+                    }
+                    changed |= offer(record);
+                    myOffset += RECORD_BYTES;
+                }
+            }
+            publishIf(changed);
+        }
+    }
+
+    /**
+     * Writes the kept records to a new log with the next generation and
+     * renames it over the log. Must be called holding the exclusive lock
+     * after a read
+     *
+     * @throws IOException if the log can not be written
+     */
+    private void compactLocked() throws IOException {
+        final Path temp = myFile.resolveSibling(
+                myFile.getFileName() + ".tmp");
+        // the records stay in the order they were played
+        final List<ScoreRecord> kept = new ArrayList<>(
+                Arrays.asList(myTop).subList(0, mySize));
+        kept.sort(Comparator.comparingLong(ScoreRecord::getTimestamp));
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeHeader(channel, myGeneration + 1);
+            channel.position(HEADER_BYTES);
+            writeRecords(channel, kept);
+            channel.force(false);
+            myOffset = channel.position();
+        }
+        replaceLog(temp);
+        myCompactions++;
+    }
+
+    /**
+     * Rewrites a version 1 log with the current header and the next
+     * generation, keeping every record read. Must be called holding the
+     * exclusive lock after a read
+     *
+     * @throws IOException if the log can not be read or written
+     */
+    private void upgradeLocked() throws IOException {
+        final Path temp = myFile.resolveSibling(
+                myFile.getFileName() + ".tmp");
+        try (FileChannel source = FileChannel.open(myFile,
+                StandardOpenOption.READ);
+             FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeHeader(channel, myGeneration + 1);
+            long position = LEGACY_HEADER_BYTES;
+            while (position < myOffset) {
+                position += source.transferTo(position, myOffset - position,
+                        channel.position(HEADER_BYTES + position
+                                - LEGACY_HEADER_BYTES));
+            }
+            channel.force(false);
+        }
+        replaceLog(temp);
+        myOffset += HEADER_BYTES - LEGACY_HEADER_BYTES;
+    }
+
+    /**
+     * Renames theTemp over the log as its next generation. Must be called
+     * holding the exclusive lock
+     *
+     * @param theTemp the new log
+     * @throws IOException if the log can not be replaced
+     */
+    private void replaceLog(final Path theTemp) throws IOException {
+        try {
+            Files.move(theTemp, myFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException theException) {
+            Files.move(theTemp, myFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        myGeneration++;
+        myVersion = VERSION;
+    }
+
+    /**
+     * Writes the header of a log at the start of theChannel
+     *
+     * @param theChannel the log
+     * @param theGeneration the generation of the log
+     * @throws IOException if the header can not be written
+     */
+    private void writeHeader(final FileChannel theChannel,
+            final long theGeneration) throws IOException {
+        myBuffer.clear();
+        myBuffer.putInt(MAGIC).putInt(VERSION).putLong(theGeneration)
+                .putInt(myCapacity).putInt(0);
+        myBuffer.flip();
+        while (myBuffer.hasRemaining()) {
+            theChannel.write(myBuffer, HEADER_BYTES - myBuffer.remaining());
+        }
+    }
+
+    /**
+     * Writes theRecords at the position of theChannel, a buffer at a time
+     *
+     * @param theChannel the log
+     * @param theRecords the records to write
+     * @throws IOException if the records can not be written
+     */
+    private void writeRecords(final FileChannel theChannel,
+            final List<ScoreRecord> theRecords) throws IOException {
+        myBuffer.clear();
+        for (ScoreRecord record : theRecords) {
+            if (myBuffer.remaining() < RECORD_BYTES) {
+                flushBuffer(theChannel);
+            }
+            final int start = myBuffer.position();
+            myBuffer.putLong(record.getScore()).putInt(record.getLength())
+                    .putLong(record.getTimestamp());
+            myCrc.reset();
+            myCrc.update(myBuffer.array(), start,
+                    RECORD_BYTES - Integer.BYTES);
+            myBuffer.putInt((int) myCrc.getValue());
+        }
+        flushBuffer(theChannel);
+    }
+
+    /**
+     * Writes what is in myBuffer at the position of theChannel and clears it
+     *
+     * @param theChannel the log
+     * @throws IOException if the buffer can not be written
+     */
+    private void flushBuffer(final FileChannel theChannel)
+            throws IOException {
+        myBuffer.flip();
+        while (myBuffer.hasRemaining()) {
+            theChannel.write(myBuffer);
+        }
+        myBuffer.clear();
+    }
+
+    /**
+     * Fills myBuffer up to its limit from theChannel
+     *
+     * @param theChannel the log
+     * @param thePosition the offset in the log to read from
+     * @throws IOException if the log ends first or can not be read
+     */
+    private void readFully(final FileChannel theChannel,
+            final long thePosition) throws IOException {
+        long position = thePosition;
+        while (myBuffer.hasRemaining()) {
+            final int read = theChannel.read(myBuffer, position);
+            if (read < 0) {
+                throw new IOException(myFile + " ended early");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Returns the record at theIndex in myBuffer, or null if its CRC does
+     * not match
+     *
+     * @param theIndex the index of the record in the buffer
+     * @return the record, or null if it is torn
+     */
+    private ScoreRecord readRecord(final int theIndex) {
+        myCrc.reset();
+        myCrc.update(myBuffer.array(), theIndex,
+                RECORD_BYTES - Integer.BYTES);
+        if ((int) myCrc.getValue() != myBuffer.getInt(
+                theIndex + RECORD_BYTES - Integer.BYTES)) {
+            return null;
+        }
+        final long score = myBuffer.getLong(theIndex);
+        final int length = myBuffer.getInt(theIndex + Long.BYTES);
+        if (score < 0 || length < 0) {
+            return null;
+        }
+        return new ScoreRecord(score, length,
+                myBuffer.getLong(theIndex + Long.BYTES + Integer.BYTES));
+    }
+
+    /**
+     * Puts theRecord in its place in the kept records, dropping the worst
+     * if they are full
+     *
+     * @param theRecord the record
+     * @return whether or not theRecord was kept
+     */
+    private boolean offer(final ScoreRecord theRecord) {
+        if (mySize == myCapacity && ScoreRecord.RANKING.compare(theRecord,
+                myTop[mySize - 1]) >= 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(myTop, 0, mySize, theRecord,
+                ScoreRecord.RANKING);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        final int moved = Math.min(mySize, myCapacity - 1) - index;
+        System.arraycopy(myTop, index, myTop, index + 1, moved);
+        myTop[index] = theRecord;
+        mySize = Math.min(mySize + 1, myCapacity);
+        return true;
+    }
+
+    /**
+     * Publishes the kept records if theChanged
+     *
+     * @param theChanged whether or not the kept records changed
+     */
+    private void publishIf(final boolean theChanged) {
+        if (theChanged) {
+            publish();
+        }
+    }
+
+    /**
+     * Publishes the kept records to readers
+     */
+    private void publish() {
+        myTopView = Collections.unmodifiableList(
+                Arrays.asList(Arrays.copyOf(myTop, mySize)));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.leaderboard;
+
+import java.util.Comparator;
+
+/**
+ * The ScoreRecord class is one finished game on the leaderboard: its score,
+ * the length the Sneke reached and when it ended
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class ScoreRecord {
+
+    /**
+     * Orders records from best to worst: the higher score first, then the
+     * longer Sneke, then the earlier game
+     */
+    public static final Comparator<ScoreRecord> RANKING =
+            Comparator.comparingLong(ScoreRecord::getScore).reversed()
+                    .thenComparing(Comparator.comparingInt(
+                            ScoreRecord::getLength).reversed())
+                    .thenComparingLong(ScoreRecord::getTimestamp);
+
+    /**
+     * The score of the game
+     */
+    private final long myScore;
+
+    /**
+     * The length the Sneke reached
+     */
+    private final int myLength;
+
+    /**
+     * When the game ended, in milliseconds since the epoch
+     */
+    private final long myTimestamp;
+
+    /**
+     * Initializes a new ScoreRecord
+     *
+     * @param theScore the score of the game
+     * @param theLength the length the Sneke reached
+     * @param theTimestamp when the game ended, in milliseconds since the
+     *         epoch
+     * @throws IllegalArgumentException if theScore or theLength is negative
+     */
+    public ScoreRecord(final long theScore, final int theLength,
+            final long theTimestamp) {
+        if (theScore < 0 || theLength < 0) {
+            throw new IllegalArgumentException(
+                    "theScore and theLength can not be negative");
+        }
+        myScore = theScore;
+        myLength = theLength;
+        myTimestamp = theTimestamp;
+    }
+
+    /**
+     * Returns the score of the game
+     * @return the score of the game
+     */
+    public long getScore() {
+        return myScore;
+    }
+
+    /**
+     * Returns the length the Sneke reached
+     * @return the length the Sneke reached
+     */
+    public int getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns when the game ended, in milliseconds since the epoch
+     * @return when the game ended
+     */
+    public long getTimestamp() {
+        return myTimestamp;
+    }
+
+    @Override
+    public boolean equals(final Object theOther) {
+        if (!(theOther instanceof ScoreRecord)) {
+            return false;
+        }
+        final ScoreRecord other = (ScoreRecord) theOther;
+        return myScore == other.myScore && myLength == other.myLength
+                && myTimestamp == other.myTimestamp;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(myScore) * 31 * 31 + myLength * 31
+                + Long.hashCode(myTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "score=" + myScore + " length=" + myLength
+                + " timestamp=" + myTimestamp;
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.replay;
+
+import game.Action;
+import game.Board;
+import game.SnekeEngine;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The Replay class holds a recorded game of Sneke: the matrix size, the seed
+ * and every turn the player made. Everything else is deterministic, so a
+ * game is replayed by resetting a SnekeEngine with the seed and making the
+ * turns at their ticks.
+ *
+ * The binary format is the magic number "SNKR", a version byte, the rows and
+ * columns as varints and the seed as 8 big endian bytes, followed by one
+ * varint per event: the ticks since the previous event shifted left by 2,
+ * with the kind of the event (left, right or end of game) in the low 2 bits.
+ * Most turns are less than 32 ticks apart and take a single byte. A replay
+ * without the end event, from a game that was cut short, ends with its last
+ * turn
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public final class Replay {
+
+    /** The first 4 bytes of every replay, "SNKR" */
+    static final int MAGIC = 0x534E4B52;
+
+    /** The version of the format */
+    static final int VERSION = 1;
+
+    /** The event kind of a left turn */
+    static final int KIND_LEFT = 0;
+
+    /** The event kind of a right turn */
+    static final int KIND_RIGHT = 1;
+
+    /** The event kind of the end of the game */
+    static final int KIND_END = 2;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The seed the game was started with
+     */
+    private final long mySeed;
+
+    /**
+     * The turns, each the tick shifted left by 1 with 1 in the low bit for a
+     * right turn
+     */
+    private final long[] myTurns;
+
+    /**
+     * The number of ticks the game survived, or the tick of the last turn if
+     * the end was not recorded
+     */
+    private final long myLength;
+
+    /**
+     * Whether or not the end of the game was recorded
+     */
+    private final boolean myFinished;
+
+    /**
+     * Initializes a new Replay
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theSeed the seed the game was started with
+     * @param theTurns the encoded turns
+     * @param theLength the number of ticks the game survived
+     * @param theFinished whether or not the end of the game was recorded
+     */
+    private Replay(final int theRows, final int theCols, final long theSeed,
+            final long[] theTurns, final long theLength,
+            final boolean theFinished) {
+        myRows = theRows;
+        myCols = theCols;
+        mySeed = theSeed;
+        myTurns = theTurns;
+        myLength = theLength;
+        myFinished = theFinished;
+    }
+
+    /**
+     * Reads a replay from theFile
+     *
+     * @param theFile the file to read
+     * @throws NullPointerException if theFile is null
+     * @throws IOException if theFile can not be read or is not a replay
+     * @return the replay
+     */
+    public static Replay read(final Path theFile) throws IOException {
+        try (InputStream in = Files.newInputStream(Objects.requireNonNull(
+                theFile, "theFile can not be null"))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a replay from theIn until the end of the game or of the stream.
+     * theIn is not closed
+     *
+     * @param theIn the stream to read
+     * @throws NullPointerException if theIn is null
+     * @throws IOException if theIn can not be read, is not a replay or ends
+     *         inside an event
+     * @return the replay
+     */
+    public static Replay read(final InputStream theIn) throws IOException {
+        final InputStream in = new BufferedInputStream(Objects.requireNonNull(
+                theIn, "theIn can not be null"));
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = magic << 8 | readByte(in);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("not a Sneke replay");
+        }
+        final int version = readByte(in);
+        if (version != VERSION) {
+            throw new IOException("unsupported replay version " + version);
+        }
+        final long rows = readVarint(in);
+        final long cols = readVarint(in);
+        // each side is bounded first so the product can not overflow
+        if (rows < SnekeEngine.MIN_DIMENSION || cols < SnekeEngine.MIN_DIMENSION
+                || rows > Board.MAX_CELLS || cols > Board.MAX_CELLS
+                || rows * cols > Board.MAX_CELLS) {
+            throw new IOException("bad replay matrix " + rows + "x" + cols);
+        }
+        long seed = 0;
+        for (int i = 0; i < 8; i++) {
+            seed = seed << 8 | readByte(in);
+        }
+
+        long[] turns = new long[64];
+        int count = 0;
+        long tick = 0;
+        boolean finished = false;
+        while (!finished) {
+            // the stream may only end between events, not inside one
+            final int first = in.read();
+            if (first < 0) {
+                break;
+            }
+            final long event = readVarint(in, first);
+            tick += event >>> 2;
+            final int kind = (int) (event & 3);
+            if (kind == KIND_END) {
+                finished = true;
+            } else if (kind == KIND_LEFT || kind == KIND_RIGHT) {
+                if (count == turns.length) {
+                    turns = Arrays.copyOf(turns, count * 2);
+                }
+                turns[count++] = tick << 1 | kind;
+            } else {
+                throw new IOException("unknown replay event " + kind);
+            }
+        }
+        return new Replay((int) rows, (int) cols, seed,
+                Arrays.copyOf(turns, count), tick, finished);
+    }
+
+    /**
+     * Returns the number of rows in the matrix
+     * @return the number of rows in the matrix
+     */
+    public int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the number of columns in the matrix
+     * @return the number of columns in the matrix
+     */
+    public int getCols() {
+        return myCols;
+    }
+
+    /**
+     * Returns the seed the game was started with
+     * @return the seed the game was started with
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Returns the number of ticks the game survived, or the tick of the last
+     * turn if the end was not recorded
+     *
+     * @return the number of ticks of the replay
+     */
+    public long getLength() {
+        return myLength;
+    }
+
+    /**
+     * Returns whether or not the end of the game was recorded
+     * @return whether or not the end of the game was recorded
+     */
+    public boolean isFinished() {
+        return myFinished;
+    }
+
+    /**
+     * Returns the number of turns
+     * @return the number of turns
+     */
+    public int getTurnCount() {
+        return myTurns.length;
+    }
+
+    /**
+     * Returns the tick of theIndex-th turn, the number of ticks the game had
+     * survived when it was made
+     *
+     * @param theIndex the turn
+     * @throws IndexOutOfBoundsException if theIndex is not a turn
+     * @return the tick of the turn
+     */
+    public long getTurnTick(final int theIndex) {
+        return myTurns[Objects.checkIndex(theIndex, myTurns.length)] >>> 1;
+    }
+
+    /**
+     * Returns theIndex-th turn
+     *
+     * @param theIndex the turn
+     * @throws IndexOutOfBoundsException if theIndex is not a turn
+     * @return LEFT or RIGHT
+     */
+    public Action getTurnAction(final int theIndex) {
+        return (myTurns[Objects.checkIndex(theIndex, myTurns.length)] & 1)
+                == KIND_RIGHT ? Action.RIGHT : Action.LEFT;
+    }
+
+    /**
+     * Returns the index of the first turn made at or after theTick
+     *
+     * @param theTick the tick
+     * @return the index of the first turn at or after theTick, or
+     *         getTurnCount() if there is none
+     */
+    public int firstTurnAtOrAfter(final long theTick) {
+        int low = 0;
+        int high = myTurns.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (myTurns[middle] >>> 1 < theTick) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads one unsigned LEB128 varint
+     *
+     * @param theIn the stream to read
+     * @throws EOFException if the stream ends before the varint does
+     * @throws IOException if the stream can not be read or the varint is
+     *         too long
+     * @return the value read
+     */
+    private static long readVarint(final InputStream theIn)
+            throws IOException {
+        return readVarint(theIn, readByte(theIn));
+    }
+
+    /**
+     * Reads the rest of an unsigned LEB128 varint whose first byte has
+     * been read
+     *
+     * @param theIn the stream to read
+     * @param theFirst the first byte of the varint
+     * @throws EOFException if the stream ends before the varint does
+     * @throws IOException if the stream can not be read or the varint is
+     *         too long
+     * @return the value read
+     */
+    private static long readVarint(final InputStream theIn,
+            final int theFirst) throws IOException {
+        long value = theFirst & 0x7F;
+        int next = theFirst;
+        for (int shift = 7; (next & 0x80) != 0; shift += 7) {
+            if (shift >= 64) {
+                throw new IOException("malformed varint in replay");
+            }
+            next = readByte(theIn);
+            value |= (long) (next & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Reads one byte
+     *
+     * @param theIn the stream to read
+     * @throws EOFException if the stream has ended
+     * @throws IOException if the stream can not be read
+     * @return the byte, between 0 and 255
+     */
+    private static int readByte(final InputStream theIn) throws IOException {
+        final int next = theIn.read();
+        if (next < 0) {
+            throw new EOFException("the replay ended early");
+        }
+        return next;
+    }
+}
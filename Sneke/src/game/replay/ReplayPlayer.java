@@ -0,0 +1,231 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.replay;
+
+import game.Action;
+import game.EngineSnapshot;
+import game.SnekeEngine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The ReplayPlayer class re-simulates a Replay on a headless SnekeEngine as
+ * fast as it can.
+ *
+ * While it plays forward it keeps a snapshot of the engine every few
+ * thousand ticks, so seeking to a tick that was already passed restores the
+ * closest snapshot before it and replays at most one interval of ticks
+ *
+ * Usage: {@code java game.replay.ReplayPlayer file [tick]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ReplayPlayer {
+
+    /** The default number of ticks between keyframes */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 4096;
+
+    /**
+     * The replay being played
+     */
+    private final Replay myReplay;
+
+    /**
+     * The engine the replay is played on
+     */
+    private final SnekeEngine myEngine;
+
+    /**
+     * The number of ticks between keyframes
+     */
+    private final int myKeyframeInterval;
+
+    /**
+     * The engine state at every multiple of myKeyframeInterval played so far
+     */
+    private final List<EngineSnapshot> myKeyframes;
+
+    /**
+     * The index of the next turn to make
+     */
+    private int myNextTurn;
+
+    /**
+     * Initializes a new ReplayPlayer at the start of theReplay with the
+     * default keyframe interval
+     *
+     * @param theReplay the replay to play
+     * @throws NullPointerException if theReplay is null
+     */
+    public ReplayPlayer(final Replay theReplay) {
+        this(theReplay, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Initializes a new ReplayPlayer at the start of theReplay
+     *
+     * @param theReplay the replay to play
+     * @param theKeyframeInterval the number of ticks between keyframes
+     * @throws NullPointerException if theReplay is null
+     * @throws IllegalArgumentException if theKeyframeInterval is not
+     *         positive or the replay's matrix is too small
+     */
+    public ReplayPlayer(final Replay theReplay,
+            final int theKeyframeInterval) {
+        myReplay = Objects.requireNonNull(theReplay,
+                "theReplay can not be null");
+        if (theKeyframeInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "theKeyframeInterval must be positive");
+        }
+        myKeyframeInterval = theKeyframeInterval;
+        myEngine = new SnekeEngine(myReplay.getRows(), myReplay.getCols(),
+                myReplay.getSeed());
+        myKeyframes = new ArrayList<>();
+        myKeyframes.add(myEngine.snapshot());
+    }
+
+    /**
+     * Returns the replay being played
+     * @return the replay being played
+     */
+    public Replay getReplay() {
+        return myReplay;
+    }
+
+    /**
+     * Returns the engine the replay is played on, it must not be changed
+     * @return the engine the replay is played on
+     */
+    public SnekeEngine getEngine() {
+        return myEngine;
+    }
+
+    /**
+     * Returns the number of ticks played
+     * @return the number of ticks played
+     */
+    public long getTick() {
+        return myEngine.getTicks();
+    }
+
+    /**
+     * Makes the turns recorded for the current tick and moves the Sneke. At
+     * the end of a finished replay this makes the move that ended the game,
+     * if the game ended by dying rather than by being stopped
+     *
+     * @return whether or not the Sneke moved and the game goes on
+     */
+    public boolean step() {
+        final long tick = myEngine.getTicks();
+        if (!myEngine.isAlive() || tick > myReplay.getLength()
+                || (tick == myReplay.getLength() && !myReplay.isFinished())) {
+            return false;
+        }
+
+        if (tick % myKeyframeInterval == 0
+                && tick / myKeyframeInterval == myKeyframes.size()) {
+            myKeyframes.add(myEngine.snapshot());
+        }
+        while (myNextTurn < myReplay.getTurnCount()
+                && myReplay.getTurnTick(myNextTurn) <= tick) {
+            myEngine.setCurrentDirection(myReplay.getTurnAction(myNextTurn)
+                    .apply(myEngine.getCurrentDirection()));
+            myNextTurn++;
+        }
+        // the game survived exactly the length of the replay, so a move
+        // from its last tick is only made if it is the one that killed it
+        if (tick == myReplay.getLength()) {
+            if (!myEngine.isSafe(Action.STRAIGHT)) {
+                myEngine.update();
+            }
+            return false;
+        }
+        return myEngine.update();
+    }
+
+    /**
+     * Plays until the game ends or the replay runs out
+     */
+    public void playToEnd() {
+        while (step()) {
+            // keep playing
+        }
+    }
+
+    /**
+     * Moves the replay to theTick, or as close as it gets if the game ended
+     * before it
+     *
+     * @param theTick the tick to move to
+     * @throws IllegalArgumentException if theTick is negative
+     */
+    public void seek(final long theTick) {
+        if (theTick < 0) {
+            throw new IllegalArgumentException("theTick can not be negative");
+        }
+        final int keyframe = (int) Math.min(theTick / myKeyframeInterval,
+                myKeyframes.size() - 1);
+        final long keyframeTick = (long) keyframe * myKeyframeInterval;
+        final long current = myEngine.getTicks();
+
+        // playing on is cheaper than restoring when the target is close ahead
+        if (current < keyframeTick || current > theTick) {
+            myEngine.restore(myKeyframes.get(keyframe));
+            myNextTurn = myReplay.firstTurnAtOrAfter(keyframeTick);
+        }
+        while (myEngine.getTicks() < theTick && step()) {
+            // keep playing
+        }
+    }
+
+    /**
+     * The entry point of the replay player
+     *
+     * @param theArgs the command line arguments, the replay file and
+     *         optionally a tick to seek to after playing it through
+     * @throws IOException if the replay can not be read
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        if (theArgs.length < 1) {
+            System.err.println("usage: ReplayPlayer file [tick]");
+            return;
+        }
+        final Replay replay = Replay.read(Paths.get(theArgs[0]));
+        final ReplayPlayer player = new ReplayPlayer(replay);
+        final SnekeEngine engine = player.getEngine();
+        System.out.printf("matrix: %dx%d%n", replay.getRows(),
+                replay.getCols());
+        System.out.printf("seed: %d%n", replay.getSeed());
+        System.out.printf("turns: %d%n", replay.getTurnCount());
+
+        long start = System.nanoTime();
+        player.playToEnd();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("ticks: %d%n", engine.getTicks());
+        System.out.printf("score: %d%n", engine.getScore());
+        System.out.printf("length: %d%n", engine.getLength());
+        System.out.printf("ending: %s%n", engine.hasWon() ? "WON" :
+                engine.isAlive() ? "NOT RECORDED" : engine.getDeathCause());
+        System.out.printf("playback: %.3f s (%.0f ticks/second)%n", seconds,
+                engine.getTicks() / seconds);
+
+        if (theArgs.length > 1) {
+            final long tick = Long.parseLong(theArgs[1]);
+            start = System.nanoTime();
+            player.seek(tick);
+            System.out.printf("seek to %d: %.3f ms, score %d, length %d%n",
+                    engine.getTicks(), (System.nanoTime() - start) / 1e6,
+                    engine.getScore(), engine.getLength());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.replay;
+
+import game.Action;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * The ReplayWriter class streams the recording of one game in the format
+ * described by {@link Replay}.
+ *
+ * The header is written when the writer is created and each turn as it
+ * happens, so a game that is cut short still leaves a replay of everything
+ * up to its last buffered turn. Only the turns are recorded, the engine
+ * replays everything else from the seed. A ReplayWriter is not thread safe
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ReplayWriter implements Closeable {
+
+    /**
+     * The stream the replay is written to
+     */
+    private final OutputStream myOut;
+
+    /**
+     * The tick of the last event written
+     */
+    private long myLastTick;
+
+    /**
+     * Whether or not the end of the game was written
+     */
+    private boolean myFinished;
+
+    /**
+     * The number of bytes written
+     */
+    private long mySize;
+
+    /**
+     * Initializes a new ReplayWriter and writes the header. theOut should be
+     * buffered, every event is a write of a few bytes
+     *
+     * @param theOut the stream the replay is written to
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theSeed the seed the game was started with
+     * @throws NullPointerException if theOut is null
+     * @throws IOException if the header can not be written
+     */
+    public ReplayWriter(final OutputStream theOut, final int theRows,
+            final int theCols, final long theSeed) throws IOException {
+        myOut = Objects.requireNonNull(theOut, "theOut can not be null");
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte(Replay.MAGIC >>> shift);
+        }
+        writeByte(Replay.VERSION);
+        writeVarint(theRows);
+        writeVarint(theCols);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (theSeed >>> shift));
+        }
+    }
+
+    /**
+     * Records a turn made when the engine had survived theTick ticks, so it
+     * applies to the move that takes it to theTick + 1
+     *
+     * @param theTick the number of ticks the game had survived
+     * @param theAction the turn, LEFT or RIGHT
+     * @throws NullPointerException if theAction is null
+     * @throws IllegalArgumentException if theAction is STRAIGHT or theTick is
+     *         before the last event
+     * @throws IllegalStateException if the end of the game was written
+     * @throws IOException if the turn can not be written
+     */
+    public void turn(final long theTick, final Action theAction)
+            throws IOException {
+        Objects.requireNonNull(theAction, "theAction can not be null");
+        if (theAction == Action.STRAIGHT) {
+            throw new IllegalArgumentException(
+                    "only LEFT and RIGHT are recorded");
+        }
+        writeEvent(theTick, theAction == Action.LEFT ?
+                Replay.KIND_LEFT : Replay.KIND_RIGHT);
+    }
+
+    /**
+     * Records that the game ended after theTicks ticks. Nothing can be
+     * written after it
+     *
+     * @param theTicks the number of ticks the game survived
+     * @throws IllegalArgumentException if theTicks is before the last event
+     * @throws IllegalStateException if the end of the game was written
+     * @throws IOException if the end can not be written
+     */
+    public void finish(final long theTicks) throws IOException {
+        writeEvent(theTicks, Replay.KIND_END);
+        myFinished = true;
+    }
+
+    /**
+     * Returns the number of bytes written so far
+     * @return the number of bytes written so far
+     */
+    public long getSize() {
+        return mySize;
+    }
+
+    /**
+     * Flushes the stream
+     *
+     * @throws IOException if the stream can not be flushed
+     */
+    public void flush() throws IOException {
+        myOut.flush();
+    }
+
+    /**
+     * Closes the stream. The end of the game is not written if finish was
+     * not called, the replay then ends with its last turn
+     *
+     * @throws IOException if the stream can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        myOut.close();
+    }
+
+    /**
+     * Writes one event as the varint of the ticks since the last event
+     * shifted left by 2 with the kind of the event in the low bits
+     *
+     * @param theTick the tick of the event
+     * @param theKind the kind of the event
+     * @throws IOException if the event can not be written
+     */
+    private void writeEvent(final long theTick, final int theKind)
+            throws IOException {
+        if (myFinished) {
+            throw new IllegalStateException("the game is already finished");
+        }
+        if (theTick < myLastTick) {
+            throw new IllegalArgumentException("theTick " + theTick
+                    + " is before the last event at " + myLastTick);
+        }
+        writeVarint((theTick - myLastTick) << 2 | theKind);
+        myLastTick = theTick;
+    }
+
+    /**
+     * Writes theValue as an unsigned LEB128 varint, 7 bits per byte
+     *
+     * @param theValue the value to write, treated as unsigned
+     * @throws IOException if the value can not be written
+     */
+    private void writeVarint(final long theValue) throws IOException {
+        long value = theValue;
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    /**
+     * Writes the low 8 bits of theByte
+     *
+     * @param theByte the byte to write
+     * @throws IOException if the byte can not be written
+     */
+    private void writeByte(final int theByte) throws IOException {
+        myOut.write(theByte);
+        mySize++;
+    }
+}
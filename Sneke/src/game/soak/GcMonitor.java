@@ -0,0 +1,217 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.soak;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import game.stats.Histogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.Closeable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The GcMonitor class listens to the garbage collectors of the JVM and
+ * keeps the length of every pause they report and how much of the heap
+ * was still used right after the last collection, which is what grows
+ * when a long run leaks.
+ *
+ * Pauses are recorded in milliseconds, the resolution the collectors report
+ * them in, into a Histogram for the current interval and one for the whole
+ * run. The cycles of concurrent collectors that report themselves as
+ * "Cycles" run alongside the program and are left out. The listeners are
+ * called on a JMX thread, so the Histograms are guarded by the monitor's
+ * lock
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class GcMonitor implements NotificationListener, Closeable {
+
+    /**
+     * The collectors listened to
+     */
+    private final List<NotificationEmitter> myEmitters = new ArrayList<>();
+
+    /**
+     * The names of the heap memory pools
+     */
+    private final Set<String> myHeapPools = new HashSet<>();
+
+    /**
+     * The heap used after the last collection in bytes, -1 before the first
+     */
+    private volatile long myHeapAfterGc = -1;
+
+    /**
+     * The number of collections seen, counted after myHeapAfterGc is set
+     */
+    private volatile long myCollections;
+
+    /**
+     * The pauses since the interval was last drained, in milliseconds
+     */
+    private Histogram myInterval = new Histogram();
+
+    /**
+     * The pauses of the whole run, in milliseconds
+     */
+    private final Histogram myTotal = new Histogram();
+
+    /**
+     * Initializes a new GcMonitor and starts listening to every collector
+     * that sends notifications
+     */
+    public GcMonitor() {
+        for (MemoryPoolMXBean pool
+                : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                myHeapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean collector
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                final NotificationEmitter emitter =
+                        (NotificationEmitter) collector;
+                emitter.addNotificationListener(this, null, null);
+                myEmitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Records the pause of a finished collection
+     *
+     * @param theNotification the notification from a collector
+     * @param theHandback not used
+     */
+    @Override
+    public void handleNotification(final Notification theNotification,
+            final Object theHandback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                .equals(theNotification.getType())) {
+            return;
+        }
+        final GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from(
+                        (CompositeData) theNotification.getUserData());
+        long heap = 0;
+        for (Map.Entry<String, MemoryUsage> pool
+                : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (myHeapPools.contains(pool.getKey())) {
+                heap += pool.getValue().getUsed();
+            }
+        }
+        myHeapAfterGc = heap;
+        myCollections++;
+        if (info.getGcName().endsWith("Cycles")) {
+            return;
+        }
+        final long millis = info.getGcInfo().getDuration();
+        synchronized (this) {
+            myInterval.record(millis);
+            myTotal.record(millis);
+        }
+    }
+
+    /**
+     * Returns the pauses since the last call and starts a new interval
+     *
+     * @return the pauses of the interval, in milliseconds
+     */
+    public synchronized Histogram drainInterval() {
+        final Histogram interval = myInterval;
+        myInterval = new Histogram();
+        return interval;
+    }
+
+    /**
+     * Returns a copy of the pauses of the whole run
+     *
+     * @return the pauses of the run, in milliseconds
+     */
+    public synchronized Histogram getTotal() {
+        final Histogram total = new Histogram();
+        total.add(myTotal);
+        return total;
+    }
+
+    /**
+     * Returns the total time all collectors have spent collecting, which
+     * includes concurrent work
+     *
+     * @return the time spent collecting in milliseconds
+     */
+    public static long getCollectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Returns the heap used right after the last collection, the live data
+     * of the program and whatever the collection left for later
+     *
+     * @return the heap used after the last collection in bytes, or -1 if
+     *         there has not been a collection yet
+     */
+    public long getHeapAfterGc() {
+        return myHeapAfterGc;
+    }
+
+    /**
+     * Returns the number of collections seen since the monitor started,
+     * concurrent cycles included. Two samples of getHeapAfterGc() are only
+     * worth comparing when this grew between them
+     *
+     * @return the number of collections seen
+     */
+    public long getCollectionCount() {
+        return myCollections;
+    }
+
+    /**
+     * Returns the heap used now, including garbage not yet collected
+     *
+     * @return the heap used in bytes
+     */
+    public static long getHeapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+                .getUsed();
+    }
+
+    /**
+     * Stops listening to the collectors
+     */
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : myEmitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (final ListenerNotFoundException theException) {
+                // already removed
+            }
+        }
+        myEmitters.clear();
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.soak;
+
+import game.Action;
+import game.Controller;
+import game.SnekeEngine;
+
+import java.util.Objects;
+
+/**
+ * The ScriptController class plays a fixed script of Actions over and over,
+ * starting it again at every new game, so a soak run can drive the engine
+ * through the same pattern of turns for hours. The script is written as
+ * the letters L, S and R for LEFT, STRAIGHT and RIGHT
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ScriptController implements Controller {
+
+    /** The Actions by ordinal */
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * The script as Action ordinals
+     */
+    private final byte[] myScript;
+
+    /**
+     * The position of the next Action in the script
+     */
+    private int myPosition;
+
+    /**
+     * Initializes a new ScriptController
+     *
+     * @param theScript the script, one of L, S or R per tick
+     * @throws NullPointerException if theScript is null
+     * @throws IllegalArgumentException if theScript is empty or has a
+     *         letter other than L, S or R
+     */
+    public ScriptController(final String theScript) {
+        Objects.requireNonNull(theScript, "theScript can not be null");
+        if (theScript.isEmpty()) {
+            throw new IllegalArgumentException("theScript can not be empty");
+        }
+        myScript = new byte[theScript.length()];
+        for (int i = 0; i < myScript.length; i++) {
+            switch (Character.toUpperCase(theScript.charAt(i))) {
+                case 'L':
+                    myScript[i] = (byte) Action.LEFT.ordinal();
+                    break;
+                case 'S':
+                    myScript[i] = (byte) Action.STRAIGHT.ordinal();
+                    break;
+                case 'R':
+                    myScript[i] = (byte) Action.RIGHT.ordinal();
+                    break;
+                default:
+                    throw new IllegalArgumentException("the script can only"
+                            + " hold L, S and R, not " + theScript.charAt(i));
+            }
+        }
+    }
+
+    @Override
+    public Action nextAction(final SnekeEngine theEngine) {
+        final Action action = ACTIONS[myScript[myPosition]];
+        myPosition = myPosition + 1 == myScript.length ? 0 : myPosition + 1;
+        return action;
+    }
+
+    @Override
+    public void newGame(final SnekeEngine theEngine) {
+        myPosition = 0;
+    }
+}
@@ -0,0 +1,340 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.soak;
+
+import game.Controller;
+import game.SnekeEngine;
+import game.Topology;
+import game.stats.Histogram;
+import game.tournament.Tournament;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Soak class plays game after game headless for a set wall clock time,
+ * to find the bugs and slowdowns that only show up after hours of play.
+ *
+ * Every sampled tick, and at the end of every game, the engine checks that
+ * its matrix, body, cherry and free cells still agree, and the first broken
+ * invariant stops the run with the game's seed and tick so it can be
+ * replayed. Every report period one line gives the ticks per second of the
+ * period and of the whole run, the garbage collection pauses of the period
+ * and the heap left after the last collection, so throughput that sags or
+ * a heap that keeps growing over a long run can be seen. The end of the
+ * run compares the first period with the last.
+ *
+ * Usage: {@code java game.soak.Soak [seconds] [rows] [cols] [seed]
+ * [controller] [check every] [report seconds] [topology]}, where the
+ * controller is safe, random, autopilot or script:LSR... for a
+ * ScriptController
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Soak {
+
+    /** The default length of a run in seconds */
+    private static final long DEFAULT_SECONDS = 60;
+
+    /** The default number of rows and columns of the matrix */
+    private static final int DEFAULT_DIMENSION = 20;
+
+    /** The default number of ticks between invariant checks */
+    private static final long DEFAULT_CHECK_EVERY = 10_000;
+
+    /** The default number of seconds between reports */
+    private static final long DEFAULT_REPORT_SECONDS = 10;
+
+    /** The number of ticks played between reads of the clock */
+    private static final int CLOCK_TICKS = 1 << 12;
+
+    /** The prefix of a ScriptController name */
+    private static final String SCRIPT_PREFIX = "script:";
+
+    /** The number of bytes in a megabyte */
+    private static final double MEGABYTE = 1024 * 1024;
+
+    /**
+     * The engine being played
+     */
+    private final SnekeEngine myEngine;
+
+    /**
+     * Picks the Action of every tick
+     */
+    private final Controller myController;
+
+    /**
+     * The number of ticks between invariant checks
+     */
+    private final long myCheckEvery;
+
+    /**
+     * The seed of the first game, game n is seeded with it plus n
+     */
+    private final long mySeed;
+
+    /**
+     * The number of ticks played
+     */
+    private long myTicks;
+
+    /**
+     * The number of games started
+     */
+    private long myGames = 1;
+
+    /**
+     * The number of invariant checks passed
+     */
+    private long myChecks;
+
+    /**
+     * Initializes a new Soak and starts the first game
+     *
+     * @param theTopology the matrix to play on
+     * @param theController picks the Action of every tick
+     * @param theSeed the seed of the first game
+     * @param theCheckEvery the number of ticks between invariant checks
+     * @throws NullPointerException if theTopology or theController is null
+     * @throws IllegalArgumentException if theCheckEvery is not positive
+     */
+    public Soak(final Topology theTopology, final Controller theController,
+            final long theSeed, final long theCheckEvery) {
+        Objects.requireNonNull(theTopology, "theTopology can not be null");
+        if (theCheckEvery <= 0) {
+            throw new IllegalArgumentException(
+                    "theCheckEvery must be positive");
+        }
+        myController = Objects.requireNonNull(theController,
+                "theController can not be null");
+        myCheckEvery = theCheckEvery;
+        mySeed = theSeed;
+        myEngine = new SnekeEngine(theTopology, theSeed);
+        myController.newGame(myEngine);
+    }
+
+    /**
+     * Plays for theNanos of wall clock time, printing a report to theOut
+     * every theReportNanos and a summary at the end
+     *
+     * @param theNanos how long to play
+     * @param theReportNanos the time between reports
+     * @param theOut where the reports are printed
+     * @throws NullPointerException if theOut is null
+     * @throws IllegalArgumentException if theReportNanos is not positive
+     * @throws IllegalStateException if an invariant is broken, naming the
+     *         game and tick it broke on
+     */
+    public void run(final long theNanos, final long theReportNanos,
+            final PrintStream theOut) {
+        Objects.requireNonNull(theOut, "theOut can not be null");
+        if (theReportNanos <= 0) {
+            throw new IllegalArgumentException(
+                    "theReportNanos must be positive");
+        }
+        try (GcMonitor gc = new GcMonitor()) {
+            final long start = System.nanoTime();
+            final long end = start + theNanos;
+            long nextReport = start + theReportNanos;
+            long nextCheck = myCheckEvery;
+            long lastTicks = 0;
+            long lastNanos = start;
+            long lastGcMillis = GcMonitor.getCollectionMillis();
+            double firstRate = -1;
+            double lastRate = -1;
+            long firstHeap = -1;
+            long firstCollections = 0;
+            long lastHeap = -1;
+            long lastCollections = 0;
+
+            long now = start;
+            while (now < end) {
+                for (int i = 0; i < CLOCK_TICKS; i++) {
+                    if (!myEngine.step(myController.nextAction(myEngine))) {
+                        check();
+                        myEngine.reset(mySeed + myGames++);
+                        myController.newGame(myEngine);
+                    }
+                    if (++myTicks == nextCheck) {
+                        check();
+                        nextCheck += myCheckEvery;
+                    }
+                }
+                now = System.nanoTime();
+                if (now >= nextReport || now >= end) {
+                    final double rate = (myTicks - lastTicks) * 1e9
+                            / (now - lastNanos);
+                    final long collections = gc.getCollectionCount();
+                    final long heap = gc.getHeapAfterGc();
+                    final long gcMillis = GcMonitor.getCollectionMillis();
+                    report(theOut, now - start, rate, gc.drainInterval(),
+                            gcMillis - lastGcMillis, heap);
+                    if (firstRate < 0) {
+                        firstRate = rate;
+                    }
+                    if (firstHeap < 0) {
+                        firstHeap = heap;
+                        firstCollections = collections;
+                    }
+                    lastRate = rate;
+                    lastHeap = heap;
+                    lastCollections = collections;
+                    lastTicks = myTicks;
+                    lastNanos = now;
+                    lastGcMillis = gcMillis;
+                    nextReport = now + theReportNanos;
+                }
+            }
+
+            final Histogram pauses = gc.getTotal();
+            theOut.printf("soak: %d ticks, %d games, %d checks in %.1f s,"
+                    + " %.0f ticks/s%n", myTicks, myGames, myChecks,
+                    (now - start) / 1e9, myTicks * 1e9 / (now - start));
+            theOut.printf("throughput: first %.0f, last %.0f ticks/s"
+                    + " (%+.1f%%)%n", firstRate, lastRate,
+                    100 * (lastRate - firstRate) / firstRate);
+            if (firstHeap < 0 || lastCollections == firstCollections) {
+                // the same collection, or none, would read as no growth
+                theOut.println("heap after gc: n/a, no collection between"
+                        + " the first and last report");
+            } else {
+                theOut.printf("heap after gc: first %.1f MB, last %.1f MB"
+                        + " (%+.1f MB)%n", firstHeap / MEGABYTE,
+                        lastHeap / MEGABYTE,
+                        (lastHeap - firstHeap) / MEGABYTE);
+            }
+            theOut.printf("gc pauses: %d, p50 %d ms, p99 %d ms,"
+                    + " max %d ms%n", pauses.getCount(),
+                    pauses.getPercentile(50), pauses.getPercentile(99),
+                    pauses.getMax());
+        }
+    }
+
+    /**
+     * Returns the number of ticks played
+     * @return the number of ticks played
+     */
+    public long getTicks() {
+        return myTicks;
+    }
+
+    /**
+     * Returns the number of games started
+     * @return the number of games started
+     */
+    public long getGames() {
+        return myGames;
+    }
+
+    /**
+     * Returns the number of invariant checks passed
+     * @return the number of invariant checks passed
+     */
+    public long getChecks() {
+        return myChecks;
+    }
+
+    /**
+     * Returns the Controller with the given name, script:LSR... or a name
+     * Tournament knows
+     *
+     * @param theName the name of the Controller
+     * @param theSeed the seed for Controllers that use random numbers
+     * @throws NullPointerException if theName is null
+     * @throws IllegalArgumentException if theName is not a known Controller
+     * @return the Controller
+     */
+    public static Controller controller(final String theName,
+            final long theSeed) {
+        Objects.requireNonNull(theName, "theName can not be null");
+        if (theName.startsWith(SCRIPT_PREFIX)) {
+            return new ScriptController(
+                    theName.substring(SCRIPT_PREFIX.length()));
+        }
+        return Tournament.controllerFactory(theName, theSeed).get();
+    }
+
+    /**
+     * Checks the invariants of the engine
+     *
+     * @throws IllegalStateException if one is broken, naming the game
+     */
+    private void check() {
+        try {
+            myEngine.checkInvariants();
+        } catch (final IllegalStateException theException) {
+            throw new IllegalStateException("invariant broken in game "
+                    + myGames + " (seed " + myEngine.getSeed() + ") at tick "
+                    + myEngine.getTicks() + " after " + myTicks
+                    + " ticks: " + theException.getMessage(), theException);
+        }
+        myChecks++;
+    }
+
+    /**
+     * Prints one report line
+     *
+     * @param theOut where the line is printed
+     * @param theElapsed the nanoseconds since the run started
+     * @param theRate the ticks per second of the period
+     * @param thePauses the garbage collection pauses of the period
+     * @param theGcMillis the time spent collecting in the period
+     * @param theHeap the heap used after the last collection, -1 before
+     *         the first
+     */
+    private void report(final PrintStream theOut, final long theElapsed,
+            final double theRate, final Histogram thePauses,
+            final long theGcMillis, final long theHeap) {
+        theOut.printf("%7.1f s  ticks %d  %.0f ticks/s (%.0f overall)"
+                + "  games %d  checks %d  gc %d pauses, max %d ms,"
+                + " %d ms total  heap %s after gc, %.1f MB used%n",
+                theElapsed / 1e9, myTicks, theRate,
+                myTicks * 1e9 / theElapsed, myGames, myChecks,
+                thePauses.getCount(), thePauses.getMax(), theGcMillis,
+                theHeap < 0 ? "n/a"
+                        : String.format("%.1f MB", theHeap / MEGABYTE),
+                GcMonitor.getHeapUsed() / MEGABYTE);
+    }
+
+    /**
+     * The entry point of the soak runner
+     *
+     * @param theArgs the command line arguments, optionally the seconds to
+     *         run, rows, columns, seed, controller, ticks between checks,
+     *         seconds between reports and topology
+     * @throws IOException if the map file can not be read
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        final long seconds = theArgs.length > 0 ?
+                Long.parseLong(theArgs[0]) : DEFAULT_SECONDS;
+        final int rows = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_DIMENSION;
+        final int cols = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_DIMENSION;
+        final long seed = theArgs.length > 3 ?
+                Long.parseLong(theArgs[3]) : System.nanoTime();
+        final String controller = theArgs.length > 4 ? theArgs[4] : "random";
+        final long checkEvery = theArgs.length > 5 ?
+                Long.parseLong(theArgs[5]) : DEFAULT_CHECK_EVERY;
+        final long reportSeconds = theArgs.length > 6 ?
+                Long.parseLong(theArgs[6]) : DEFAULT_REPORT_SECONDS;
+        final Topology topology = Topology.named(theArgs.length > 7 ?
+                theArgs[7] : "walls", rows, cols);
+
+        System.out.printf("soak: %dx%d %s, %s, seed %d, checks every %d"
+                + " ticks, %d s%n", topology.getRows(), topology.getCols(),
+                theArgs.length > 7 ? theArgs[7] : "walls", controller, seed,
+                checkEvery, seconds);
+        new Soak(topology, controller(controller, seed), seed, checkEvery)
+                .run(TimeUnit.SECONDS.toNanos(seconds),
+                        TimeUnit.SECONDS.toNanos(reportSeconds), System.out);
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.stats;
+
+import java.util.Arrays;
+
+/**
+ * The Histogram class counts non negative long values in log-linear buckets
+ * so percentiles can be read at any time with a relative error of about 3%.
+ * Values below 64 are counted exactly. Recording a value is a few
+ * arithmetic steps and never allocates.
+ *
+ * A Histogram is not thread safe. Threads should record into their own
+ * Histogram and {@link #add(Histogram)} them together
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Histogram {
+
+    /** The number of bits of each value that select the sub bucket */
+    private static final int SUB_BITS = 5;
+
+    /** The number of sub buckets in each power of 2 */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The values below this are counted in their own bucket */
+    private static final int EXACT_LIMIT = 64;
+
+    /** The exponent of EXACT_LIMIT */
+    private static final int EXACT_BITS = 6;
+
+    /** The total number of buckets */
+    private static final int BUCKETS =
+            EXACT_LIMIT + (63 - EXACT_BITS) * SUB_BUCKETS;
+
+    /**
+     * The number of values in each bucket
+     */
+    private final long[] myCounts;
+
+    /**
+     * The number of values recorded
+     */
+    private long myCount;
+
+    /**
+     * The sum of the values recorded
+     */
+    private long mySum;
+
+    /**
+     * The smallest value recorded
+     */
+    private long myMin;
+
+    /**
+     * The largest value recorded
+     */
+    private long myMax;
+
+    /**
+     * Initializes a new empty Histogram
+     */
+    public Histogram() {
+        myCounts = new long[BUCKETS];
+        reset();
+    }
+
+    /**
+     * Removes every value from the Histogram
+     */
+    public void reset() {
+        Arrays.fill(myCounts, 0);
+        myCount = 0;
+        mySum = 0;
+        myMin = Long.MAX_VALUE;
+        myMax = 0;
+    }
+
+    /**
+     * Records theValue, negative values are recorded as 0
+     *
+     * @param theValue the value to record
+     */
+    public void record(final long theValue) {
+        final long value = Math.max(0, theValue);
+        myCounts[bucketOf(value)]++;
+        myCount++;
+        mySum += value;
+        myMin = Math.min(myMin, value);
+        myMax = Math.max(myMax, value);
+    }
+
+    /**
+     * Adds every value recorded in theOther to this Histogram
+     *
+     * @param theOther the Histogram to add
+     */
+    public void add(final Histogram theOther) {
+        for (int i = 0; i < BUCKETS; i++) {
+            myCounts[i] += theOther.myCounts[i];
+        }
+        myCount += theOther.myCount;
+        mySum += theOther.mySum;
+        myMin = Math.min(myMin, theOther.myMin);
+        myMax = Math.max(myMax, theOther.myMax);
+    }
+
+    /**
+     * Returns the number of values recorded
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return myCount;
+    }
+
+    /**
+     * Returns the smallest value recorded, or 0 if there are none
+     * @return the smallest value recorded
+     */
+    public long getMin() {
+        return myCount == 0 ? 0 : myMin;
+    }
+
+    /**
+     * Returns the largest value recorded, or 0 if there are none
+     * @return the largest value recorded
+     */
+    public long getMax() {
+        return myMax;
+    }
+
+    /**
+     * Returns the mean of the values recorded, or 0 if there are none
+     * @return the mean of the values recorded
+     */
+    public double getMean() {
+        return myCount == 0 ? 0 : (double) mySum / myCount;
+    }
+
+    /**
+     * Returns the value at thePercentile, so that thePercentile percent of
+     * the values recorded are at or below it
+     *
+     * @param thePercentile the percentile, between 0 and 100
+     * @throws IllegalArgumentException if thePercentile is not between 0
+     *         and 100
+     * @return the value at thePercentile, or 0 if there are no values
+     */
+    public long getPercentile(final double thePercentile) {
+        if (thePercentile < 0 || thePercentile > 100) {
+            throw new IllegalArgumentException(
+                    "thePercentile must be between 0 and 100");
+        }
+        if (myCount == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1,
+                (long) Math.ceil(thePercentile / 100 * myCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += myCounts[i];
+            if (seen >= rank) {
+                return Math.min(myMax, Math.max(myMin, highestValueOf(i)));
+            }
+        }
+        return myMax;
+    }
+
+    /**
+     * Returns the bucket theValue is counted in
+     *
+     * @param theValue the non negative value
+     * @return the bucket of theValue
+     */
+    private static int bucketOf(final long theValue) {
+        if (theValue < EXACT_LIMIT) {
+            return (int) theValue;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(theValue);
+        final int sub = (int) (theValue >>> (exponent - SUB_BITS))
+                & (SUB_BUCKETS - 1);
+        return EXACT_LIMIT + (exponent - EXACT_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that is counted in theBucket
+     *
+     * @param theBucket the bucket
+     * @return the largest value of theBucket
+     */
+    private static long highestValueOf(final int theBucket) {
+        if (theBucket < EXACT_LIMIT) {
+            return theBucket;
+        }
+        final int exponent = (theBucket - EXACT_LIMIT) / SUB_BUCKETS
+                + EXACT_BITS;
+        final long sub = (theBucket - EXACT_LIMIT) % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + sub * width + width - 1;
+    }
+}
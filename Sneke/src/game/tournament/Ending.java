@@ -0,0 +1,35 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.tournament;
+
+/**
+ * The Ending Enum describes how a tournament game finished
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public enum Ending {
+    /**
+     * The Sneke moved off the edge of the matrix
+     */
+    WALL,
+
+    /**
+     * The Sneke moved into its own body
+     */
+    SELF,
+
+    /**
+     * The Sneke filled the whole matrix
+     */
+    WON,
+
+    /**
+     * The game was stopped after the tick limit
+     */
+    TICK_LIMIT
+}
@@ -0,0 +1,239 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.tournament;
+
+import game.stats.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * The ResultSink class receives batches of finished games from the
+ * tournament workers, streams them to a CSV Writer and keeps running
+ * percentiles of the score, length and ticks survived.
+ *
+ * Workers format their CSV lines and record their own Histograms before
+ * handing a batch over, so the lock is only held to copy the batch out
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class ResultSink {
+
+    /** The header line of the CSV output */
+    public static final String CSV_HEADER =
+            "game,seed,score,length,ticks,ending";
+
+    /**
+     * The Writer the CSV lines go to, or null to skip the CSV
+     */
+    private final Writer myWriter;
+
+    /**
+     * The stream progress lines are printed to, or null for no progress
+     */
+    private final PrintStream myProgress;
+
+    /**
+     * The number of games between progress lines
+     */
+    private final long myProgressInterval;
+
+    /**
+     * The scores of every game so far
+     */
+    private final Histogram myScores;
+
+    /**
+     * The final lengths of every game so far
+     */
+    private final Histogram myLengths;
+
+    /**
+     * The ticks survived in every game so far
+     */
+    private final Histogram myTicks;
+
+    /**
+     * The number of games that finished with each Ending
+     */
+    private final long[] myEndings;
+
+    /**
+     * The time the sink was created
+     */
+    private final long myStartNanos;
+
+    /**
+     * The number of games received
+     */
+    private long myGames;
+
+    /**
+     * The game count at which the next progress line is printed
+     */
+    private long myNextProgress;
+
+    /**
+     * Initializes a new ResultSink and writes the CSV header
+     *
+     * @param theWriter the Writer for the CSV lines, or null to skip them
+     * @param theProgress the stream for progress lines, or null for none
+     * @param theProgressInterval the number of games between progress lines
+     * @throws UncheckedIOException if the header can not be written
+     */
+    public ResultSink(final Writer theWriter, final PrintStream theProgress,
+            final long theProgressInterval) {
+        myWriter = theWriter;
+        myProgress = theProgress;
+        myProgressInterval = Math.max(1, theProgressInterval);
+        myNextProgress = myProgressInterval;
+        myScores = new Histogram();
+        myLengths = new Histogram();
+        myTicks = new Histogram();
+        myEndings = new long[Ending.values().length];
+        myStartNanos = System.nanoTime();
+
+        if (myWriter != null) {
+            try {
+                myWriter.write(CSV_HEADER);
+                myWriter.write('\n');
+            } catch (final IOException theException) {
+                throw new UncheckedIOException(theException);
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of finished games
+     *
+     * @param theCsv the CSV lines of the batch
+     * @param theScores the scores of the batch
+     * @param theLengths the final lengths of the batch
+     * @param theTicks the ticks survived in the batch
+     * @param theEndings the number of games of the batch with each Ending
+     * @param theGames the number of games in the batch
+     * @throws UncheckedIOException if the CSV can not be written
+     */
+    public synchronized void accept(final CharSequence theCsv,
+            final Histogram theScores, final Histogram theLengths,
+            final Histogram theTicks, final long[] theEndings,
+            final long theGames) {
+        Objects.requireNonNull(theCsv, "theCsv can not be null");
+        if (myWriter != null) {
+            try {
+                myWriter.append(theCsv);
+            } catch (final IOException theException) {
+                throw new UncheckedIOException(theException);
+            }
+        }
+        myScores.add(theScores);
+        myLengths.add(theLengths);
+        myTicks.add(theTicks);
+        for (int i = 0; i < myEndings.length; i++) {
+            myEndings[i] += theEndings[i];
+        }
+        myGames += theGames;
+
+        if (myProgress != null && myGames >= myNextProgress) {
+            myProgress.println(summary());
+            myNextProgress = myGames + myProgressInterval;
+        }
+    }
+
+    /**
+     * Flushes the CSV Writer
+     *
+     * @throws UncheckedIOException if the CSV can not be written
+     */
+    public synchronized void flush() {
+        if (myWriter != null) {
+            try {
+                myWriter.flush();
+            } catch (final IOException theException) {
+                throw new UncheckedIOException(theException);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of games received
+     * @return the number of games received
+     */
+    public synchronized long getGames() {
+        return myGames;
+    }
+
+    /**
+     * Returns the total number of ticks played in the games received
+     * @return the total number of ticks played
+     */
+    public synchronized long getTotalTicks() {
+        return Math.round(myTicks.getMean() * myTicks.getCount());
+    }
+
+    /**
+     * Returns the value at thePercentile of the scores so far
+     *
+     * @param thePercentile the percentile, between 0 and 100
+     * @return the score at thePercentile
+     */
+    public synchronized long getScorePercentile(final double thePercentile) {
+        return myScores.getPercentile(thePercentile);
+    }
+
+    /**
+     * Returns the number of games so far that finished with theEnding
+     *
+     * @param theEnding the Ending to count
+     * @return the number of games that finished with theEnding
+     */
+    public synchronized long getEndingCount(final Ending theEnding) {
+        return myEndings[theEnding.ordinal()];
+    }
+
+    /**
+     * Returns a one line summary of the games so far
+     * @return a one line summary of the games so far
+     */
+    public synchronized String summary() {
+        final double seconds = (System.nanoTime() - myStartNanos) / 1e9;
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(
+                "games=%d games/s=%.0f ticks/s=%.0f", myGames,
+                myGames / seconds, getTotalTicks() / seconds));
+        appendPercentiles(builder, "score", myScores);
+        appendPercentiles(builder, "length", myLengths);
+        appendPercentiles(builder, "ticks", myTicks);
+        for (Ending ending : Ending.values()) {
+            builder.append(' ').append(ending.name().toLowerCase())
+                    .append('=').append(myEndings[ending.ordinal()]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Appends the median, 90th and 99th percentile and maximum of
+     * theHistogram
+     *
+     * @param theBuilder the builder to append to
+     * @param theName the name of the values
+     * @param theHistogram the values
+     */
+    private static void appendPercentiles(final StringBuilder theBuilder,
+            final String theName, final Histogram theHistogram) {
+        theBuilder.append(' ').append(theName)
+                .append("[p50=").append(theHistogram.getPercentile(50))
+                .append(" p90=").append(theHistogram.getPercentile(90))
+                .append(" p99=").append(theHistogram.getPercentile(99))
+                .append(" max=").append(theHistogram.getMax())
+                .append(']');
+    }
+}
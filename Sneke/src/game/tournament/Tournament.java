@@ -0,0 +1,368 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.tournament;
+
+import game.AutopilotController;
+import game.Controller;
+import game.DeathCause;
+import game.RandomController;
+import game.SafeController;
+import game.SnekeEngine;
+import game.stats.Histogram;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * The Tournament class plays many independent, seeded games of Sneke with a
+ * Controller over a ForkJoinPool and streams the result of every game to a
+ * ResultSink.
+ *
+ * Game i is played with the seed (base seed + i), so its result does not
+ * depend on the number of threads. Each worker thread keeps its own
+ * SnekeEngine and Controller and hands results over in batches, so the
+ * threads share nothing but the sink
+ *
+ * Usage: {@code java game.tournament.Tournament games [rows] [cols] [seed]
+ * [csv file] [max ticks] [controller] [threads]}
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class Tournament {
+
+    /** The number of games each worker plays before handing them over */
+    private static final int BATCH_SIZE = 256;
+
+    /** The default number of rows and columns of the matrix */
+    private static final int DEFAULT_DIMENSION = 20;
+
+    /** The default tick limit of a game */
+    private static final long DEFAULT_MAX_TICKS = 100_000L;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The seed of game 0
+     */
+    private final long myBaseSeed;
+
+    /**
+     * The number of ticks after which a game is stopped
+     */
+    private final long myMaxTicks;
+
+    /**
+     * Creates the Controller of each worker thread
+     */
+    private final Supplier<Controller> myControllers;
+
+    /**
+     * The engine and Controller of each worker thread
+     */
+    private final ThreadLocal<Worker> myWorkers;
+
+    /**
+     * Initializes a new Tournament
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix
+     * @param theBaseSeed the seed of game 0
+     * @param theMaxTicks the number of ticks after which a game is stopped
+     * @param theControllers creates a new Controller for each worker thread
+     * @throws IllegalArgumentException if theRows or theCols is less than 10
+     * @throws IllegalArgumentException if theMaxTicks is not positive
+     * @throws NullPointerException if theControllers is null
+     */
+    public Tournament(final int theRows, final int theCols,
+            final long theBaseSeed, final long theMaxTicks,
+            final Supplier<Controller> theControllers) {
+        if (theRows < SnekeEngine.MIN_DIMENSION
+                || theCols < SnekeEngine.MIN_DIMENSION) {
+            throw new IllegalArgumentException("theRows and theCols can not "
+                    + "be less than " + SnekeEngine.MIN_DIMENSION);
+        }
+        if (theMaxTicks <= 0) {
+            throw new IllegalArgumentException(
+                    "theMaxTicks must be positive");
+        }
+        myRows = theRows;
+        myCols = theCols;
+        myBaseSeed = theBaseSeed;
+        myMaxTicks = theMaxTicks;
+        myControllers = Objects.requireNonNull(theControllers,
+                "theControllers can not be null");
+        myWorkers = ThreadLocal.withInitial(Worker::new);
+    }
+
+    /**
+     * Plays theGames games on thePool and waits for them to finish
+     *
+     * @param theGames the number of games to play
+     * @param thePool the pool the games are played on
+     * @param theSink receives the result of every game
+     * @throws IllegalArgumentException if theGames is negative
+     * @throws NullPointerException if thePool or theSink is null
+     */
+    public void run(final long theGames, final ForkJoinPool thePool,
+            final ResultSink theSink) {
+        if (theGames < 0) {
+            throw new IllegalArgumentException(
+                    "theGames can not be negative");
+        }
+        Objects.requireNonNull(theSink, "theSink can not be null");
+        Objects.requireNonNull(thePool, "thePool can not be null")
+                .invoke(new PlayTask(0, theGames, theSink));
+        theSink.flush();
+    }
+
+    /**
+     * The entry point of the tournament runner
+     *
+     * @param theArgs the command line arguments, the number of games and
+     *         optionally the rows, columns, base seed, CSV file ("-" for
+     *         none), tick limit, controller (safe, random or autopilot)
+     *         and threads
+     * @throws IOException if the CSV file can not be written
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        if (theArgs.length < 1) {
+            System.err.println("usage: Tournament games [rows] [cols] [seed]"
+                    + " [csv file] [max ticks] [controller] [threads]");
+            return;
+        }
+        final long games = Long.parseLong(theArgs[0]);
+        final int rows = theArgs.length > 1 ?
+                Integer.parseInt(theArgs[1]) : DEFAULT_DIMENSION;
+        final int cols = theArgs.length > 2 ?
+                Integer.parseInt(theArgs[2]) : DEFAULT_DIMENSION;
+        final long seed = theArgs.length > 3 ?
+                Long.parseLong(theArgs[3]) : System.nanoTime();
+        final String csv = theArgs.length > 4 ? theArgs[4] : "-";
+        final long maxTicks = theArgs.length > 5 ?
+                Long.parseLong(theArgs[5]) : DEFAULT_MAX_TICKS;
+        final String controller = theArgs.length > 6 ? theArgs[6] : "safe";
+        final int threads = theArgs.length > 7 ?
+                Integer.parseInt(theArgs[7]) :
+                Runtime.getRuntime().availableProcessors();
+
+        final Tournament tournament = new Tournament(rows, cols, seed,
+                maxTicks, controllerFactory(controller, seed));
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Writer writer = "-".equals(csv) ? null : new BufferedWriter(
+                Files.newBufferedWriter(Paths.get(csv),
+                        StandardCharsets.UTF_8), 1 << 16)) {
+            final ResultSink sink = new ResultSink(writer, System.err,
+                    Math.max(1, games / 10));
+            tournament.run(games, pool, sink);
+            System.out.println(sink.summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns a factory for the Controller with the given name
+     *
+     * @param theName the name of the Controller, safe, random or autopilot
+     * @param theSeed the seed for Controllers that use random numbers
+     * @throws IllegalArgumentException if theName is not a known Controller
+     * @return a factory for the Controller
+     */
+    public static Supplier<Controller> controllerFactory(final String theName,
+            final long theSeed) {
+        switch (theName) {
+            case "safe":
+                return SafeController::new;
+            case "random":
+                return () -> new RandomController(theSeed);
+            case "autopilot":
+                return AutopilotController::new;
+            default:
+                throw new IllegalArgumentException(
+                        "unknown controller: " + theName);
+        }
+    }
+
+    /**
+     * Plays one game and returns how it ended
+     *
+     * @param theWorker the engine and Controller to play with
+     * @param theSeed the seed of the game
+     * @return how the game ended
+     */
+    private Ending play(final Worker theWorker, final long theSeed) {
+        final SnekeEngine engine = theWorker.myEngine;
+        final Controller controller = theWorker.myController;
+        engine.reset(theSeed);
+        controller.newGame(engine);
+
+        while (engine.getTicks() < myMaxTicks) {
+            if (!engine.step(controller.nextAction(engine))) {
+                if (engine.hasWon()) {
+                    return Ending.WON;
+                }
+                return engine.getDeathCause() == DeathCause.WALL ?
+                        Ending.WALL : Ending.SELF;
+            }
+        }
+        return Ending.TICK_LIMIT;
+    }
+
+    /**
+     * The Worker class holds the state a worker thread reuses between games
+     */
+    private final class Worker {
+
+        /**
+         * The engine games are played on
+         */
+        private final SnekeEngine myEngine;
+
+        /**
+         * The Controller games are played with
+         */
+        private final Controller myController;
+
+        /**
+         * The CSV lines of the current batch
+         */
+        private final StringBuilder myCsv;
+
+        /**
+         * The scores of the current batch
+         */
+        private final Histogram myScores;
+
+        /**
+         * The lengths of the current batch
+         */
+        private final Histogram myLengths;
+
+        /**
+         * The ticks of the current batch
+         */
+        private final Histogram myTicks;
+
+        /**
+         * The Ending counts of the current batch
+         */
+        private final long[] myEndings;
+
+        /**
+         * Initializes the state of a worker thread
+         */
+        private Worker() {
+            myEngine = new SnekeEngine(myRows, myCols, myBaseSeed);
+            myController = Objects.requireNonNull(myControllers.get(),
+                    "the Controller factory returned null");
+            myCsv = new StringBuilder();
+            myScores = new Histogram();
+            myLengths = new Histogram();
+            myTicks = new Histogram();
+            myEndings = new long[Ending.values().length];
+        }
+
+        /**
+         * Plays the games from theFrom (inclusive) to theTo (exclusive) and
+         * hands their results to theSink
+         *
+         * @param theFrom the first game
+         * @param theTo the game after the last one
+         * @param theSink receives the results
+         */
+        private void playBatch(final long theFrom, final long theTo,
+                final ResultSink theSink) {
+            myCsv.setLength(0);
+            myScores.reset();
+            myLengths.reset();
+            myTicks.reset();
+            Arrays.fill(myEndings, 0);
+
+            for (long game = theFrom; game < theTo; game++) {
+                final long seed = myBaseSeed + game;
+                final Ending ending = play(this, seed);
+                myScores.record(myEngine.getScore());
+                myLengths.record(myEngine.getLength());
+                myTicks.record(myEngine.getTicks());
+                myEndings[ending.ordinal()]++;
+                myCsv.append(game).append(',')
+                        .append(seed).append(',')
+                        .append(myEngine.getScore()).append(',')
+                        .append(myEngine.getLength()).append(',')
+                        .append(myEngine.getTicks()).append(',')
+                        .append(ending.name()).append('\n');
+            }
+            theSink.accept(myCsv, myScores, myLengths, myTicks, myEndings,
+                    theTo - theFrom);
+        }
+    }
+
+    /**
+     * The PlayTask class splits a range of games until it is one batch and
+     * then plays it
+     */
+    private final class PlayTask extends RecursiveAction {
+
+        /**
+         * The first game of the range
+         */
+        private final long myFrom;
+
+        /**
+         * The game after the last one of the range
+         */
+        private final long myTo;
+
+        /**
+         * Receives the results
+         */
+        private final ResultSink mySink;
+
+        /**
+         * Initializes a new PlayTask
+         *
+         * @param theFrom the first game of the range
+         * @param theTo the game after the last one of the range
+         * @param theSink receives the results
+         */
+        private PlayTask(final long theFrom, final long theTo,
+                final ResultSink theSink) {
+            myFrom = theFrom;
+            myTo = theTo;
+            mySink = theSink;
+        }
+
+        @Override
+        protected void compute() {
+            if (myTo - myFrom <= BATCH_SIZE) {
+                myWorkers.get().playBatch(myFrom, myTo, mySink);
+            } else {
+                final long middle = (myFrom + myTo) >>> 1;
+                invokeAll(new PlayTask(myFrom, middle, mySink),
+                        new PlayTask(middle, myTo, mySink));
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.video;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The FrameEncoder interface describes the last stage of a FrameExporter,
+ * which writes the rendered frames of a game somewhere in order.
+ *
+ * A FrameExporter calls it from a single thread, and the frame it is given
+ * is reused for a later frame as soon as encode returns
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public interface FrameEncoder extends Closeable {
+
+    /**
+     * Writes the next frame
+     *
+     * @param theFrame the frame, must not be kept after the call
+     * @throws IOException if the frame can not be written
+     */
+    void encode(BufferedImage theFrame) throws IOException;
+
+    /**
+     * Finishes the output after the last frame
+     *
+     * @throws IOException if the output can not be finished
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,540 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.video;
+
+import game.BoardRenderer;
+import game.Controller;
+import game.EngineSnapshot;
+import game.RenderState;
+import game.SnekeEngine;
+import game.replay.Replay;
+import game.replay.ReplayPlayer;
+import game.tournament.Tournament;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The FrameExporter class renders the frames of a game offscreen, with the
+ * same look as the window, and hands them to a FrameEncoder.
+ *
+ * It runs as a bounded pipeline. The thread that plays the game submits the
+ * state of every frame as an EngineSnapshot, a pool of render threads each
+ * restores it on their own SnekeEngine and draws it with their own
+ * BoardRenderer into the image of the frame's slot, and an encoder thread
+ * takes the finished frames in order. There is a fixed ring of slots, each
+ * with an image that is reused, and submit waits while every slot is taken,
+ * so memory stays flat however long the game is.
+ *
+ * Usage: {@code java game.video.FrameExporter output [replay] [workers]},
+ * where an output ending in .gif is written as an animated GIF and anything
+ * else as a directory of PNG files. Without a replay, or with -, a game of
+ * the autopilot is exported
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class FrameExporter implements Closeable {
+
+    /** The default width/height of each square in pixels */
+    public static final int DEFAULT_BOX_DIMENSION = 25;
+
+    /** The default number of frames that can be in the pipeline at once */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /** The time each frame of a GIF written by main is shown */
+    private static final int FRAME_MILLIS = 60;
+
+    /** The number of rows of the game main exports without a replay */
+    private static final int DEMO_ROWS = 12;
+
+    /** The number of columns of the game main exports without a replay */
+    private static final int DEMO_COLS = 20;
+
+    /** The most ticks of the game main exports without a replay */
+    private static final long DEMO_TICKS = 3_000L;
+
+    /**
+     * The slots, frame n uses slot n % mySlots.length
+     */
+    private final Slot[] mySlots;
+
+    /**
+     * The slots waiting to be rendered
+     */
+    private final BlockingQueue<Slot> myRenderQueue;
+
+    /**
+     * The render threads
+     */
+    private final Thread[] myRenderers;
+
+    /**
+     * The thread that encodes the frames in order
+     */
+    private final Thread myEncoderThread;
+
+    /**
+     * Writes the frames
+     */
+    private final FrameEncoder myEncoder;
+
+    /**
+     * The number of rows in the matrix of every frame
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix of every frame
+     */
+    private final int myCols;
+
+    /**
+     * Guards the slots, the counts and the failure
+     */
+    private final Object myLock = new Object();
+
+    /**
+     * The number of frames submitted, guarded by myLock
+     */
+    private long mySubmitted;
+
+    /**
+     * The number of frames encoded, guarded by myLock
+     */
+    private long myEncoded;
+
+    /**
+     * Whether or not close was called, guarded by myLock
+     */
+    private boolean myClosing;
+
+    /**
+     * The first thing that went wrong in the pipeline, guarded by myLock
+     */
+    private Throwable myFailure;
+
+    /**
+     * Initializes a new FrameExporter with the default square size and
+     * capacity and starts its threads
+     *
+     * @param theRows the number of rows in the matrix of every frame
+     * @param theCols the number of columns in the matrix of every frame
+     * @param theWorkers the number of render threads
+     * @param theEncoder writes the frames, closed with the exporter
+     * @throws NullPointerException if theEncoder is null
+     * @throws IllegalArgumentException if theRows or theCols is less than
+     *         10 or theWorkers is not positive
+     */
+    public FrameExporter(final int theRows, final int theCols,
+            final int theWorkers, final FrameEncoder theEncoder) {
+        this(theRows, theCols, DEFAULT_BOX_DIMENSION, theWorkers,
+                DEFAULT_CAPACITY, theEncoder);
+    }
+
+    /**
+     * Initializes a new FrameExporter and starts its threads
+     *
+     * @param theRows the number of rows in the matrix of every frame
+     * @param theCols the number of columns in the matrix of every frame
+     * @param theBoxDimension the width/height of each square in pixels
+     * @param theWorkers the number of render threads
+     * @param theCapacity the number of frames that can be in the pipeline
+     *         at once, each holding one image
+     * @param theEncoder writes the frames, closed with the exporter
+     * @throws NullPointerException if theEncoder is null
+     * @throws IllegalArgumentException if theRows or theCols is less than
+     *         10 or theBoxDimension, theWorkers or theCapacity is not
+     *         positive
+     */
+    public FrameExporter(final int theRows, final int theCols,
+            final int theBoxDimension, final int theWorkers,
+            final int theCapacity, final FrameEncoder theEncoder) {
+        if (theBoxDimension <= 0 || theWorkers <= 0 || theCapacity <= 0) {
+            throw new IllegalArgumentException("theBoxDimension, theWorkers"
+                    + " and theCapacity must be positive");
+        }
+        myEncoder = Objects.requireNonNull(theEncoder,
+                "theEncoder can not be null");
+        myRows = theRows;
+        myCols = theCols;
+
+        // one renderer up front checks the dimensions and sizes the frames
+        final SnekeEngine first = new SnekeEngine(theRows, theCols, 0);
+        final BoardRenderer renderer = new BoardRenderer(first,
+                theCols * theBoxDimension, theRows * theBoxDimension,
+                theBoxDimension);
+        // a pixel of margin for the border drawn when the grid is not
+        final int width = renderer.getWidth() + 2;
+        final int height = renderer.getHeight() + 2;
+
+        mySlots = new Slot[theCapacity];
+        for (int i = 0; i < theCapacity; i++) {
+            mySlots[i] = new Slot(BoardRenderer.createFrameImage(width,
+                    height));
+        }
+        myRenderQueue = new ArrayBlockingQueue<>(theCapacity);
+
+        myRenderers = new Thread[theWorkers];
+        for (int i = 0; i < theWorkers; i++) {
+            final SnekeEngine engine = i == 0 ? first :
+                    new SnekeEngine(theRows, theCols, 0);
+            final BoardRenderer workerRenderer = i == 0 ? renderer :
+                    new BoardRenderer(engine, theCols * theBoxDimension,
+                            theRows * theBoxDimension, theBoxDimension);
+            myRenderers[i] = new Thread(
+                    () -> runRenderer(engine, workerRenderer),
+                    "frame-render-" + i);
+            myRenderers[i].setDaemon(true);
+            myRenderers[i].start();
+        }
+        myEncoderThread = new Thread(this::runEncoder, "frame-encoder");
+        myEncoderThread.setDaemon(true);
+        myEncoderThread.start();
+    }
+
+    /**
+     * Returns the width of every frame in pixels
+     * @return the width of every frame in pixels
+     */
+    public int getWidth() {
+        return mySlots[0].myImage.getWidth();
+    }
+
+    /**
+     * Returns the height of every frame in pixels
+     * @return the height of every frame in pixels
+     */
+    public int getHeight() {
+        return mySlots[0].myImage.getHeight();
+    }
+
+    /**
+     * Returns the number of frames encoded so far
+     * @return the number of frames encoded so far
+     */
+    public long getEncoded() {
+        synchronized (myLock) {
+            return myEncoded;
+        }
+    }
+
+    /**
+     * Adds the current state of theEngine as the next frame, waiting while
+     * the pipeline is full
+     *
+     * @param theEngine the game, of the size the exporter was made for
+     * @throws NullPointerException if theEngine is null
+     * @throws IllegalArgumentException if theEngine has another matrix size
+     * @throws IllegalStateException if the exporter is closed
+     * @throws IOException if a frame could not be rendered or encoded, or
+     *         the thread was interrupted while it waited
+     */
+    public void submit(final SnekeEngine theEngine) throws IOException {
+        Objects.requireNonNull(theEngine, "theEngine can not be null");
+        if (theEngine.getRows() != myRows || theEngine.getCols() != myCols) {
+            throw new IllegalArgumentException("theEngine is not "
+                    + myRows + "x" + myCols);
+        }
+        final Slot slot;
+        synchronized (myLock) {
+            if (myClosing) {
+                throw new IllegalStateException("the exporter is closed");
+            }
+            try {
+                while (myFailure == null
+                        && mySubmitted - myEncoded >= mySlots.length) {
+                    myLock.wait();
+                }
+            } catch (final InterruptedException theException) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "interrupted while the pipeline was full");
+            }
+            checkFailure();
+            slot = mySlots[(int) (mySubmitted % mySlots.length)];
+            mySubmitted++;
+        }
+        // the slot is free until it is queued, and the queue has room for
+        // every slot so offer never fails
+        slot.mySnapshot = theEngine.snapshot();
+        myRenderQueue.offer(slot);
+    }
+
+    /**
+     * Plays theEngine with theController from its current state, submitting
+     * the first frame and one frame per move, until the game ends or
+     * theMaxTicks moves were made
+     *
+     * @param theEngine the game to play
+     * @param theController chooses the Action of every tick
+     * @param theMaxTicks the most ticks to play
+     * @throws NullPointerException if theEngine or theController is null
+     * @throws IOException if a frame could not be rendered or encoded
+     */
+    public void submitGame(final SnekeEngine theEngine,
+            final Controller theController, final long theMaxTicks)
+            throws IOException {
+        Objects.requireNonNull(theController, "theController can not be null");
+        submit(theEngine);
+        for (long tick = 0; tick < theMaxTicks; tick++) {
+            if (!theEngine.step(theController.nextAction(theEngine))
+                    && !theEngine.hasWon()) {
+                // the move that kills the Sneke changes nothing
+                return;
+            }
+            submit(theEngine);
+            if (!theEngine.isAlive()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replays theReplay from the start, submitting the first frame and one
+     * frame per move
+     *
+     * @param theReplay the replay, of the size the exporter was made for
+     * @throws NullPointerException if theReplay is null
+     * @throws IOException if a frame could not be rendered or encoded
+     */
+    public void submitReplay(final Replay theReplay) throws IOException {
+        final ReplayPlayer player = new ReplayPlayer(theReplay);
+        submit(player.getEngine());
+        // the move that kills the Sneke changes nothing on the matrix
+        while (player.step()) {
+            submit(player.getEngine());
+        }
+    }
+
+    /**
+     * Waits for every submitted frame to be encoded, stops the threads and
+     * closes the encoder
+     *
+     * @throws IOException if a frame could not be rendered or encoded, or
+     *         the encoder could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (myLock) {
+            if (myClosing) {
+                return;
+            }
+            myClosing = true;
+            myLock.notifyAll();
+        }
+        try {
+            myEncoderThread.join();
+        } catch (final InterruptedException theException) {
+            Thread.currentThread().interrupt();
+        }
+        for (final Thread renderer : myRenderers) {
+            renderer.interrupt();
+        }
+        try {
+            myEncoder.close();
+        } finally {
+            synchronized (myLock) {
+                checkFailure();
+            }
+        }
+    }
+
+    /**
+     * Throws the first failure of the pipeline, if there was one. Must be
+     * called holding myLock
+     *
+     * @throws IOException if a frame could not be rendered or encoded
+     */
+    private void checkFailure() throws IOException {
+        if (myFailure instanceof IOException) {
+            throw (IOException) myFailure;
+        }
+        if (myFailure != null) {
+            throw new IOException("a frame could not be rendered",
+                    myFailure);
+        }
+    }
+
+    /**
+     * Records theFailure, if it is the first, and wakes every waiting thread
+     *
+     * @param theFailure what went wrong
+     */
+    private void fail(final Throwable theFailure) {
+        synchronized (myLock) {
+            if (myFailure == null) {
+                myFailure = theFailure;
+            }
+            myLock.notifyAll();
+        }
+    }
+
+    /**
+     * Renders queued slots until interrupted
+     *
+     * @param theEngine the engine the frames are restored on
+     * @param theRenderer draws theEngine
+     */
+    private void runRenderer(final SnekeEngine theEngine,
+            final BoardRenderer theRenderer) {
+        try {
+            while (true) {
+                final Slot slot = myRenderQueue.take();
+                try {
+                    theEngine.restore(slot.mySnapshot);
+                    final RenderState state = new RenderState(theEngine);
+                    final Graphics2D g2d = slot.myImage.createGraphics();
+                    try {
+                        theRenderer.draw(g2d, 1, 1, state, 1);
+                    } finally {
+                        g2d.dispose();
+                    }
+                } catch (final RuntimeException theException) {
+                    fail(theException);
+                }
+                synchronized (myLock) {
+                    slot.mySnapshot = null;
+                    slot.myRendered = true;
+                    myLock.notifyAll();
+                }
+            }
+        } catch (final InterruptedException theException) {
+            // the exporter is closed
+        }
+    }
+
+    /**
+     * Encodes the rendered frames in order until the exporter is closed and
+     * every submitted frame is encoded, or something fails
+     */
+    private void runEncoder() {
+        try {
+            while (true) {
+                final Slot slot;
+                synchronized (myLock) {
+                    while (true) {
+                        if (myFailure != null) {
+                            return;
+                        }
+                        final Slot next =
+                                mySlots[(int) (myEncoded % mySlots.length)];
+                        if (myEncoded < mySubmitted && next.myRendered) {
+                            slot = next;
+                            break;
+                        }
+                        if (myClosing && myEncoded == mySubmitted) {
+                            return;
+                        }
+                        myLock.wait();
+                    }
+                }
+                myEncoder.encode(slot.myImage);
+                synchronized (myLock) {
+                    slot.myRendered = false;
+                    myEncoded++;
+                    myLock.notifyAll();
+                }
+            }
+        } catch (final IOException | RuntimeException theException) {
+            fail(theException);
+        } catch (final InterruptedException theException) {
+            fail(new InterruptedIOException("the encoder was interrupted"));
+        }
+    }
+
+    /**
+     * The entry point of the exporter, which writes a replay or a game of
+     * the autopilot as an animated GIF or a PNG sequence
+     *
+     * @param theArgs the command line arguments, the output file or
+     *         directory, optionally the replay file and the number of
+     *         render threads
+     * @throws IOException if the replay can not be read or the frames can
+     *         not be written
+     */
+    public static void main(final String[] theArgs) throws IOException {
+        if (theArgs.length < 1) {
+            System.err.println("usage: java game.video.FrameExporter "
+                    + "output [replay] [workers]");
+            return;
+        }
+        final Path output = Paths.get(theArgs[0]);
+        final Replay replay = theArgs.length > 1 && !theArgs[1].equals("-") ?
+                Replay.read(Paths.get(theArgs[1])) : null;
+        final int workers = theArgs.length > 2 ? Integer.parseInt(theArgs[2])
+                : Runtime.getRuntime().availableProcessors();
+        final int rows = replay == null ? DEMO_ROWS : replay.getRows();
+        final int cols = replay == null ? DEMO_COLS : replay.getCols();
+
+        final FrameEncoder encoder =
+                output.toString().toLowerCase().endsWith(".gif") ?
+                new GifEncoder(output, FRAME_MILLIS) :
+                new PngSequenceEncoder(output);
+        final long start = System.nanoTime();
+        final FrameExporter exporter = new FrameExporter(rows, cols, workers,
+                encoder);
+        try {
+            if (replay == null) {
+                final SnekeEngine engine = new SnekeEngine(rows, cols,
+                        System.nanoTime());
+                exporter.submitGame(engine, Tournament.controllerFactory(
+                        "autopilot", 0).get(), DEMO_TICKS);
+            } else {
+                exporter.submitReplay(replay);
+            }
+        } finally {
+            // waits for the last frames to be encoded
+            exporter.close();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("frames: %d (%dx%d)%n", exporter.getEncoded(),
+                exporter.getWidth(), exporter.getHeight());
+        System.out.printf("frames/second: %.0f%n",
+                exporter.getEncoded() / seconds);
+    }
+
+    /**
+     * The Slot class is one place in the pipeline: the state of the frame
+     * in it and the image that frame is rendered into
+     */
+    private static final class Slot {
+
+        /**
+         * The image the frame is rendered into, reused for every frame
+         */
+        private final BufferedImage myImage;
+
+        /**
+         * The state of the frame to render, null once it is rendered
+         */
+        private EngineSnapshot mySnapshot;
+
+        /**
+         * Whether or not the frame is rendered and waiting to be encoded,
+         * guarded by myLock
+         */
+        private boolean myRendered;
+
+        /**
+         * Initializes a new empty Slot
+         *
+         * @param theImage the image frames are rendered into
+         */
+        private Slot(final BufferedImage theImage) {
+            myImage = theImage;
+        }
+    }
+}
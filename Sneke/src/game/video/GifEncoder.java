@@ -0,0 +1,187 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.video;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * The GifEncoder class writes the frames to one animated GIF that loops
+ * forever, every frame shown for the same time.
+ *
+ * The GIF metadata is built from the first frame and reused, so every frame
+ * must have the same image type as the first, which holds for frames
+ * rendered by a FrameExporter
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class GifEncoder implements FrameEncoder {
+
+    /** The name of the GIF metadata format */
+    private static final String METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+    /**
+     * The GIF writer
+     */
+    private final ImageWriter myWriter;
+
+    /**
+     * The file the writer writes to, owned and closed by the encoder
+     */
+    private final ImageOutputStream myOut;
+
+    /**
+     * The time each frame is shown, in hundredths of a second
+     */
+    private final int myDelay;
+
+    /**
+     * The metadata of the first frame, which also makes the GIF loop, null
+     * before it is written
+     */
+    private IIOMetadata myFirstMetadata;
+
+    /**
+     * The metadata of every frame after the first
+     */
+    private IIOMetadata myMetadata;
+
+    /**
+     * Initializes a new GifEncoder, replacing theFile if it exists
+     *
+     * @param theFile the file to write the GIF to
+     * @param theFrameMillis the time each frame is shown, in milliseconds,
+     *         rounded to the hundredths of a second GIF counts in
+     * @throws NullPointerException if theFile is null
+     * @throws IllegalArgumentException if theFrameMillis is not between 10
+     *         and 655350
+     * @throws IOException if theFile can not be opened or there is no GIF
+     *         writer
+     */
+    public GifEncoder(final Path theFile, final int theFrameMillis)
+            throws IOException {
+        Objects.requireNonNull(theFile, "theFile can not be null");
+        if (theFrameMillis < 10 || theFrameMillis > 655_350) {
+            throw new IllegalArgumentException(
+                    "theFrameMillis must be between 10 and 655350");
+        }
+        final Iterator<ImageWriter> writers =
+                ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("no GIF writer");
+        }
+        myWriter = writers.next();
+        myDelay = Math.round(theFrameMillis / 10f);
+        // written straight to the file, not through a stream and a cache
+        Files.deleteIfExists(theFile);
+        myOut = new FileImageOutputStream(theFile.toFile());
+        try {
+            myWriter.setOutput(myOut);
+            myWriter.prepareWriteSequence(null);
+        } catch (final IOException | RuntimeException theException) {
+            myWriter.dispose();
+            myOut.close();
+            throw theException;
+        }
+    }
+
+    @Override
+    public void encode(final BufferedImage theFrame) throws IOException {
+        if (myFirstMetadata == null) {
+            final ImageTypeSpecifier type = new ImageTypeSpecifier(theFrame);
+            myFirstMetadata = createMetadata(type, true);
+            myMetadata = createMetadata(type, false);
+            myWriter.writeToSequence(
+                    new IIOImage(theFrame, null, myFirstMetadata), null);
+        } else {
+            myWriter.writeToSequence(
+                    new IIOImage(theFrame, null, myMetadata), null);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (myFirstMetadata != null) {
+                myWriter.endWriteSequence();
+            }
+        } finally {
+            myWriter.dispose();
+            myOut.close();
+        }
+    }
+
+    /**
+     * Returns the metadata of a frame: its delay and, for the first frame,
+     * the NETSCAPE2.0 extension that makes the GIF loop forever
+     *
+     * @param theType the image type of the frames
+     * @param theFirst whether or not it is the metadata of the first frame
+     * @throws IOException if the metadata can not be built
+     * @return the metadata of a frame
+     */
+    private IIOMetadata createMetadata(final ImageTypeSpecifier theType,
+            final boolean theFirst) throws IOException {
+        final IIOMetadata metadata =
+                myWriter.getDefaultImageMetadata(theType, null);
+        final IIOMetadataNode root =
+                (IIOMetadataNode) metadata.getAsTree(METADATA_FORMAT);
+
+        final IIOMetadataNode control = child(root,
+                "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(myDelay));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (theFirst) {
+            final IIOMetadataNode loop = new IIOMetadataNode(
+                    "ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            // sub-block 1 with a loop count of 0, forever
+            loop.setUserObject(new byte[] {1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(loop);
+        }
+        metadata.setFromTree(METADATA_FORMAT, root);
+        return metadata;
+    }
+
+    /**
+     * Returns the child of theNode with the given name, added if there is
+     * none
+     *
+     * @param theNode the parent node
+     * @param theName the name of the child
+     * @return the child
+     */
+    private static IIOMetadataNode child(final IIOMetadataNode theNode,
+            final String theName) {
+        for (int i = 0; i < theNode.getLength(); i++) {
+            if (theNode.item(i).getNodeName().equals(theName)) {
+                return (IIOMetadataNode) theNode.item(i);
+            }
+        }
+        final IIOMetadataNode child = new IIOMetadataNode(theName);
+        theNode.appendChild(child);
+        return child;
+    }
+}
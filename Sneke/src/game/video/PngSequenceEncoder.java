@@ -0,0 +1,71 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.video;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * The PngSequenceEncoder class writes every frame to its own numbered PNG
+ * file in a directory, frame-000000.png, frame-000001.png and so on, which
+ * video tools take as an image sequence
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class PngSequenceEncoder implements FrameEncoder {
+
+    /**
+     * The directory the frames are written to
+     */
+    private final Path myDirectory;
+
+    /**
+     * The number of frames written
+     */
+    private int myFrames;
+
+    /**
+     * Initializes a new PngSequenceEncoder, creating theDirectory if it does
+     * not exist
+     *
+     * @param theDirectory the directory to write the frames to
+     * @throws NullPointerException if theDirectory is null
+     * @throws IOException if theDirectory can not be created
+     */
+    public PngSequenceEncoder(final Path theDirectory) throws IOException {
+        myDirectory = Files.createDirectories(Objects.requireNonNull(
+                theDirectory, "theDirectory can not be null"));
+    }
+
+    /**
+     * Returns the number of frames written
+     * @return the number of frames written
+     */
+    public int getFrames() {
+        return myFrames;
+    }
+
+    @Override
+    public void encode(final BufferedImage theFrame) throws IOException {
+        final Path file = myDirectory.resolve(
+                String.format("frame-%06d.png", myFrames));
+        if (!ImageIO.write(theFrame, "png", file.toFile())) {
+            throw new IOException("no PNG writer for the frame");
+        }
+        myFrames++;
+    }
+
+    @Override
+    public void close() {
+        // every frame is a finished file already
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that an EngineSnapshot survives being written, read and restored,
+ * and that snapshots which do not fit are rejected before the game is
+ * changed
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+class EngineSnapshotTest {
+
+    /** The number of rows and columns of the test matrices */
+    private static final int SIZE = 10;
+
+    /** The seed of the test games */
+    private static final long SEED = 42;
+
+    /** The number of ticks played before a snapshot is taken */
+    private static final int TICKS = 300;
+
+    @Test
+    void roundTripOnWalls() throws IOException {
+        checkRoundTrip(Topology.walls(SIZE, SIZE));
+    }
+
+    @Test
+    void roundTripOnTorus() throws IOException {
+        checkRoundTrip(Topology.torus(SIZE, SIZE));
+    }
+
+    @Test
+    void readRejectsNegativeLength() {
+        final byte[] bytes = snapshot(new int[0], -1).toByteArray();
+        // the length is the last byte of a snapshot with no body
+        final byte[] negative = Arrays.copyOf(bytes, bytes.length + 9);
+        Arrays.fill(negative, bytes.length - 1, negative.length - 1,
+                (byte) 0xFF);
+        negative[negative.length - 1] = 1;
+        assertThrows(IOException.class,
+                () -> EngineSnapshot.fromByteArray(negative));
+    }
+
+    @Test
+    void readRejectsMatrixWhoseSizeOverflows() {
+        final byte[] bytes = snapshot(new int[] {55}, -1).toByteArray();
+        // the rows and columns are the single bytes after the version, and
+        // (2^62 + 10) squared wraps around to a 10x10 matrix
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes, 0, 5);
+        writeVarint(out, (1L << 62) + SIZE);
+        writeVarint(out, (1L << 62) + SIZE);
+        out.write(bytes, 7, bytes.length - 7);
+        assertThrows(IOException.class,
+                () -> EngineSnapshot.fromByteArray(out.toByteArray()));
+    }
+
+    @Test
+    void readRejectsCherryBelowNone() {
+        final byte[] bytes = snapshot(new int[] {55}, -2).toByteArray();
+        assertThrows(IOException.class,
+                () -> EngineSnapshot.fromByteArray(bytes));
+    }
+
+    @Test
+    void restoreRejectsOverlappingCells() {
+        // east then back west onto the first cell
+        checkRejected(Topology.walls(SIZE, SIZE),
+                snapshot(new int[] {55, 56, 55}, -1));
+    }
+
+    @Test
+    void restoreRejectsCellsThatAreNotConnected() {
+        checkRejected(Topology.walls(SIZE, SIZE),
+                snapshot(new int[] {55, 57}, -1));
+    }
+
+    @Test
+    void restoreRejectsCrossingTheEdgeOnWalls() throws IOException {
+        final Topology torus = Topology.torus(SIZE, SIZE);
+        final EngineSnapshot across = snapshot(new int[] {19, 10}, -1);
+        new SnekeEngine(torus, SEED).restore(across);
+        checkRejected(Topology.walls(SIZE, SIZE),
+                EngineSnapshot.fromByteArray(across.toByteArray()));
+    }
+
+    @Test
+    void restoreRejectsCellsOnObstacles() {
+        final Topology map = Topology.parse(List.of(
+                "..........", "..........", "..........", "..........",
+                "..........", ".....#....", "..........", "..........",
+                "..........", ".........."), false);
+        checkRejected(map, snapshot(new int[] {54, 55}, -1));
+        checkRejected(map, snapshot(new int[] {53, 54}, 55));
+    }
+
+    @Test
+    void restoreRejectsCherryOnTheBody() {
+        checkRejected(Topology.walls(SIZE, SIZE),
+                snapshot(new int[] {54, 55, 56}, 55));
+    }
+
+    /**
+     * Plays a game on theTopology, writes, reads and restores a snapshot of
+     * it into another engine, and checks both then play on the same
+     *
+     * @param theTopology the Topology to play on
+     * @throws IOException if the snapshot can not be read back
+     */
+    private static void checkRoundTrip(final Topology theTopology)
+            throws IOException {
+        final SnekeEngine engine = new SnekeEngine(theTopology, SEED);
+        play(engine, TICKS);
+        final byte[] bytes = engine.snapshot().toByteArray();
+
+        final SnekeEngine copy = new SnekeEngine(theTopology, SEED + 1);
+        copy.restore(EngineSnapshot.fromByteArray(bytes));
+        copy.checkInvariants();
+        assertArrayEquals(bytes, copy.snapshot().toByteArray());
+        assertEquals(engine.getLength(), copy.getLength());
+        assertEquals(engine.getFreeCellCount(), copy.getFreeCellCount());
+
+        play(engine, TICKS);
+        play(copy, TICKS);
+        assertArrayEquals(engine.snapshot().toByteArray(),
+                copy.snapshot().toByteArray());
+    }
+
+    /**
+     * Moves theEngine theTicks times, turning away from what would kill it
+     *
+     * @param theEngine the engine to move
+     * @param theTicks the number of ticks
+     */
+    private static void play(final SnekeEngine theEngine, final int theTicks) {
+        for (int i = 0; i < theTicks && theEngine.isAlive(); i++) {
+            Action action = Action.STRAIGHT;
+            for (Action candidate : Action.values()) {
+                if (theEngine.isSafe(candidate)) {
+                    action = candidate;
+                    break;
+                }
+            }
+            theEngine.step(action);
+        }
+    }
+
+    /**
+     * Checks that restoring theSnapshot on theTopology is rejected and
+     * leaves the game as it was
+     *
+     * @param theTopology the Topology of the engine
+     * @param theSnapshot the snapshot that does not fit
+     */
+    private static void checkRejected(final Topology theTopology,
+            final EngineSnapshot theSnapshot) {
+        final SnekeEngine engine = new SnekeEngine(theTopology, SEED);
+        play(engine, TICKS / 10);
+        final byte[] before = engine.snapshot().toByteArray();
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.restore(theSnapshot));
+        engine.checkInvariants();
+        assertArrayEquals(before, engine.snapshot().toByteArray());
+    }
+
+    /**
+     * Writes theValue as an unsigned LEB128 varint, as snapshots store it
+     *
+     * @param theOut the stream to write to
+     * @param theValue the value, treated as unsigned
+     */
+    private static void writeVarint(final ByteArrayOutputStream theOut,
+            final long theValue) {
+        long value = theValue;
+        while ((value & ~0x7FL) != 0) {
+            theOut.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        theOut.write((int) value);
+    }
+
+    /**
+     * Returns a snapshot of a running game on a SIZE by SIZE matrix
+     *
+     * @param theBody the packed body cells from the tail to the head
+     * @param theCherry the packed cherry cell, -1 when there is no cherry
+     * @return the snapshot
+     */
+    private static EngineSnapshot snapshot(final int[] theBody,
+            final int theCherry) {
+        return new EngineSnapshot(SIZE, SIZE, theBody, Direction.EAST,
+                theCherry, 0, 0, true, false, null, SEED, SEED);
+    }
+}
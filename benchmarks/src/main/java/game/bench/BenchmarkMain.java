@@ -0,0 +1,63 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * The BenchmarkMain class includes the entry point of the benchmark jar. It
+ * accepts the normal JMH command line options but writes the results as
+ * JSON to jmh-result.json unless -rf or -rff is given, so runs from
+ * different releases can be compared
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+public class BenchmarkMain {
+
+    /** The default file the results are written to */
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    /**
+     * The entry point of the benchmark jar
+     *
+     * @param theArgs the JMH command line options
+     * @throws CommandLineOptionException if theArgs are not valid options
+     * @throws IOException if the help can not be printed
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(final String[] theArgs)
+            throws CommandLineOptionException, IOException, RunnerException {
+        final CommandLineOptions commandLine = new CommandLineOptions(theArgs);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        final ChainedOptionsBuilder options =
+                new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Direction.getLeftDirection and Direction.getRightDirection
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectionBenchmark {
+
+    /**
+     * The Direction that is turned, changed on every call so the result can
+     * not be constant folded
+     */
+    private Direction myDirection = Direction.NORTH;
+
+    /**
+     * Turns left
+     *
+     * @return the new Direction
+     */
+    @Benchmark
+    public Direction left() {
+        myDirection = Direction.getLeftDirection(myDirection);
+        return myDirection;
+    }
+
+    /**
+     * Turns right
+     *
+     * @return the new Direction
+     */
+    @Benchmark
+    public Direction right() {
+        myDirection = Direction.getRightDirection(myDirection);
+        return myDirection;
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.Direction;
+import game.EngineSnapshot;
+import game.SnekeEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The HamiltonianWalk class steers a SnekeEngine around a fixed cycle that
+ * visits every cell, so benchmarks can grow a Sneke to any length without
+ * it ever dying. Row 0 is the way back west and every other column goes
+ * down and up the remaining rows, which needs an even number of columns
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+final class HamiltonianWalk {
+
+    /** The first 4 bytes of an EngineSnapshot in its binary form, "SNKS" */
+    private static final byte[] SNAPSHOT_MAGIC = {'S', 'N', 'K', 'S'};
+
+    /** The version of the EngineSnapshot binary form that is written */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * The number of rows in the matrix
+     */
+    private final int myRows;
+
+    /**
+     * The number of columns in the matrix
+     */
+    private final int myCols;
+
+    /**
+     * The Direction to move from each packed cell index
+     */
+    private final Direction[] myDirections;
+
+    /**
+     * Initializes the cycle for a matrix of the given size
+     *
+     * @param theRows the number of rows in the matrix
+     * @param theCols the number of columns in the matrix, must be even
+     * @throws IllegalArgumentException if theCols is odd
+     */
+    HamiltonianWalk(final int theRows, final int theCols) {
+        if (theCols % 2 != 0) {
+            throw new IllegalArgumentException("theCols must be even");
+        }
+        myRows = theRows;
+        myCols = theCols;
+        myDirections = new Direction[theRows * theCols];
+        for (int row = 0; row < theRows; row++) {
+            for (int col = 0; col < theCols; col++) {
+                final Direction direction;
+                if (row == 0) {
+                    direction = col == 0 ? Direction.SOUTH : Direction.WEST;
+                } else if (col % 2 == 0) {
+                    direction = row == theRows - 1 ?
+                            Direction.EAST : Direction.SOUTH;
+                } else if (row == 1) {
+                    direction = col == theCols - 1 ?
+                            Direction.NORTH : Direction.EAST;
+                } else {
+                    direction = Direction.NORTH;
+                }
+                myDirections[row * theCols + col] = direction;
+            }
+        }
+    }
+
+    /**
+     * Points theEngine along the cycle without moving it
+     *
+     * @param theEngine the engine to steer
+     */
+    void steer(final SnekeEngine theEngine) {
+        theEngine.setCurrentDirection(myDirections[
+                theEngine.getHeadRow() * theEngine.getCols()
+                        + theEngine.getHeadCol()]);
+    }
+
+    /**
+     * Points theEngine along the cycle and moves it one cell
+     *
+     * @param theEngine the engine to move
+     * @return whether or not the game should continue
+     */
+    boolean step(final SnekeEngine theEngine) {
+        steer(theEngine);
+        return theEngine.update();
+    }
+
+    /**
+     * Walks theEngine until the Sneke is at least theLength long
+     *
+     * @param theEngine the engine to grow, in a freshly reset state
+     * @param theLength the length to reach
+     * @throws IllegalStateException if the game ends first
+     */
+    void grow(final SnekeEngine theEngine, final int theLength) {
+        while (theEngine.getLength() < theLength) {
+            if (!step(theEngine)) {
+                throw new IllegalStateException(
+                        "the game ended before reaching " + theLength);
+            }
+        }
+    }
+
+    /**
+     * Puts theEngine in a game where the Sneke is theLength long, lies
+     * along the cycle from cell 0 and there is no cherry, so a Sneke of any
+     * length is set up without playing for it and never grows
+     *
+     * @param theEngine the engine to restore, of the size of the cycle
+     * @param theLength the length of the Sneke, less than the number of
+     *         cells
+     * @throws IllegalArgumentException if theLength does not fit
+     */
+    void lay(final SnekeEngine theEngine, final int theLength) {
+        if (theLength < 1 || theLength >= myDirections.length) {
+            throw new IllegalArgumentException("theLength does not fit");
+        }
+        final int[] body = new int[theLength];
+        for (int i = 1; i < theLength; i++) {
+            body[i] = next(body[i - 1]);
+        }
+
+        // the EngineSnapshot binary form of a running game with the body
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(SNAPSHOT_MAGIC, 0, SNAPSHOT_MAGIC.length);
+        out.write(SNAPSHOT_VERSION);
+        writeVarint(out, myRows);
+        writeVarint(out, myCols);
+        for (int i = 0; i < 16; i++) {
+            // the seed and random state, 1 each
+            out.write(i == 7 || i == 15 ? 1 : 0);
+        }
+        writeVarint(out, 0);
+        writeVarint(out, 0);
+        out.write(myDirections[body[theLength - 1]].ordinal() | 1 << 2);
+        writeVarint(out, 0);
+        writeVarint(out, theLength);
+        writeVarint(out, body[0]);
+        int packed = 0;
+        for (int i = 1; i < theLength; i++) {
+            packed |= myDirections[body[i - 1]].ordinal()
+                    << (2 * ((i - 1) & 3));
+            if ((i & 3) == 0 || i == theLength - 1) {
+                out.write(packed);
+                packed = 0;
+            }
+        }
+        try {
+            theEngine.restore(EngineSnapshot.fromByteArray(
+                    out.toByteArray()));
+        } catch (final IOException theException) {
+            throw new UncheckedIOException(theException);
+        }
+    }
+
+    /**
+     * Returns the cell after theCell along the cycle
+     *
+     * @param theCell the packed cell
+     * @return the packed next cell
+     */
+    private int next(final int theCell) {
+        switch (myDirections[theCell]) {
+            case NORTH:
+                return theCell - myCols;
+            case SOUTH:
+                return theCell + myCols;
+            case EAST:
+                return theCell + 1;
+            default:
+                return theCell - 1;
+        }
+    }
+
+    /**
+     * Writes theValue as an unsigned LEB128 varint, as snapshots store it
+     *
+     * @param theOut the stream to write to
+     * @param theValue the value, not negative
+     */
+    private static void writeVarint(final ByteArrayOutputStream theOut,
+            final long theValue) {
+        long value = theValue;
+        while ((value & ~0x7FL) != 0) {
+            theOut.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        theOut.write((int) value);
+    }
+}
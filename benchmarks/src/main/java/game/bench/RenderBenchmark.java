@@ -0,0 +1,127 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.BoardRenderer;
+import game.EventRing;
+import game.GamePanel;
+import game.RenderBuffer;
+import game.RenderState;
+import game.SnekeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures BoardRenderer drawing a frame into an offscreen BufferedImage,
+ * with no display needed
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    /**
+     * The length of the Sneke that is drawn
+     */
+    @Param({"1", "100", "200"})
+    public int myLength;
+
+    /**
+     * The renderer being measured
+     */
+    private BoardRenderer myRenderer;
+
+    /**
+     * The state of the matrix after the Sneke moved
+     */
+    private RenderState myState;
+
+    /**
+     * The image the matrix is drawn into
+     */
+    private BufferedImage myImage;
+
+    /**
+     * The Graphics of myImage
+     */
+    private Graphics2D myGraphics;
+
+    /**
+     * Creates the renderer with a Sneke of myLength that has just moved
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final SnekeEngine engine = new SnekeEngine(GamePanel.NUM_ROWS,
+                GamePanel.NUM_COLS, 0);
+        final HamiltonianWalk walk =
+                new HamiltonianWalk(GamePanel.NUM_ROWS, GamePanel.NUM_COLS);
+        walk.grow(engine, myLength);
+
+        myRenderer = new BoardRenderer(engine, 500, 300, 25);
+        final RenderBuffer states = new RenderBuffer(engine, System::nanoTime);
+        final EventRing events = new EventRing();
+        events.subscribe(states);
+        engine.setEvents(events);
+        walk.step(engine);
+        myState = states.acquire();
+        myImage = new BufferedImage(myRenderer.getWidth() + 2,
+                myRenderer.getHeight() + 2, BufferedImage.TYPE_INT_RGB);
+        myGraphics = myImage.createGraphics();
+    }
+
+    /**
+     * Releases the Graphics
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        myGraphics.dispose();
+    }
+
+    /**
+     * Draws the matrix as of the last tick
+     *
+     * @return the image that was drawn into
+     */
+    @Benchmark
+    public BufferedImage draw() {
+        myRenderer.draw(myGraphics, 1, 1, myState, 1);
+        return myImage;
+    }
+
+    /**
+     * Draws the matrix half way between two ticks, with the head and tail
+     * sliding
+     *
+     * @return the image that was drawn into
+     */
+    @Benchmark
+    public BufferedImage drawInterpolated() {
+        myRenderer.draw(myGraphics, 1, 1, myState, 0.5);
+        return myImage;
+    }
+}
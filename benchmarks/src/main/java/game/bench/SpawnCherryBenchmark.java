@@ -0,0 +1,122 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.ByteBoard;
+import game.FreeCells;
+import game.SnekeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking the cell for a new cherry on a matrix that is 10%, 50%
+ * or 95% full.
+ *
+ * The freeCellIndex benchmark is what SnekeEngine.spawnCherry does: one
+ * random draw of the n-th free cell from FreeCells. The rejection benchmark
+ * is the old approach of drawing random cells until an empty one is found,
+ * kept as a baseline
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnCherryBenchmark {
+
+    /**
+     * The fraction of cells taken by the Sneke
+     */
+    @Param({"0.10", "0.50", "0.95"})
+    public double myFill;
+
+    /**
+     * The number of rows and columns of the matrix
+     */
+    @Param({"20", "1000"})
+    public int myDimension;
+
+    /**
+     * The free cell index of the matrix
+     */
+    private FreeCells myFreeCells;
+
+    /**
+     * The matrix for the rejection baseline
+     */
+    private ByteBoard myBoard;
+
+    /**
+     * The random numbers used for the draws
+     */
+    private SplittableRandom myRandom;
+
+    /**
+     * Fills the matrix to myFill
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        final int cells = myDimension * myDimension;
+        myFreeCells = new FreeCells(cells);
+        myBoard = new ByteBoard(myDimension, myDimension);
+        myRandom = new SplittableRandom(42);
+
+        final int taken = (int) (cells * myFill);
+        while (cells - myFreeCells.size() < taken) {
+            final int cell = myRandom.nextInt(cells);
+            myFreeCells.markUsed(cell);
+            myBoard.set(cell, SnekeEngine.BODY);
+        }
+    }
+
+    /**
+     * Spawns a cherry with the free cell index, then frees its cell again
+     * so the fill stays the same
+     *
+     * @return the cell of the cherry
+     */
+    @Benchmark
+    public int freeCellIndex() {
+        final int cell =
+                myFreeCells.select(myRandom.nextInt(myFreeCells.size()));
+        myFreeCells.markUsed(cell);
+        myFreeCells.markFree(cell);
+        return cell;
+    }
+
+    /**
+     * Spawns a cherry by drawing random cells until an empty one is found
+     *
+     * @return the cell of the cherry
+     */
+    @Benchmark
+    public int rejection() {
+        final int cells = myDimension * myDimension;
+        int cell;
+        do {
+            cell = myRandom.nextInt(cells);
+        } while (myBoard.get(cell) != SnekeEngine.EMPTY);
+        return cell;
+    }
+}
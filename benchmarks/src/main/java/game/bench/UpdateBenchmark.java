@@ -0,0 +1,112 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.Sneke;
+import game.SnekeEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single Sneke.update() tick for Snekes of different lengths on
+ * a 100 x 100 matrix.
+ *
+ * The Sneke follows a cycle through every cell so it never dies, but it
+ * keeps eating cherries, so each invocation runs a short batch of ticks and
+ * the Sneke is grown again from scratch once it drifts too far from the
+ * requested length
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+
+    /** The number of rows and columns of the matrix */
+    private static final int DIMENSION = 100;
+
+    /** The number of ticks run by each invocation */
+    private static final int TICKS = 10_000;
+
+    /**
+     * The length the Sneke is grown to before measuring
+     */
+    @Param({"1", "100", "1000", "5000"})
+    public int myLength;
+
+    /**
+     * The Sneke being measured
+     */
+    private Sneke mySneke;
+
+    /**
+     * The engine behind mySneke
+     */
+    private SnekeEngine myEngine;
+
+    /**
+     * The cycle that keeps the Sneke alive
+     */
+    private HamiltonianWalk myWalk;
+
+    /**
+     * Creates the Sneke
+     */
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        mySneke = new Sneke(DIMENSION, DIMENSION);
+        myEngine = mySneke.getEngine();
+        myWalk = new HamiltonianWalk(DIMENSION, DIMENSION);
+        myWalk.grow(myEngine, myLength);
+    }
+
+    /**
+     * Grows a new Sneke when the current one is more than 10% longer than
+     * myLength
+     */
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        if (myEngine.getLength() > myLength + myLength / 10 + 10) {
+            myEngine.reset(myEngine.getSeed() + 1);
+            myWalk.grow(myEngine, myLength);
+        }
+    }
+
+    /**
+     * Steers along the cycle and runs a batch of ticks
+     *
+     * @return whether or not the game continues
+     */
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public boolean update() {
+        boolean alive = true;
+        for (int i = 0; i < TICKS; i++) {
+            myWalk.steer(myEngine);
+            alive &= mySneke.update();
+        }
+        return alive;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Sneke
+ * Austn Attaway
+ * January 2021
+ */
+
+package game.bench;
+
+import game.EventRing;
+import game.RenderBuffer;
+import game.RenderState;
+import game.SnekeEngine;
+import game.ViewportRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ViewportRenderer drawing a frame after a tick into an offscreen
+ * BufferedImage, on boards of growing size with a short Sneke and with one
+ * that fills half the board, with no display needed. The time should
+ * follow the zoom and not the size of the board or the length of the
+ * Sneke. The tick itself is run outside the measurement
+ *
+ * @author Austn Attaway
+ * @version January 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ViewportBenchmark {
+
+    /**
+     * The number of rows and columns of the board
+     */
+    @Param({"100", "1000", "4000"})
+    public int mySize;
+
+    /**
+     * The zoom, as a power of two of pixels per square
+     */
+    @Param({"-4", "0", "3"})
+    public int myZoomShift;
+
+    /**
+     * The percentage of the board the Sneke fills, at least one square
+     */
+    @Param({"0", "50"})
+    public int myFill;
+
+    /**
+     * Steers the Sneke along a cycle so it never dies
+     */
+    private HamiltonianWalk myWalk;
+
+    /**
+     * The engine ticked before each frame
+     */
+    private SnekeEngine myEngine;
+
+    /**
+     * Captures the engine after each tick
+     */
+    private RenderBuffer myStates;
+
+    /**
+     * The renderer being measured
+     */
+    private ViewportRenderer myRenderer;
+
+    /**
+     * The state of the board that is drawn
+     */
+    private RenderState myState;
+
+    /**
+     * The image the window is drawn into
+     */
+    private BufferedImage myImage;
+
+    /**
+     * The Graphics of myImage
+     */
+    private Graphics2D myGraphics;
+
+    /**
+     * Creates the renderer over a board of mySize at myZoomShift, with a
+     * Sneke filling myFill percent of it
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        myEngine = new SnekeEngine(mySize, mySize, 0);
+        myWalk = new HamiltonianWalk(mySize, mySize);
+        myWalk.lay(myEngine, Math.max(1,
+                (int) ((long) mySize * mySize * myFill / 100)));
+        myRenderer = new ViewportRenderer(myEngine, 500, 300);
+        myRenderer.setZoomShift(myZoomShift);
+        myStates = new RenderBuffer(myEngine, System::nanoTime);
+        final EventRing events = new EventRing();
+        events.subscribe(myStates);
+        myEngine.setEvents(events);
+        tick();
+        myImage = new BufferedImage(myRenderer.getWidth() + 2,
+                myRenderer.getHeight() + 2, BufferedImage.TYPE_INT_RGB);
+        myGraphics = myImage.createGraphics();
+    }
+
+    /**
+     * Moves the Sneke one square and takes the state after it, so every
+     * frame draws the next tick
+     */
+    @Setup(Level.Invocation)
+    public void tick() {
+        myWalk.step(myEngine);
+        myState = myStates.acquire();
+    }
+
+    /**
+     * Releases the Graphics
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        myGraphics.dispose();
+    }
+
+    /**
+     * Draws the window as it is after a tick
+     *
+     * @return the image that was drawn into
+     */
+    @Benchmark
+    public BufferedImage draw() {
+        myRenderer.draw(myGraphics, 1, 1, myState, 1);
+        return myImage;
+    }
+}